@@ -18,10 +18,15 @@
 
 package triangle.abstractMachine;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Disassembles the TAM code in the given file, and displays the instructions on
@@ -33,6 +38,15 @@ import java.io.IOException;
  *   java TAM.Disassembler obj.tam
  * </pre>
  *
+ * Given a profile written by the interpreter's -profile option, it annotates
+ * each instruction with the number of times it was executed, as described in
+ * ProfiledDisassembly. The output goes to standard output, or to the file
+ * named by -o.
+ *
+ * <pre>
+ *   java TAM.Disassembler -profile obj.prof -o obj.txt obj.tam
+ * </pre>
+ *
  * <p>
  * Copyright 1991 David A. Watt, University of Glasgow<br>
  * Copyright 1998 Deryck F. Brown, The Robert Gordon University<br>
@@ -44,8 +58,21 @@ public class Disassembler {
 
 	static String objectName;
 
+	// the object program, which is not limited to the size of the code store
+	static Instruction[] code = new Instruction[0];
+
 	static int CT;
 
+	// the disassembly, which is written out in one go at the end
+	static StringBuilder out = new StringBuilder();
+
+	// the object program's debug section, or null if it has none
+	static DebugInfo debugInfo;
+
+	// the lines of the source file named in debugInfo, or null if it cannot be
+	// read
+	static List<String> sourceLines;
+
 	/**
 	 * Writes the r-field of an instruction in the form "l<I>reg</I>r", where l and
 	 * r are the bracket characters to use.
@@ -56,9 +83,9 @@ public class Disassembler {
 	 */
 	private static void writeR(char leftbracket, Register r, char rightbracket) {
 
-		System.out.print(leftbracket);
-		System.out.print(r.toString());
-		System.out.print(rightbracket);
+		out.append(leftbracket);
+		out.append(r);
+		out.append(rightbracket);
 	}
 
 	private static void writeR(char leftBracket, int r, char rightBracket) {
@@ -70,7 +97,7 @@ public class Disassembler {
 	 * Writes a void n-field of an instruction.
 	 */
 	private static void blankN() {
-		System.out.print("      ");
+		out.append("      ");
 	}
 
 	// Writes the n-field of an instruction.
@@ -80,11 +107,11 @@ public class Disassembler {
 	 * @param n the integer to write.
 	 */
 	private static void writeN(int n) {
-		System.out.print("(" + n + ") ");
-		if (n < 10) {
-			System.out.print("  ");
-		} else if (n < 100) {
-			System.out.print(" ");
+		out.append('(').append(n).append(") ");
+		if (0 <= n && n < 10) {
+			out.append("  ");
+		} else if (-10 < n && n < 100) {
+			out.append(" ");
 		}
 	}
 
@@ -94,7 +121,7 @@ public class Disassembler {
 	 * @param d the integer to write.
 	 */
 	private static void writeD(int d) {
-		System.out.print(d);
+		out.append(d);
 	}
 
 	/**
@@ -103,91 +130,91 @@ public class Disassembler {
 	 * @param d the displacement of the primitive routine.
 	 */
 	private static void writePrimitive(int d) {
-		var primitive = Primitive.values()[d];
+		var primitive = Primitive.at(d);
 		switch (primitive) {
 		case ID:
-			System.out.print("id      ");
+			out.append("id      ");
 			break;
 		case NOT:
-			System.out.print("not     ");
+			out.append("not     ");
 			break;
 		case AND:
-			System.out.print("and     ");
+			out.append("and     ");
 			break;
 		case OR:
-			System.out.print("or      ");
+			out.append("or      ");
 			break;
 		case SUCC:
-			System.out.print("succ    ");
+			out.append("succ    ");
 			break;
 		case PRED:
-			System.out.print("pred    ");
+			out.append("pred    ");
 			break;
 		case NEG:
-			System.out.print("neg     ");
+			out.append("neg     ");
 			break;
 		case ADD:
-			System.out.print("add     ");
+			out.append("add     ");
 			break;
 		case SUB:
-			System.out.print("sub     ");
+			out.append("sub     ");
 			break;
 		case MULT:
-			System.out.print("mult    ");
+			out.append("mult    ");
 			break;
 		case DIV:
-			System.out.print("div     ");
+			out.append("div     ");
 			break;
 		case MOD:
-			System.out.print("mod     ");
+			out.append("mod     ");
 			break;
 		case LT:
-			System.out.print("lt      ");
+			out.append("lt      ");
 			break;
 		case LE:
-			System.out.print("le      ");
+			out.append("le      ");
 			break;
 		case GE:
-			System.out.print("ge      ");
+			out.append("ge      ");
 			break;
 		case GT:
-			System.out.print("gt      ");
+			out.append("gt      ");
 			break;
 		case EQ:
-			System.out.print("eq      ");
+			out.append("eq      ");
 			break;
 		case NE:
-			System.out.print("ne      ");
+			out.append("ne      ");
 			break;
 		case EOL:
-			System.out.print("eol     ");
+			out.append("eol     ");
 			break;
 		case EOF:
-			System.out.print("eof     ");
+			out.append("eof     ");
 			break;
 		case GET:
-			System.out.print("get     ");
+			out.append("get     ");
 			break;
 		case PUT:
-			System.out.print("put     ");
+			out.append("put     ");
 			break;
 		case GETEOL:
-			System.out.print("geteol  ");
+			out.append("geteol  ");
 			break;
 		case PUTEOL:
-			System.out.print("puteol  ");
+			out.append("puteol  ");
 			break;
 		case GETINT:
-			System.out.print("getint  ");
+			out.append("getint  ");
 			break;
 		case PUTINT:
-			System.out.print("putint  ");
+			out.append("putint  ");
 			break;
 		case NEW:
-			System.out.print("new     ");
+			out.append("new     ");
 			break;
 		case DISPOSE:
-			System.out.print("dispose ");
+			out.append("dispose ");
 			break;
 		}
 	}
@@ -197,138 +224,189 @@ public class Disassembler {
 	 *
 	 * @param instr the instruction to display.
 	 */
-	private static void writeInstruction(Instruction instr) {
+	static void writeInstruction(Instruction instr) {
 
 		switch (instr.opCode) {
 		case LOAD:
-			System.out.print("LOAD  ");
+			out.append("LOAD  ");
 			writeN(instr.length);
 			writeD(instr.operand);
 			writeR('[', instr.register, ']');
 			break;
 
 		case LOADA:
-			System.out.print("LOADA ");
+			out.append("LOADA ");
 			blankN();
 			writeD(instr.operand);
 			writeR('[', instr.register, ']');
 			break;
 
 		case LOADI:
-			System.out.print("LOADI ");
+			out.append("LOADI ");
 			writeN(instr.length);
 			break;
 
 		case LOADL:
-			System.out.print("LOADL ");
+			out.append("LOADL ");
 			blankN();
 			writeD(instr.operand);
 			break;
 
 		case STORE:
-			System.out.print("STORE ");
+			out.append("STORE ");
 			writeN(instr.length);
 			writeD(instr.operand);
 			writeR('[', instr.register, ']');
 			break;
 
 		case STOREI:
-			System.out.print("STOREI");
+			out.append("STOREI");
 			writeN(instr.length);
 			break;
 
 		case CALL:
-			System.out.print("CALL  ");
+			out.append("CALL  ");
 			if (instr.register == Register.PB) {
 				blankN();
 				writePrimitive(instr.operand);
 			} else {
 				writeR('(', instr.length, ')');
-				System.out.print("  ");
+				out.append("  ");
 				writeD(instr.operand);
 				writeR('[', instr.register, ']');
 			}
 			break;
 
 		case CALLI:
-			System.out.print("CALLI ");
+			out.append("CALLI ");
 			break;
 
 		case RETURN:
-			System.out.print("RETURN");
+			out.append("RETURN");
 			writeN(instr.length);
 			writeD(instr.operand);
 			break;
 
 		case PUSH:
-			System.out.print("PUSH  ");
+			out.append("PUSH  ");
 			blankN();
 			writeD(instr.operand);
 			break;
 
 		case POP:
-			System.out.print("POP   ");
+			out.append("POP   ");
 			writeN(instr.length);
 			writeD(instr.operand);
 			break;
 
 		case JUMP:
-			System.out.print("JUMP  ");
+			out.append("JUMP  ");
 			blankN();
 			writeD(instr.operand);
 			writeR('[', instr.register, ']');
 			break;
 
 		case JUMPI:
-			System.out.print("JUMPI ");
+			out.append("JUMPI ");
 			break;
 
 		case JUMPIF:
-			System.out.print("JUMPIF");
+			out.append("JUMPIF");
 			writeN(instr.length);
 			writeD(instr.operand);
 			writeR('[', instr.register, ']');
 			break;
 
 		case HALT:
-			System.out.print("HALT  ");
+			out.append("HALT  ");
+			break;
+
+		case JUMPC:
+			out.append("JUMPC ");
+			out.append('(').append(Primitive.at(instr.length).name().toLowerCase()).append(")  ");
+			writeD(instr.operand);
+			writeR('[', instr.register, ']');
+			break;
+
+		case INCR:
+			out.append("INCR  ");
+			writeN(instr.length);
+			writeD(instr.operand);
+			writeR('[', instr.register, ']');
+			break;
+
+		case LOADPL:
+			out.append("LOADPL");
+			writeN(instr.length);
+			writeD(instr.operand);
+			writeR('[', instr.register, ']');
+			break;
 		}
 	}
 
 	/**
-	 * Writes all instructions of the program in code store.
+	 * Writes all instructions of the program in code store, headed by the
+	 * routines and source lines they come from if the program has a debug
+	 * section.
 	 */
 	private static void disassembleProgram() {
 		for (int addr = Machine.CB; addr < CT; addr++) {
-			System.out.print(addr + ":  ");
-			writeInstruction(Machine.code[addr]);
-			System.out.println();
+			if (debugInfo != null) {
+				writeSource(addr);
+			}
+			out.append(addr).append(":  ");
+			writeInstruction(code[addr]);
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Writes the name of the routine that starts at addr, and the source line
+	 * whose code starts there, if any.
+	 */
+	private static void writeSource(int addr) {
+		var routine = debugInfo.routineStartingAt(addr);
+		if (routine != null) {
+			out.append('\n');
+			out.append(routine).append(":\n");
+		}
+		writeSourceLine(addr);
+	}
+
+	/**
+	 * Writes the source line whose code starts at addr, if any.
+	 */
+	static void writeSourceLine(int addr) {
+		if (debugInfo.startsLine(addr)) {
+			var line = debugInfo.lineAt(addr);
+			out.append("; ").append(debugInfo.getSourceName()).append(':').append(line);
+			if (sourceLines != null && line <= sourceLines.size()) {
+				out.append("  ").append(sourceLines.get(line - 1).strip());
+			}
+			out.append('\n');
 		}
 	}
 
 	// LOADING
 
 	/**
-	 * Loads the TAM object program into code store from the named file.
+	 * Loads the TAM object program into code from the named file.
 	 *
 	 * @param objectName the name of the file containing the program.
 	 */
 	static void loadObjectProgram(String objectName) {
 
-		var finished = false;
-
 		try (var objectFile = new FileInputStream(objectName)) {
-			var objectStream = new DataInputStream(objectFile);
-			var addr = Machine.CB;
-			while (!finished) {
-				Machine.code[addr] = Instruction.read(objectStream);
-				if (Machine.code[addr] == null) {
-					finished = true;
-				} else {
-					addr = addr + 1;
-				}
+			var objectStream = new DataInputStream(new BufferedInputStream(objectFile));
+			var program = new ArrayList<Instruction>();
+			var instr = Instruction.read(objectStream);
+			while (instr != null) {
+				program.add(instr);
+				instr = Instruction.read(objectStream);
 			}
-			CT = addr;
+			code = program.toArray(new Instruction[0]);
+			CT = Machine.CB + code.length;
+			debugInfo = DebugInfo.read(objectStream);
 		} catch (FileNotFoundException s) {
 			CT = Machine.CB;
 			System.err.println("Error opening object file: " + s);
@@ -343,13 +421,54 @@ public class Disassembler {
 	public static void main(String[] args) {
 		System.out.println("********** TAM Disassembler (Sun Version 2.1) **********");
 
-		if (args.length == 1) {
-			objectName = args[0];
-		} else {
-			objectName = "obj.tam";
+		objectName = "obj.tam";
+		String profileName = null, outputName = null;
+		for (var i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-profile":
+				profileName = args[++i];
+				break;
+			case "-o":
+				outputName = args[++i];
+				break;
+			default:
+				objectName = args[i];
+				break;
+			}
 		}
 
 		loadObjectProgram(objectName);
-		disassembleProgram();
+		if (debugInfo != null) {
+			try {
+				sourceLines = Files.readAllLines(Path.of(debugInfo.getSourceName()));
+			} catch (IOException s) {
+				// the source lines are shown by number only
+			}
+		}
+		long[] counts = null;
+		if (profileName != null) {
+			try {
+				counts = ExecutionProfile.read(profileName, code, CT);
+			} catch (IOException s) {
+				System.err.println("Error reading profile file: " + s);
+				return;
+			}
+		}
+		out.setLength(0);
+		if (counts == null) {
+			disassembleProgram();
+		} else {
+			new ProfiledDisassembly(counts).write();
+		}
+		if (outputName == null) {
+			System.out.print(out);
+			System.out.flush();
+		} else {
+			try (var writer = Files.newBufferedWriter(Path.of(outputName))) {
+				writer.append(out);
+			} catch (IOException s) {
+				System.err.println("Error writing output file: " + s);
+			}
+		}
 	}
 }
@@ -0,0 +1,205 @@
+package triangle.abstractMachine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * A disassembly annotated with an execution profile. The routines are listed
+ * hottest first, after a summary of them, and each instruction shows how many
+ * times it was executed and what share that is of all the instructions
+ * executed. Each basic block is headed by its count, and the hot path is
+ * marked: every instruction executed at least a tenth as often as the hottest
+ * one has a "*" in the margin.
+ *
+ * A routine is the code reached from its entry without following calls, up to
+ * its RETURNs. The entries are the start of the program and every address the
+ * code calls or makes a closure of through CB. Routines are named from the
+ * program's debug section, if it has one, and otherwise by their address.
+ */
+final class ProfiledDisassembly {
+
+	// marks a group of instructions not reached from any entry
+	private static final int unreached = -1;
+
+	private final long[] counts;
+
+	private final long total, hottest;
+
+	// the entry of the routine each instruction belongs to, or unreached
+	private final int[] owner;
+
+	// whether each instruction starts a basic block
+	private final boolean[] leader;
+
+	private final TreeSet<Integer> entries = new TreeSet<>();
+
+	ProfiledDisassembly(long[] counts) {
+		this.counts = counts;
+		long total = 0, hottest = 0;
+		for (var count : counts) {
+			total += count;
+			hottest = Math.max(hottest, count);
+		}
+		this.total = total;
+		this.hottest = hottest;
+		this.owner = new int[counts.length];
+		this.leader = new boolean[counts.length];
+		findRoutines();
+	}
+
+	private void findRoutines() {
+		var code = Disassembler.code;
+		if (code.length > 0) {
+			entries.add(Machine.CB);
+		}
+		for (var addr = 0; addr < code.length; addr++) {
+			var instr = code[addr];
+			if ((instr.opCode == OpCode.CALL || instr.opCode == OpCode.LOADA) && instr.register == Register.CB
+					&& inCode(instr.operand)) {
+				entries.add(instr.operand);
+			}
+			switch (instr.opCode) {
+			case JUMP, JUMPIF, JUMPC:
+				if (instr.register == Register.CB && inCode(instr.operand)) {
+					leader[instr.operand] = true;
+				}
+				if (addr + 1 < code.length) {
+					leader[addr + 1] = true;
+				}
+				break;
+			case JUMPI, RETURN, HALT:
+				if (addr + 1 < code.length) {
+					leader[addr + 1] = true;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		Arrays.fill(owner, unreached);
+		var pending = new int[code.length];
+		for (var entry : entries) {
+			leader[entry] = true;
+			if (owner[entry] != unreached) {
+				continue;
+			}
+			// follow control from the entry, not into calls
+			var size = 0;
+			owner[entry] = entry;
+			pending[size++] = entry;
+			while (size > 0) {
+				var addr = pending[--size];
+				var instr = code[addr];
+				var op = instr.opCode;
+				if (op != OpCode.JUMP && op != OpCode.JUMPI && op != OpCode.RETURN && op != OpCode.HALT
+						&& addr + 1 < code.length && owner[addr + 1] == unreached) {
+					owner[addr + 1] = entry;
+					pending[size++] = addr + 1;
+				}
+				if ((op == OpCode.JUMP || op == OpCode.JUMPIF || op == OpCode.JUMPC) && instr.register == Register.CB
+						&& inCode(instr.operand) && owner[instr.operand] == unreached) {
+					owner[instr.operand] = entry;
+					pending[size++] = instr.operand;
+				}
+			}
+		}
+	}
+
+	private static boolean inCode(int addr) {
+		return Machine.CB <= addr && addr < Disassembler.CT;
+	}
+
+	void write() {
+		var out = Disassembler.out;
+		var code = Disassembler.code;
+
+		// the instructions of each routine, and how many of them were executed,
+		// which gives the order of the routines
+		var members = new HashMap<Integer, ArrayList<Integer>>();
+		var executed = new HashMap<Integer, Long>();
+		for (var addr = 0; addr < code.length; addr++) {
+			members.computeIfAbsent(owner[addr], entry -> new ArrayList<>()).add(addr);
+			executed.merge(owner[addr], counts[addr], Long::sum);
+		}
+		var groups = new ArrayList<Integer>(members.keySet());
+		groups.sort(Comparator.comparingLong((Integer entry) -> executed.get(entry)).reversed()
+				.thenComparing(Comparator.naturalOrder()));
+
+		out.append("Profile of ").append(Disassembler.objectName).append(": ").append(total)
+				.append(" instructions executed\n");
+		out.append("Instructions marked * were executed at least a tenth as often as the hottest.\n\n");
+		out.append("Routines, hottest first:\n");
+		out.append("    executed        %  routine\n");
+		for (var entry : groups) {
+			long count = executed.get(entry);
+			appendCount(out, count, 12);
+			appendPercent(out, count, 9);
+			out.append("  ").append(name(entry)).append('\n');
+		}
+
+		for (var entry : groups) {
+			long count = executed.get(entry);
+			out.append('\n').append(name(entry)).append(": ").append(count).append(" instructions executed, ");
+			appendPercent(out, count, 0);
+			out.append('\n');
+			for (int addr : members.get(entry)) {
+				if (leader[addr]) {
+					out.append("  block at ").append(addr).append(": executed ").append(counts[addr])
+							.append(" times\n");
+				}
+				if (Disassembler.debugInfo != null) {
+					Disassembler.writeSourceLine(addr);
+				}
+				out.append((hottest > 0 && counts[addr] * 10 >= hottest) ? '*' : ' ');
+				appendCount(out, counts[addr], 11);
+				appendPercent(out, counts[addr], 9);
+				appendCount(out, addr, 8);
+				out.append(":  ");
+				Disassembler.writeInstruction(code[addr]);
+				out.append('\n');
+			}
+		}
+	}
+
+	private String name(int entry) {
+		if (entry == unreached) {
+			return "code not reached from any entry";
+		}
+		var debugInfo = Disassembler.debugInfo;
+		var name = (debugInfo == null) ? null : debugInfo.routineStartingAt(entry);
+		if (name == null) {
+			name = (entry == Machine.CB) ? "main program" : "routine";
+		}
+		return name + " (at " + entry + ")";
+	}
+
+	// appends count, right-aligned in width characters
+	private static void appendCount(StringBuilder out, long count, int width) {
+		for (var digits = digits(count); digits < width; digits++) {
+			out.append(' ');
+		}
+		out.append(count);
+	}
+
+	// appends count as a percentage of all instructions executed, to one
+	// decimal place, right-aligned in width characters
+	private void appendPercent(StringBuilder out, long count, int width) {
+		var tenths = (total == 0) ? 0 : Math.round(count * 1000.0 / total);
+		for (var length = digits(tenths / 10) + 3; length < width; length++) {
+			out.append(' ');
+		}
+		out.append(tenths / 10).append('.').append(tenths % 10).append('%');
+	}
+
+	private static int digits(long n) {
+		var digits = 1;
+		for (; n >= 10; n /= 10) {
+			digits++;
+		}
+		return digits;
+	}
+}
@@ -0,0 +1,387 @@
+package triangle.abstractMachine;
+
+/**
+ * A variant of the interpreter's dispatch loop that keeps the registers ST, LB
+ * and CP in local variables rather than in the Interpreter's fields, so that
+ * HotSpot can hold them in machine registers, and that does the arithmetic,
+ * logical and one-word comparison primitives in the loop itself.
+ *
+ * The stack itself stays in the data store, which holds exactly what it would
+ * under Interpreter.interpretProgram, so a program that reads an uninitialised
+ * variable sees the same value. Keeping the top word in a local as well was
+ * tried, and was slower: every instruction that pops must then read the new
+ * top word back, where the Interpreter reads a word only when it needs it.
+ *
+ * The other primitives, safepoints and limit checks get the registers written
+ * back to the Interpreter first, and read again afterwards. Flight Recorder
+ * routine call, I/O and heap growth events are not raised here; when any of
+ * them is enabled, the Interpreter uses its own loop.
+ */
+final class CachingInterpreter {
+
+	private CachingInterpreter() {
+	}
+
+	static void interpretProgram(Interpreter vm) {
+		final var code = vm.code;
+		final var data = vm.data;
+		final var primitiveCalls = vm.primitiveCalls;
+
+		var endEvent = new InterpreterEvents.ProgramEnd();
+		endEvent.begin();
+		vm.recordingEvents = false;
+
+		var safepointEvery = vm.safepointEvery();
+		var untilSafepoint = safepointEvery;
+
+		// the limits are checked as in Interpreter.interpretProgram
+		vm.runStartNanos = System.nanoTime();
+		long instructionsExecuted = 0;
+		var nextLimitCheck = vm.checkLimits(0);
+		var dataLimitGap = (vm.maxData > 0) ? vm.maxData - (Interpreter.HB - Interpreter.SB) : 0;
+
+		int st = vm.ST, lb = vm.LB, cp = vm.CP;
+		var checked = vm.HT - st < vm.spaceNeeded(cp);
+		var pc = cp;
+		while (vm.status == Interpreter.running) {
+			// Fetch instruction ...
+			pc = cp;
+			var currentInstr = code[cp];
+			instructionsExecuted++;
+			// Decode instruction ...
+			var r = currentInstr.register;
+			var n = currentInstr.length;
+			var d = currentInstr.operand;
+			int addr;
+
+			// Execute instruction ...
+			switch (currentInstr.opCode) {
+			case LOAD:
+				addr = d + content(vm, r, st, lb, cp);
+				if (checked && vm.HT - st < n) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				if (n == 1) {
+					data[st] = data[addr];
+					st = st + 1;
+				} else {
+					vm.move(addr, st, n);
+					st = st + n;
+				}
+				cp = cp + 1;
+				break;
+			case LOADA:
+				addr = d + content(vm, r, st, lb, cp);
+				if (checked && vm.HT - st < 1) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				data[st] = addr;
+				st = st + 1;
+				cp = cp + 1;
+				break;
+			case LOADI:
+				st = st - 1;
+				addr = data[st];
+				if (checked && vm.HT - st < n) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				vm.move(addr, st, n);
+				st = st + n;
+				cp = cp + 1;
+				break;
+			case LOADL:
+				if (checked && vm.HT - st < 1) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				data[st] = d;
+				st = st + 1;
+				cp = cp + 1;
+				break;
+			case STORE:
+				addr = d + content(vm, r, st, lb, cp);
+				if (n == 1) {
+					data[addr] = data[st - 1];
+					st = st - 1;
+				} else {
+					st = st - n;
+					vm.move(st, addr, n);
+				}
+				cp = cp + 1;
+				break;
+			case STOREI:
+				st = st - 1;
+				addr = data[st];
+				st = st - n;
+				vm.move(st, addr, n);
+				cp = cp + 1;
+				break;
+			case CALL:
+				var primitive = primitiveCalls[pc];
+				if (primitive != null) {
+					switch (primitive) {
+					case ID:
+						break;
+					case NOT:
+						data[st - 1] = Interpreter.toInt(!Interpreter.isTrue(data[st - 1]));
+						break;
+					case AND:
+						st = st - 1;
+						data[st - 1] = Interpreter.toInt(Interpreter.isTrue(data[st - 1]) & Interpreter.isTrue(data[st]));
+						break;
+					case OR:
+						st = st - 1;
+						data[st - 1] = Interpreter.toInt(Interpreter.isTrue(data[st - 1]) | Interpreter.isTrue(data[st]));
+						break;
+					case SUCC:
+						data[st - 1] = vm.overflowChecked(data[st - 1] + 1);
+						break;
+					case PRED:
+						data[st - 1] = vm.overflowChecked(data[st - 1] - 1);
+						break;
+					case NEG:
+						data[st - 1] = -data[st - 1];
+						break;
+					case ADD:
+						st = st - 1;
+						data[st - 1] = vm.overflowChecked((long) data[st - 1] + data[st]);
+						break;
+					case SUB:
+						st = st - 1;
+						data[st - 1] = vm.overflowChecked((long) data[st - 1] - data[st]);
+						break;
+					case MULT:
+						st = st - 1;
+						data[st - 1] = vm.overflowChecked((long) data[st - 1] * data[st]);
+						break;
+					case DIV:
+						st = st - 1;
+						if (data[st] != 0) {
+							data[st - 1] = (int) ((long) data[st - 1] / data[st]);
+						} else {
+							vm.status = Interpreter.failedZeroDivide;
+						}
+						break;
+					case MOD:
+						st = st - 1;
+						if (data[st] != 0) {
+							data[st - 1] = (int) ((long) data[st - 1] % data[st]);
+						} else {
+							vm.status = Interpreter.failedZeroDivide;
+						}
+						break;
+					case LT:
+						st = st - 1;
+						data[st - 1] = Interpreter.toInt(data[st - 1] < data[st]);
+						break;
+					case LE:
+						st = st - 1;
+						data[st - 1] = Interpreter.toInt(data[st - 1] <= data[st]);
+						break;
+					case GE:
+						st = st - 1;
+						data[st - 1] = Interpreter.toInt(data[st - 1] >= data[st]);
+						break;
+					case GT:
+						st = st - 1;
+						data[st - 1] = Interpreter.toInt(data[st - 1] > data[st]);
+						break;
+					default:
+						if ((primitive == Primitive.EQ || primitive == Primitive.NE) && data[st - 1] == 1) {
+							// two one-word comparands, below their size
+							st = st - 2;
+							var equal = data[st - 1] == data[st];
+							data[st - 1] = Interpreter.toInt((primitive == Primitive.EQ) == equal);
+						} else {
+							vm.ST = st;
+							vm.callPrimitive(primitive);
+							st = vm.ST;
+							if (primitive == Primitive.NEW) {
+								checked = vm.HT - st < vm.spaceNeeded(cp + 1);
+							}
+						}
+						break;
+					}
+					cp = cp + 1;
+					break;
+				}
+				addr = d + content(vm, r, st, lb, cp);
+				// the Verifier has checked that this is a routine and n a register
+				checked = vm.HT - st - 3 < vm.spaceNeeded(addr);
+				if (checked && vm.HT - st < 3) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				data[st] = content(vm, Register.at(n), st, lb, cp); // static link
+				data[st + 1] = lb; // dynamic link
+				data[st + 2] = cp + 1; // return address
+				lb = st;
+				st = st + 3;
+				cp = addr;
+				break;
+			case CALLI:
+				if (checked && vm.HT - st < 1) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				st = st - 2;
+				addr = data[st + 1];
+				if (addr >= Machine.PB) {
+					vm.ST = st;
+					vm.callPrimitive(Primitive.at(addr - Machine.PB));
+					st = vm.ST;
+					cp = cp + 1;
+				} else {
+					// data[st] = static link already
+					data[st + 1] = lb; // dynamic link
+					data[st + 2] = cp + 1; // return address
+					lb = st;
+					st = st + 3;
+					cp = addr;
+					if (cp < Interpreter.CB || cp >= vm.CT) {
+						vm.status = Interpreter.failedInvalidCodeAddress;
+					}
+				}
+				checked = vm.HT - st < vm.spaceNeeded(cp);
+				break;
+			case RETURN:
+				addr = lb - d;
+				cp = data[lb + 2];
+				lb = data[lb + 1];
+				st = st - n;
+				vm.move(st, addr, n);
+				st = addr + n;
+				if (cp < Interpreter.CB || cp >= vm.CT) {
+					vm.status = Interpreter.failedInvalidCodeAddress;
+				}
+				checked = vm.HT - st < vm.spaceNeeded(cp);
+				break;
+			case PUSH:
+				if (checked && vm.HT - st < d) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				st = st + d;
+				cp = cp + 1;
+				break;
+			case POP:
+				addr = st - n - d;
+				st = st - n;
+				vm.move(st, addr, n);
+				st = addr + n;
+				cp = cp + 1;
+				break;
+			case JUMP:
+				cp = d + content(vm, r, st, lb, cp);
+				break;
+			case JUMPI:
+				st = st - 1;
+				cp = data[st];
+				if (cp < Interpreter.CB || cp >= vm.CT) {
+					vm.status = Interpreter.failedInvalidCodeAddress;
+				}
+				break;
+			case JUMPIF:
+				st = st - 1;
+				if (data[st] == n) {
+					cp = d + content(vm, r, st, lb, cp);
+				} else {
+					cp = cp + 1;
+				}
+				break;
+			case HALT:
+				vm.status = Interpreter.halted;
+				break;
+			case JUMPC:
+				st = st - 2;
+				if (Interpreter.compares(n, data[st], data[st + 1])) {
+					cp = d + content(vm, r, st, lb, cp);
+				} else {
+					cp = cp + 1;
+				}
+				break;
+			case INCR:
+				addr = d + content(vm, r, st, lb, cp);
+				data[addr] = vm.overflowChecked((long) data[addr] + n);
+				cp = cp + 1;
+				break;
+			case LOADPL:
+				addr = d + content(vm, r, st, lb, cp);
+				if (checked && vm.HT - st < 1) {
+					vm.status = Interpreter.failedDataStoreFull;
+					break;
+				}
+				data[st] = vm.overflowChecked((long) data[addr] + n);
+				st = st + 1;
+				cp = cp + 1;
+				break;
+			default:
+				break;
+			}
+			if (cp <= pc && (instructionsExecuted >= nextLimitCheck || st - vm.HT > dataLimitGap)) {
+				if (vm.status == Interpreter.running) {
+					vm.ST = st;
+					nextLimitCheck = vm.checkLimits(instructionsExecuted);
+				}
+			}
+			if (--untilSafepoint == 0) {
+				untilSafepoint = safepointEvery;
+				if (vm.status == Interpreter.running) {
+					vm.ST = st;
+					vm.LB = lb;
+					vm.CP = cp;
+					vm.safepoint(safepointEvery);
+				}
+			}
+		}
+		vm.ST = st;
+		vm.LB = lb;
+		vm.CP = cp;
+		vm.stoppedAt = pc;
+
+		endEvent.end();
+		if (endEvent.shouldCommit()) {
+			endEvent.status = InterpreterEvents.statusName(vm.status);
+			endEvent.instructions = instructionsExecuted;
+			endEvent.commit();
+		}
+	}
+
+	// as Interpreter.content, but with ST, LB and CP from the loop's locals;
+	// every register is handled here, as Interpreter.content is too large for
+	// HotSpot to inline into this loop
+	private static int content(Interpreter vm, Register r, int st, int lb, int cp) {
+		switch (r) {
+		case CB:
+			return Interpreter.CB;
+		case CT:
+			return vm.CT;
+		case PB:
+			return Machine.PB;
+		case PT:
+			return Machine.PT;
+		case SB:
+			return Interpreter.SB;
+		case ST:
+			return st;
+		case HB:
+			return Interpreter.HB;
+		case HT:
+			return vm.HT;
+		case LB:
+			return lb;
+		case CP:
+			return cp;
+		default:
+			// L1 .. L6, found by following static links
+			var link = lb;
+			for (var level = Register.LB.ordinal(); level < r.ordinal(); level++) {
+				link = vm.data[link];
+			}
+			return link;
+		}
+	}
+}
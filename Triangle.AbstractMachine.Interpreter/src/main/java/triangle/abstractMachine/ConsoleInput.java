@@ -0,0 +1,97 @@
+package triangle.abstractMachine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The console input of a program run by an {@link ExecutionService}. A client
+ * sends input as it becomes available, and the program reads it through GET,
+ * GETEOL and GETINT.
+ *
+ * A program that reads before any input has been sent waits on a
+ * {@link BlockingQueue}, which parks its virtual thread rather than holding on
+ * to a carrier thread, as waiting inside a synchronized method (as in
+ * PipedInputStream) would.
+ */
+public class ConsoleInput extends InputStream {
+
+	private static final byte[] END = new byte[0];
+
+	private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+
+	// the chunk currently being read, and the position in it
+	private byte[] chunk = new byte[0];
+	private int position;
+
+	/**
+	 * Makes the given text available to the program.
+	 */
+	public void send(String text) {
+		send(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void send(byte[] bytes) {
+		if (bytes.length > 0) {
+			chunks.add(bytes.clone());
+		}
+	}
+
+	/**
+	 * Signals end of input; the program sees EOF once it has read everything
+	 * sent before.
+	 */
+	@Override
+	public void close() {
+		chunks.add(END);
+	}
+
+	// waits for the next chunk; false at end of input
+	private boolean nextChunk() throws IOException {
+		if (chunk == END) {
+			return false;
+		}
+		try {
+			chunk = chunks.take();
+		} catch (InterruptedException s) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for input");
+		}
+		position = 0;
+		return chunk != END;
+	}
+
+	@Override
+	public int read() throws IOException {
+		while (position == chunk.length) {
+			if (!nextChunk()) {
+				return -1;
+			}
+		}
+		return chunk[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		while (position == chunk.length) {
+			if (!nextChunk()) {
+				return -1;
+			}
+		}
+		var count = Math.min(length, chunk.length - position);
+		System.arraycopy(chunk, position, buffer, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return chunk.length - position;
+	}
+}
@@ -0,0 +1,90 @@
+package triangle.abstractMachine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and completion latency of the programs run by an
+ * {@link ExecutionService}.
+ *
+ * Percentiles are computed over the most recent {@link #SAMPLES} completions,
+ * so that memory use does not grow with the number of programs run.
+ */
+public class ExecutionMetrics {
+
+	public static final int SAMPLES = 1 << 16;
+
+	private final long startNanos = System.nanoTime();
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	// latencies in ns, written round-robin
+	private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+	private final AtomicLong recorded = new AtomicLong();
+
+	void submitted() {
+		submitted.increment();
+	}
+
+	void completed(long latencyNanos, boolean halted) {
+		completed.increment();
+		if (!halted) {
+			failed.increment();
+		}
+		var index = recorded.getAndIncrement();
+		latencies.set((int) (index % SAMPLES), latencyNanos);
+	}
+
+	public long submittedCount() {
+		return submitted.sum();
+	}
+
+	public long completedCount() {
+		return completed.sum();
+	}
+
+	/**
+	 * @return the number of programs that did not halt normally
+	 */
+	public long failedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return programs completed per second since the service started
+	 */
+	public double throughput() {
+		var seconds = (System.nanoTime() - startNanos) / 1e9;
+		return completed.sum() / seconds;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the completion latency in ns below which the given percentage of
+	 *         recent programs completed, or 0 if none have
+	 */
+	public long latencyPercentile(double percentile) {
+		var count = (int) Math.min(recorded.get(), SAMPLES);
+		if (count == 0) {
+			return 0;
+		}
+		var sorted = new long[count];
+		for (var i = 0; i < count; i++) {
+			sorted[i] = latencies.get(i);
+		}
+		Arrays.sort(sorted);
+		var rank = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(rank, count - 1))];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d submitted, %d completed (%d failed), %.1f programs/sec, p50 %.2f ms, p99 %.2f ms",
+				submittedCount(), completedCount(), failedCount(), throughput(), latencyPercentile(50) / 1e6,
+				latencyPercentile(99) / 1e6);
+	}
+}
@@ -0,0 +1,128 @@
+package triangle.abstractMachine;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs TAM programs concurrently, each on its own virtual thread with its own
+ * machine state and console streams.
+ *
+ * Programs typically spend most of their time waiting for input; while one is
+ * blocked in GET or GETINT its virtual thread is parked, so many thousands of
+ * programs can be in progress on a few carrier threads. Give each program a
+ * {@link ConsoleInput} (or another stream that does not block inside a
+ * synchronized method) so that this holds.
+ *
+ * The limits from the interpreter's -maxInstructions, -maxTime and -maxData
+ * options apply to every program run by the service.
+ */
+public class ExecutionService implements AutoCloseable {
+
+	/**
+	 * The outcome of running one program.
+	 *
+	 * @param status       the interpreter's status code when the program stopped
+	 * @param latencyNanos the time from submission to completion
+	 */
+	public record Result(int status, long latencyNanos) {
+
+		public boolean halted() {
+			return status == Interpreter.halted;
+		}
+
+		/**
+		 * @return true if the program was stopped by one of the service's limits,
+		 *         rather than halting or failing by itself
+		 */
+		public boolean limitExceeded() {
+			return status == Interpreter.failedInstructionLimit || status == Interpreter.failedTimeLimit
+					|| status == Interpreter.failedDataLimit;
+		}
+
+		/**
+		 * @return true if the program failed verification, and so was not run
+		 */
+		public boolean rejected() {
+			return status == Interpreter.rejected;
+		}
+	}
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final ExecutionMetrics metrics = new ExecutionMetrics();
+
+	private final long maxInstructions, maxTime;
+
+	private final int maxData;
+
+	public ExecutionService() {
+		this(0, 0, 0);
+	}
+
+	/**
+	 * @param maxInstructions the instruction limit for each program, or 0
+	 * @param maxTime         the wall-clock limit for each program in ms, or 0
+	 * @param maxData         the data store limit for each program in words, or
+	 *                        0
+	 */
+	public ExecutionService(long maxInstructions, long maxTime, int maxData) {
+		this.maxInstructions = maxInstructions;
+		this.maxTime = maxTime;
+		this.maxData = maxData;
+	}
+
+	/**
+	 * Loads an object program, which can then be submitted any number of times.
+	 *
+	 * @return the code, which is empty if the file could not be read
+	 */
+	public static Instruction[] load(String objectName) {
+		return Interpreter.loadObjectProgram(objectName);
+	}
+
+	/**
+	 * Starts running a program on a new virtual thread.
+	 *
+	 * @param code   the object program
+	 * @param input  the program's console input
+	 * @param output receives the program's console output, followed by its
+	 *               final status
+	 */
+	public Future<Result> submit(Instruction[] code, InputStream input, OutputStream output) {
+		var submittedNanos = System.nanoTime();
+		metrics.submitted();
+		return executor.submit(() -> {
+			var status = Interpreter.failedInvalidInstruction;
+			var interpreter = new Interpreter(code, input, new PrintStream(output));
+			interpreter.maxInstructions = maxInstructions;
+			interpreter.maxTime = maxTime;
+			interpreter.maxData = maxData;
+			try {
+				interpreter.startTimeNanos = System.nanoTime();
+				interpreter.interpretProgram();
+				interpreter.showStatus();
+				status = interpreter.status;
+			} finally {
+				interpreter.writer.flush();
+				metrics.completed(System.nanoTime() - submittedNanos, status == Interpreter.halted);
+			}
+			return new Result(status, System.nanoTime() - submittedNanos);
+		});
+	}
+
+	public ExecutionMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * Waits for all submitted programs to finish.
+	 */
+	@Override
+	public void close() {
+		executor.close();
+	}
+}
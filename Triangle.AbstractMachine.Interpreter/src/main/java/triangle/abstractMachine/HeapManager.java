@@ -0,0 +1,251 @@
+package triangle.abstractMachine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of the free blocks in the heap region of the data store, on
+ * behalf of the NEW and DISPOSE primitives.
+ *
+ * The heap grows downwards from HB; HT marks its lowest allocated word. A
+ * disposed block is merged with any free neighbours, and if the result borders
+ * HT it is handed back to the unallocated region between ST and HT. Otherwise
+ * it goes on a free list: sizes 1..16 have an exact list each, larger blocks are
+ * grouped by power of two. Each list is ordered by address, so allocation is
+ * address-ordered first fit, which keeps fragmentation low.
+ *
+ * Only block addresses and sizes are recorded here; the data store itself is
+ * never touched, so freed blocks keep whatever they last held.
+ */
+class HeapManager {
+
+	// sizes 1..EXACT_CLASSES each get their own list
+	private static final int EXACT_CLASSES = 16;
+
+	// then one list for each power of two, up to the 15-bit data addresses
+	// assumed by Machine: 17..32, 33..64, ..., 16385..32768
+	private static final int CLASSES = EXACT_CLASSES + 1 + 15 - bitLength(EXACT_CLASSES);
+
+	// free blocks, address -> size; used to find neighbours when coalescing
+	private final TreeMap<Integer, Integer> freeBlocks = new TreeMap<>();
+
+	// addresses of the free blocks in each size class
+	private final List<TreeSet<Integer>> freeLists = new ArrayList<>(CLASSES);
+
+	private final int heapBase;
+
+	// statistics
+	private int liveWords, freeWords, peakWords;
+	private long allocations, disposals;
+
+	HeapManager(int heapBase) {
+		this.heapBase = heapBase;
+		for (var c = 0; c < CLASSES; c++) {
+			freeLists.add(new TreeSet<>());
+		}
+	}
+
+	private static int bitLength(int n) {
+		return 32 - Integer.numberOfLeadingZeros(n);
+	}
+
+	private static int sizeClass(int size) {
+		if (size <= EXACT_CLASSES) {
+			return size;
+		}
+		// 17..32 -> EXACT_CLASSES + 1, 33..64 -> EXACT_CLASSES + 2, ...
+		var c = EXACT_CLASSES + 1 + bitLength(size - 1) - bitLength(EXACT_CLASSES);
+		return Math.min(c, CLASSES - 1);
+	}
+
+	private void addFree(int addr, int size) {
+		freeBlocks.put(addr, size);
+		freeLists.get(sizeClass(size)).add(addr);
+		freeWords += size;
+	}
+
+	private void removeFree(int addr, int size) {
+		freeBlocks.remove(addr);
+		freeLists.get(sizeClass(size)).remove(addr);
+		freeWords -= size;
+	}
+
+	/**
+	 * Takes a block of the given size from the free lists.
+	 *
+	 * @param size the number of words required
+	 * @return the address of the block, or -1 if no free block is large enough,
+	 *         in which case the caller must extend the heap by lowering HT and
+	 *         then call {@link #grown}.
+	 */
+	int allocate(int size) {
+		if (size <= 0) {
+			return -1;
+		}
+		for (var c = sizeClass(size); c < CLASSES; c++) {
+			for (var addr : freeLists.get(c)) {
+				int blockSize = freeBlocks.get(addr);
+				if (blockSize >= size) {
+					removeFree(addr, blockSize);
+					if (blockSize > size) {
+						addFree(addr + size, blockSize - size);
+					}
+					liveWords += size;
+					allocations++;
+					return addr;
+				}
+				if (c <= EXACT_CLASSES) {
+					break; // every block in an exact class has the same size
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Records that the heap has been extended to satisfy an allocation that the
+	 * free lists could not.
+	 *
+	 * @param size    the number of words allocated
+	 * @param heapTop the new value of HT
+	 */
+	void grown(int size, int heapTop) {
+		liveWords += size;
+		allocations++;
+		peakWords = Math.max(peakWords, heapBase - heapTop);
+	}
+
+	/**
+	 * Returns a block to the heap, merging it with any free neighbours.
+	 *
+	 * @param addr    the address of the block
+	 * @param size    the size of the block
+	 * @param heapTop the current value of HT
+	 * @return the new value of HT, which is higher than before if the block (after
+	 *         merging) bordered the unallocated region
+	 */
+	int dispose(int addr, int size, int heapTop) {
+		if (size <= 0 || addr < heapTop || addr + size > heapBase || overlapsFreeBlock(addr, size)) {
+			return heapTop; // not a live heap block - ignore it, as before
+		}
+		liveWords -= size;
+		disposals++;
+
+		var below = freeBlocks.floorEntry(addr - 1);
+		if (below != null && below.getKey() + below.getValue() == addr) {
+			removeFree(below.getKey(), below.getValue());
+			addr = below.getKey();
+			size += below.getValue();
+		}
+		var above = freeBlocks.get(addr + size);
+		if (above != null) {
+			removeFree(addr + size, above);
+			size += above;
+		}
+
+		if (addr == heapTop) {
+			return heapTop + size;
+		}
+		addFree(addr, size);
+		return heapTop;
+	}
+
+	private boolean overlapsFreeBlock(int addr, int size) {
+		var below = freeBlocks.floorEntry(addr);
+		if (below != null && below.getKey() + below.getValue() > addr) {
+			return true;
+		}
+		var above = freeBlocks.ceilingKey(addr);
+		return above != null && above < addr + size;
+	}
+
+	/**
+	 * Writes the free lists and statistics, for a snapshot.
+	 */
+	void write(DataOutputStream output) throws IOException {
+		output.writeInt(freeBlocks.size());
+		for (var block : freeBlocks.entrySet()) {
+			output.writeInt(block.getKey());
+			output.writeInt(block.getValue());
+		}
+		output.writeInt(liveWords);
+		output.writeInt(peakWords);
+		output.writeLong(allocations);
+		output.writeLong(disposals);
+	}
+
+	/**
+	 * Replaces the free lists and statistics with those read from a snapshot,
+	 * unless the free blocks do not lie apart from each other between heapTop
+	 * and the heap's base, in which case they are left as they were.
+	 *
+	 * @param heapTop the snapshot's value of HT
+	 * @throws IOException if the snapshot can't be read or its heap is damaged
+	 */
+	void read(DataInputStream input, int heapTop) throws IOException {
+		var blocks = new TreeMap<Integer, Integer>();
+		var n = input.readInt();
+		if (n < 0 || n > heapBase - heapTop) {
+			throw new IOException("snapshot has a damaged heap");
+		}
+		for (; n > 0; n--) {
+			var addr = input.readInt();
+			var size = input.readInt();
+			var below = blocks.floorEntry(addr);
+			var above = blocks.ceilingKey(addr);
+			if (size <= 0 || addr < heapTop || addr > heapBase - size
+					|| (below != null && below.getKey() + below.getValue() > addr)
+					|| (above != null && above < addr + size)) {
+				throw new IOException("snapshot has a damaged heap");
+			}
+			blocks.put(addr, size);
+		}
+		var live = input.readInt();
+		var peak = input.readInt();
+		var allocated = input.readLong();
+		var disposed = input.readLong();
+
+		freeBlocks.clear();
+		for (var list : freeLists) {
+			list.clear();
+		}
+		freeWords = 0;
+		for (var block : blocks.entrySet()) {
+			addFree(block.getKey(), block.getValue());
+		}
+		liveWords = live;
+		peakWords = peak;
+		allocations = allocated;
+		disposals = disposed;
+	}
+
+	/**
+	 * Writes a summary of heap usage, for showStatus.
+	 *
+	 * @param heapTop the current value of HT
+	 * @param output  where to write the summary
+	 */
+	void showStatistics(int heapTop, PrintStream output) {
+		var largestFree = 0;
+		for (var size : freeBlocks.values()) {
+			largestFree = Math.max(largestFree, size);
+		}
+		// fragmentation is the proportion of free words that can't be used by
+		// an allocation as large as the total free space
+		var fragmentation = (freeWords == 0) ? 0.0 : 1.0 - (double) largestFree / freeWords;
+
+		output.println("Heap statistics:");
+		output.println("  Allocations: " + allocations + ", disposals: " + disposals);
+		output.println("  Peak heap size (words): " + peakWords);
+		output.println("  Current heap size (words): " + (heapBase - heapTop));
+		output.println("  Live words: " + liveWords);
+		output.println("  Free words: " + freeWords + " in " + freeBlocks.size() + " block(s)");
+		output.printf("  Fragmentation: %.1f%%%n", fragmentation * 100);
+	}
+}
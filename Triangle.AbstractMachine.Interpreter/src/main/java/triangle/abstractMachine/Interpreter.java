@@ -18,39 +18,137 @@
 
 package triangle.abstractMachine;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 
+/**
+ * Runs a TAM object program. Each Interpreter is a separate virtual machine,
+ * with its own data store, registers and console streams; the code store may be
+ * shared between machines, as it is never modified.
+ */
 public class Interpreter {
 
-	static long startTimeNanos = 0;
-	
-	static String objectName;
+	long startTimeNanos = 0;
+
+	// CODE STORE
+
+	final Instruction[] code;
+
+	// the primitive routine called by each instruction that is a CALL of a
+	// primitive through PB, resolved when the machine is created; null for every
+	// other instruction
+	final Primitive[] primitiveCalls;
+
+	// for each instruction, the most words the rest of its routine may push, as
+	// found by the Verifier; null if the program was rejected
+	final int[] spaceNeeded;
+
+	// why the Verifier rejected the program
+	String rejection;
+
+	// the source lines and routines of the code, if its object file has them;
+	// null otherwise
+	DebugInfo debugInfo;
+
+	// CONSOLE
+
+	final TamReader reader;
+
+	final TamWriter writer;
+
+	// for status messages; program output goes through writer
+	final PrintStream output;
 
 	// DATA STORE
 
-	static int[] data = new int[1024];
+	final int[] data = new int[1024];
 
 	// DATA STORE REGISTERS AND OTHER REGISTERS
 
 	final static int CB = 0, SB = 0, HB = 1024; // = upper bound of data array + 1
 
-	static int CT, CP, ST, HT, LB, status;
+	int CT, CP, ST, HT, LB, status;
+
+	// the address of the last instruction executed, set when the program stops
+	int stoppedAt;
 
 	// status values
 	final static int running = 0, halted = 1, failedDataStoreFull = 2, failedInvalidCodeAddress = 3,
-			failedInvalidInstruction = 4, failedOverflow = 5, failedZeroDivide = 6, failedIOError = 7;
+			failedInvalidInstruction = 4, failedOverflow = 5, failedZeroDivide = 6, failedIOError = 7,
+			suspended = 8, failedInstructionLimit = 9, failedTimeLimit = 10, failedDataLimit = 11, rejected = 12;
+
+	long accumulator;
+
+	// HEAP
+
+	HeapManager heap;
+
+	boolean showHeapStatistics = false;
+
+	// SNAPSHOTS
+
+	String snapshotName;
+
+	// a snapshot is taken every snapshotInterval instructions, if > 0
+	long snapshotInterval = 0;
+
+	// set by the shutdown hook; the program stops at the next safepoint
+	volatile boolean suspendRequested = false;
+
+	// instructions between safepoints, where suspendRequested is checked
+	final static int safepointInterval = 4096;
+
+	long instructionsSinceSnapshot;
+
+	// LIMITS
+
+	// per-run limits on instructions executed, wall-clock time (ms) and words
+	// of data store in use; 0 means no limit
+	long maxInstructions = 0, maxTime = 0;
+
+	int maxData = 0;
 
-	static long accumulator;
+	// limits are checked whenever control moves backwards, and then only every
+	// limitCheckInterval instructions, except for the data limit
+	final static int limitCheckInterval = 4096;
 
-	static int content(int r) {
-		var register = Register.values()[r];
-		return content(register);
+	long runStartNanos;
+
+	// FLIGHT RECORDER EVENTS
+
+	// whether routine call, I/O and heap growth events are looked for; decided
+	// when the program starts
+	boolean recordingEvents;
+
+	// the routine calls in progress, while recordingEvents
+	InterpreterEvents.RoutineCall[] calls = new InterpreterEvents.RoutineCall[16];
+
+	int callDepth;
+
+	// PROFILE
+
+	// the number of times each instruction has been executed, if the program
+	// is being profiled; null otherwise
+	long[] counts;
+
+	// DISPATCH
+
+	// whether to run the CachingInterpreter's loop, which keeps the registers
+	// ST, LB and CP in locals
+	boolean cachingRegisters = false;
+
+	int content(int r) {
+		return content(Register.at(r));
 	}
 
-	static int content(Register r) {
+	int content(Register r) {
 		// Returns the current content of register r,
 		// even if r is one of the pseudo-registers L1..L6.
 
@@ -94,64 +192,64 @@ public class Interpreter {
 
 	// PROGRAM STATUS
 
-	static void dump() {
+	void dump() {
 		// Writes a summary of the machine state.
 
-		System.out.println("");
-		System.out.println("State of data store and registers:");
-		System.out.println("");
+		output.println("");
+		output.println("State of data store and registers:");
+		output.println("");
 		if (HT == HB) {
-			System.out.println("            |--------|          (heap is empty)");
+			output.println("            |--------|          (heap is empty)");
 		} else {
-			System.out.println("       HB-->");
-			System.out.println("            |--------|");
+			output.println("       HB-->");
+			output.println("            |--------|");
 			for (var addr = HB - 1; addr >= HT; addr--) {
-				System.out.print(addr + ":");
+				output.print(addr + ":");
 				if (addr == HT) {
-					System.out.print(" HT-->");
+					output.print(" HT-->");
 				} else {
-					System.out.print("      ");
+					output.print("      ");
 				}
-				System.out.println("|" + data[addr] + "|");
+				output.println("|" + data[addr] + "|");
 			}
-			System.out.println("            |--------|");
+			output.println("            |--------|");
 		}
-		System.out.println("            |////////|");
-		System.out.println("            |////////|");
+		output.println("            |////////|");
+		output.println("            |////////|");
 		if (ST == SB) {
-			System.out.println("            |--------|          (stack is empty)");
+			output.println("            |--------|          (stack is empty)");
 		} else {
 			var dynamicLink = LB;
 			var staticLink = LB;
 			var localRegNum = Register.LB;
-			System.out.println("      ST--> |////////|");
-			System.out.println("            |--------|");
+			output.println("      ST--> |////////|");
+			output.println("            |--------|");
 			for (var addr = ST - 1; addr >= SB; addr--) {
-				System.out.print(addr + ":");
+				output.print(addr + ":");
 				if (addr == SB) {
-					System.out.print(" SB-->");
+					output.print(" SB-->");
 				} else if (addr == staticLink) {
 					switch (localRegNum) {
 					case LB:
-						System.out.print(" LB-->");
+						output.print(" LB-->");
 						break;
 					case L1:
-						System.out.print(" L1-->");
+						output.print(" L1-->");
 						break;
 					case L2:
-						System.out.print(" L2-->");
+						output.print(" L2-->");
 						break;
 					case L3:
-						System.out.print(" L3-->");
+						output.print(" L3-->");
 						break;
 					case L4:
-						System.out.print(" L4-->");
+						output.print(" L4-->");
 						break;
 					case L5:
-						System.out.print(" L5-->");
+						output.print(" L5-->");
 						break;
 					case L6:
-						System.out.print(" L6-->");
+						output.print(" L6-->");
 						break;
 					default:
 						break;
@@ -159,71 +257,106 @@ public class Interpreter {
 					staticLink = data[addr];
 					localRegNum = Register.values()[localRegNum.ordinal() + 1];
 				} else {
-					System.out.print("      ");
+					output.print("      ");
 				}
 				if (addr == dynamicLink && dynamicLink != SB) {
-					System.out.print("|SL=" + data[addr] + "|");
+					output.print("|SL=" + data[addr] + "|");
 				} else if (addr == dynamicLink + 1 && dynamicLink != SB) {
-					System.out.print("|DL=" + data[addr] + "|");
+					output.print("|DL=" + data[addr] + "|");
 				} else if (addr == dynamicLink + 2 && dynamicLink != SB) {
-					System.out.print("|RA=" + data[addr] + "|");
+					output.print("|RA=" + data[addr] + "|");
 				} else {
-					System.out.print("|" + data[addr] + "|");
+					output.print("|" + data[addr] + "|");
 				}
-				System.out.println("");
+				output.println("");
 				if (addr == dynamicLink) {
-					System.out.println("            |--------|");
+					output.println("            |--------|");
 					dynamicLink = data[addr + 1];
 				}
 			}
 		}
-		System.out.println("");
+		output.println("");
 	}
 
-	static void showStatus() {
+	void showStatus() {
 		// Writes an indication of whether and why the program has terminated.
-		System.out.println("");
+		writer.flush();
+		output.println("");
 		switch (status) {
 		case running:
-			System.out.println("Program is running.");
+			output.println("Program is running.");
 			break;
 		case halted:
-			System.out.println("Program has halted normally.");
-			System.out.println("Total execution time (ns): " + (System.nanoTime() - startTimeNanos));
+			output.println("Program has halted normally.");
+			output.println("Total execution time (ns): " + (System.nanoTime() - startTimeNanos));
 			break;
 		case failedDataStoreFull:
-			System.out.println("Program has failed due to exhaustion of Data Store.");
+			output.println("Program has failed due to exhaustion of Data Store.");
 			break;
 		case failedInvalidCodeAddress:
-			System.out.println("Program has failed due to an invalid code address.");
+			output.println("Program has failed due to an invalid code address.");
 			break;
 		case failedInvalidInstruction:
-			System.out.println("Program has failed due to an invalid instruction.");
+			output.println("Program has failed due to an invalid instruction.");
 			break;
 		case failedOverflow:
-			System.out.println("Program has failed due to overflow.");
+			output.println("Program has failed due to overflow.");
 			break;
 		case failedZeroDivide:
-			System.out.println("Program has failed due to division by zero.");
+			output.println("Program has failed due to division by zero.");
 			break;
 		case failedIOError:
-			System.out.println("Program has failed due to an IO error.");
+			output.println("Program has failed due to an IO error.");
+			break;
+		case suspended:
+			output.println("Program has been suspended; its state is saved in " + snapshotName);
+			break;
+		case failedInstructionLimit:
+			output.println("Program has failed due to exceeding the instruction limit.");
+			break;
+		case failedTimeLimit:
+			output.println("Program has failed due to exceeding the time limit.");
+			break;
+		case failedDataLimit:
+			output.println("Program has failed due to exceeding the data limit.");
 			break;
+		case rejected:
+			output.println("Program was rejected by the verifier: " + rejection);
+			break;
+		}
+		if (debugInfo != null && status != halted && status != suspended && status != rejected) {
+			output.println("Last instruction executed: " + stoppedAt + ", at " + debugInfo.describe(stoppedAt));
+		}
+		if (showHeapStatistics) {
+			heap.showStatistics(HT, output);
 		}
-		if (status != halted) {
+		if (status != halted && status != suspended) {
 			dump();
 		}
 	}
 
 	// INTERPRETATION
 
-	static void checkSpace(int spaceNeeded) {
+	boolean checkSpace(int spaceNeeded) {
 		// Signals failure if there is not enough space to expand the stack or
-		// heap by spaceNeeded.
+		// heap by spaceNeeded, in which case the instruction must stop before
+		// writing to the data store.
 
 		if (HT - ST < spaceNeeded) {
 			status = failedDataStoreFull;
+			return false;
+		}
+		return true;
+	}
+
+	int spaceNeeded(int addr) {
+		// Returns the most words the routine may push from code address addr
+		// on, or Verifier.unbounded if that is not known.
+
+		if (spaceNeeded == null || addr < CB || addr >= CT) {
+			return Verifier.unbounded;
 		}
+		return spaceNeeded[addr];
 	}
 
 	static boolean isTrue(int datum) {
@@ -231,27 +364,52 @@ public class Interpreter {
 		return (datum == Machine.trueRep);
 	}
 
-	static boolean equal(int size, int addr1, int addr2) {
+	static boolean compares(int relation, int datum1, int datum2) {
+		// Tests whether datum1 compares with datum2 as the primitive routine
+		// numbered relation does; the Verifier has checked that it is one of the
+		// comparisons.
+		return switch (Primitive.at(relation)) {
+		case LT -> datum1 < datum2;
+		case LE -> datum1 <= datum2;
+		case GE -> datum1 >= datum2;
+		case GT -> datum1 > datum2;
+		case EQ -> datum1 == datum2;
+		default -> datum1 != datum2;
+		};
+	}
+
+	boolean equal(int size, int addr1, int addr2) {
 		// Tests whether two multi-word objects are equal, given their common
 		// size and their base addresses.
 
-		boolean eq;
-		int index;
-
-		eq = true;
-		index = 0;
-		while (eq && (index < size)) {
-			if (data[addr1 + index] == data[addr2 + index]) {
-				index = index + 1;
-			} else {
-				eq = false;
-			}
+		if (size == 1) {
+			return data[addr1] == data[addr2];
+		} else if (size <= 0) {
+			return true;
 		}
+		return Arrays.equals(data, addr1, addr1 + size, data, addr2, addr2 + size);
+	}
+
+	void move(int from, int to, int size) {
+		// Copies a multi-word object within the data store, given its size and
+		// the base addresses of the source and destination. LOAD and LOADI copy
+		// an object up onto the top of the stack; STORE, STOREI, RETURN and POP
+		// copy one down from it. System.arraycopy copies as if through a
+		// temporary array, so where the two overlap a downward copy is the same
+		// as the word-by-word loop from the lowest address that it replaced, but
+		// an upward copy is not: the loop repeated the lowest words. The compiler
+		// only loads objects that lie wholly below ST, so its code is not
+		// affected, but hand-written TAM that loads an object overlapping the
+		// stack top now gets an exact copy, unlike before.
 
-		return eq;
+		if (size == 1) {
+			data[to] = data[from];
+		} else if (size > 0) {
+			System.arraycopy(data, from, data, to, size);
+		}
 	}
 
-	static int overflowChecked(long datum) {
+	int overflowChecked(long datum) {
 		// Signals failure if the datum is too large to fit into a single word,
 		// otherwise returns the datum as a single word.
 
@@ -267,40 +425,14 @@ public class Interpreter {
 		return b ? Machine.trueRep : Machine.falseRep;
 	}
 
-	static int currentChar;
-
-	static int readInt() throws java.io.IOException {
-		int temp = 0;
-		int sign = 1;
-
-		do {
-			currentChar = System.in.read();
-		} while (Character.isWhitespace((char) currentChar));
-
-		if ((currentChar == '-') || (currentChar == '+')) {
-			do {
-				sign = (currentChar == '-') ? -1 : 1;
-				currentChar = System.in.read();
-			} while ((currentChar == '-') || currentChar == '+');
-		}
+	int currentChar;
 
-		if (Character.isDigit((char) currentChar)) {
-			do {
-				temp = temp * 10 + (currentChar - '0');
-				currentChar = System.in.read();
-			} while (Character.isDigit((char) currentChar));
-		}
-
-		return sign * temp;
-	}
-
-	static void callPrimitive(int primitiveDisplacement) {
+	void callPrimitive(Primitive primitive) {
 		// Invokes the given primitive routine.
 
 		int addr, size;
 		char ch;
 
-		var primitive = Primitive.values()[primitiveDisplacement];
 		switch (primitive) {
 		case ID:
 			break; // nothing to be done
@@ -384,10 +516,16 @@ public class Interpreter {
 			data[ST - 1] = toInt(!equal(size, ST - 1, ST - 1 + size));
 			break;
 		case EOL:
+			if (!checkSpace(1)) {
+				break;
+			}
 			data[ST] = toInt(currentChar == '\n');
 			ST = ST + 1;
 			break;
 		case EOF:
+			if (!checkSpace(1)) {
+				break;
+			}
 			data[ST] = toInt(currentChar == -1);
 			ST = ST + 1;
 			break;
@@ -395,7 +533,7 @@ public class Interpreter {
 			ST = ST - 1;
 			addr = data[ST];
 			try {
-				currentChar = System.in.read();
+				currentChar = reader.read();
 			} catch (java.io.IOException s) {
 				status = failedIOError;
 			}
@@ -404,61 +542,221 @@ public class Interpreter {
 		case PUT:
 			ST = ST - 1;
 			ch = (char) data[ST];
-			System.out.print(ch);
+			writer.writeChar(ch);
 			break;
 		case GETEOL:
 			try {
-				while ((currentChar = System.in.read()) != '\n')
-					;
+				do {
+					currentChar = reader.read();
+				} while (currentChar != '\n' && currentChar != -1);
 			} catch (java.io.IOException s) {
 				status = failedIOError;
 			}
 			break;
 		case PUTEOL:
-			System.out.println("");
+			writer.writeLine();
 			break;
 		case GETINT:
-			System.out.println("enter int: ");
+			writer.writeString("enter int: ");
+			writer.writeLine();
 			ST = ST - 1;
 			addr = data[ST];
 			try {
-				accumulator = readInt();
+				accumulator = reader.readInt();
 			} catch (java.io.IOException s) {
+				accumulator = 0;
 				status = failedIOError;
 			}
+			currentChar = reader.lastChar();
 			data[addr] = (int) accumulator;
 			break;
 		case PUTINT:
 			ST = ST - 1;
 			accumulator = data[ST];
-			System.out.print(accumulator);
+			writer.writeInt(accumulator);
 			break;
 		case NEW:
 			size = data[ST - 1];
-			checkSpace(size);
-			HT = HT - size;
-			data[ST - 1] = HT;
+			addr = heap.allocate(size);
+			if (addr < 0) {
+				if (checkSpace(size)) {
+					HT = HT - size;
+					heap.grown(size, HT);
+				}
+				addr = HT;
+			}
+			data[ST - 1] = addr;
 			break;
 		case DISPOSE:
-			ST = ST - 1; // no action taken at present
+			ST = ST - 2;
+			size = data[ST];
+			addr = data[ST + 1];
+			HT = heap.dispose(addr, size, HT);
 			break;
 		}
 	}
 
-	static void interpretProgram() {
-		// Runs the program in code store.
+	void callPrimitiveRecorded(Primitive primitive) {
+		// As callPrimitive, raising events for I/O and for heap growth.
 
-		Instruction currentInstr;
+		InterpreterEvents.PrimitiveIO io = null;
+		if (InterpreterEvents.isIO(primitive)) {
+			io = new InterpreterEvents.PrimitiveIO();
+			io.begin();
+		}
+		var heapTop = HT;
+		callPrimitive(primitive);
+		if (io != null) {
+			io.end();
+			if (io.shouldCommit()) {
+				io.primitive = primitive.name();
+				io.commit();
+			}
+		}
+		if (HT < heapTop) {
+			var growth = new InterpreterEvents.HeapGrowth();
+			if (growth.shouldCommit()) {
+				growth.requested = heapTop - HT;
+				growth.heapSize = HB - HT;
+				growth.commit();
+			}
+		}
+	}
 
+	void routineCalled(int address) {
+		if (!InterpreterEvents.recordingCalls()) {
+			return;
+		}
+		if (callDepth == calls.length) {
+			calls = Arrays.copyOf(calls, 2 * callDepth);
+		}
+		var event = new InterpreterEvents.RoutineCall();
+		event.begin();
+		event.address = address;
+		event.depth = callDepth;
+		calls[callDepth++] = event;
+	}
+
+	void routineReturned() {
+		// Calls made before recording started, or before a snapshot was
+		// restored, were not tracked.
+
+		if (callDepth == 0) {
+			return;
+		}
+		var event = calls[--callDepth];
+		calls[callDepth] = null;
+		event.end();
+		if (event.shouldCommit()) {
+			event.commit();
+		}
+	}
+
+	void initializeMachine() {
 		// Initialize registers ...
 		ST = SB;
 		HT = HB;
 		LB = SB;
 		CP = CB;
 		status = running;
-		do {
+		heap = new HeapManager(HB);
+	}
+
+	void safepoint(long instructionsExecuted) {
+		// Called between instructions, when the machine state is consistent.
+		// Snapshots are taken at the first safepoint after every
+		// snapshotInterval instructions, and when the program is suspended.
+
+		instructionsSinceSnapshot += instructionsExecuted;
+		var snapshotDue = snapshotInterval > 0 && instructionsSinceSnapshot >= snapshotInterval;
+		if (suspendRequested) {
+			snapshotDue = true;
+			status = suspended;
+		}
+		if (snapshotDue) {
+			instructionsSinceSnapshot = 0;
+			writer.flush();
+			try {
+				Snapshot.save(this, snapshotName);
+			} catch (IOException s) {
+				System.err.println("Error writing snapshot file: " + s);
+			}
+		}
+	}
+
+	long checkLimits(long instructionsExecuted) {
+		// Signals failure if any limit has been exceeded, otherwise returns the
+		// instruction count at which the instruction and time limits are next
+		// due to be checked.
+
+		if (maxInstructions > 0 && instructionsExecuted >= maxInstructions) {
+			status = failedInstructionLimit;
+		} else if (maxTime > 0 && System.nanoTime() - runStartNanos >= maxTime * 1_000_000) {
+			status = failedTimeLimit;
+		} else if (maxData > 0 && (ST - SB) + (HB - HT) > maxData) {
+			status = failedDataLimit;
+		}
+
+		if (maxInstructions == 0 && maxTime == 0) {
+			return Long.MAX_VALUE;
+		}
+		var next = instructionsExecuted + limitCheckInterval;
+		return (maxInstructions > 0) ? Math.min(next, maxInstructions) : next;
+	}
+
+	long safepointEvery() {
+		// Returns the number of instructions between safepoints.
+
+		if (snapshotName == null) {
+			return Long.MAX_VALUE;
+		}
+		return (snapshotInterval > 0) ? Math.min(snapshotInterval, safepointInterval) : safepointInterval;
+	}
+
+	void interpretProgram() {
+		// Runs the program in code store, from the current state of the
+		// registers and data store.
+
+		if (cachingRegisters && counts == null && !InterpreterEvents.dispatchEventsEnabled()) {
+			CachingInterpreter.interpretProgram(this);
+			return;
+		}
+
+		Instruction currentInstr;
+
+		var endEvent = new InterpreterEvents.ProgramEnd();
+		endEvent.begin();
+		// when no event is wanted, calls and returns cost one test of a local
+		recordingEvents = InterpreterEvents.dispatchEventsEnabled();
+		var events = recordingEvents;
+		var counts = this.counts;
+
+		var safepointEvery = safepointEvery();
+		var untilSafepoint = safepointEvery;
+
+		// A program that never moves CP backwards runs at most CT instructions,
+		// so the limits need only be checked at backward jumps and at calls
+		// (which in Triangle code go back to routines emitted earlier).
+		// Between checks, the only cost is counting instructions.
+		runStartNanos = System.nanoTime();
+		long instructionsExecuted = 0;
+		var nextLimitCheck = checkLimits(0);
+		// the data limit is exceeded exactly when ST - HT > dataLimitGap
+		var dataLimitGap = (maxData > 0) ? maxData - (HB - SB) : 0;
+		// Each push is checked against HT only while checked is set, which is
+		// when the Verifier could not bound the current routine or the space
+		// it bounds is not there. It is decided again wherever a routine is
+		// entered or left, or the heap grows.
+		var checked = HT - ST < spaceNeeded(CP);
+		var pc = CP;
+		while (status == running) {
 			// Fetch instruction ...
-			currentInstr = Machine.code[CP];
+			pc = CP;
+			currentInstr = code[CP];
+			instructionsExecuted++;
+			if (counts != null) {
+				counts[pc]++;
+			}
 			// Decode instruction ...
 			var op = currentInstr.opCode;
 			var r = currentInstr.register;
@@ -470,16 +768,18 @@ public class Interpreter {
 			switch (op) {
 			case LOAD:
 				addr = d + content(r);
-				checkSpace(n);
-				for (var index = 0; index < n; index++) {
-					data[ST + index] = data[addr + index];
+				if (checked && !checkSpace(n)) {
+					break;
 				}
+				move(addr, ST, n);
 				ST = ST + n;
 				CP = CP + 1;
 				break;
 			case LOADA:
 				addr = d + content(r);
-				checkSpace(1);
+				if (checked && !checkSpace(1)) {
+					break;
+				}
 				data[ST] = addr;
 				ST = ST + 1;
 				CP = CP + 1;
@@ -487,15 +787,17 @@ public class Interpreter {
 			case LOADI:
 				ST = ST - 1;
 				addr = data[ST];
-				checkSpace(n);
-				for (var index = 0; index < n; index++) {
-					data[ST + index] = data[addr + index];
+				if (checked && !checkSpace(n)) {
+					break;
 				}
+				move(addr, ST, n);
 				ST = ST + n;
 				CP = CP + 1;
 				break;
 			case LOADL:
-				checkSpace(1);
+				if (checked && !checkSpace(1)) {
+					break;
+				}
 				data[ST] = d;
 				ST = ST + 1;
 				CP = CP + 1;
@@ -503,44 +805,59 @@ public class Interpreter {
 			case STORE:
 				addr = d + content(r);
 				ST = ST - n;
-				for (var index = 0; index < n; index++) {
-					data[addr + index] = data[ST + index];
-				}
+				move(ST, addr, n);
 				CP = CP + 1;
 				break;
 			case STOREI:
 				ST = ST - 1;
 				addr = data[ST];
 				ST = ST - n;
-				for (var index = 0; index < n; index++) {
-					data[addr + index] = data[ST + index];
-				}
+				move(ST, addr, n);
 				CP = CP + 1;
 				break;
 			case CALL:
-				addr = d + content(r);
-				if (addr >= Machine.PB) {
-					callPrimitive(addr - Machine.PB);
-					CP = CP + 1;
-				} else {
-					checkSpace(3);
-					if (0 <= n && n <= 15) {
-						data[ST] = content(n); // static link
+				var primitive = primitiveCalls[pc];
+				if (primitive != null) {
+					if (events) {
+						callPrimitiveRecorded(primitive);
 					} else {
-						status = failedInvalidInstruction;
+						callPrimitive(primitive);
 					}
-					data[ST + 1] = LB; // dynamic link
-					data[ST + 2] = CP + 1; // return address
-					LB = ST;
-					ST = ST + 3;
-					CP = addr;
+					CP = CP + 1;
+					if (primitive == Primitive.NEW) {
+						checked = HT - ST < spaceNeeded(CP);
+					}
+					break;
+				}
+				addr = d + content(r);
+				// the Verifier has checked that this is a routine and n a register
+				checked = HT - ST - 3 < spaceNeeded(addr);
+				if (checked && !checkSpace(3)) {
+					break;
+				}
+				data[ST] = content(n); // static link
+				data[ST + 1] = LB; // dynamic link
+				data[ST + 2] = CP + 1; // return address
+				LB = ST;
+				ST = ST + 3;
+				CP = addr;
+				if (events) {
+					routineCalled(addr);
 				}
 				break;
 			case CALLI:
+				// the closure's two words are replaced by three of link data
+				if (checked && !checkSpace(1)) {
+					break;
+				}
 				ST = ST - 2;
 				addr = data[ST + 1];
 				if (addr >= Machine.PB) {
-					callPrimitive(addr - Machine.PB);
+					if (events) {
+						callPrimitiveRecorded(Primitive.at(addr - Machine.PB));
+					} else {
+						callPrimitive(Primitive.at(addr - Machine.PB));
+					}
 					CP = CP + 1;
 				} else {
 					// data[ST] = static link already
@@ -549,29 +866,41 @@ public class Interpreter {
 					LB = ST;
 					ST = ST + 3;
 					CP = addr;
+					if (CP < CB || CP >= CT) {
+						status = failedInvalidCodeAddress;
+					}
+					if (events) {
+						routineCalled(addr);
+					}
 				}
+				checked = HT - ST < spaceNeeded(CP);
 				break;
 			case RETURN:
 				addr = LB - d;
 				CP = data[LB + 2];
 				LB = data[LB + 1];
 				ST = ST - n;
-				for (var index = 0; index < n; index++) {
-					data[addr + index] = data[ST + index];
-				}
+				move(ST, addr, n);
 				ST = addr + n;
+				if (CP < CB || CP >= CT) {
+					status = failedInvalidCodeAddress;
+				}
+				checked = HT - ST < spaceNeeded(CP);
+				if (events) {
+					routineReturned();
+				}
 				break;
 			case PUSH:
-				checkSpace(d);
+				if (checked && !checkSpace(d)) {
+					break;
+				}
 				ST = ST + d;
 				CP = CP + 1;
 				break;
 			case POP:
 				addr = ST - n - d;
 				ST = ST - n;
-				for (var index = 0; index < n; index++) {
-					data[addr + index] = data[ST + index];
-				}
+				move(ST, addr, n);
 				ST = addr + n;
 				CP = CP + 1;
 				break;
@@ -581,6 +910,9 @@ public class Interpreter {
 			case JUMPI:
 				ST = ST - 1;
 				CP = data[ST];
+				if (CP < CB || CP >= CT) {
+					status = failedInvalidCodeAddress;
+				}
 				break;
 			case JUMPIF:
 				ST = ST - 1;
@@ -593,40 +925,131 @@ public class Interpreter {
 			case HALT:
 				status = halted;
 				break;
+			case JUMPC:
+				ST = ST - 2;
+				if (compares(n, data[ST], data[ST + 1])) {
+					CP = d + content(r);
+				} else {
+					CP = CP + 1;
+				}
+				break;
+			case INCR:
+				addr = d + content(r);
+				data[addr] = overflowChecked((long) data[addr] + n);
+				CP = CP + 1;
+				break;
+			case LOADPL:
+				addr = d + content(r);
+				if (checked && !checkSpace(1)) {
+					break;
+				}
+				data[ST] = overflowChecked((long) data[addr] + n);
+				ST = ST + 1;
+				CP = CP + 1;
+				break;
 			}
-			if (CP < CB || CP >= CT) {
-				status = failedInvalidCodeAddress;
+			// the Verifier has checked every code address but those taken from
+			// the data store, which are checked where they are used
+			if (CP <= pc && (instructionsExecuted >= nextLimitCheck || ST - HT > dataLimitGap)) {
+				if (status == running) {
+					nextLimitCheck = checkLimits(instructionsExecuted);
+				}
 			}
-		} while (status == running);
+			if (--untilSafepoint == 0) {
+				untilSafepoint = safepointEvery;
+				if (status == running) {
+					safepoint(safepointEvery);
+				}
+			}
+		}
+		stoppedAt = pc;
+
+		endEvent.end();
+		if (endEvent.shouldCommit()) {
+			endEvent.status = InterpreterEvents.statusName(status);
+			endEvent.instructions = instructionsExecuted;
+			endEvent.commit();
+		}
+	}
+
+	Interpreter(Instruction[] code, InputStream input, PrintStream output) {
+		this.code = code;
+		this.output = output;
+		this.writer = new TamWriter(output);
+		this.reader = new TamReader(input, writer);
+		CT = CB + code.length;
+		primitiveCalls = resolvePrimitiveCalls(code);
+		int[] space = null;
+		try {
+			space = Verifier.verify(code);
+		} catch (Verifier.InvalidProgramException s) {
+			rejection = s.getMessage();
+		}
+		spaceNeeded = space;
+		initializeMachine();
+		if (rejection != null) {
+			status = rejected;
+		}
+	}
+
+	static Primitive[] resolvePrimitiveCalls(Instruction[] code) {
+		// A CALL through PB always calls the same primitive, so it is looked up
+		// once here rather than on every call.
+
+		var primitives = new Primitive[code.length];
+		var count = Primitive.values().length;
+		for (var addr = 0; addr < code.length; addr++) {
+			var instr = code[addr];
+			if (instr.opCode == OpCode.CALL && instr.register == Register.PB && 0 <= instr.operand
+					&& instr.operand < count) {
+				primitives[addr] = Primitive.at(instr.operand);
+			}
+		}
+		return primitives;
 	}
 
 	// LOADING
 
-	static void loadObjectProgram(String objectName) {
-		// Loads the TAM object program into code store from the named file.
+	// an object program as loaded: its code, and its debug section or null
+	record ObjectProgram(Instruction[] code, DebugInfo debugInfo) {
+	}
+
+	static Instruction[] loadObjectProgram(String objectName) {
+		return loadProgram(objectName).code();
+	}
 
-		boolean finished = false;
+	static ObjectProgram loadProgram(String objectName) {
+		// Loads the TAM object program from the named file, returning an
+		// empty code store if it cannot be read.
 
+		var event = new InterpreterEvents.ProgramLoad();
+		event.begin();
+		var code = new ArrayList<Instruction>();
+		DebugInfo debugInfo = null;
 		try (var objectFile = new FileInputStream(objectName)) {
-			var objectStream = new DataInputStream(objectFile);
+			event.size = objectFile.getChannel().size();
+			var objectStream = new DataInputStream(new BufferedInputStream(objectFile));
 
-			var addr = Machine.CB;
-			while (!finished) {
-				Machine.code[addr] = Instruction.read(objectStream);
-				if (Machine.code[addr] == null) {
-					finished = true;
-				} else {
-					addr = addr + 1;
-				}
+			var instr = Instruction.read(objectStream);
+			while (instr != null) {
+				code.add(instr);
+				instr = Instruction.read(objectStream);
 			}
-			CT = addr;
+			debugInfo = DebugInfo.read(objectStream);
 		} catch (FileNotFoundException s) {
-			CT = CB;
+			code.clear();
 			System.err.println("Error opening object file: " + s);
 		} catch (IOException s) {
-			CT = CB;
+			code.clear();
 			System.err.println("Error reading object file: " + s);
 		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.objectName = objectName;
+			event.instructions = code.size();
+			event.commit();
+		}
+		return new ObjectProgram(code.toArray(new Instruction[0]), debugInfo);
 	}
 
 	// RUNNING
@@ -634,17 +1057,101 @@ public class Interpreter {
 	public static void main(String[] args) {
 		System.out.println("********** TAM Interpreter (Java Version 2.1) **********");
 
-		if (args.length == 1) {
-			objectName = args[0];
-		} else {
-			objectName = "obj.tam";
+		var objectName = "obj.tam";
+		String snapshotName = null, restoreName = null, profileName = null;
+		var showHeapStatistics = false;
+		var cachingRegisters = false;
+		long snapshotInterval = 0, maxInstructions = 0, maxTime = 0;
+		var maxData = 0;
+		for (var i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-heapstats":
+				showHeapStatistics = true;
+				break;
+			case "-cacheRegisters":
+				cachingRegisters = true;
+				break;
+			case "-profile":
+				profileName = args[++i];
+				break;
+			case "-snapshot":
+				snapshotName = args[++i];
+				break;
+			case "-snapshotEvery":
+				snapshotInterval = Long.parseLong(args[++i]);
+				break;
+			case "-restore":
+				restoreName = args[++i];
+				break;
+			case "-maxInstructions":
+				maxInstructions = Long.parseLong(args[++i]);
+				break;
+			case "-maxTime":
+				maxTime = Long.parseLong(args[++i]);
+				break;
+			case "-maxData":
+				maxData = Integer.parseInt(args[++i]);
+				break;
+			default:
+				objectName = args[i];
+				break;
+			}
+		}
+		if (snapshotInterval > 0 && snapshotName == null) {
+			snapshotName = objectName.replaceFirst("\\.tam$", "") + ".snap";
 		}
 
-		loadObjectProgram(objectName);
-		if (CT != CB) {
-			startTimeNanos = System.nanoTime();
-			interpretProgram();
-			showStatus();
+		var program = loadProgram(objectName);
+		var code = program.code();
+		if (code.length > 0) {
+			var interpreter = new Interpreter(code, System.in, System.out);
+			interpreter.debugInfo = program.debugInfo();
+			interpreter.showHeapStatistics = showHeapStatistics;
+			interpreter.cachingRegisters = cachingRegisters;
+			if (profileName != null) {
+				interpreter.counts = new long[code.length];
+			}
+			interpreter.snapshotName = snapshotName;
+			interpreter.snapshotInterval = snapshotInterval;
+			interpreter.maxInstructions = maxInstructions;
+			interpreter.maxTime = maxTime;
+			interpreter.maxData = maxData;
+
+			interpreter.startTimeNanos = System.nanoTime();
+			if (restoreName != null) {
+				try {
+					Snapshot.restore(interpreter, restoreName);
+				} catch (IOException s) {
+					System.err.println("Error reading snapshot file: " + s);
+					return;
+				}
+			}
+			if (snapshotName != null) {
+				// on SIGTERM etc., stop at the next safepoint and save the state
+				var interpreterThread = Thread.currentThread();
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					interpreter.suspendRequested = true;
+					try {
+						interpreterThread.join();
+					} catch (InterruptedException s) {
+						// exit anyway
+					}
+				}));
+			}
+			try {
+				interpreter.interpretProgram();
+			} finally {
+				// keep the program's output even if the interpreter fails
+				interpreter.writer.flush();
+			}
+			interpreter.showStatus();
+			if (profileName != null) {
+				try {
+					ExecutionProfile.write(profileName, code, interpreter.counts);
+				} catch (IOException s) {
+					System.err.println("Error writing profile file: " + s);
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,145 @@
+package triangle.abstractMachine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder events for the TAM interpreter.
+ *
+ * Loading and termination events cost nothing when recording is off. The
+ * events raised while a program runs (routine calls, I/O primitives and heap
+ * growth) are only looked for if one of them is enabled when the program
+ * starts; otherwise the dispatch loop runs exactly as it does without them.
+ *
+ * tam.jfc, in the interpreter's directory, is a sample recording profile:
+ *
+ * java -XX:StartFlightRecording=settings=tam.jfc,filename=tam.jfr ...
+ */
+final class InterpreterEvents {
+
+	private InterpreterEvents() {
+	}
+
+	@Name("triangle.ProgramLoad")
+	@Label("Program Load")
+	@Category({ "Triangle", "Interpreter" })
+	@Description("Reading a TAM object program")
+	@StackTrace(false)
+	static final class ProgramLoad extends Event {
+
+		@Label("Object File")
+		String objectName;
+
+		@Label("Instructions")
+		int instructions;
+
+		@Label("Size")
+		@DataAmount
+		long size;
+	}
+
+	@Name("triangle.RoutineCall")
+	@Label("Routine Call")
+	@Category({ "Triangle", "Interpreter" })
+	@Description("A call of a TAM routine that took longer than the threshold")
+	@StackTrace(false)
+	@Threshold("1 ms")
+	static final class RoutineCall extends Event {
+
+		@Label("Routine Address")
+		int address;
+
+		@Label("Call Depth")
+		int depth;
+	}
+
+	@Name("triangle.PrimitiveIO")
+	@Label("Primitive I/O")
+	@Category({ "Triangle", "Interpreter" })
+	@Description("A call of one of the console I/O primitives")
+	@StackTrace(false)
+	@Threshold("0 ms")
+	static final class PrimitiveIO extends Event {
+
+		@Label("Primitive")
+		String primitive;
+	}
+
+	@Name("triangle.HeapGrowth")
+	@Label("Heap Growth")
+	@Category({ "Triangle", "Interpreter" })
+	@Description("A NEW that extended the heap, as no free block was big enough")
+	@StackTrace(false)
+	static final class HeapGrowth extends Event {
+
+		@Label("Words Requested")
+		int requested;
+
+		@Label("Heap Size")
+		@Description("Words between the heap top and the heap base")
+		int heapSize;
+	}
+
+	@Name("triangle.ProgramEnd")
+	@Label("Program End")
+	@Category({ "Triangle", "Interpreter" })
+	@Description("A TAM program stopping, and why")
+	@StackTrace(false)
+	static final class ProgramEnd extends Event {
+
+		@Label("Status")
+		String status;
+
+		@Label("Instructions Executed")
+		long instructions;
+	}
+
+	private static final EventType routineCall = EventType.getEventType(RoutineCall.class);
+	private static final EventType primitiveIO = EventType.getEventType(PrimitiveIO.class);
+	private static final EventType heapGrowth = EventType.getEventType(HeapGrowth.class);
+
+	/**
+	 * @return true if any of the events raised from the dispatch loop is being
+	 *         recorded
+	 */
+	static boolean dispatchEventsEnabled() {
+		return routineCall.isEnabled() || primitiveIO.isEnabled() || heapGrowth.isEnabled();
+	}
+
+	static boolean recordingCalls() {
+		return routineCall.isEnabled();
+	}
+
+	static boolean isIO(Primitive primitive) {
+		return switch (primitive) {
+		case GET, PUT, GETEOL, PUTEOL, GETINT, PUTINT -> true;
+		default -> false;
+		};
+	}
+
+	static String statusName(int status) {
+		return switch (status) {
+		case Interpreter.running -> "running";
+		case Interpreter.halted -> "halted";
+		case Interpreter.failedDataStoreFull -> "data store full";
+		case Interpreter.failedInvalidCodeAddress -> "invalid code address";
+		case Interpreter.failedInvalidInstruction -> "invalid instruction";
+		case Interpreter.failedOverflow -> "overflow";
+		case Interpreter.failedZeroDivide -> "zero divide";
+		case Interpreter.failedIOError -> "I/O error";
+		case Interpreter.suspended -> "suspended";
+		case Interpreter.failedInstructionLimit -> "instruction limit";
+		case Interpreter.failedTimeLimit -> "time limit";
+		case Interpreter.failedDataLimit -> "data limit";
+		case Interpreter.rejected -> "rejected";
+		default -> "unknown";
+		};
+	}
+}
@@ -0,0 +1,126 @@
+package triangle.abstractMachine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Saves and restores the state of a running TAM program, so that it can be
+ * continued later, possibly by a different interpreter process.
+ *
+ * A snapshot holds the registers, the used parts of the data store (SB..ST and
+ * HT..HB), the heap's free lists, and the I/O positions. The code store is not
+ * saved: a snapshot can only be restored into the same object program, which is
+ * checked using a hash of the code.
+ *
+ * On restore, the bytes of standard input that the program had already read are
+ * skipped, so that a program whose input is redirected from a file carries on
+ * reading where it left off. Output written before the snapshot is not
+ * repeated; the output position records how much of it there was.
+ */
+final class Snapshot {
+
+	private static final int MAGIC = 0x54414D53; // "TAMS"
+
+	private static final int VERSION = 1;
+
+	private Snapshot() {
+	}
+
+	static int codeHash(Interpreter vm) {
+		return ExecutionProfile.codeHash(vm.code, vm.CT);
+	}
+
+	/**
+	 * Writes the machine state to the named file. The file is replaced
+	 * atomically, so an interrupted save leaves the previous snapshot intact.
+	 */
+	static void save(Interpreter vm, String snapshotName) throws IOException {
+		var target = Path.of(snapshotName).toAbsolutePath();
+		var temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(vm.CT);
+			output.writeInt(codeHash(vm));
+
+			output.writeInt(vm.CP);
+			output.writeInt(vm.ST);
+			output.writeInt(vm.HT);
+			output.writeInt(vm.LB);
+			output.writeInt(vm.currentChar);
+			output.writeLong(vm.reader.position());
+			output.writeLong(vm.writer.position());
+			output.writeLong(System.nanoTime() - vm.startTimeNanos);
+
+			for (var addr = Interpreter.SB; addr < vm.ST; addr++) {
+				output.writeInt(vm.data[addr]);
+			}
+			for (var addr = vm.HT; addr < Interpreter.HB; addr++) {
+				output.writeInt(vm.data[addr]);
+			}
+			vm.heap.write(output);
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Restores the machine state from the named file. The object program must
+	 * already be loaded. The registers and the heap's free lists are checked
+	 * before the machine is changed, so a damaged snapshot is refused rather
+	 * than run.
+	 */
+	static void restore(Interpreter vm, String snapshotName) throws IOException {
+		long inputPosition;
+		try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotName)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("not a TAM snapshot");
+			}
+			if (input.readInt() != vm.CT || input.readInt() != codeHash(vm)) {
+				throw new IOException("snapshot was taken from a different object program");
+			}
+
+			var cp = input.readInt();
+			var st = input.readInt();
+			var ht = input.readInt();
+			var lb = input.readInt();
+			if (cp < Interpreter.CB || cp >= vm.CT || Interpreter.SB > lb || lb > st || st > ht
+					|| ht > Interpreter.HB) {
+				throw new IOException("snapshot has registers outside the code or data store");
+			}
+			var currentChar = input.readInt();
+			inputPosition = input.readLong();
+			var outputPosition = input.readLong();
+			var elapsedNanos = input.readLong();
+
+			var stack = new int[st - Interpreter.SB];
+			for (var i = 0; i < stack.length; i++) {
+				stack[i] = input.readInt();
+			}
+			var heap = new int[Interpreter.HB - ht];
+			for (var i = 0; i < heap.length; i++) {
+				heap[i] = input.readInt();
+			}
+			vm.heap.read(input, ht);
+
+			vm.CP = cp;
+			vm.ST = st;
+			vm.HT = ht;
+			vm.LB = lb;
+			vm.currentChar = currentChar;
+			vm.writer.setPosition(outputPosition);
+			vm.startTimeNanos = System.nanoTime() - elapsedNanos;
+			System.arraycopy(stack, 0, vm.data, Interpreter.SB, stack.length);
+			System.arraycopy(heap, 0, vm.data, ht, heap.length);
+		}
+
+		vm.reader.skipTo(inputPosition);
+	}
+}
@@ -0,0 +1,118 @@
+package triangle.abstractMachine;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Buffered console input for the GET, GETEOL and GETINT primitives.
+ *
+ * Input is read in blocks rather than a byte at a time. A refill only asks for
+ * what the stream has available, so an interactive program still sees each
+ * line as soon as it is typed; before waiting for input, any buffered output is
+ * flushed so that prompts appear.
+ */
+final class TamReader {
+
+	private final InputStream input;
+
+	private final TamWriter output;
+
+	private final byte[] buffer = new byte[1024];
+
+	private int next, limit;
+
+	private boolean atEnd;
+
+	// the number of bytes consumed so far
+	private long position;
+
+	// the character that ended the last integer read
+	private int lastChar = -1;
+
+	TamReader(InputStream input, TamWriter output) {
+		this.input = input;
+		this.output = output;
+	}
+
+	private boolean fill() throws IOException {
+		if (atEnd) {
+			return false;
+		}
+		if (output != null) {
+			output.flush();
+		}
+		var count = input.read(buffer, 0, buffer.length);
+		if (count <= 0) {
+			atEnd = true;
+			return false;
+		}
+		next = 0;
+		limit = count;
+		return true;
+	}
+
+	/**
+	 * @return the next byte of input, or -1 at end of input
+	 */
+	int read() throws IOException {
+		if (next == limit && !fill()) {
+			return -1;
+		}
+		position++;
+		return buffer[next++] & 0xFF;
+	}
+
+	/**
+	 * Reads an integer: optional white space, an optional sign, and one or more
+	 * digits. The character after the last digit is consumed too, and is
+	 * returned by a following call of {@link #lastChar()}.
+	 *
+	 * @throws IOException if the input is not an integer, or its value is out of
+	 *                     the range of TAM integers
+	 */
+	int readInt() throws IOException {
+		int ch;
+		do {
+			ch = read();
+		} while (Character.isWhitespace(ch));
+
+		var negative = ch == '-';
+		if (ch == '-' || ch == '+') {
+			ch = read();
+		}
+		if (ch < '0' || ch > '9') {
+			lastChar = ch;
+			throw new IOException("malformed integer in input");
+		}
+
+		var value = 0;
+		do {
+			value = value * 10 + (ch - '0');
+			if (value > Machine.maxintRep) {
+				lastChar = ch;
+				throw new IOException("integer in input is out of range");
+			}
+			ch = read();
+		} while (ch >= '0' && ch <= '9');
+
+		lastChar = ch;
+		return negative ? -value : value;
+	}
+
+	int lastChar() {
+		return lastChar;
+	}
+
+	long position() {
+		return position;
+	}
+
+	/**
+	 * Discards input up to the given position, when restoring a snapshot.
+	 */
+	void skipTo(long target) throws IOException {
+		while (position < target && read() >= 0) {
+			// discard
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package triangle.abstractMachine;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * Buffered console output for the PUT, PUTEOL and PUTINT primitives.
+ *
+ * Integers are formatted straight into the buffer, without creating a String.
+ * Characters are encoded as the underlying stream would encode them, so the
+ * bytes written are the same as printing each one with print(char).
+ */
+final class TamWriter {
+
+	private static final byte[] lineSeparator = System.lineSeparator().getBytes();
+
+	private final PrintStream output;
+
+	private final Charset charset;
+
+	private final byte[] buffer = new byte[1024];
+
+	private int next;
+
+	// the number of characters written so far
+	private long position;
+
+	TamWriter(PrintStream output) {
+		this.output = output;
+		this.charset = output.charset();
+	}
+
+	private void ensureSpace(int length) {
+		if (buffer.length - next < length) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() {
+		output.write(buffer, 0, next);
+		next = 0;
+	}
+
+	/**
+	 * Writes the buffered output to the underlying stream, and flushes that.
+	 */
+	void flush() {
+		if (next > 0) {
+			flushBuffer();
+		}
+		output.flush();
+	}
+
+	void writeChar(char ch) {
+		position++;
+		if (ch < 0x80) {
+			ensureSpace(1);
+			buffer[next++] = (byte) ch;
+		} else {
+			writeBytes(String.valueOf(ch).getBytes(charset));
+		}
+	}
+
+	void writeLine() {
+		position += lineSeparator.length;
+		writeBytes(lineSeparator);
+	}
+
+	/**
+	 * Writes a string of ASCII characters, such as a prompt.
+	 */
+	void writeString(String s) {
+		position += s.length();
+		ensureSpace(s.length());
+		for (var i = 0; i < s.length(); i++) {
+			buffer[next++] = (byte) s.charAt(i);
+		}
+	}
+
+	void writeInt(long value) {
+		// a long has at most 19 digits and a sign
+		ensureSpace(20);
+		if (value < 0) {
+			buffer[next++] = '-';
+			position++;
+		}
+		// work with the negative value, which can represent Long.MIN_VALUE
+		var negative = (value < 0) ? value : -value;
+		var digits = 1;
+		for (var scale = negative / 10; scale != 0; scale /= 10) {
+			digits++;
+		}
+		for (var i = next + digits - 1; i >= next; i--) {
+			buffer[i] = (byte) ('0' - negative % 10);
+			negative /= 10;
+		}
+		next += digits;
+		position += digits;
+	}
+
+	private void writeBytes(byte[] bytes) {
+		ensureSpace(bytes.length);
+		System.arraycopy(bytes, 0, buffer, next, bytes.length);
+		next += bytes.length;
+	}
+
+	long position() {
+		return position;
+	}
+
+	/**
+	 * Sets the count of characters written, when restoring a snapshot.
+	 */
+	void setPosition(long position) {
+		this.position = position;
+	}
+}
@@ -0,0 +1,413 @@
+package triangle.abstractMachine;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Checks a TAM object program once, when it is loaded, so that the interpreter
+ * need not check the same things on every instruction.
+ *
+ * The code must fit in the Code Store, every instruction must have sensible
+ * register and length fields, every jump and call whose target is fixed must
+ * go to an instruction or a primitive routine, and no instruction may run on
+ * past the end of the code. A program that breaks any of these rules is
+ * rejected before it runs.
+ *
+ * The verifier then follows each routine from its entry, tracking the height
+ * of the stack above the routine's frame, and records for each instruction the
+ * most words its routine may yet push before it returns. The interpreter
+ * checks that much space once, on entry to the routine, rather than before
+ * every push. A routine whose stack height cannot be followed (one that calls
+ * a routine parameter, say) is left unbounded, and runs with the usual checks.
+ */
+final class Verifier {
+
+	/**
+	 * A program that cannot be run, and why.
+	 */
+	static final class InvalidProgramException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		InvalidProgramException(int addr, Instruction instr, String problem) {
+			super("instruction " + addr + " (" + instr.opCode + " " + instr.length + " " + instr.register + " "
+					+ instr.operand + ") " + problem);
+		}
+
+		InvalidProgramException(String problem) {
+			super(problem);
+		}
+	}
+
+	/**
+	 * The space needed by an instruction whose routine is not bounded, which no
+	 * data store can provide.
+	 */
+	static final int unbounded = Integer.MAX_VALUE;
+
+	// stack heights and constants on top of the stack that are not yet known
+	private static final int unseen = Integer.MIN_VALUE, unknownTop = Integer.MIN_VALUE;
+
+	// the largest length field, as the compiler emits it
+	private static final int maxLength = 255;
+
+	// owners of instructions that no routine reaches, or more than one does
+	private static final int unreached = -1, shared = -2;
+
+	private final Instruction[] code;
+
+	// for each address, the words the instructions reached from it will push
+	// before their routine returns; unbounded if not known
+	private final int[] spaceNeeded;
+
+	// for each routine entry, the words its RETURN leaves on the stack less the
+	// arguments it removes; absent if it never returns, unseen if its RETURNs
+	// disagree
+	private final Integer[] returnEffect;
+
+	// the entry of the routine each instruction belongs to, unreached or shared
+	private final int[] owner;
+
+	// the entry whose routine last reached each instruction
+	private final int[] reachedFrom;
+
+	// the stack height at each instruction, and the constant on top of the
+	// stack, as far as the routine being measured has followed them
+	private final int[] heights, tops;
+
+	// the instructions reached from the entry being followed, of which there
+	// are visitedCount
+	private final int[] visited;
+	private int visitedCount;
+
+	private Verifier(Instruction[] code) {
+		this.code = code;
+		this.spaceNeeded = new int[code.length];
+		this.returnEffect = new Integer[code.length];
+		this.owner = new int[code.length];
+		this.reachedFrom = new int[code.length];
+		this.heights = new int[code.length];
+		this.tops = new int[code.length];
+		this.visited = new int[code.length];
+		Arrays.fill(spaceNeeded, unbounded);
+		Arrays.fill(owner, unreached);
+		Arrays.fill(reachedFrom, unreached);
+		Arrays.fill(heights, unseen);
+	}
+
+	/**
+	 * Verifies an object program.
+	 *
+	 * @param code the object program
+	 * @return for each instruction, the most words the rest of its routine may
+	 *         push, or unbounded
+	 * @throws InvalidProgramException if the program cannot be run
+	 */
+	static int[] verify(Instruction[] code) throws InvalidProgramException {
+		// beyond PB a closure's code address would be taken for a primitive's
+		if (code.length > Machine.PB - Machine.CB) {
+			throw new InvalidProgramException("the code has " + code.length + " instructions, more than the "
+					+ (Machine.PB - Machine.CB) + " the Code Store holds");
+		}
+		var verifier = new Verifier(code);
+		var entries = new TreeSet<Integer>();
+		if (code.length > 0) {
+			entries.add(Interpreter.CB);
+		}
+		for (var addr = 0; addr < code.length; addr++) {
+			verifier.check(addr);
+			var instr = code[addr];
+			if ((instr.opCode == OpCode.CALL || instr.opCode == OpCode.LOADA) && instr.register == Register.CB) {
+				// LOADA CB is how the compiler makes a closure of a routine
+				if (0 <= instr.operand && instr.operand < code.length) {
+					entries.add(instr.operand);
+				}
+			}
+		}
+		// each routine is followed once to find its instructions, then again to
+		// measure it, so the whole costs about the length of the code
+		for (var entry : entries) {
+			verifier.findRoutine(entry);
+		}
+		for (var entry : entries) {
+			verifier.bound(entry);
+		}
+		return verifier.spaceNeeded;
+	}
+
+	// checks the fields of one instruction
+	private void check(int addr) throws InvalidProgramException {
+		var instr = code[addr];
+		var n = instr.length;
+		var d = instr.operand;
+		switch (instr.opCode) {
+		case LOAD, LOADI, STORE, STOREI:
+			checkLength(addr, n);
+			break;
+		case CALL:
+			if (instr.register == Register.PB) {
+				if (d < 0 || d >= Primitive.values().length) {
+					throw new InvalidProgramException(addr, instr, "calls a primitive routine that does not exist");
+				}
+			} else if (instr.register == Register.CB) {
+				checkCodeAddress(addr, d);
+				if (n < 0 || n >= Register.values().length) {
+					throw new InvalidProgramException(addr, instr, "has a static link register that does not exist");
+				}
+			} else {
+				throw new InvalidProgramException(addr, instr, "calls through " + instr.register + ", not CB or PB");
+			}
+			break;
+		case RETURN, POP:
+			checkLength(addr, n);
+			if (d < 0) {
+				throw new InvalidProgramException(addr, instr, "removes a negative number of words");
+			}
+			break;
+		case PUSH:
+			if (d < 0) {
+				throw new InvalidProgramException(addr, instr, "pushes a negative number of words");
+			}
+			break;
+		case JUMP, JUMPIF:
+			if (instr.register != Register.CB) {
+				throw new InvalidProgramException(addr, instr, "jumps relative to " + instr.register + ", not CB");
+			}
+			checkCodeAddress(addr, d);
+			break;
+		case JUMPC:
+			if (instr.register != Register.CB) {
+				throw new InvalidProgramException(addr, instr, "jumps relative to " + instr.register + ", not CB");
+			}
+			checkCodeAddress(addr, d);
+			if (n < 0 || n >= Primitive.values().length || !isComparison(Primitive.at(n))) {
+				throw new InvalidProgramException(addr, instr, "compares by something other than a comparison");
+			}
+			break;
+		case INCR, LOADPL:
+			if (n < -maxLength || n > maxLength) {
+				throw new InvalidProgramException(addr, instr, "adds a literal outside -" + maxLength + ".." + maxLength);
+			}
+			break;
+		case NOP:
+			throw new InvalidProgramException(addr, instr, "cannot be executed");
+		default:
+			break;
+		}
+		if (continues(instr.opCode) && addr + 1 == code.length) {
+			throw new InvalidProgramException(addr, instr, "runs on past the end of the code");
+		}
+	}
+
+	private void checkLength(int addr, int n) throws InvalidProgramException {
+		if (n < 0 || n > maxLength) {
+			throw new InvalidProgramException(addr, code[addr], "has a length outside 0.." + maxLength);
+		}
+	}
+
+	private void checkCodeAddress(int addr, int target) throws InvalidProgramException {
+		if (target < 0 || target >= code.length) {
+			throw new InvalidProgramException(addr, code[addr], "goes to " + target + ", outside the code");
+		}
+	}
+
+	private static boolean isComparison(Primitive primitive) {
+		return switch (primitive) {
+		case LT, LE, GE, GT, EQ, NE -> true;
+		default -> false;
+		};
+	}
+
+	// whether the instruction may jump to the address in its operand
+	private static boolean jumps(OpCode op) {
+		return op == OpCode.JUMP || op == OpCode.JUMPIF || op == OpCode.JUMPC;
+	}
+
+	// whether control may go on to the next instruction
+	private static boolean continues(OpCode op) {
+		return op != OpCode.JUMP && op != OpCode.JUMPI && op != OpCode.RETURN && op != OpCode.HALT;
+	}
+
+	// follows control from entry until its routine returns, recording that the
+	// instructions reached belong to it, and what its RETURNs do to its
+	// caller's stack; code reached from more than one entry is shared, as it
+	// has more than one height
+	private void findRoutine(int entry) {
+		visitedCount = 0;
+		visit(entry, entry);
+		for (var i = 0; i < visitedCount; i++) {
+			var addr = visited[i];
+			var instr = code[addr];
+			if (continues(instr.opCode)) {
+				visit(addr + 1, entry);
+			}
+			if (jumps(instr.opCode)) {
+				visit(instr.operand, entry);
+			}
+			if (instr.opCode == OpCode.RETURN) {
+				var effect = instr.length - instr.operand;
+				if (returnEffect[entry] == null) {
+					returnEffect[entry] = effect;
+				} else if (returnEffect[entry] != effect) {
+					returnEffect[entry] = unseen;
+				}
+			}
+		}
+	}
+
+	private void visit(int addr, int entry) {
+		if (reachedFrom[addr] != entry) {
+			reachedFrom[addr] = entry;
+			owner[addr] = (owner[addr] == unreached) ? entry : shared;
+			visited[visitedCount++] = addr;
+		}
+	}
+
+	// records the space needed by the instructions that belong to the routine
+	// at entry alone, if its stack height can be followed
+	private void bound(int entry) {
+		visitedCount = 0;
+		if (measure(entry)) {
+			var highest = 0;
+			for (var i = 0; i < visitedCount; i++) {
+				highest = Math.max(highest, heights[visited[i]]);
+			}
+			for (var i = 0; i < visitedCount; i++) {
+				var addr = visited[i];
+				if (owner[addr] == entry) {
+					spaceNeeded[addr] = highest - heights[addr];
+				}
+			}
+		}
+		for (var i = 0; i < visitedCount; i++) {
+			heights[visited[i]] = unseen;
+		}
+	}
+
+	// follows the stack height through the routine at entry, recording the
+	// height at each instruction reached, and returns false if some height
+	// cannot be known
+	private boolean measure(int entry) {
+		var pending = new ArrayDeque<Integer>();
+		reach(pending, entry, 0, unknownTop);
+		while (!pending.isEmpty()) {
+			var addr = pending.pop();
+			var instr = code[addr];
+			var height = heights[addr];
+			var n = instr.length;
+			var d = instr.operand;
+			// the height after the instruction, and what it leaves on top
+			int next;
+			var top = unknownTop;
+			var successor = addr + 1;
+			switch (instr.opCode) {
+			case LOAD:
+				next = height + n;
+				break;
+			case LOADA:
+				next = height + 1;
+				break;
+			case LOADI:
+				next = height - 1 + n;
+				break;
+			case LOADL:
+				next = height + 1;
+				top = d;
+				break;
+			case STORE:
+				next = height - n;
+				break;
+			case STOREI:
+				next = height - 1 - n;
+				break;
+			case CALL:
+				if (instr.register == Register.PB) {
+					var primitive = Primitive.at(d);
+					if (primitive == Primitive.EQ || primitive == Primitive.NE) {
+						// the size of the comparands is on top of the stack
+						if (tops[addr] == unknownTop) {
+							return false;
+						}
+						next = height - 2 * tops[addr];
+					} else {
+						next = height + primitiveEffect(primitive);
+					}
+				} else if (returnEffect[d] == null) {
+					// the routine never returns
+					next = height;
+					successor = -1;
+				} else if (returnEffect[d] == unseen) {
+					return false;
+				} else {
+					next = height + returnEffect[d];
+				}
+				break;
+			case PUSH:
+				next = height + d;
+				break;
+			case POP:
+				next = height - d;
+				break;
+			case JUMP:
+				next = height;
+				successor = d;
+				break;
+			case JUMPIF:
+				next = height - 1;
+				if (!reach(pending, d, next, unknownTop)) {
+					return false;
+				}
+				break;
+			case JUMPC:
+				next = height - 2;
+				if (!reach(pending, d, next, unknownTop)) {
+					return false;
+				}
+				break;
+			case INCR:
+				next = height;
+				break;
+			case LOADPL:
+				next = height + 1;
+				break;
+			case RETURN, HALT:
+				continue;
+			default:
+				// CALLI and JUMPI go to addresses only known at run time
+				return false;
+			}
+			if (successor >= 0 && !reach(pending, successor, next, top)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// records that control reaches target with the given height, returning
+	// false if another path reached it with a different height
+	private boolean reach(ArrayDeque<Integer> pending, int target, int height, int top) {
+		if (heights[target] == unseen) {
+			visited[visitedCount++] = target;
+			heights[target] = height;
+			tops[target] = top;
+			pending.push(target);
+		} else if (heights[target] != height) {
+			return false;
+		} else if (tops[target] != top && tops[target] != unknownTop) {
+			tops[target] = unknownTop;
+			pending.push(target);
+		}
+		return true;
+	}
+
+	// the change in stack height made by a primitive routine other than EQ and NE
+	private static int primitiveEffect(Primitive primitive) {
+		return switch (primitive) {
+		case AND, OR, ADD, SUB, MULT, DIV, MOD, LT, LE, GE, GT, GET, PUT, GETINT, PUTINT -> -1;
+		case EOL, EOF -> 1;
+		case DISPOSE -> -2;
+		default -> 0;
+		};
+	}
+}
@@ -0,0 +1,107 @@
+package triangle.abstractMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Passes an aggregate of each size from 1 to 255 words by value to a routine
+ * and back, and reports the interpreter's time per word moved.
+ *
+ * The loop is built here as TAM code, so the number of words it moves is
+ * known. For an aggregate a of n words, each iteration does
+ *
+ * <pre>
+ * a := copy (a); if a /= a then fail
+ * </pre>
+ *
+ * where copy pushes a local, loads its argument, pops the local from under it
+ * and returns the argument, so every iteration runs LOAD, STORE, POP and
+ * RETURN of n words and compares two objects of n words with EQ.
+ *
+ * Usage: AggregateMoveBenchmark [iterations, at most Machine.maxintRep]
+ */
+public class AggregateMoveBenchmark {
+
+	private static final int[] SIZES = { 1, 2, 4, 8, 16, 32, 64, 128, 255 };
+
+	// the words each iteration moves or compares, for an aggregate of one word
+	private static final int WORDS = 9;
+
+	public static void main(String[] args) {
+		var iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 30_000;
+		System.out.printf("%6s %14s %12s%n", "words", "ns/iteration", "ns/word");
+		for (var size : SIZES) {
+			var code = copyLoop(size, iterations);
+			// the first rounds warm up the interpreter
+			var best = Long.MAX_VALUE;
+			for (var round = 0; round < 5; round++) {
+				var before = System.nanoTime();
+				run(code);
+				best = Math.min(best, System.nanoTime() - before);
+			}
+			System.out.printf("%6d %14.1f %12.2f%n", size, (double) best / iterations,
+					(double) best / iterations / (WORDS * size));
+		}
+	}
+
+	private static void run(Instruction[] code) {
+		var output = new ByteArrayOutputStream();
+		var interpreter = new Interpreter(code, InputStream.nullInputStream(), new PrintStream(output));
+		interpreter.interpretProgram();
+		interpreter.writer.flush();
+		if (interpreter.status != Interpreter.halted || output.size() > 0) {
+			throw new IllegalStateException("program failed with status " + interpreter.status + ": " + output);
+		}
+	}
+
+	static Instruction[] copyLoop(int size, int iterations) {
+		final int a = 0, i = size;
+		var code = new ArrayList<Instruction>();
+		emit(code, OpCode.PUSH, Register.CB, 0, size + 1);
+		emit(code, OpCode.LOADL, Register.CB, 0, 0);
+		emit(code, OpCode.STORE, Register.SB, 1, i);
+
+		var loop = code.size();
+		emit(code, OpCode.LOAD, Register.SB, size, a);
+		var toCopy = emit(code, OpCode.CALL, Register.CB, Register.SB.ordinal(), 0);
+		emit(code, OpCode.STORE, Register.SB, size, a);
+		emit(code, OpCode.LOAD, Register.SB, size, a);
+		emit(code, OpCode.LOAD, Register.SB, size, a);
+		emit(code, OpCode.LOADL, Register.CB, 0, size);
+		call(code, Primitive.EQ);
+		var toFail = emit(code, OpCode.JUMPIF, Register.CB, Machine.falseRep, 0);
+		emit(code, OpCode.LOAD, Register.SB, 1, i);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1);
+		call(code, Primitive.ADD);
+		emit(code, OpCode.STORE, Register.SB, 1, i);
+		emit(code, OpCode.LOAD, Register.SB, 1, i);
+		emit(code, OpCode.LOADL, Register.CB, 0, iterations);
+		call(code, Primitive.LT);
+		emit(code, OpCode.JUMPIF, Register.CB, Machine.trueRep, loop);
+		emit(code, OpCode.HALT, Register.CB, 0, 0);
+
+		code.get(toFail).setOperand(code.size());
+		emit(code, OpCode.LOADL, Register.CB, 0, size);
+		call(code, Primitive.PUTINT);
+		emit(code, OpCode.HALT, Register.CB, 0, 0);
+
+		// the routine copy (a)
+		code.get(toCopy).setOperand(code.size());
+		emit(code, OpCode.PUSH, Register.CB, 0, 1);
+		emit(code, OpCode.LOAD, Register.LB, size, -size);
+		emit(code, OpCode.POP, Register.CB, size, 1);
+		emit(code, OpCode.RETURN, Register.CB, size, size);
+		return code.toArray(new Instruction[0]);
+	}
+
+	private static int emit(ArrayList<Instruction> code, OpCode op, Register register, int length, int operand) {
+		code.add(new Instruction(op, register, length, operand));
+		return code.size() - 1;
+	}
+
+	private static void call(ArrayList<Instruction> code, Primitive primitive) {
+		emit(code, OpCode.CALL, Register.PB, 0, primitive.ordinal());
+	}
+}
@@ -0,0 +1,69 @@
+package triangle.abstractMachine;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates many network clients running the same program through an
+ * {@link ExecutionService} at once, and reports throughput and latency.
+ *
+ * Each client sends its input one line at a time, pausing between lines as a
+ * remote user or a slow network would, so most programs are blocked on input at
+ * any moment.
+ *
+ * Usage: ExecutionServiceStress objectFile [clients [pauseMillis [line ...]]]
+ */
+public class ExecutionServiceStress {
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		if (args.length < 1) {
+			System.err.println("Usage: ExecutionServiceStress objectFile [clients [pauseMillis [line ...]]]");
+			return;
+		}
+		var code = ExecutionService.load(args[0]);
+		var clients = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+		var pauseMillis = (args.length > 2) ? Long.parseLong(args[2]) : 10;
+		var lines = new ArrayList<String>();
+		for (var i = 3; i < args.length; i++) {
+			lines.add(args[i]);
+		}
+		if (lines.isEmpty()) {
+			lines.add("5");
+			lines.add("7");
+		}
+
+		var results = new ArrayList<Future<ExecutionService.Result>>();
+		try (var service = new ExecutionService(10_000_000, 10_000, 0);
+				var senders = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (var c = 0; c < clients; c++) {
+				var input = new ConsoleInput();
+				results.add(service.submit(code, input, OutputStream.nullOutputStream()));
+				senders.submit(() -> {
+					for (var line : lines) {
+						Thread.sleep(pauseMillis);
+						input.send(line + "\n");
+					}
+					input.close();
+					return null;
+				});
+			}
+
+			// report progress while the clients run
+			while (service.metrics().completedCount() < clients) {
+				Thread.sleep(1000);
+				System.out.println(service.metrics());
+			}
+		}
+
+		var halted = 0;
+		for (var result : results) {
+			if (result.get().halted()) {
+				halted++;
+			}
+		}
+		System.out.println(halted + " of " + clients + " programs halted normally");
+	}
+}
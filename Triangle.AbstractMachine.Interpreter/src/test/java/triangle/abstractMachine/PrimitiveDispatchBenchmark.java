@@ -0,0 +1,139 @@
+package triangle.abstractMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Runs arithmetic loops, in which most instructions are CALLs of the
+ * primitives ADD, SUB, MOD, LT, EQ and NE, and reports the interpreter's time
+ * per instruction.
+ *
+ * The loop is built here as TAM code, so its instruction count is known; it is
+ * roughly
+ *
+ * <pre>
+ * for j in 0 .. outer - 1: for i in 0 .. 29999:
+ *     sum := (sum + i) mod 1000; if i /= 7 then sum := sum - 1 else sum := sum + 1
+ * </pre>
+ *
+ * With an object file as the argument, that program is run instead, and the
+ * time for the whole run is reported.
+ *
+ * Usage: PrimitiveDispatchBenchmark [outer] | PrimitiveDispatchBenchmark
+ * objectFile
+ */
+public class PrimitiveDispatchBenchmark {
+
+	private static final int INNER = 30_000;
+
+	public static void main(String[] args) {
+		if (args.length > 0 && !args[0].matches("\\d+")) {
+			var code = Interpreter.loadObjectProgram(args[0]);
+			for (var round = 1; round <= 10; round++) {
+				var before = System.nanoTime();
+				var output = run(code);
+				System.out.printf("round %d: %.1f ms (%d bytes of output)%n", round,
+						(System.nanoTime() - before) / 1e6, output.length());
+			}
+			return;
+		}
+
+		var outer = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+		var loop = new ArrayList<Instruction>();
+		var instructions = arithmeticLoop(loop, outer);
+		var code = loop.toArray(new Instruction[0]);
+		String expected = null;
+		for (var round = 1; round <= 10; round++) {
+			var before = System.nanoTime();
+			var output = run(code);
+			var nanos = System.nanoTime() - before;
+			if (expected == null) {
+				expected = output;
+			} else if (!expected.equals(output)) {
+				throw new IllegalStateException("results differ: " + expected + " / " + output);
+			}
+			System.out.printf("round %d: %.2f ns/instruction, %.0f million instructions/s%n", round,
+					(double) nanos / instructions, instructions / (nanos / 1e3));
+		}
+	}
+
+	private static String run(Instruction[] code) {
+		var output = new ByteArrayOutputStream();
+		var interpreter = new Interpreter(code, InputStream.nullInputStream(), new PrintStream(output));
+		interpreter.interpretProgram();
+		interpreter.writer.flush();
+		if (interpreter.status != Interpreter.halted) {
+			throw new IllegalStateException("program failed with status " + interpreter.status);
+		}
+		return output.toString();
+	}
+
+	// emits the loop, returning the number of instructions it executes
+	static long arithmeticLoop(ArrayList<Instruction> code, int outer) {
+		final int j = 0, i = 1, sum = 2;
+		emit(code, OpCode.PUSH, Register.CB, 0, 3);
+		emit(code, OpCode.LOADL, Register.CB, 0, 0);
+		emit(code, OpCode.STORE, Register.SB, 1, j);
+		var outerLoop = code.size();
+		emit(code, OpCode.LOADL, Register.CB, 0, 0);
+		emit(code, OpCode.STORE, Register.SB, 1, i);
+
+		var innerLoop = code.size();
+		emit(code, OpCode.LOAD, Register.SB, 1, sum);
+		emit(code, OpCode.LOAD, Register.SB, 1, i);
+		call(code, Primitive.ADD);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1000);
+		call(code, Primitive.MOD);
+		emit(code, OpCode.STORE, Register.SB, 1, sum);
+		emit(code, OpCode.LOAD, Register.SB, 1, i);
+		emit(code, OpCode.LOADL, Register.CB, 0, 7);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1);
+		call(code, Primitive.NE);
+		var toElse = emit(code, OpCode.JUMPIF, Register.CB, Machine.falseRep, 0);
+		emit(code, OpCode.LOAD, Register.SB, 1, sum);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1);
+		call(code, Primitive.SUB);
+		var toEnd = emit(code, OpCode.JUMP, Register.CB, 0, 0);
+		code.get(toElse).setOperand(code.size());
+		emit(code, OpCode.LOAD, Register.SB, 1, sum);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1);
+		call(code, Primitive.ADD);
+		code.get(toEnd).setOperand(code.size());
+		emit(code, OpCode.STORE, Register.SB, 1, sum);
+		emit(code, OpCode.LOAD, Register.SB, 1, i);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1);
+		call(code, Primitive.ADD);
+		emit(code, OpCode.STORE, Register.SB, 1, i);
+		emit(code, OpCode.LOAD, Register.SB, 1, i);
+		emit(code, OpCode.LOADL, Register.CB, 0, INNER);
+		call(code, Primitive.LT);
+		emit(code, OpCode.JUMPIF, Register.CB, Machine.trueRep, innerLoop);
+		var innerLength = 24L; // 23 when i = 7
+
+		emit(code, OpCode.LOAD, Register.SB, 1, j);
+		emit(code, OpCode.LOADL, Register.CB, 0, 1);
+		call(code, Primitive.ADD);
+		emit(code, OpCode.STORE, Register.SB, 1, j);
+		emit(code, OpCode.LOAD, Register.SB, 1, j);
+		emit(code, OpCode.LOADL, Register.CB, 0, outer);
+		call(code, Primitive.LT);
+		emit(code, OpCode.JUMPIF, Register.CB, Machine.trueRep, outerLoop);
+		var outerLength = 8L + 2;
+
+		emit(code, OpCode.LOAD, Register.SB, 1, sum);
+		call(code, Primitive.PUTINT);
+		emit(code, OpCode.HALT, Register.CB, 0, 0);
+		return 3 + outer * (outerLength + INNER * innerLength) + 3;
+	}
+
+	private static int emit(ArrayList<Instruction> code, OpCode op, Register register, int length, int operand) {
+		code.add(new Instruction(op, register, length, operand));
+		return code.size() - 1;
+	}
+
+	private static void call(ArrayList<Instruction> code, Primitive primitive) {
+		emit(code, OpCode.CALL, Register.PB, 0, primitive.ordinal());
+	}
+}
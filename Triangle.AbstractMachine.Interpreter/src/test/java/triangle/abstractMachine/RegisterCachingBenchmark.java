@@ -0,0 +1,84 @@
+package triangle.abstractMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Runs programs on the Interpreter's own dispatch loop and on the
+ * CachingInterpreter's, checks that they give the same output and status, and
+ * reports the best time of each.
+ *
+ * The programs are the arithmetic loop of PrimitiveDispatchBenchmark, the
+ * aggregate copying loop of AggregateMoveBenchmark for one and sixteen words,
+ * and any object files given as arguments, which are run with no input and
+ * stopped after MAX_INSTRUCTIONS.
+ *
+ * Both loops are first run on every program, so that neither is measured while
+ * HotSpot is still recompiling it for paths it has not seen.
+ *
+ * Usage: RegisterCachingBenchmark [objectFile ...]
+ */
+public class RegisterCachingBenchmark {
+
+	private static final int WARM_UP_ROUNDS = 3, ROUNDS = 7;
+
+	private static final long MAX_INSTRUCTIONS = 10_000_000;
+
+	private record Run(String output, int status) {
+	}
+
+	public static void main(String[] args) {
+		var programs = new LinkedHashMap<String, Instruction[]>();
+		var loop = new ArrayList<Instruction>();
+		PrimitiveDispatchBenchmark.arithmeticLoop(loop, 50);
+		programs.put("arithmetic", loop.toArray(new Instruction[0]));
+		programs.put("aggregates of 1", AggregateMoveBenchmark.copyLoop(1, 30_000));
+		programs.put("aggregates of 16", AggregateMoveBenchmark.copyLoop(16, 30_000));
+		for (var objectName : args) {
+			programs.put(objectName, Interpreter.loadObjectProgram(objectName));
+		}
+
+		for (var round = 0; round < WARM_UP_ROUNDS; round++) {
+			for (var code : programs.values()) {
+				run(code, false);
+				run(code, true);
+			}
+		}
+
+		System.out.printf("%-30s %12s %12s %8s%n", "program", "loop ms", "caching ms", "speed-up");
+		for (var program : programs.entrySet()) {
+			var code = program.getValue();
+			long plain = Long.MAX_VALUE, caching = Long.MAX_VALUE;
+			for (var round = 0; round < ROUNDS; round++) {
+				var before = System.nanoTime();
+				var expected = run(code, false);
+				var middle = System.nanoTime();
+				var actual = run(code, true);
+				var after = System.nanoTime();
+				if (!expected.equals(actual)) {
+					throw new IllegalStateException(program.getKey() + " differs:\n" + expected + "\n" + actual);
+				}
+				plain = Math.min(plain, middle - before);
+				caching = Math.min(caching, after - middle);
+			}
+			System.out.printf("%-30s %12.1f %12.1f %8.2f%n", program.getKey(), plain / 1e6, caching / 1e6,
+					(double) plain / caching);
+		}
+	}
+
+	private static Run run(Instruction[] code, boolean cachingRegisters) {
+		var output = new ByteArrayOutputStream();
+		var interpreter = new Interpreter(code, InputStream.nullInputStream(), new PrintStream(output));
+		interpreter.cachingRegisters = cachingRegisters;
+		interpreter.maxInstructions = MAX_INSTRUCTIONS;
+		interpreter.interpretProgram();
+		interpreter.writer.flush();
+		if (interpreter.status != Interpreter.halted) {
+			interpreter.dump();
+		}
+		return new Run(output.toString(), interpreter.status);
+	}
+}
@@ -0,0 +1,70 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Helpers for the tests that run hand-written TAM code.
+ */
+class TamCode {
+
+	private TamCode() {
+	}
+
+	static Instruction instruction(OpCode op, int n, Register r, int d) {
+		return new Instruction(op, r, n, d);
+	}
+
+	static Instruction instruction(OpCode op, int n, int d) {
+		return new Instruction(op, Register.CB, n, d);
+	}
+
+	static Instruction call(Primitive primitive) {
+		return new Instruction(OpCode.CALL, Register.PB, 0, primitive.ordinal());
+	}
+
+	static Instruction halt() {
+		return new Instruction(OpCode.HALT, Register.CB, 0, 0);
+	}
+
+	/**
+	 * Asserts that the Verifier rejects the code.
+	 *
+	 * @return why it was rejected
+	 */
+	static String rejection(Instruction... code) {
+		return assertThrows(Verifier.InvalidProgramException.class, () -> Verifier.verify(code)).getMessage();
+	}
+
+	/**
+	 * An interpreter for the code, whose console output is collected.
+	 */
+	static final class Run {
+
+		final Interpreter vm;
+
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		Run(Instruction[] code, String input) {
+			vm = new Interpreter(code, new ByteArrayInputStream(input.getBytes()), new PrintStream(output));
+		}
+
+		Run(Instruction[] code) {
+			this(code, "");
+		}
+
+		/**
+		 * Runs the program from its current state.
+		 *
+		 * @return the program's output so far
+		 */
+		String run() {
+			vm.interpretProgram();
+			vm.writer.flush();
+			return output.toString();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package triangle.abstractMachine;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Reads and writes millions of integers through {@link TamReader} and
+ * {@link TamWriter}, and through the byte-at-a-time reading and
+ * print(Long.toString(...)) writing that GETINT and PUTINT used before, and
+ * reports the time per integer for each.
+ *
+ * Usage: TamIOBenchmark [count]
+ */
+public class TamIOBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		var count = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000_000;
+
+		var random = new Random(42);
+		var text = new StringBuilder();
+		for (var i = 0; i < count; i++) {
+			text.append(random.nextInt(2 * Machine.maxintRep + 1) - Machine.maxintRep).append('\n');
+		}
+		var bytes = text.toString().getBytes();
+
+		for (var round = 1; round <= 5; round++) {
+			var before = System.nanoTime();
+			var sum = unbuffered(bytes, count);
+			var middle = System.nanoTime();
+			var check = buffered(bytes, count);
+			var after = System.nanoTime();
+			if (sum != check) {
+				throw new IllegalStateException("results differ: " + sum + " / " + check);
+			}
+			System.out.printf("round %d: unbuffered %.1f ns/int, buffered %.1f ns/int%n", round,
+					(double) (middle - before) / count, (double) (after - middle) / count);
+		}
+	}
+
+	private static long unbuffered(byte[] bytes, int count) {
+		var input = new ByteArrayInputStream(bytes);
+		var output = new PrintStream(OutputStream.nullOutputStream());
+		var sum = 0L;
+		for (var i = 0; i < count; i++) {
+			int ch;
+			do {
+				ch = input.read();
+			} while (Character.isWhitespace((char) ch));
+			var sign = 1;
+			if (ch == '-') {
+				sign = -1;
+				ch = input.read();
+			}
+			var value = 0;
+			while (Character.isDigit((char) ch)) {
+				value = value * 10 + (ch - '0');
+				ch = input.read();
+			}
+			value *= sign;
+			sum += value;
+			output.print(Long.toString(value));
+			output.print(System.lineSeparator());
+		}
+		output.flush();
+		return sum;
+	}
+
+	private static long buffered(byte[] bytes, int count) throws IOException {
+		var writer = new TamWriter(new PrintStream(OutputStream.nullOutputStream()));
+		var reader = new TamReader(new ByteArrayInputStream(bytes), writer);
+		var sum = 0L;
+		for (var i = 0; i < count; i++) {
+			var value = reader.readInt();
+			sum += value;
+			writer.writeInt(value);
+			writer.writeLine();
+		}
+		writer.flush();
+		return sum;
+	}
+}
@@ -0,0 +1,152 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static triangle.abstractMachine.TamCode.call;
+import static triangle.abstractMachine.TamCode.halt;
+import static triangle.abstractMachine.TamCode.instruction;
+import static triangle.abstractMachine.TamCode.rejection;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestExtendedInstructions {
+
+	private static final List<Primitive> COMPARISONS = List.of(Primitive.LT, Primitive.LE, Primitive.GE,
+			Primitive.GT, Primitive.EQ, Primitive.NE);
+
+	// prints 1 if a compares with b by the relation, otherwise 0
+	private static Instruction[] comparison(Primitive relation, int a, int b) {
+		return new Instruction[] {
+				instruction(OpCode.LOADL, 0, a),
+				instruction(OpCode.LOADL, 0, b),
+				instruction(OpCode.JUMPC, relation.ordinal(), 6),
+				instruction(OpCode.LOADL, 0, 0),
+				call(Primitive.PUTINT),
+				halt(),
+				instruction(OpCode.LOADL, 0, 1),
+				call(Primitive.PUTINT),
+				halt() };
+	}
+
+	private static boolean expected(Primitive relation, int a, int b) {
+		return switch (relation) {
+		case LT -> a < b;
+		case LE -> a <= b;
+		case GE -> a >= b;
+		case GT -> a > b;
+		case EQ -> a == b;
+		default -> a != b;
+		};
+	}
+
+	@Test
+	public void testJumpIfCompares() {
+		for (var relation : COMPARISONS) {
+			for (var a : new int[] { -1, 2, 3 }) {
+				var code = comparison(relation, a, 2);
+				var expected = expected(relation, a, 2) ? "1" : "0";
+				assertEquals(relation + " " + a, expected, runBoth(code, Interpreter.halted));
+			}
+		}
+	}
+
+	@Test
+	public void testIncrement() {
+		var code = new Instruction[] {
+				instruction(OpCode.LOADL, 0, 5),
+				instruction(OpCode.INCR, 255, Register.SB, 0),
+				instruction(OpCode.INCR, -3, Register.SB, 0),
+				call(Primitive.PUTINT),
+				halt() };
+		assertEquals("257", runBoth(code, Interpreter.halted));
+	}
+
+	@Test
+	public void testIncrementOverflow() {
+		var code = new Instruction[] {
+				instruction(OpCode.LOADL, 0, Machine.maxintRep),
+				instruction(OpCode.INCR, 1, Register.SB, 0),
+				call(Primitive.PUTINT),
+				halt() };
+		runBoth(code, Interpreter.failedOverflow);
+	}
+
+	@Test
+	public void testLoadPlusLiteral() {
+		// the word loaded from is left as it was
+		var code = new Instruction[] {
+				instruction(OpCode.LOADL, 0, 7),
+				instruction(OpCode.LOADPL, -9, Register.SB, 0),
+				call(Primitive.PUTINT),
+				instruction(OpCode.LOADL, 0, ' '),
+				call(Primitive.PUT),
+				call(Primitive.PUTINT),
+				halt() };
+		assertEquals("-2 7", runBoth(code, Interpreter.halted));
+	}
+
+	@Test
+	public void testLoadPlusLiteralOverflow() {
+		var code = new Instruction[] {
+				instruction(OpCode.LOADL, 0, -Machine.maxintRep),
+				instruction(OpCode.LOADPL, -1, Register.SB, 0),
+				halt() };
+		runBoth(code, Interpreter.failedOverflow);
+	}
+
+	@Test
+	public void testVerifierFollowsStackEffects() throws Verifier.InvalidProgramException {
+		var space = Verifier.verify(comparison(Primitive.LT, 1, 2));
+		assertEquals(2, space[0]);
+		assertEquals(0, space[2]);
+		space = Verifier.verify(new Instruction[] {
+				instruction(OpCode.LOADL, 0, 1),
+				instruction(OpCode.LOADPL, 1, Register.SB, 0),
+				instruction(OpCode.INCR, -1, Register.SB, 1),
+				halt() });
+		assertEquals(2, space[0]);
+		assertEquals(0, space[2]);
+	}
+
+	@Test
+	public void testVerifierRejectsLiteralOutOfRange() {
+		for (var op : new OpCode[] { OpCode.INCR, OpCode.LOADPL }) {
+			for (var n : new int[] { 256, -256 }) {
+				var message = rejection(instruction(OpCode.LOADL, 0, 0), instruction(op, n, Register.SB, 0), halt());
+				assertTrue(message, message.contains("adds a literal outside -255..255"));
+			}
+		}
+	}
+
+	@Test
+	public void testVerifierRejectsNonComparison() {
+		for (var n : new int[] { Primitive.ADD.ordinal(), -1, Primitive.values().length }) {
+			var message = rejection(instruction(OpCode.JUMPC, n, 0), halt());
+			assertTrue(message, message.contains("compares by something other than a comparison"));
+		}
+	}
+
+	@Test
+	public void testVerifierRejectsComparisonNotRelativeToCB() {
+		var message = rejection(instruction(OpCode.JUMPC, Primitive.EQ.ordinal(), Register.SB, 0), halt());
+		assertTrue(message, message.contains("jumps relative to SB, not CB"));
+	}
+
+	// runs the code in both interpreters, which must end with the same status and output
+	private static String runBoth(Instruction[] code, int status) {
+		String output = null;
+		for (var cachingRegisters : new boolean[] { false, true }) {
+			var run = new TamCode.Run(code);
+			run.vm.cachingRegisters = cachingRegisters;
+			var text = run.run();
+			assertEquals(status, run.vm.status);
+			if (output != null) {
+				assertEquals(output, text);
+			}
+			output = text;
+		}
+		return output;
+	}
+}
@@ -0,0 +1,126 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestHeapManager {
+
+	private static final int HB = 1000;
+
+	private HeapManager heap;
+
+	private int heapTop;
+
+	@Before
+	public void setUp() {
+		heap = new HeapManager(HB);
+		heapTop = HB;
+	}
+
+	// allocates as NEW does, extending the heap when no free block fits
+	private int allocate(int size) {
+		var addr = heap.allocate(size);
+		if (addr < 0) {
+			heapTop -= size;
+			heap.grown(size, heapTop);
+			addr = heapTop;
+		}
+		return addr;
+	}
+
+	private void dispose(int addr, int size) {
+		heapTop = heap.dispose(addr, size, heapTop);
+	}
+
+	@Test
+	public void testEmptyHeapHasNoFreeBlock() {
+		assertEquals(-1, heap.allocate(1));
+		assertEquals(-1, heap.allocate(0));
+	}
+
+	@Test
+	public void testDisposedBlockIsReused() {
+		var a = allocate(5);
+		var b = allocate(5);
+		allocate(5);
+		dispose(b, 5);
+		assertEquals(a - 10, heapTop);
+		assertEquals(b, allocate(5));
+		assertEquals(a - 10, heapTop);
+	}
+
+	@Test
+	public void testLargerBlockIsSplit() {
+		var a = allocate(40);
+		allocate(1);
+		dispose(a, 40);
+		assertEquals(a, allocate(30));
+		assertEquals(a + 30, allocate(10));
+	}
+
+	@Test
+	public void testNeighboursAreCoalesced() {
+		var a = allocate(4);
+		var b = allocate(4);
+		allocate(4);
+		dispose(a, 4);
+		dispose(b, 4);
+		assertEquals(b, allocate(8));
+	}
+
+	@Test
+	public void testBlockAtHeapTopIsReturned() {
+		var a = allocate(4);
+		var b = allocate(4);
+		dispose(a, 4);
+		dispose(b, 4);
+		assertEquals(HB, heapTop);
+		assertEquals(-1, heap.allocate(1));
+	}
+
+	@Test
+	public void testRepeatedAllocationRunsInConstantSpace() {
+		allocate(3);
+		for (var i = 0; i < 10000; i++) {
+			var a = allocate(2 + i % 20);
+			var b = allocate(1 + i % 7);
+			dispose(a, 2 + i % 20);
+			dispose(b, 1 + i % 7);
+		}
+		assertEquals(HB - 3, heapTop);
+	}
+
+	@Test
+	public void testInvalidDisposalIsIgnored() {
+		var a = allocate(4);
+		allocate(4);
+		dispose(a, 4);
+		var top = heapTop;
+		dispose(a, 4); // twice
+		dispose(HB, 4); // beyond the heap
+		dispose(top - 10, 4); // below HT
+		assertEquals(top, heapTop);
+		assertEquals(a, allocate(4));
+		assertEquals(-1, heap.allocate(1));
+	}
+
+	@Test
+	public void testStatistics() {
+		var a = allocate(6);
+		allocate(2);
+		dispose(a, 6);
+		var output = new ByteArrayOutputStream();
+		heap.showStatistics(heapTop, new PrintStream(output));
+		var text = output.toString();
+		assertTrue(text, text.contains("Allocations: 2, disposals: 1"));
+		assertTrue(text, text.contains("Peak heap size (words): 8"));
+		assertTrue(text, text.contains("Live words: 2"));
+		assertTrue(text, text.contains("Free words: 6 in 1 block(s)"));
+	}
+}
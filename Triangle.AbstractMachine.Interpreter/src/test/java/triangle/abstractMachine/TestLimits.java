@@ -0,0 +1,84 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static triangle.abstractMachine.TamCode.call;
+import static triangle.abstractMachine.TamCode.halt;
+import static triangle.abstractMachine.TamCode.instruction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+public class TestLimits {
+
+	// while true do
+	private static final Instruction[] LOOP = { instruction(OpCode.JUMP, 0, 0) };
+
+	// while true do new (10)
+	private static final Instruction[] ALLOCATE = {
+			instruction(OpCode.LOADL, 0, 10),
+			call(Primitive.NEW),
+			instruction(OpCode.POP, 0, 1),
+			instruction(OpCode.JUMP, 0, 0) };
+
+	private static final Instruction[] HALT = { halt() };
+
+	@Test
+	public void testInstructionLimit() {
+		var run = new TamCode.Run(LOOP);
+		run.vm.maxInstructions = 100000;
+		run.run();
+		assertEquals(Interpreter.failedInstructionLimit, run.vm.status);
+	}
+
+	@Test
+	public void testInstructionLimitWithCachedRegisters() {
+		var run = new TamCode.Run(LOOP);
+		run.vm.cachingRegisters = true;
+		run.vm.maxInstructions = 100000;
+		run.run();
+		assertEquals(Interpreter.failedInstructionLimit, run.vm.status);
+	}
+
+	@Test
+	public void testTimeLimit() {
+		var run = new TamCode.Run(LOOP);
+		run.vm.maxTime = 50;
+		run.run();
+		assertEquals(Interpreter.failedTimeLimit, run.vm.status);
+	}
+
+	@Test
+	public void testDataLimit() {
+		var run = new TamCode.Run(ALLOCATE);
+		run.vm.maxData = 100;
+		run.run();
+		assertEquals(Interpreter.failedDataLimit, run.vm.status);
+		assertTrue(Interpreter.HB - run.vm.HT <= 110);
+	}
+
+	@Test
+	public void testWithoutLimitsTheDataStoreFills() {
+		var run = new TamCode.Run(ALLOCATE);
+		run.run();
+		assertEquals(Interpreter.failedDataStoreFull, run.vm.status);
+	}
+
+	@Test
+	public void testServiceReportsLimits() throws InterruptedException, ExecutionException {
+		try (var service = new ExecutionService(100000, 0, 100)) {
+			var loop = service.submit(LOOP, new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+			var allocate = service.submit(ALLOCATE, new ByteArrayInputStream(new byte[0]),
+					new ByteArrayOutputStream());
+			var halt = service.submit(HALT, new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+			assertEquals(Interpreter.failedInstructionLimit, loop.get().status());
+			assertTrue(loop.get().limitExceeded());
+			assertEquals(Interpreter.failedDataLimit, allocate.get().status());
+			assertTrue(allocate.get().limitExceeded());
+			assertTrue(halt.get().halted());
+		}
+	}
+}
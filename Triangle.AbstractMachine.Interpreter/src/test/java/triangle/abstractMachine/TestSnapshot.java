@@ -0,0 +1,152 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static triangle.abstractMachine.TamCode.call;
+import static triangle.abstractMachine.TamCode.halt;
+import static triangle.abstractMachine.TamCode.instruction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSnapshot {
+
+	// for i := 0 while i < 2000: putint (i); puteol (); with i at 0[SB]
+	private static final Instruction[] COUNT = {
+			instruction(OpCode.LOADL, 0, 0),
+			instruction(OpCode.LOAD, 1, Register.SB, 0),
+			call(Primitive.PUTINT),
+			call(Primitive.PUTEOL),
+			instruction(OpCode.LOAD, 1, Register.SB, 0),
+			call(Primitive.SUCC),
+			instruction(OpCode.STORE, 1, Register.SB, 0),
+			instruction(OpCode.LOAD, 1, Register.SB, 0),
+			instruction(OpCode.LOADL, 0, 2000),
+			call(Primitive.LT),
+			instruction(OpCode.JUMPIF, Machine.trueRep, 1),
+			halt() };
+
+	private String snapshotName;
+
+	@Before
+	public void setUp() throws IOException {
+		snapshotName = Files.createTempDirectory("snapshot").resolve("count.snap").toString();
+	}
+
+	@Test
+	public void testResumesWhereSuspended() throws IOException {
+		assertResumes(false);
+	}
+
+	@Test
+	public void testResumesWhereSuspendedWithCachedRegisters() throws IOException {
+		assertResumes(true);
+	}
+
+	private void assertResumes(boolean cachingRegisters) throws IOException {
+		var whole = new TamCode.Run(COUNT);
+		whole.vm.cachingRegisters = cachingRegisters;
+		var expected = whole.run();
+		assertEquals(Interpreter.halted, whole.vm.status);
+
+		var first = new TamCode.Run(COUNT);
+		first.vm.cachingRegisters = cachingRegisters;
+		first.vm.snapshotName = snapshotName;
+		first.vm.suspendRequested = true;
+		var before = first.run();
+		assertEquals(Interpreter.suspended, first.vm.status);
+		assertTrue(before.length() > 0 && before.length() < expected.length());
+
+		var second = new TamCode.Run(COUNT);
+		second.vm.cachingRegisters = cachingRegisters;
+		Snapshot.restore(second.vm, snapshotName);
+		var after = second.run();
+		assertEquals(Interpreter.halted, second.vm.status);
+		assertEquals(expected, before + after);
+	}
+
+	@Test
+	public void testPeriodicSnapshotsLetTheProgramContinue() throws IOException {
+		var run = new TamCode.Run(COUNT);
+		run.vm.snapshotName = snapshotName;
+		run.vm.snapshotInterval = 5000;
+		var output = run.run();
+		assertEquals(Interpreter.halted, run.vm.status);
+		assertEquals(new TamCode.Run(COUNT).run(), output);
+		assertTrue(Files.exists(Path.of(snapshotName)));
+	}
+
+	@Test
+	public void testOtherProgramIsRefused() throws IOException {
+		var first = new TamCode.Run(COUNT);
+		first.vm.snapshotName = snapshotName;
+		first.vm.suspendRequested = true;
+		first.run();
+
+		var other = COUNT.clone();
+		other[8] = instruction(OpCode.LOADL, 0, 1000);
+		var second = new TamCode.Run(other);
+		assertThrows(IOException.class, () -> Snapshot.restore(second.vm, snapshotName));
+	}
+
+	/* a damaged snapshot is refused, and leaves the machine as it was */
+
+	@Test
+	public void testDamagedRegistersAreRefused() throws IOException {
+		var snapshot = suspendedSnapshot();
+		var st = ByteBuffer.wrap(snapshot).getInt(ST);
+		var registers = new int[][] { { CP, COUNT.length }, { CP, -1 }, { ST, 100000 }, { HT, 0 },
+				{ HT, Interpreter.HB + 1 }, { LB, st + 1 }, { LB, -1 } };
+		for (var register : registers) {
+			var damaged = snapshot.clone();
+			ByteBuffer.wrap(damaged).putInt(register[0], register[1]);
+			assertRefused(damaged);
+		}
+		assertRefused(Arrays.copyOf(snapshot, snapshot.length - 10));
+	}
+
+	@Test
+	public void testDamagedHeapIsRefused() throws IOException {
+		var snapshot = suspendedSnapshot();
+		// the free blocks and heap statistics end the snapshot
+		var heapStart = snapshot.length - 4 - 4 - 4 - 8 - 8;
+		var blocks = new int[][] { { Interpreter.HB - 4, 5 }, { Interpreter.HB - 4, 0 }, { 0, 1 } };
+		for (var block : blocks) {
+			var damaged = ByteBuffer.allocate(snapshot.length + 8);
+			damaged.put(snapshot, 0, heapStart).putInt(1).putInt(block[0]).putInt(block[1]);
+			damaged.put(snapshot, heapStart + 4, snapshot.length - heapStart - 4);
+			assertRefused(damaged.array());
+		}
+		var count = snapshot.clone();
+		ByteBuffer.wrap(count).putInt(heapStart, -1);
+		assertRefused(count);
+	}
+
+	// offsets of the registers, after the magic number, version, code size and hash
+	private static final int CP = 16, ST = 20, HT = 24, LB = 28;
+
+	private byte[] suspendedSnapshot() throws IOException {
+		var first = new TamCode.Run(COUNT);
+		first.vm.snapshotName = snapshotName;
+		first.vm.suspendRequested = true;
+		first.run();
+		return Files.readAllBytes(Path.of(snapshotName));
+	}
+
+	private void assertRefused(byte[] snapshot) throws IOException {
+		Files.write(Path.of(snapshotName), snapshot);
+		var run = new TamCode.Run(COUNT);
+		assertThrows(IOException.class, () -> Snapshot.restore(run.vm, snapshotName));
+		assertEquals(0, run.vm.CP);
+		assertEquals(Interpreter.SB, run.vm.ST);
+		assertEquals(Interpreter.HB, run.vm.HT);
+		assertEquals(new TamCode.Run(COUNT).run(), run.run());
+	}
+}
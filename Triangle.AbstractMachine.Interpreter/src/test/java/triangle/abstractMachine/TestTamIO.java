@@ -0,0 +1,100 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static triangle.abstractMachine.TamCode.call;
+import static triangle.abstractMachine.TamCode.halt;
+import static triangle.abstractMachine.TamCode.instruction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+public class TestTamIO {
+
+	// var n : Integer; getint (var n); putint (n)
+	private static final Instruction[] ECHO_INT = {
+			instruction(OpCode.PUSH, 0, 1),
+			instruction(OpCode.LOADA, 0, Register.SB, 0),
+			call(Primitive.GETINT),
+			instruction(OpCode.LOAD, 1, Register.SB, 0),
+			call(Primitive.PUTINT),
+			halt() };
+
+	private static final String PROMPT = "enter int: " + System.lineSeparator();
+
+	private static TamReader reader(String input) {
+		return new TamReader(new ByteArrayInputStream(input.getBytes()), null);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		var bytes = new ByteArrayOutputStream();
+		var writer = new TamWriter(new PrintStream(bytes));
+		// enough to fill the buffers several times
+		for (var i = -Machine.maxintRep; i <= Machine.maxintRep; i += 7) {
+			writer.writeInt(i);
+			writer.writeChar(' ');
+		}
+		writer.writeLine();
+		writer.flush();
+
+		var reader = reader(bytes.toString());
+		for (var i = -Machine.maxintRep; i <= Machine.maxintRep; i += 7) {
+			assertEquals(i, reader.readInt());
+			assertEquals(' ', reader.lastChar());
+		}
+		assertEquals(bytes.size(), reader.position() + System.lineSeparator().length());
+	}
+
+	@Test
+	public void testWriteInt() {
+		var bytes = new ByteArrayOutputStream();
+		var writer = new TamWriter(new PrintStream(bytes));
+		for (var value : new long[] { 0, 7, -7, 10, 32767, -32767, Long.MAX_VALUE, Long.MIN_VALUE }) {
+			writer.writeInt(value);
+			writer.writeChar(',');
+		}
+		writer.flush();
+		assertEquals("0,7,-7,10,32767,-32767," + Long.MAX_VALUE + "," + Long.MIN_VALUE + ",", bytes.toString());
+		assertEquals(bytes.size(), writer.position());
+	}
+
+	@Test
+	public void testReadInt() throws IOException {
+		var reader = reader("  42\n-17 +5");
+		assertEquals(42, reader.readInt());
+		assertEquals('\n', reader.lastChar());
+		assertEquals(-17, reader.readInt());
+		assertEquals(5, reader.readInt());
+		assertEquals(-1, reader.lastChar());
+	}
+
+	@Test
+	public void testMalformedInput() {
+		assertThrows(IOException.class, () -> reader("x1").readInt());
+		assertThrows(IOException.class, () -> reader("-").readInt());
+		assertThrows(IOException.class, () -> reader("").readInt());
+		assertThrows(IOException.class, () -> reader("32768").readInt());
+	}
+
+	@Test
+	public void testGetIntEchoes() {
+		var run = new TamCode.Run(ECHO_INT, " -123\n");
+		assertEquals(PROMPT + "-123", run.run());
+		assertEquals(Interpreter.halted, run.vm.status);
+	}
+
+	@Test
+	public void testGetIntFailsOnBadInput() {
+		var run = new TamCode.Run(ECHO_INT, "abc");
+		run.run();
+		assertEquals(Interpreter.failedIOError, run.vm.status);
+		run = new TamCode.Run(ECHO_INT, "99999");
+		run.run();
+		assertEquals(Interpreter.failedIOError, run.vm.status);
+	}
+}
@@ -0,0 +1,155 @@
+package triangle.abstractMachine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static triangle.abstractMachine.TamCode.call;
+import static triangle.abstractMachine.TamCode.halt;
+import static triangle.abstractMachine.TamCode.instruction;
+import static triangle.abstractMachine.TamCode.rejection;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestVerifier {
+
+	// calls a routine that, with b, calls itself for ever
+	private static Instruction[] recursion(Instruction... body) {
+		var code = new Instruction[body.length + 4];
+		code[0] = instruction(OpCode.CALL, Register.SB.ordinal(), 2);
+		code[1] = halt();
+		System.arraycopy(body, 0, code, 2, body.length);
+		code[body.length + 2] = instruction(OpCode.CALL, Register.SB.ordinal(), 2);
+		code[body.length + 3] = instruction(OpCode.RETURN, 0, 0);
+		return code;
+	}
+
+	@Test
+	public void testAcceptsValidCode() throws Verifier.InvalidProgramException {
+		var code = new Instruction[] {
+				instruction(OpCode.LOADL, 0, 1),
+				instruction(OpCode.LOADL, 0, 2),
+				call(Primitive.ADD),
+				call(Primitive.PUTINT),
+				halt() };
+		var space = Verifier.verify(code);
+		assertEquals(2, space[0]);
+		assertEquals(1, space[1]);
+		assertEquals(0, space[2]);
+	}
+
+	@Test
+	public void testRejectsJumpOutsideCode() {
+		var message = rejection(instruction(OpCode.JUMP, 0, 5), halt());
+		assertTrue(message, message.startsWith("instruction 0 (JUMP 0 CB 5) goes to 5, outside the code"));
+	}
+
+	@Test
+	public void testRejectsJumpNotRelativeToCB() {
+		var message = rejection(instruction(OpCode.JUMP, 0, Register.SB, 0), halt());
+		assertTrue(message, message.contains("jumps relative to SB, not CB"));
+	}
+
+	@Test
+	public void testRejectsMissingPrimitive() {
+		var message = rejection(new Instruction(OpCode.CALL, Register.PB, 0, Primitive.values().length), halt());
+		assertTrue(message, message.contains("calls a primitive routine that does not exist"));
+	}
+
+	@Test
+	public void testRejectsBadLength() {
+		var message = rejection(instruction(OpCode.LOAD, 256, Register.SB, 0), halt());
+		assertTrue(message, message.contains("has a length outside 0..255"));
+		message = rejection(instruction(OpCode.STORE, -1, Register.SB, 0), halt());
+		assertTrue(message, message.contains("has a length outside 0..255"));
+	}
+
+	@Test
+	public void testRejectsNegativeCounts() {
+		assertTrue(rejection(instruction(OpCode.PUSH, 0, -1), halt()).contains("pushes a negative number"));
+		assertTrue(rejection(instruction(OpCode.POP, 0, -1), halt()).contains("removes a negative number"));
+	}
+
+	@Test
+	public void testRejectsNop() {
+		assertTrue(rejection(instruction(OpCode.NOP, 0, 0), halt()).contains("cannot be executed"));
+	}
+
+	@Test
+	public void testRejectsRunningOffTheEnd() {
+		var message = rejection(instruction(OpCode.LOADL, 0, 1));
+		assertTrue(message, message.contains("runs on past the end of the code"));
+	}
+
+	@Test
+	public void testRejectsCodeLongerThanCodeStore() {
+		var code = new Instruction[Machine.PB - Machine.CB + 1];
+		Arrays.fill(code, halt());
+		var message = rejection(code);
+		assertEquals("the code has 1025 instructions, more than the 1024 the Code Store holds", message);
+	}
+
+	/* code reached from two routines has two heights, so it keeps the usual checks */
+
+	@Test
+	public void testSharedCodeIsUnbounded() throws Verifier.InvalidProgramException {
+		var space = Verifier.verify(new Instruction[] {
+				instruction(OpCode.CALL, Register.SB.ordinal(), 3),
+				instruction(OpCode.CALL, Register.SB.ordinal(), 5),
+				halt(),
+				instruction(OpCode.LOADL, 0, 1),
+				instruction(OpCode.JUMP, 0, 6),
+				instruction(OpCode.LOADL, 0, 2),
+				instruction(OpCode.POP, 0, 1),
+				instruction(OpCode.RETURN, 0, 0) });
+		assertEquals(0, space[0]);
+		assertEquals(1, space[3]);
+		assertEquals(1, space[5]);
+		assertEquals(Verifier.unbounded, space[6]);
+		assertEquals(Verifier.unbounded, space[7]);
+	}
+
+	@Test
+	public void testRejectedProgramIsNotRun() {
+		var run = new TamCode.Run(new Instruction[] { call(Primitive.EOL), instruction(OpCode.JUMP, 0, 9) });
+		assertEquals(Interpreter.rejected, run.vm.status);
+		assertEquals("", run.run());
+	}
+
+	/* a program that runs out of data store fails with failedDataStoreFull */
+
+	@Test
+	public void testBoundedRecursionFillsDataStore() throws Verifier.InvalidProgramException {
+		var code = recursion(instruction(OpCode.LOADL, 0, 1), instruction(OpCode.POP, 0, 1));
+		assertNotEquals(Verifier.unbounded, Verifier.verify(code)[2]);
+		assertFillsDataStore(code);
+	}
+
+	@Test
+	public void testUnboundedRecursionFillsDataStore() throws Verifier.InvalidProgramException {
+		// JUMPI makes the routine's stack height unknown
+		var code = recursion(instruction(OpCode.LOADA, 0, Register.CB, 4), instruction(OpCode.JUMPI, 0, 0));
+		assertEquals(Verifier.unbounded, Verifier.verify(code)[2]);
+		assertFillsDataStore(code);
+	}
+
+	@Test
+	public void testPushesFillDataStore() {
+		// each pass leaves eof () on the stack
+		assertFillsDataStore(new Instruction[] {
+				call(Primitive.EOF),
+				instruction(OpCode.LOADL, 0, 0),
+				instruction(OpCode.JUMPI, 0, 0) });
+	}
+
+	private static void assertFillsDataStore(Instruction[] code) {
+		for (var cachingRegisters : new boolean[] { false, true }) {
+			var run = new TamCode.Run(code);
+			run.vm.cachingRegisters = cachingRegisters;
+			run.run();
+			assertEquals(Interpreter.failedDataStoreFull, run.vm.status);
+			assertTrue(run.vm.ST <= Interpreter.HB);
+		}
+	}
+}
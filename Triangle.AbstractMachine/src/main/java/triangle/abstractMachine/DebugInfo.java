@@ -0,0 +1,198 @@
+package triangle.abstractMachine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * The source lines and routines that the code of an object program was
+ * compiled from, so that the interpreter and disassembler can name them rather
+ * than raw code addresses.
+ *
+ * The table is an optional section of the object file, after its last
+ * instruction. It starts with SECTION_MARKER in place of the next instruction's
+ * op-code, so a program without the section is read exactly as before, and a
+ * loader that finds none has nothing more to do.
+ */
+public final class DebugInfo {
+
+	/**
+	 * Marks the start of the section; it is not a valid op-code.
+	 */
+	public static final int SECTION_MARKER = 0x54444247; // "TDBG"
+
+	// the code from addr onwards, up to the next Line, comes from source line
+	// line; in increasing order of addr
+	private record Line(int addr, int line) {
+	}
+
+	// a routine's code, from its entry to just past its RETURN
+	private record Routine(String name, int start, int end) {
+	}
+
+	private final String sourceName;
+
+	private final ArrayList<Line> lines = new ArrayList<>();
+
+	private final ArrayList<Routine> routines = new ArrayList<>();
+
+	public DebugInfo(String sourceName) {
+		this.sourceName = sourceName;
+	}
+
+	public String getSourceName() {
+		return sourceName;
+	}
+
+	/**
+	 * Records that the code from addr onwards comes from the given source line.
+	 * Lines must be added in increasing order of address.
+	 */
+	public void addLine(int addr, int line) {
+		if (!lines.isEmpty() && lines.get(lines.size() - 1).addr == addr) {
+			// no code came from the last line after all
+			lines.remove(lines.size() - 1);
+		}
+		if (lines.isEmpty() || lines.get(lines.size() - 1).line != line) {
+			lines.add(new Line(addr, line));
+		}
+	}
+
+	/**
+	 * Records the code of a routine, from start up to but not including end.
+	 */
+	public void addRoutine(String name, int start, int end) {
+		routines.add(new Routine(name, start, end));
+	}
+
+	/**
+	 * Adds the lines and routines of part, a table for code that has been moved
+	 * offset words along, after the last line added.
+	 */
+	public void append(DebugInfo part, int offset) {
+		for (var line : part.lines) {
+			addLine(line.addr + offset, line.line);
+		}
+		for (var routine : part.routines) {
+			routines.add(new Routine(routine.name, routine.start + offset, routine.end + offset));
+		}
+	}
+
+	/**
+	 * @return the source line of the code at addr, or 0 if it is not known
+	 */
+	public int lineAt(int addr) {
+		// the last Line at or before addr
+		int low = 0, high = lines.size() - 1, line = 0;
+		while (low <= high) {
+			var middle = (low + high) >>> 1;
+			if (lines.get(middle).addr <= addr) {
+				line = lines.get(middle).line;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return line;
+	}
+
+	/**
+	 * @return whether the code at addr is the first from its source line
+	 */
+	public boolean startsLine(int addr) {
+		var line = lineAt(addr);
+		return line != 0 && (addr == 0 || lineAt(addr - 1) != line);
+	}
+
+	/**
+	 * @return the name of the innermost routine whose code includes addr, or
+	 *         null if it is in the main program
+	 */
+	public String routineAt(int addr) {
+		// a nested routine's code lies within that of the routine around it, and
+		// starts after it
+		Routine innermost = null;
+		for (var routine : routines) {
+			if (routine.start <= addr && addr < routine.end
+					&& (innermost == null || routine.start > innermost.start)) {
+				innermost = routine;
+			}
+		}
+		return (innermost == null) ? null : innermost.name;
+	}
+
+	/**
+	 * @return the name of the routine whose entry is addr, or null if none
+	 */
+	public String routineStartingAt(int addr) {
+		for (var routine : routines) {
+			if (routine.start == addr) {
+				return routine.name;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Describes where the code at addr comes from, as "file:line" followed by
+	 * the routine, if any.
+	 */
+	public String describe(int addr) {
+		var description = new StringBuilder(sourceName);
+		var line = lineAt(addr);
+		if (line != 0) {
+			description.append(':').append(line);
+		}
+		var routine = routineAt(addr);
+		if (routine != null) {
+			description.append(", in ").append(routine);
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Writes the section, marker first, after the last instruction.
+	 */
+	public void write(DataOutputStream output) throws IOException {
+		output.writeInt(SECTION_MARKER);
+		output.writeUTF(sourceName);
+		output.writeInt(lines.size());
+		for (var line : lines) {
+			output.writeInt(line.addr);
+			output.writeInt(line.line);
+		}
+		output.writeInt(routines.size());
+		for (var routine : routines) {
+			output.writeUTF(routine.name);
+			output.writeInt(routine.start);
+			output.writeInt(routine.end);
+		}
+	}
+
+	/**
+	 * Reads the section, once Instruction.read has returned null, which it does
+	 * at the end of the file and after reading the marker.
+	 *
+	 * @return the table, or null if the file has no debug section
+	 */
+	public static DebugInfo read(DataInputStream input) throws IOException {
+		String sourceName;
+		try {
+			sourceName = input.readUTF();
+		} catch (EOFException s) {
+			return null;
+		}
+		var debugInfo = new DebugInfo(sourceName);
+		var lineCount = input.readInt();
+		for (var i = 0; i < lineCount; i++) {
+			debugInfo.lines.add(new Line(input.readInt(), input.readInt()));
+		}
+		var routineCount = input.readInt();
+		for (var i = 0; i < routineCount; i++) {
+			debugInfo.routines.add(new Routine(input.readUTF(), input.readInt(), input.readInt()));
+		}
+		return debugInfo;
+	}
+}
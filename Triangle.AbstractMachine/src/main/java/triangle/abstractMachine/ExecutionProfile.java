@@ -0,0 +1,79 @@
+package triangle.abstractMachine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The number of times each instruction of an object program was executed, as
+ * written by the interpreter's -profile option and read by the disassembler's.
+ *
+ * A profile can only be read against the object program it was made from,
+ * which is checked using a hash of the code.
+ */
+public final class ExecutionProfile {
+
+	private static final int MAGIC = 0x54414D50; // "TAMP"
+
+	private static final int VERSION = 1;
+
+	private ExecutionProfile() {
+	}
+
+	/**
+	 * @return a hash of the first length instructions of code
+	 */
+	public static int codeHash(Instruction[] code, int length) {
+		var hash = 1;
+		for (var addr = Machine.CB; addr < length; addr++) {
+			var instr = code[addr];
+			hash = 31 * hash + instr.opCode.ordinal();
+			hash = 31 * hash + instr.register.ordinal();
+			hash = 31 * hash + instr.length;
+			hash = 31 * hash + instr.operand;
+		}
+		return hash;
+	}
+
+	/**
+	 * Writes the counts of the instructions of code to the named file.
+	 */
+	public static void write(String profileName, Instruction[] code, long[] counts) throws IOException {
+		try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(profileName)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(code.length);
+			output.writeInt(codeHash(code, code.length));
+			for (var count : counts) {
+				output.writeLong(count);
+			}
+		}
+	}
+
+	/**
+	 * Reads the counts of the first length instructions of code from the named
+	 * file. The file is read whole, as the counts of a large program are read
+	 * much more quickly from a buffer than a word at a time from a stream.
+	 */
+	public static long[] read(String profileName, Instruction[] code, int length) throws IOException {
+		var input = ByteBuffer.wrap(Files.readAllBytes(Path.of(profileName)));
+		try {
+			if (input.getInt() != MAGIC || input.getInt() != VERSION) {
+				throw new IOException("not a TAM profile");
+			}
+			if (input.getInt() != length || input.getInt() != codeHash(code, length)) {
+				throw new IOException("profile was made from a different object program");
+			}
+			var counts = new long[length];
+			input.asLongBuffer().get(counts);
+			return counts;
+		} catch (BufferUnderflowException s) {
+			throw new IOException("profile is truncated");
+		}
+	}
+}
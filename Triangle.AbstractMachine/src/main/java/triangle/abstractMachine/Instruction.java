@@ -29,8 +29,8 @@ public class Instruction {
 	// assumed:
 	//
 	// type
-	// OpCode = 0..15; {4 bits unsigned}
-	// Length = 0..255; {8 bits unsigned}
+	// OpCode = 0..18; {5 bits unsigned}
+	// Length = 0..255; {8 bits unsigned, but -255..255 for INCR and LOADPL}
 	// Operand = -32767..+32767; {16 bits signed}
 
 	// Represents TAM instructions.
@@ -46,9 +46,37 @@ public class Instruction {
 		this.operand = operand;
 	}
 
+	public OpCode getOpCode() {
+		return opCode;
+	}
+
+	public Register getRegister() {
+		return register;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getOperand() {
+		return operand;
+	}
+
 	public void setOperand(int operand) {
 		this.operand = operand;
 	}
+
+	// True if the operand is an address in the Code Store, which must be
+	// adjusted when the code is moved.
+	public boolean refersToCode() {
+		if (register != Register.CB) {
+			return false;
+		}
+		return switch (opCode) {
+		case JUMP, JUMPIF, JUMPC, CALL, LOADA -> true;
+		default -> false;
+		};
+	}
 	
 	public void write(DataOutputStream output) throws IOException {
 		output.writeInt(opCode.ordinal());
@@ -57,13 +85,22 @@ public class Instruction {
 		output.writeInt(operand);
 	}
 
+	// Returns null at the end of the object file, or of its instructions when a
+	// DebugInfo section follows them.
 	public static Instruction read(DataInputStream input) throws IOException {
 		try {
-			var opCode = OpCode.values()[input.readInt()];
-			var register = Register.values()[input.readInt()];
+			var opCode = input.readInt();
+			if (opCode == DebugInfo.SECTION_MARKER) {
+				return null;
+			}
+			var register = input.readInt();
 			var length = input.readInt();
 			var operand = input.readInt();
-			return new Instruction(opCode, register, length, operand);
+			var opCodes = OpCode.values();
+			if (opCode < 0 || opCode >= opCodes.length || register < 0 || register >= Register.values().length) {
+				throw new IOException("invalid op-code " + opCode + " or register " + register);
+			}
+			return new Instruction(opCodes[opCode], Register.at(register), length, operand);
 		} catch (EOFException s) {
 			return null;
 		}
@@ -1,5 +1,15 @@
 package triangle.abstractMachine;
 
 public enum OpCode {
-	LOAD, LOADA, LOADI, LOADL, STORE, STOREI, CALL, CALLI, RETURN, NOP, PUSH, POP, JUMP, JUMPI, JUMPIF, HALT
+	LOAD, LOADA, LOADI, LOADL, STORE, STOREI, CALL, CALLI, RETURN, NOP, PUSH, POP, JUMP, JUMPI, JUMPIF, HALT,
+
+	// The extended instructions, which the compiler emits only when asked to,
+	// follow the original ones so that their op-codes are unchanged:
+	//
+	// JUMPC (n) d[CB]: pops two words and jumps to d[CB] if the first compares
+	// with the second as the primitive routine n (LT, LE, GE, GT, EQ or NE)
+	// does;
+	// INCR (n) d[r]: adds n, -255..255, to the word at d[r];
+	// LOADPL (n) d[r]: pushes the word at d[r] plus n, -255..255.
+	JUMPC, INCR, LOADPL
 }
@@ -3,5 +3,15 @@ package triangle.abstractMachine;
 /** The primitive routines, listed in Table C3 (P411) of the PLPJ book, and Table 3 of the Triangle guide */
 public enum Primitive {
 	ID, NOT, AND, OR, SUCC, PRED, NEG, ADD, SUB, MULT, DIV, MOD, LT, LE, GE, GT, EQ, NE, EOL, EOF, GET, PUT, GETEOL,
-	PUTEOL, GETINT, PUTINT, NEW, DISPOSE
+	PUTEOL, GETINT, PUTINT, NEW, DISPOSE;
+
+	private static final Primitive[] byDisplacement = values();
+
+	/**
+	 * @param d the displacement of the primitive routine from PB
+	 * @return the primitive routine; unlike values(), this does not copy an array
+	 */
+	public static Primitive at(int d) {
+		return byDisplacement[d];
+	}
 }
@@ -1,5 +1,15 @@
 package triangle.abstractMachine;
 
 public enum Register {
-	CB, CT, PB, PT, SB, ST, HB, HT, LB, L1, L2, L3, L4, L5, L6, CP
+	CB, CT, PB, PT, SB, ST, HB, HT, LB, L1, L2, L3, L4, L5, L6, CP;
+
+	private static final Register[] byNumber = values();
+
+	/**
+	 * @param r the register's number, as in an instruction's n or r field
+	 * @return the register; unlike values(), this does not copy an array
+	 */
+	public static Register at(int r) {
+		return byNumber[r];
+	}
 }
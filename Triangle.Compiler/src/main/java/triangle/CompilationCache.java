@@ -0,0 +1,278 @@
+package triangle;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * An on-disk cache of compilations, shared by any number of compiler
+ * processes.
+ *
+ * An entry is keyed by the source program, the compiler version and the
+ * options that affect the object program (see Key), and holds the object program
+ * (if the compilation succeeded) and the errors reported. Each entry is one
+ * file, written under a temporary name and then renamed into place, so a
+ * reader sees either a whole entry or none. An entry's modification time is
+ * updated when it is used, and once the cache grows beyond its size limit the
+ * least recently used entries are deleted. Any entry that cannot be read, for
+ * whatever reason, is treated as missing.
+ */
+public final class CompilationCache {
+
+	// changed whenever the format of an entry changes
+	private static final int MAGIC = 0x54414d01;
+
+	private static final String SUFFIX = ".tamc";
+
+	/**
+	 * A cached compilation.
+	 *
+	 * @param successful    true iff the program had no compile-time errors
+	 * @param diagnostics   the errors and restrictions reported, one per line
+	 * @param objectProgram the object program, or an empty array if there were
+	 *                      errors
+	 */
+	public record Entry(boolean successful, String diagnostics, byte[] objectProgram) {
+	}
+
+	private final Path directory;
+
+	private final long maxBytes;
+
+	public CompilationCache(Path directory, long maxBytes) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * The key for a compilation: the compiler version, the options that affect
+	 * the object program and the source program. Entries are named by a 128-bit
+	 * hash of the key and hold the key itself, which is compared on lookup, so a
+	 * hash collision is a miss rather than a wrong answer. This avoids the cost
+	 * of loading a MessageDigest provider, which in a fresh JVM is more than that
+	 * of compiling a small program.
+	 *
+	 * @param hash  the hash of the key, in hex
+	 * @param bytes the key
+	 */
+	public record Key(String hash, byte[] bytes) {
+
+		public static Key of(byte[] source, String compiler, String options) {
+			// no string concatenation or HexFormat here, as bootstrapping them costs
+			// more than the rest of a lookup
+			var out = new ByteArrayOutputStream(source.length + 64);
+			out.writeBytes(compiler.getBytes(StandardCharsets.UTF_8));
+			out.write(0);
+			out.writeBytes(options.getBytes(StandardCharsets.UTF_8));
+			out.write(0);
+			out.writeBytes(source);
+			var bytes = out.toByteArray();
+			return new Key(hexHash(bytes), bytes);
+		}
+	}
+
+	// a 128-bit hash of the bytes, in hex
+	private static String hexHash(byte[] bytes) {
+		var h1 = 0x9E3779B97F4A7C15L;
+		var h2 = 0xC2B2AE3D27D4EB4FL;
+		for (var b : bytes) {
+			h1 = (h1 ^ (b & 0xff)) * 0x100000001B3L;
+			h2 = Long.rotateLeft(h2 ^ (b & 0xff), 29) * 0x9E3779B97F4A7C15L;
+		}
+		h1 = mix(h1 ^ bytes.length);
+		h2 = mix(h2 + h1);
+		var hex = new char[32];
+		for (var i = 0; i < 16; i++) {
+			hex[i] = Character.forDigit((int) (h1 >>> (60 - 4 * i)) & 0xf, 16);
+			hex[16 + i] = Character.forDigit((int) (h2 >>> (60 - 4 * i)) & 0xf, 16);
+		}
+		return new String(hex);
+	}
+
+	// the finalisation step of MurmurHash3
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * A fingerprint of a build: a hash of the contents of jars, or of the class
+	 * files in directories, such as those that classes were loaded from. It is
+	 * meant to be part of a key's compiler version, so that a compiler that has
+	 * been rebuilt does not use what an earlier build stored.
+	 *
+	 * @throws IOException if a location cannot be read
+	 */
+	public static String fingerprint(Path... locations) throws IOException {
+		var out = new ByteArrayOutputStream();
+		for (var location : locations) {
+			if (Files.isDirectory(location)) {
+				var files = new ArrayList<Path>();
+				// a visitor rather than Files.walk, whose lambdas are slow to
+				// bootstrap in a fresh JVM
+				Files.walkFileTree(location, new SimpleFileVisitor<>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+						if (file.getFileName().toString().endsWith(".class")) {
+							files.add(file);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+				Collections.sort(files);
+				for (var file : files) {
+					out.writeBytes(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+					out.write(0);
+					out.writeBytes(Files.readAllBytes(file));
+				}
+			} else {
+				out.writeBytes(Files.readAllBytes(location));
+			}
+			out.write(0);
+		}
+		return hexHash(out.toByteArray());
+	}
+
+	/**
+	 * @return the entry for the key, or null if there is none
+	 */
+	public Entry lookup(Key key) {
+		var file = directory.resolve(key.hash() + SUFFIX);
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != key.bytes().length
+					|| !Arrays.equals(in.readNBytes(key.bytes().length), key.bytes())) {
+				return null;
+			}
+			var successful = in.readBoolean();
+			var diagnostics = readBytes(in);
+			var objectProgram = readBytes(in);
+			if (diagnostics == null || objectProgram == null || in.read() != -1) {
+				return null;
+			}
+			touch(file);
+			return new Entry(successful, new String(diagnostics, StandardCharsets.UTF_8), objectProgram);
+		} catch (IOException | RuntimeException e) {
+			// missing, being evicted, truncated or otherwise unusable
+			return null;
+		}
+	}
+
+	// reads a length and that many bytes, or returns null if the entry ends first
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		var length = in.readInt();
+		var bytes = in.readNBytes(length);
+		return (bytes.length == length) ? bytes : null;
+	}
+
+	/**
+	 * Stores an entry, replacing any entry with the same key, then evicts entries
+	 * if the cache is over its size limit. Failures are reported on stderr but
+	 * are otherwise ignored, as the cache is only an optimisation.
+	 */
+	public void store(Key key, Entry entry) {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			var diagnostics = entry.diagnostics().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(MAGIC);
+			out.writeInt(key.bytes().length);
+			out.write(key.bytes());
+			out.writeBoolean(entry.successful());
+			out.writeInt(diagnostics.length);
+			out.write(diagnostics);
+			out.writeInt(entry.objectProgram().length);
+			out.write(entry.objectProgram());
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // can't happen in memory
+		}
+
+		Path temp = null;
+		try {
+			temp = Files.createTempFile(directory, key.hash(), ".tmp");
+			Files.write(temp, bytes.toByteArray());
+			var file = directory.resolve(key.hash() + SUFFIX);
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+			evict();
+		} catch (IOException e) {
+			System.err.println("Error writing compilation cache: " + e);
+		} finally {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					// left for a later eviction to remove
+				}
+			}
+		}
+	}
+
+	// deletes the least recently used entries until the cache fits its limit
+	private void evict() throws IOException {
+		record Cached(Path file, long size, FileTime used) {
+		}
+		var entries = new ArrayList<Cached>();
+		var total = 0L;
+		try (var files = Files.list(directory)) {
+			for (var file : files.toList()) {
+				try {
+					var name = file.getFileName().toString();
+					if (name.endsWith(SUFFIX)) {
+						var size = Files.size(file);
+						entries.add(new Cached(file, size, Files.getLastModifiedTime(file)));
+						total += size;
+					} else if (name.endsWith(".tmp") && isStale(file)) {
+						// left by a process that died while writing
+						Files.deleteIfExists(file);
+					}
+				} catch (NoSuchFileException e) {
+					// evicted by another process
+				}
+			}
+		}
+		if (total <= maxBytes) {
+			return;
+		}
+		entries.sort(Comparator.comparing(Cached::used));
+		for (var entry : entries) {
+			if (total <= maxBytes) {
+				break;
+			}
+			Files.deleteIfExists(entry.file());
+			total -= entry.size();
+		}
+	}
+
+	private static boolean isStale(Path file) throws IOException {
+		var age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+		return age > 60 * 60 * 1000;
+	}
+
+	private static void touch(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// the entry was used; if it has just been evicted, it does not matter
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package triangle;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for one phase of a compilation, carrying the same
+ * data as the -timings report.
+ */
+@Name("triangle.CompilationPhase")
+@Label("Compilation Phase")
+@Category({ "Triangle", "Compiler" })
+@Description("A phase of compiling a Triangle program")
+final class CompilationPhaseEvent extends Event {
+
+	@Label("Source File")
+	String source;
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Wall Time")
+	@Description("Time spent in the phase, less any phases nested in it")
+	@Timespan(Timespan.NANOSECONDS)
+	long wallTime;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+
+	@Label("Tokens")
+	long tokens;
+
+	@Label("Nodes")
+	@Description("AST nodes created")
+	long nodes;
+
+	@Label("Instructions")
+	long instructions;
+}
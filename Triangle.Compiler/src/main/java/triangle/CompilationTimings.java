@@ -0,0 +1,184 @@
+package triangle;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the wall time, the bytes allocated and the tokens, AST nodes and
+ * instructions produced by each phase of a compilation, and reports them as a
+ * table or as JSON.
+ *
+ * Each phase is also committed as a {@link CompilationPhaseEvent}, so that a
+ * compilation run under JDK Flight Recorder shows its phases even when no
+ * report is asked for. When neither is wanted, the timings are disabled and
+ * cost nothing.
+ */
+public final class CompilationTimings {
+
+	/**
+	 * The measurements for one phase. The counts are of what the phase produced:
+	 * tokens scanned, AST nodes created, and instructions generated or written.
+	 */
+	public record Phase(String name, long nanos, long allocatedBytes, long tokens, long nodes, long instructions) {
+	}
+
+	private static final com.sun.management.ThreadMXBean threads = threadBean();
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+				&& bean.isThreadAllocatedMemorySupported()) {
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return bean;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread so far, or 0 if
+	 *         the JVM does not measure this
+	 */
+	public static long allocatedBytes() {
+		return (threads == null) ? 0 : threads.getCurrentThreadAllocatedBytes();
+	}
+
+	private final String source;
+
+	private final boolean enabled;
+
+	private final List<Phase> phases = new ArrayList<>();
+
+	private long startNanos, startBytes;
+
+	// phases recorded while the current one was running, which are not counted
+	// twice
+	private long nestedNanos, nestedBytes;
+
+	private CompilationPhaseEvent event;
+
+	/**
+	 * @param source  the name of the source file being compiled
+	 * @param enabled false if the phases are not to be measured at all
+	 */
+	public CompilationTimings(String source, boolean enabled) {
+		this.source = source;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return true if phases will be measured: either a report was asked for, or
+	 *         Flight Recorder is recording compilation phase events
+	 */
+	public static boolean wanted(boolean report) {
+		return report || new CompilationPhaseEvent().isEnabled();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Marks the start of a phase.
+	 */
+	public void start() {
+		if (!enabled) {
+			return;
+		}
+		nestedNanos = 0;
+		nestedBytes = 0;
+		event = new CompilationPhaseEvent();
+		event.begin();
+		startBytes = allocatedBytes();
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of the phase started last, and records it, less any phases
+	 * recorded with {@link #addNested} in the meantime.
+	 */
+	public void stop(String name, long tokens, long nodes, long instructions) {
+		if (!enabled) {
+			return;
+		}
+		var nanos = System.nanoTime() - startNanos - nestedNanos;
+		var bytes = allocatedBytes() - startBytes - nestedBytes;
+		event.end();
+		record(event, new Phase(name, nanos, bytes, tokens, nodes, instructions));
+	}
+
+	/**
+	 * Records a phase that was measured while another was running, such as
+	 * scanning, which the parser does a token at a time.
+	 */
+	public void addNested(String name, long nanos, long allocatedBytes, long tokens, long nodes,
+			long instructions) {
+		if (!enabled) {
+			return;
+		}
+		nestedNanos += nanos;
+		nestedBytes += allocatedBytes;
+		record(new CompilationPhaseEvent(), new Phase(name, nanos, allocatedBytes, tokens, nodes, instructions));
+	}
+
+	private void record(CompilationPhaseEvent event, Phase phase) {
+		phases.add(phase);
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.phase = phase.name();
+			event.wallTime = phase.nanos();
+			event.allocated = phase.allocatedBytes();
+			event.tokens = phase.tokens();
+			event.nodes = phase.nodes();
+			event.instructions = phase.instructions();
+			event.commit();
+		}
+	}
+
+	public List<Phase> getPhases() {
+		return phases;
+	}
+
+	public String toTable() {
+		var table = new StringBuilder();
+		table.append(String.format("%-10s %10s %15s %8s %8s %13s%n", "Phase", "Time (ms)", "Allocated (KB)", "Tokens",
+				"Nodes", "Instructions"));
+		long nanos = 0, bytes = 0, tokens = 0, nodes = 0, instructions = 0;
+		for (var phase : phases) {
+			appendRow(table, phase.name(), phase.nanos(), phase.allocatedBytes(), phase.tokens(), phase.nodes(),
+					phase.instructions());
+			nanos += phase.nanos();
+			bytes += phase.allocatedBytes();
+			tokens += phase.tokens();
+			nodes += phase.nodes();
+			// emitting writes the instructions that encoding generated
+			instructions = Math.max(instructions, phase.instructions());
+		}
+		appendRow(table, "total", nanos, bytes, tokens, nodes, instructions);
+		return table.toString();
+	}
+
+	private static void appendRow(StringBuilder table, String name, long nanos, long bytes, long tokens, long nodes,
+			long instructions) {
+		table.append(String.format("%-10s %10.3f %15.1f %8d %8d %13d%n", name, nanos / 1e6, bytes / 1024.0, tokens,
+				nodes, instructions));
+	}
+
+	public String toJson() {
+		var json = new StringBuilder();
+		json.append("{\n  \"source\": ");
+		Json.string(json, source);
+		json.append(",\n  \"phases\": [");
+		for (var i = 0; i < phases.size(); i++) {
+			var phase = phases.get(i);
+			json.append((i == 0) ? "\n" : ",\n");
+			json.append("    {\"phase\": \"").append(phase.name()).append('"');
+			json.append(", \"nanos\": ").append(phase.nanos());
+			json.append(", \"allocatedBytes\": ").append(phase.allocatedBytes());
+			json.append(", \"tokens\": ").append(phase.tokens());
+			json.append(", \"nodes\": ").append(phase.nodes());
+			json.append(", \"instructions\": ").append(phase.instructions()).append('}');
+		}
+		json.append("\n  ]\n}\n");
+		return json.toString();
+	}
+}
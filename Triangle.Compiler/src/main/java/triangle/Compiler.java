@@ -18,6 +18,13 @@
 
 package triangle;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import triangle.abstractMachine.Machine;
+import triangle.abstractSyntaxTrees.AbstractSyntaxTree;
 import triangle.abstractSyntaxTrees.Program;
 import triangle.codeGenerator.Emitter;
 import triangle.codeGenerator.Encoder;
@@ -27,6 +34,7 @@ import triangle.optimiser.SummaryStatistics;
 import triangle.syntacticAnalyzer.Parser;
 import triangle.syntacticAnalyzer.Scanner;
 import triangle.syntacticAnalyzer.SourceFile;
+import triangle.syntacticAnalyzer.SourcePosition;
 import triangle.treeDrawer.Drawer;
 import com.sampullara.cli.Args;
 import com.sampullara.cli.Argument;
@@ -50,6 +58,57 @@ public class Compiler {
     @Argument(description = "Apply constant showStats", required = false)
     static boolean showStats = false;
 
+    @Argument(description = "Skip the right operand of /\\ and \\/ in a condition whenever the left one decides it", required = false)
+    static boolean shortCircuit = false;
+
+    @Argument(description = "Target the extended TAM instructions for comparisons and small increments", required = false)
+    static boolean extendedInstructions = false;
+
+    @Argument(alias = "g", description = "Save the source lines and routines of the code in the object program", required = false)
+    static boolean debugInfo = false;
+
+    @Argument(description = "Compile a library of routines for programs to link, rather than a program", required = false)
+    static boolean library = false;
+
+    @Argument(description = "Link the libraries in this comma-separated list of files into the program", required = false)
+    static String link = null;
+
+    @Argument(description = "Generate the code of the top-level routines in parallel", required = false)
+    static boolean parallelEncoding = false;
+
+    @Argument(value = "timings", description = "Show the time, memory and output of each compilation phase", required = false)
+    static boolean showTimings = false;
+
+    @Argument(description = "Write the phase timings as JSON to this file", required = false)
+    static String timingsJson = null;
+
+    @Argument(description = "Write the errors as JSON to this file", required = false)
+    static String diagnosticsJson = null;
+
+    @Argument(description = "Write the errors as a SARIF log to this file", required = false)
+    static String diagnosticsSarif = null;
+
+    @Argument(description = "Cache compilations in this directory", required = false)
+    static String cache = null;
+
+    @Argument(description = "Size limit of the compilation cache, in megabytes", required = false)
+    static int cacheSize = 64;
+
+    static final String VERSION = "Triangle Compiler (Java Version 2.1)";
+
+    // Changed whenever the object program for a given source and options
+    // changes, so that the compilation cache does not serve code from an
+    // earlier compiler: 2, LOADI through a var parameter loads the whole value;
+    // 3, conditions are compiled into jump chains.
+    static final int CODE_GENERATION = 3;
+
+    private static String compilerVersion = null;
+
+    // The phases recurse once per level of nesting (though not once per command
+    // or declaration of a sequence), so compilation runs on a thread with room
+    // for deeply nested programs.
+    static final long STACK_SIZE = 256L * 1024 * 1024;
+
     /** The filename for the object program, normally obj.tam. */
 
     private static Scanner scanner;
@@ -59,6 +118,7 @@ public class Compiler {
     private static Emitter emitter;
     private static ErrorReporter reporter;
     private static Drawer drawer;
+    private static CompilationTimings timings;
 
     /** The AST representing the source program. */
     private static Program theAST;
@@ -78,7 +138,30 @@ public class Compiler {
      */
     static boolean compileProgram(String sourceName, String objectName, boolean showingAST, boolean showingTable) {
 
-        System.out.println("********** " + "Triangle Compiler (Java Version 2.1)" + " **********");
+        System.out.println("********** " + VERSION + " **********");
+
+        timings = new CompilationTimings(sourceName, CompilationTimings.wanted(showTimings || timingsJson != null));
+        CompilationCache compilationCache = null;
+        CompilationCache.Key cacheKey = null;
+        // the cache keeps diagnostics only as text
+        var structured = diagnosticsJson != null || diagnosticsSarif != null;
+        // and its key does not cover the contents of linked libraries
+        if (cache != null && !showingAST && !showTreeAfter && !showStats && !structured && link == null) {
+            timings.start();
+            try {
+                compilationCache = new CompilationCache(Path.of(cache), cacheSize * 1024L * 1024L);
+                cacheKey = CompilationCache.Key.of(Files.readAllBytes(Path.of(sourceName)), compilerVersion(),
+                        cacheOptions(sourceName));
+            } catch (IOException e) {
+                // compile without the cache; a missing source file is reported below
+                compilationCache = null;
+            }
+            var entry = (compilationCache == null) ? null : compilationCache.lookup(cacheKey);
+            timings.stop("cache lookup", 0, 0, 0);
+            if (entry != null) {
+                return replay(entry, objectName);
+            }
+        }
 
         System.out.println("Syntactic Analysis ...");
         SourceFile source = SourceFile.ofPath(sourceName);
@@ -93,20 +176,44 @@ public class Compiler {
         parser = new Parser(scanner, reporter);
         checker = new Checker(reporter);
         emitter = new Emitter(reporter);
+        if (debugInfo) {
+            emitter.recordDebugInfo(sourceName);
+        }
         encoder = new Encoder(emitter, reporter);
+        encoder.setShortCircuit(shortCircuit);
+        encoder.setExtendedInstructions(extendedInstructions);
         drawer = new Drawer();
+        if (timings.isEnabled()) {
+            scanner.enableTiming(CompilationTimings::allocatedBytes);
+        }
 
         // scanner.enableDebugging();
+        var nodes = AbstractSyntaxTree.getNodesCreated();
+        timings.start();
         theAST = parser.parseProgram(); // 1st pass
+        timings.addNested("scanning", scanner.getScanNanos(), scanner.getScanBytes(), scanner.getTokenCount(), 0, 0);
+        timings.stop("parsing", 0, AbstractSyntaxTree.getNodesCreated() - nodes, 0);
+        if (reporter.getNumErrors() == 0 && link != null) {
+            System.out.println("Linking ...");
+            timings.start();
+            linkLibraries();
+            timings.stop("linking", 0, 0, emitter.getNextInstrAddr() - Machine.CB);
+        }
         if (reporter.getNumErrors() == 0) {
 
             System.out.println("Contextual Analysis ...");
+            nodes = AbstractSyntaxTree.getNodesCreated();
+            timings.start();
             checker.check(theAST); // 2nd pass
+            timings.stop("checking", 0, AbstractSyntaxTree.getNodesCreated() - nodes, 0);
             if (showingAST) {
                 drawer.draw(theAST);
             }
             if (folding) {
+                nodes = AbstractSyntaxTree.getNodesCreated();
+                timings.start();
                 theAST.visit(new ConstantFolder());
+                timings.stop("folding", 0, AbstractSyntaxTree.getNodesCreated() - nodes, 0);
             }
             if (folding && showTreeAfter) {
                 drawer.draw(theAST);
@@ -120,30 +227,215 @@ public class Compiler {
 
             if (reporter.getNumErrors() == 0) {
                 System.out.println("Code Generation ...");
-                encoder.encodeRun(theAST, showingTable); // 3rd pass
+                timings.start();
+                if (parallelEncoding) {
+                    encoder.encodeRunInParallel(theAST, checker.getTypeInterner().getCanonicalTypes()); // 3rd pass
+                } else {
+                    encoder.encodeRun(theAST, showingTable); // 3rd pass
+                }
+                timings.stop("encoding", 0, 0, emitter.getNextInstrAddr() - Machine.CB);
+                if (showStats) {
+                    var interner = checker.getTypeInterner();
+                    System.out.println("Types interned: " + interner.size() + " ("
+                            + hitRate(interner.getHits(), interner.getLookups()) + ")");
+                    System.out.println("Type representation cache: "
+                            + hitRate(encoder.getTypeHits(), encoder.getTypeLookups()));
+                }
             }
         }
 
         boolean successful = (reporter.getNumErrors() == 0);
         if (successful) {
+            timings.start();
             emitter.saveObjectProgram(objectName);
+            timings.stop("emitting", 0, 0, emitter.getNextInstrAddr() - Machine.CB);
             System.out.println("Compilation was successful.");
         } else {
             System.out.println("Compilation was unsuccessful.");
         }
+        if (compilationCache != null) {
+            store(compilationCache, cacheKey, objectName, successful);
+        }
+        writeDiagnostics(sourceName);
+        reportTimings();
         return successful;
     }
 
+    // Links in the libraries named by -link, ahead of the program's own code.
+    // Their exports are entered in a scope around the program, which may
+    // redeclare their names.
+    private static void linkLibraries() {
+        checker.openProgramScope();
+        for (var libraryName : link.split(",")) {
+            try {
+                if (!Library.read(libraryName).link(checker, encoder, emitter, reporter)) {
+                    return;
+                }
+            } catch (IOException e) {
+                reporter.reportError("can't link library \"%\": " + e.getMessage(), libraryName, new SourcePosition());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Compile the source of a library to a library file (see Library).
+     *
+     * @param sourceName  the name of the file containing the library's source.
+     * @param libraryName the name of the library file.
+     * @return true iff the library is free of compile-time errors, otherwise
+     *         false.
+     */
+    static boolean compileLibrary(String sourceName, String libraryName) {
+
+        System.out.println("********** " + VERSION + " **********");
+
+        byte[] source = null;
+        try {
+            source = Files.readAllBytes(Path.of(sourceName));
+        } catch (IOException e) {
+            System.out.println("Can't access source file " + sourceName);
+            System.exit(1);
+        }
+
+        System.out.println("Compiling library ...");
+        reporter = new ErrorReporter(false);
+        var compiled = Library.compile(source, reporter, folding, shortCircuit);
+        var successful = compiled != null;
+        if (successful) {
+            try {
+                compiled.write(libraryName);
+            } catch (IOException e) {
+                System.err.println("Error writing library file: " + e);
+            }
+            System.out.println("Compilation was successful.");
+        } else {
+            System.out.println("Compilation was unsuccessful.");
+        }
+        writeDiagnostics(sourceName);
+        return successful;
+    }
+
+    private static void writeDiagnostics(String sourceName) {
+        try {
+            if (diagnosticsJson != null) {
+                Files.writeString(Path.of(diagnosticsJson),
+                        DiagnosticsWriter.toJson(sourceName, reporter.getDiagnostics()));
+            }
+            if (diagnosticsSarif != null) {
+                Files.writeString(Path.of(diagnosticsSarif),
+                        DiagnosticsWriter.toSarif(sourceName, reporter.getDiagnostics()));
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing diagnostics file: " + e);
+        }
+    }
+
+    // The options that change the object program, which are part of the key
+    // for the compilation cache. (A StringBuilder rather than +, which is slow
+    // to bootstrap in a fresh JVM, and a cache hit should be quick.)
+    private static String cacheOptions(String sourceName) {
+        var options = new StringBuilder();
+        options.append("folding=").append(folding);
+        if (shortCircuit) {
+            options.append(",shortCircuit=true");
+        }
+        if (extendedInstructions) {
+            options.append(",extendedInstructions=true");
+        }
+        if (debugInfo) {
+            // the source file name is saved in the object program
+            options.append(",debugInfo=").append(sourceName);
+        }
+        return options.toString();
+    }
+
+    // The compiler version in the key for the compilation cache: VERSION, the
+    // code generation and a fingerprint of the classes of the compiler and the
+    // abstract machine, found once per run. Without the fingerprint (if the
+    // classes' location can't be read) a rebuilt compiler is told apart only by
+    // the code generation.
+    static String compilerVersion() {
+        if (compilerVersion == null) {
+            var version = new StringBuilder(VERSION).append(" codegen ").append(CODE_GENERATION);
+            try {
+                version.append(' ').append(CompilationCache.fingerprint(location(Compiler.class), location(Machine.class)));
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // no fingerprint
+            }
+            compilerVersion = version.toString();
+        }
+        return compilerVersion;
+    }
+
+    // the jar or directory that a class was loaded from
+    private static Path location(Class<?> c) throws URISyntaxException {
+        return Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    // writes out a compilation found in the cache, as if it had just been made
+    private static boolean replay(CompilationCache.Entry entry, String objectName) {
+        System.out.println("Using cached compilation ...");
+        System.out.print(entry.diagnostics());
+        var successful = entry.successful();
+        if (successful) {
+            timings.start();
+            try {
+                Files.write(Path.of(objectName), entry.objectProgram());
+            } catch (IOException e) {
+                System.err.println("Error writing object file: " + e);
+            }
+            timings.stop("emitting", 0, 0, entry.objectProgram().length / 16); // four ints each
+            System.out.println("Compilation was successful.");
+        } else {
+            System.out.println("Compilation was unsuccessful.");
+        }
+        reportTimings();
+        return successful;
+    }
+
+    private static void store(CompilationCache compilationCache, CompilationCache.Key key, String objectName,
+            boolean successful) {
+        var objectProgram = new byte[0];
+        if (successful) {
+            try {
+                objectProgram = Files.readAllBytes(Path.of(objectName));
+            } catch (IOException e) {
+                return; // not saved, so nothing to cache
+            }
+        }
+        compilationCache.store(key, new CompilationCache.Entry(successful, reporter.getTranscript(), objectProgram));
+    }
+
+    private static void reportTimings() {
+        if (showTimings) {
+            System.out.print(timings.toTable());
+        }
+        if (timingsJson != null) {
+            try {
+                Files.writeString(Path.of(timingsJson), timings.toJson());
+            } catch (IOException e) {
+                System.err.println("Error writing timings file: " + e);
+            }
+        }
+    }
+
+    // formats a cache's hits as a count and a percentage of its lookups
+    private static String hitRate(int hits, int lookups) {
+        var percent = (lookups == 0) ? 0.0 : 100.0 * hits / lookups;
+        return String.format("%d of %d lookups hit, %.1f%%", hits, lookups, percent);
+    }
+
     /**
      * Triangle compiler main program.
      *
      * @param args the only command-line argument to the program specifies the
      *             source filename.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
 
         if (args.length < 1) {
-            System.out.println("Usage: tc filename [-o outputfilename] [-showTree] [-folding] [-showTreeAfter] [-showStats]");
+            System.out.println("Usage: tc filename [-o outputfilename] [-showTree] [-folding] [-showTreeAfter] [-showStats] [-shortCircuit] [-extendedInstructions] [-debugInfo] [-library] [-link files] [-parallelEncoding] [-timings] [-timingsJson file] [-diagnosticsJson file] [-diagnosticsSarif file] [-cache directory] [-cacheSize megabytes]");
             System.exit(1);
         }
 
@@ -151,11 +443,26 @@ public class Compiler {
         Args.parseOrExit(compiler, args);
 
         String sourceName = args[0];
+        if (library && link != null) {
+            System.out.println("A library can't link other libraries");
+            System.exit(1);
+        }
 
-        var compiledOK = compileProgram(sourceName, objectName, showTree, false);
+        var compiledOK = new boolean[1];
+        var compilation = new Thread(null, () -> {
+            try {
+                compiledOK[0] = library ? compileLibrary(sourceName, objectName)
+                        : compileProgram(sourceName, objectName, showTree, false);
+            } catch (StackOverflowError e) {
+                System.out.println("Program is nested too deeply to compile.");
+                System.out.println("Compilation was unsuccessful.");
+            }
+        }, "compiler", STACK_SIZE);
+        compilation.start();
+        compilation.join();
 
         if (!showTree) {
-            System.exit(compiledOK ? 0 : 1);
+            System.exit(compiledOK[0] ? 0 : 1);
         }
 
     }
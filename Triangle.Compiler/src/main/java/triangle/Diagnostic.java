@@ -0,0 +1,52 @@
+package triangle;
+
+import java.io.Serializable;
+
+/**
+ * An error or restriction reported by the compiler, kept in the form it was
+ * reported in and only formatted when it is printed or written out.
+ *
+ * @param severity  whether it is an error or a restriction
+ * @param template  the message, in which any % stands for the argument
+ * @param argument  the spelling of the token the message is about, or null
+ * @param startLine the first line of the phrase at fault, or 0 if none
+ * @param endLine   the last line of the phrase at fault, or 0 if none
+ */
+public record Diagnostic(Severity severity, String template, String argument, int startLine, int endLine)
+		implements Serializable {
+
+	public enum Severity {
+		ERROR, RESTRICTION
+	}
+
+	/**
+	 * Appends the message, with the argument in place of each %.
+	 */
+	public StringBuilder appendMessage(StringBuilder s) {
+		var from = 0;
+		for (var p = template.indexOf('%'); p >= 0; p = template.indexOf('%', from)) {
+			s.append(template, from, p).append(argument);
+			from = p + 1;
+		}
+		return s.append(template, from, template.length());
+	}
+
+	public String message() {
+		return appendMessage(new StringBuilder(template.length() + 16)).toString();
+	}
+
+	/**
+	 * Appends the diagnostic as the compiler prints it, without a newline.
+	 */
+	public StringBuilder appendTo(StringBuilder s) {
+		if (severity == Severity.RESTRICTION) {
+			return appendMessage(s.append("RESTRICTION: "));
+		}
+		return appendMessage(s.append("ERROR: ")).append(' ').append(startLine).append("..").append(endLine);
+	}
+
+	@Override
+	public String toString() {
+		return appendTo(new StringBuilder(template.length() + 32)).toString();
+	}
+}
@@ -0,0 +1,100 @@
+package triangle;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Writes a compilation's diagnostics as JSON, or as a SARIF 2.1.0 log for
+ * tools (code scanning, editors) that read that format.
+ */
+public final class DiagnosticsWriter {
+
+	private DiagnosticsWriter() {
+	}
+
+	/**
+	 * @param source      the name of the source file
+	 * @param diagnostics the diagnostics, in the order reported
+	 * @return a JSON object with the source name and an array of diagnostics
+	 */
+	public static String toJson(String source, List<Diagnostic> diagnostics) {
+		var json = new StringBuilder(128 + 128 * diagnostics.size());
+		json.append("{\n  \"source\": ");
+		Json.string(json, source);
+		json.append(",\n  \"diagnostics\": [");
+		for (var i = 0; i < diagnostics.size(); i++) {
+			var diagnostic = diagnostics.get(i);
+			json.append((i == 0) ? "\n" : ",\n");
+			json.append("    {\"severity\": \"").append(diagnostic.severity().name().toLowerCase());
+			json.append("\", \"message\": ");
+			Json.string(json, diagnostic.message());
+			json.append(", \"template\": ");
+			Json.string(json, diagnostic.template());
+			json.append(", \"argument\": ");
+			Json.string(json, diagnostic.argument());
+			json.append(", \"startLine\": ").append(diagnostic.startLine());
+			json.append(", \"endLine\": ").append(diagnostic.endLine()).append('}');
+		}
+		json.append(diagnostics.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Errors are SARIF errors, and restrictions, which do not make a compilation
+	 * fail, are warnings. Each distinct message template is a rule, so that tools
+	 * can group results.
+	 *
+	 * @param source      the name of the source file
+	 * @param diagnostics the diagnostics, in the order reported
+	 * @return a SARIF log with one run
+	 */
+	public static String toSarif(String source, List<Diagnostic> diagnostics) {
+		var templates = new LinkedHashMap<String, Integer>();
+		for (var diagnostic : diagnostics) {
+			templates.putIfAbsent(diagnostic.template(), templates.size());
+		}
+
+		// a relative name is left as a relative reference; an absolute one is made
+		// a file URI
+		var uri = source.replace('\\', '/');
+		if (Path.of(source).isAbsolute()) {
+			uri = Path.of(source).toUri().toString();
+		}
+
+		var sarif = new StringBuilder(512 + 256 * diagnostics.size());
+		sarif.append("{\n  \"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\",\n");
+		sarif.append("  \"version\": \"2.1.0\",\n  \"runs\": [{\n");
+		sarif.append("    \"tool\": {\"driver\": {\"name\": \"Triangle Compiler\", \"version\": \"2.1\", \"rules\": [");
+		var first = true;
+		for (var template : templates.keySet()) {
+			sarif.append(first ? "\n" : ",\n");
+			sarif.append("      {\"id\": \"TRI").append(templates.get(template)).append("\", \"shortDescription\": {\"text\": ");
+			Json.string(sarif, template);
+			sarif.append("}}");
+			first = false;
+		}
+		sarif.append(templates.isEmpty() ? "]}},\n" : "\n    ]}},\n");
+		sarif.append("    \"results\": [");
+		for (var i = 0; i < diagnostics.size(); i++) {
+			var diagnostic = diagnostics.get(i);
+			sarif.append((i == 0) ? "\n" : ",\n");
+			sarif.append("      {\"ruleId\": \"TRI").append(templates.get(diagnostic.template()));
+			sarif.append("\", \"level\": \"")
+					.append(diagnostic.severity() == Diagnostic.Severity.ERROR ? "error" : "warning");
+			sarif.append("\", \"message\": {\"text\": ");
+			Json.string(sarif, diagnostic.message());
+			sarif.append("}, \"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": ");
+			Json.string(sarif, uri);
+			sarif.append('}');
+			if (diagnostic.startLine() > 0) {
+				sarif.append(", \"region\": {\"startLine\": ").append(diagnostic.startLine());
+				sarif.append(", \"endLine\": ").append(Math.max(diagnostic.startLine(), diagnostic.endLine()));
+				sarif.append('}');
+			}
+			sarif.append("}}]}");
+		}
+		sarif.append(diagnostics.isEmpty() ? "]\n  }]\n}\n" : "\n    ]\n  }]\n}\n");
+		return sarif.toString();
+	}
+}
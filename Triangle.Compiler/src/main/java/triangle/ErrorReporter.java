@@ -18,48 +18,111 @@
 
 package triangle;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import triangle.syntacticAnalyzer.SourcePosition;
 
+/**
+ * Collects the errors and restrictions reported during a compilation as
+ * Diagnostic records, which are only formatted when they are printed (as they
+ * are reported, unless that is turned off) or written out by
+ * DiagnosticsWriter.
+ */
 public class ErrorReporter {
 
 	private int numErrors;
 	
 	private boolean throwExceptions;
 
+	private final boolean echo;
+
+	private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+	/**
+	 * Thrown for an error, when the reporter was asked to throw exceptions. It
+	 * has no stack trace, as the error is in the program being compiled.
+	 */
+	public static final class CompilationError extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Diagnostic diagnostic;
+
+		CompilationError(Diagnostic diagnostic) {
+			super(null, null, false, false);
+			this.diagnostic = diagnostic;
+		}
+
+		public Diagnostic getDiagnostic() {
+			return diagnostic;
+		}
+
+		@Override
+		public String getMessage() {
+			return diagnostic.toString();
+		}
+	}
+
 	/**
 	 * @param throwExceptions if true, throw exceptions (good for unit tests) otherwise write to stdout
 	 */
 	public ErrorReporter(boolean throwExceptions) {
+		this(throwExceptions, true);
+	}
+
+	/**
+	 * @param throwExceptions if true, throw a CompilationError for each error
+	 * @param echo            if true, print each error and restriction to stdout
+	 *                        as it is reported; if false, they are only
+	 *                        collected, as in batch runs
+	 */
+	public ErrorReporter(boolean throwExceptions, boolean echo) {
 		numErrors = 0;
 		this.throwExceptions = throwExceptions;
+		this.echo = echo;
 	}
 
 	public void reportError(String message, String tokenName, SourcePosition pos) {
-
 		numErrors++;
-		
-		String s = ("ERROR: ");
-
-		for (int p = 0; p < message.length(); p++)
-			if (message.charAt(p) == '%')
-				s += tokenName;
-			else
-				s += message.charAt(p);
-		s += (" " + pos.start + ".." + pos.finish);
-		
+		// the position is read now, as the parser may still be extending it
+		var diagnostic = new Diagnostic(Diagnostic.Severity.ERROR, message, tokenName, pos.start, pos.finish);
+		diagnostics.add(diagnostic);
 		if (throwExceptions) {
-			throw new RuntimeException(s);
-		} else {
-			System.out.println(s);
+			throw new CompilationError(diagnostic);
+		} else if (echo) {
+			System.out.println(diagnostic);
 		}
-		
 	}
 
 	public void reportRestriction(String message) {
-		System.out.println("RESTRICTION: " + message);
+		var diagnostic = new Diagnostic(Diagnostic.Severity.RESTRICTION, message, null, 0, 0);
+		diagnostics.add(diagnostic);
+		if (echo) {
+			System.out.println(diagnostic);
+		}
 	}
 	
 	public int getNumErrors() {
 		return numErrors;
 	}
+
+	/**
+	 * @return the errors and restrictions reported so far, in order
+	 */
+	public List<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * @return the errors and restrictions reported so far, as they are printed,
+	 *         one per line
+	 */
+	public String getTranscript() {
+		var transcript = new StringBuilder();
+		for (var diagnostic : diagnostics) {
+			diagnostic.appendTo(transcript).append('\n');
+		}
+		return transcript.toString();
+	}
 }
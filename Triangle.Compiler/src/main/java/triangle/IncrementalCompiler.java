@@ -0,0 +1,524 @@
+package triangle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import triangle.abstractMachine.Instruction;
+import triangle.abstractMachine.Machine;
+import triangle.abstractMachine.OpCode;
+import triangle.abstractSyntaxTrees.AbstractSyntaxTree;
+import triangle.abstractSyntaxTrees.commands.Command;
+import triangle.abstractSyntaxTrees.declarations.ConstDeclaration;
+import triangle.abstractSyntaxTrees.declarations.Declaration;
+import triangle.abstractSyntaxTrees.declarations.FuncDeclaration;
+import triangle.abstractSyntaxTrees.declarations.ProcDeclaration;
+import triangle.abstractSyntaxTrees.declarations.VarDeclaration;
+import triangle.abstractSyntaxTrees.expressions.Expression;
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.codeGenerator.Frame;
+import triangle.codeGenerator.entities.KnownRoutine;
+import triangle.contextualAnalyzer.Checker;
+import triangle.optimiser.ConstantFolder;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.ProgramRegions;
+import triangle.syntacticAnalyzer.ProgramRegions.Region;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+
+/**
+ * Compiles successive versions of one program, redoing only the work that an
+ * edit makes necessary.
+ *
+ * A program of the form let D1; ...; Dn in C is split into regions, one for
+ * each top-level declaration and one for the command (see ProgramRegions). The
+ * text of a region is its fingerprint. A region whose text is unchanged, and
+ * whose identifiers still refer to the same top-level declarations, keeps the
+ * tree and the checked types from the previous compilation. A routine whose
+ * heading is unchanged keeps its declaration, so that its callers need not be
+ * checked again, and only its body is parsed and checked. The code for a
+ * region is also kept, and copied into place with any calls and jumps between
+ * regions relocated, unless the region was checked again or the storage it
+ * uses has moved. The object program is the same as a full compilation's.
+ *
+ * All compilations must be made with the same IncrementalCompiler, and no
+ * other Checker may be created in between, as the standard environment is
+ * shared.
+ */
+public final class IncrementalCompiler {
+
+	// one region of the last successful compilation
+	private static final class Unit {
+
+		Region region;
+
+		Declaration declaration;
+
+		Command command;
+
+		// for each identifier in the region, the top-level declaration it
+		// referred to, or null for any other declaration
+		Map<String, Declaration> bindings;
+
+		boolean checked, encoded;
+
+		int frameOffset, extraSize;
+
+		// the region's code, and the address of the routine's entry point
+		// relative to its first instruction
+		Instruction[] code;
+
+		int codeStart, entryOffset;
+
+		// for each instruction that refers to a code address, the region-relative
+		// address if it is in this region, else the routine it refers to
+		Map<Integer, Integer> internalTargets;
+
+		Map<Integer, Declaration> externalTargets;
+
+		// a unit for the same declaration in a new version of the program,
+		// leaving this one as it was in case the new version has errors
+		Unit moveTo(Region region) {
+			var unit = new Unit();
+			unit.region = region;
+			unit.declaration = declaration;
+			unit.command = command;
+			unit.bindings = bindings;
+			unit.frameOffset = frameOffset;
+			unit.extraSize = extraSize;
+			unit.code = code;
+			unit.entryOffset = entryOffset;
+			unit.internalTargets = internalTargets;
+			unit.externalTargets = externalTargets;
+			return unit;
+		}
+	}
+
+	private final ErrorReporter reporter;
+
+	private final Checker checker;
+
+	private final boolean folding;
+
+	private List<Unit> units = List.of();
+
+	private Unit commandUnit;
+
+	private Emitter emitter;
+
+	private int reused, grafted, rechecked, reencoded;
+
+	public IncrementalCompiler(ErrorReporter reporter, boolean folding) {
+		this.reporter = reporter;
+		this.checker = new Checker(reporter);
+		this.folding = folding;
+	}
+
+	public boolean compile(String source) {
+		return compile(source.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Compiles a new version of the program. If it has errors, they are
+	 * reported, and the state from the last successful compilation is kept.
+	 *
+	 * @return true iff the program is free of compile-time errors
+	 */
+	public boolean compile(byte[] source) {
+		reused = grafted = rechecked = reencoded = 0;
+		var errors = reporter.getNumErrors();
+		var regions = ProgramRegions.split(source);
+		var split = !regions.getDeclarations().isEmpty();
+
+		// old units, by fingerprint and by routine heading
+		var byText = new HashMap<String, List<Unit>>();
+		var byHeader = new HashMap<String, List<Unit>>();
+		for (var unit : units) {
+			byText.computeIfAbsent(unit.region.text(), k -> new ArrayList<>()).add(unit);
+			if (unit.region.header() != null) {
+				byHeader.computeIfAbsent(unit.region.header(), k -> new ArrayList<>()).add(unit);
+			}
+		}
+
+		var newUnits = new ArrayList<Unit>();
+		var topLevel = new HashMap<String, Declaration>();
+		var grafts = new LinkedHashMap<Declaration, AbstractSyntaxTree>();
+
+		if (split) {
+			checker.openProgramScope();
+		}
+		for (var region : regions.getDeclarations()) {
+			var unit = checkDeclaration(source, region, topLevel, byText, byHeader, grafts);
+			if (unit == null) {
+				break;
+			}
+			topLevel.put(region.declaredName(), unit.declaration);
+			newUnits.add(unit);
+		}
+		Unit command = null;
+		if (reporter.getNumErrors() == errors) {
+			command = checkCommand(source, regions.getCommand(), topLevel);
+		}
+		if (split) {
+			checker.closeProgramScope();
+		}
+
+		if (reporter.getNumErrors() > errors) {
+			// put back the bodies of the routines that were grafted
+			grafts.forEach((declaration, body) -> {
+				if (declaration instanceof ProcDeclaration proc) {
+					proc.C = (Command) body;
+				} else if (declaration instanceof FuncDeclaration func) {
+					func.E = (Expression) body;
+				}
+			});
+			return false;
+		}
+
+		if (!encode(newUnits, command, split)) {
+			// no code can be trusted after a failure here
+			newUnits.forEach(unit -> unit.code = null);
+			command.code = null;
+			units = newUnits;
+			commandUnit = command;
+			return false;
+		}
+		units = newUnits;
+		commandUnit = command;
+		return true;
+	}
+
+	private Unit checkDeclaration(byte[] source, Region region, Map<String, Declaration> topLevel,
+			Map<String, List<Unit>> byText, Map<String, List<Unit>> byHeader,
+			Map<Declaration, AbstractSyntaxTree> grafts) {
+		var bindings = bindings(region, topLevel, null);
+
+		// an unchanged declaration, whose identifiers mean what they did
+		var old = take(byText.get(region.text()), unit -> sameBindings(unit, bindings));
+		if (old != null) {
+			checker.enterDeclaration(old.declaration);
+			removeFrom(byHeader, old);
+			reused++;
+			return old.moveTo(region);
+		}
+
+		var parser = parserFor(source, region);
+
+		// a routine with an unchanged heading and a new body
+		if (region.routine() && region.header() != null) {
+			old = take(byHeader.get(region.header()), unit -> sameHeaderBindings(unit, region, bindings));
+			if (old != null) {
+				var fresh = parser.parseDeclarationRegion();
+				if (fresh == null) {
+					return null;
+				}
+				removeFrom(byText, old);
+				if (old.declaration instanceof ProcDeclaration proc && fresh instanceof ProcDeclaration p) {
+					grafts.putIfAbsent(proc, proc.C);
+					checker.recheckBody(proc, p.C);
+				} else if (old.declaration instanceof FuncDeclaration func && fresh instanceof FuncDeclaration f) {
+					grafts.putIfAbsent(func, func.E);
+					checker.recheckBody(func, f.E);
+				} else {
+					return checkFresh(fresh, region, bindings);
+				}
+				fold(old.declaration);
+				var unit = old.moveTo(region);
+				unit.bindings = bindings(region, topLevel, old.declaration);
+				unit.checked = true;
+				grafted++;
+				return unit;
+			}
+		}
+
+		var fresh = parser.parseDeclarationRegion();
+		if (fresh == null) {
+			return null;
+		}
+		return checkFresh(fresh, region, bindings);
+	}
+
+	private Unit checkFresh(Declaration declaration, Region region, Map<String, Declaration> bindings) {
+		checker.checkDeclaration(declaration);
+		fold(declaration);
+		var unit = new Unit();
+		unit.region = region;
+		unit.declaration = declaration;
+		unit.bindings = region.routine() ? withSelf(bindings, region, declaration) : bindings;
+		unit.checked = true;
+		rechecked++;
+		return unit;
+	}
+
+	private Unit checkCommand(byte[] source, Region region, Map<String, Declaration> topLevel) {
+		var bindings = bindings(region, topLevel, null);
+		var old = commandUnit;
+		if (old != null && old.region.text().equals(region.text()) && sameBindings(old, bindings)) {
+			reused++;
+			return old.moveTo(region);
+		}
+		var command = parserFor(source, region).parseCommandRegion();
+		if (command == null) {
+			return null;
+		}
+		checker.checkCommand(command);
+		if (folding) {
+			command.visit(new ConstantFolder());
+		}
+		var unit = new Unit();
+		unit.region = region;
+		unit.command = command;
+		unit.bindings = bindings;
+		unit.checked = true;
+		rechecked++;
+		return unit;
+	}
+
+	private Parser parserFor(byte[] source, Region region) {
+		var file = SourceFile.ofBytes(source, region.start(), region.end(), region.firstLine());
+		return new Parser(new Scanner(file), reporter);
+	}
+
+	private void fold(Declaration declaration) {
+		if (folding) {
+			declaration.visit(new ConstantFolder());
+		}
+	}
+
+	// the top-level declarations the identifiers of a region refer to; a
+	// routine's own identifier refers to itself, as it may be recursive
+	private static Map<String, Declaration> bindings(Region region, Map<String, Declaration> topLevel,
+			Declaration self) {
+		var bindings = new HashMap<String, Declaration>();
+		for (var name : region.names()) {
+			bindings.put(name, topLevel.get(name));
+		}
+		return self == null ? bindings : withSelf(bindings, region, self);
+	}
+
+	private static Map<String, Declaration> withSelf(Map<String, Declaration> bindings, Region region,
+			Declaration self) {
+		bindings.put(region.declaredName(), self);
+		return bindings;
+	}
+
+	private static boolean sameBindings(Unit unit, Map<String, Declaration> bindings) {
+		for (var entry : bindings.entrySet()) {
+			var declaration = entry.getValue();
+			if (unit.declaration != null && entry.getKey().equals(unit.region.declaredName())
+					&& unit.region.routine()) {
+				// a routine refers to itself
+				declaration = unit.declaration;
+			}
+			if (unit.bindings.get(entry.getKey()) != declaration) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean sameHeaderBindings(Unit unit, Region region, Map<String, Declaration> bindings) {
+		for (var name : region.headerNames()) {
+			if (name.equals(region.declaredName())) {
+				continue;
+			}
+			if (!unit.bindings.containsKey(name) || unit.bindings.get(name) != bindings.get(name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private interface UnitTest {
+		boolean test(Unit unit);
+	}
+
+	private static Unit take(List<Unit> candidates, UnitTest test) {
+		if (candidates == null) {
+			return null;
+		}
+		for (var i = 0; i < candidates.size(); i++) {
+			if (test.test(candidates.get(i))) {
+				return candidates.remove(i);
+			}
+		}
+		return null;
+	}
+
+	private static void removeFrom(Map<String, List<Unit>> index, Unit unit) {
+		for (var candidates : index.values()) {
+			if (candidates.remove(unit)) {
+				return;
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+
+	// Generates the code for the whole program, copying the code of regions
+	// that can be reused. Returns false if a restriction was violated.
+	private boolean encode(List<Unit> declarations, Unit command, boolean split) {
+		var errors = reporter.getNumErrors();
+		emitter = new Emitter(reporter);
+		var encoder = new Encoder(emitter, reporter);
+		owners.clear();
+		routines.clear();
+		for (var unit : declarations) {
+			owners.put(unit.declaration, unit);
+		}
+
+		var frameOffset = 0;
+		for (var unit : declarations) {
+			var start = emitter.getNextInstrAddr();
+			if (canReuse(unit, frameOffset)) {
+				copy(unit, start);
+				if (unit.declaration.entity instanceof KnownRoutine) {
+					unit.declaration.entity = new KnownRoutine(Machine.closureSize, 0, start + unit.entryOffset);
+				}
+				unit.encoded = false;
+			} else {
+				unit.extraSize = encoder.encodeDeclaration(unit.declaration, Frame.Initial.expand(frameOffset));
+				record(unit, start);
+				unit.encoded = true;
+				reencoded++;
+			}
+			if (unit.declaration.entity instanceof KnownRoutine routine) {
+				routines.put(routine.getAddress().getDisplacement(), unit.declaration);
+			}
+			unit.frameOffset = frameOffset;
+			frameOffset += unit.extraSize;
+		}
+
+		var start = emitter.getNextInstrAddr();
+		if (canReuse(command, frameOffset)) {
+			copy(command, start);
+		} else {
+			encoder.encodeCommand(command.command, Frame.Initial.expand(frameOffset));
+			record(command, start);
+			reencoded++;
+		}
+		command.frameOffset = frameOffset;
+		if (split && frameOffset > 0) {
+			emitter.emit(OpCode.POP, frameOffset);
+		}
+		emitter.emit(OpCode.HALT);
+
+		// calls into routines that have moved since a region was encoded
+		for (var unit : declarations) {
+			relocate(unit);
+		}
+		relocate(command);
+		return reporter.getNumErrors() == errors;
+	}
+
+	// A region's code can be copied if neither it nor the storage it refers to
+	// has changed. Routines refer to top-level storage only through the
+	// declarations they use, and their own storage is relative to LB.
+	private boolean canReuse(Unit unit, int frameOffset) {
+		if (unit.checked || unit.code == null) {
+			return false;
+		}
+		var routine = unit.declaration instanceof ProcDeclaration || unit.declaration instanceof FuncDeclaration;
+		if (!routine && unit.frameOffset != frameOffset) {
+			return false;
+		}
+		for (var declaration : unit.bindings.values()) {
+			if (declaration == null || declaration == unit.declaration) {
+				continue;
+			}
+			var owner = owners.get(declaration);
+			if (owner != null && owner.encoded
+					&& (declaration instanceof VarDeclaration || declaration instanceof ConstDeclaration)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the unit of each top-level declaration, and the routine at each entry
+	// point encoded so far
+	private final Map<Declaration, Unit> owners = new IdentityHashMap<>();
+
+	private final Map<Integer, Declaration> routines = new HashMap<>();
+
+	// copies a region's code to the end of the code store, leaving addresses
+	// outside the region to be relocated
+	private void copy(Unit unit, int start) {
+		for (var i = 0; i < unit.code.length; i++) {
+			var instruction = unit.code[i];
+			var operand = instruction.getOperand();
+			var internal = unit.internalTargets.get(i);
+			if (internal != null) {
+				operand = start + internal;
+			}
+			emitter.emit(instruction.getOpCode(), instruction.getLength(), instruction.getRegister(), operand);
+		}
+		unit.codeStart = start;
+	}
+
+	// keeps a copy of a region's code just generated, noting which instructions
+	// refer to code addresses
+	private void record(Unit unit, int start) {
+		var end = emitter.getNextInstrAddr();
+		unit.code = new Instruction[end - start];
+		unit.internalTargets = new HashMap<>();
+		unit.externalTargets = new HashMap<>();
+		unit.codeStart = start;
+		unit.entryOffset = 0;
+		if (unit.declaration != null && unit.declaration.entity instanceof KnownRoutine routine) {
+			unit.entryOffset = routine.getAddress().getDisplacement() - start;
+		}
+		for (var addr = start; addr < end; addr++) {
+			var instruction = Machine.code[addr];
+			unit.code[addr - start] = instruction;
+			if (!instruction.refersToCode()) {
+				continue;
+			}
+			var target = instruction.getOperand();
+			if (target >= start && target <= end) {
+				unit.internalTargets.put(addr - start, target - start);
+			} else {
+				var routine = routines.get(target);
+				if (routine != null) {
+					unit.externalTargets.put(addr - start, routine);
+				}
+			}
+		}
+	}
+
+	private void relocate(Unit unit) {
+		for (var entry : unit.externalTargets.entrySet()) {
+			var routine = (KnownRoutine) entry.getValue().entity;
+			Machine.code[unit.codeStart + entry.getKey()].setOperand(routine.getAddress().getDisplacement());
+		}
+	}
+
+	public void saveObjectProgram(String objectName) {
+		emitter.saveObjectProgram(objectName);
+	}
+
+	/** @return the number of regions whose checked tree was reused */
+	public int getReused() {
+		return reused;
+	}
+
+	/** @return the number of routines whose body alone was checked again */
+	public int getGrafted() {
+		return grafted;
+	}
+
+	/** @return the number of regions parsed and checked from scratch */
+	public int getRechecked() {
+		return rechecked;
+	}
+
+	/** @return the number of regions whose code was generated again */
+	public int getReencoded() {
+		return reencoded;
+	}
+}
@@ -0,0 +1,33 @@
+package triangle;
+
+/**
+ * Writes JSON strings, for the compiler's JSON and SARIF reports.
+ */
+final class Json {
+
+	private Json() {
+	}
+
+	/**
+	 * Appends a string as a JSON string literal, or null, escaping quotes,
+	 * backslashes and control characters.
+	 */
+	static void string(StringBuilder json, String s) {
+		if (s == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (var i = 0; i < s.length(); i++) {
+			var ch = s.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				json.append('\\').append(ch);
+			} else if (ch < ' ') {
+				json.append("\\u00").append(Character.forDigit(ch >> 4, 16)).append(Character.forDigit(ch & 0xf, 16));
+			} else {
+				json.append(ch);
+			}
+		}
+		json.append('"');
+	}
+}
@@ -0,0 +1,223 @@
+package triangle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import triangle.abstractMachine.Instruction;
+import triangle.abstractMachine.Machine;
+import triangle.abstractSyntaxTrees.declarations.ConstDeclaration;
+import triangle.abstractSyntaxTrees.declarations.Declaration;
+import triangle.abstractSyntaxTrees.declarations.FuncDeclaration;
+import triangle.abstractSyntaxTrees.declarations.ProcDeclaration;
+import triangle.abstractSyntaxTrees.declarations.VarDeclaration;
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.codeGenerator.Frame;
+import triangle.codeGenerator.entities.KnownRoutine;
+import triangle.contextualAnalyzer.Checker;
+import triangle.optimiser.ConstantFolder;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.ProgramRegions;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+import triangle.syntacticAnalyzer.SourcePosition;
+
+/**
+ * A library of routines, compiled once and linked into any number of programs.
+ *
+ * A library's source has the form of a program, let D1; ...; Dn in C. Its
+ * top-level declarations may be types, constants with literal values, and
+ * routines, all of which it exports; it has no storage of its own, so that its
+ * code can run under any program's globals. The command is checked, so it can
+ * be used to try the routines out, but is not part of the library.
+ *
+ * The library file holds the code of the routines, compiled as if it started
+ * at CB, and the exports: the text of each declaration, which for a routine is
+ * just its heading, and a routine's entry point or a constant's value. A
+ * program that links the library checks its own calls against the headings,
+ * without checking the routines' bodies again, and has the library's code
+ * copied to the start of its code store, with the addresses in it relocated.
+ * The library's code consists of jumps around its routines, so control falls
+ * through it into the program's own code.
+ */
+public final class Library {
+
+	private static final int MAGIC = 0x544C4942; // "TLIB"
+
+	private static final int VERSION = 1;
+
+	// one top-level declaration: its text, which for a routine is its heading
+	// with a body that is never checked, so that it parses, and the value of a
+	// constant or the entry point of a routine relative to the library's code
+	private record Export(String text, int value) {
+	}
+
+	private final Instruction[] code;
+
+	private final List<Export> exports;
+
+	private Library(Instruction[] code, List<Export> exports) {
+		this.code = code;
+		this.exports = exports;
+	}
+
+	/**
+	 * Compiles the source of a library, with the short-circuit conditions of
+	 * Encoder.setShortCircuit if shortCircuit is true.
+	 *
+	 * @return the library, or null if the source has errors
+	 */
+	public static Library compile(byte[] source, ErrorReporter reporter, boolean folding, boolean shortCircuit) {
+		var errors = reporter.getNumErrors();
+		var regions = ProgramRegions.split(source);
+		if (regions.getDeclarations().isEmpty()) {
+			reporter.reportError("a library must have the form \"%\"", "let D1; ...; Dn in C", new SourcePosition(1, 1));
+			return null;
+		}
+
+		var checker = new Checker(reporter);
+		var declarations = new ArrayList<Declaration>();
+		checker.openProgramScope();
+		for (var region : regions.getDeclarations()) {
+			var declaration = parserFor(source, region, reporter).parseDeclarationRegion();
+			if (declaration == null) {
+				return null;
+			}
+			checker.checkDeclaration(declaration);
+			if (folding) {
+				declaration.visit(new ConstantFolder());
+			}
+			if (declaration instanceof VarDeclaration) {
+				reporter.reportError("a library can't declare variable \"%\"", region.declaredName(),
+						declaration.getPosition());
+			} else if (declaration instanceof ConstDeclaration constant && !constant.E.isLiteral()) {
+				reporter.reportError("library constant \"%\" must have a literal value", region.declaredName(),
+						declaration.getPosition());
+			}
+			declarations.add(declaration);
+		}
+		var command = parserFor(source, regions.getCommand(), reporter).parseCommandRegion();
+		if (command == null) {
+			return null;
+		}
+		checker.checkCommand(command);
+		checker.closeProgramScope();
+		if (reporter.getNumErrors() > errors) {
+			return null;
+		}
+
+		var emitter = new Emitter(reporter);
+		var encoder = new Encoder(emitter, reporter);
+		encoder.setShortCircuit(shortCircuit);
+		var exports = new ArrayList<Export>();
+		for (var i = 0; i < declarations.size(); i++) {
+			var declaration = declarations.get(i);
+			var region = regions.getDeclarations().get(i);
+			encoder.encodeDeclaration(declaration, Frame.Initial);
+			if (declaration instanceof ProcDeclaration || declaration instanceof FuncDeclaration) {
+				var entry = ((KnownRoutine) declaration.entity).getAddress().getDisplacement();
+				var body = (declaration instanceof FuncDeclaration) ? " 0" : "";
+				exports.add(new Export(region.header().strip() + body, entry - Machine.CB));
+			} else if (declaration instanceof ConstDeclaration constant) {
+				exports.add(new Export(region.text().strip(), constant.E.getValue()));
+			} else {
+				exports.add(new Export(region.text().strip(), 0));
+			}
+		}
+		if (reporter.getNumErrors() > errors) {
+			return null;
+		}
+		var code = Arrays.copyOfRange(Machine.code, Machine.CB, emitter.getNextInstrAddr());
+		return new Library(code, exports);
+	}
+
+	private static Parser parserFor(byte[] source, ProgramRegions.Region region, ErrorReporter reporter) {
+		var file = SourceFile.ofBytes(source, region.start(), region.end(), region.firstLine());
+		return new Parser(new Scanner(file), reporter);
+	}
+
+	public void write(String libraryName) throws IOException {
+		try (var output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(libraryName)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(code.length);
+			for (var instruction : code) {
+				instruction.write(output);
+			}
+			output.writeInt(exports.size());
+			for (var export : exports) {
+				output.writeUTF(export.text);
+				output.writeInt(export.value);
+			}
+		}
+	}
+
+	public static Library read(String libraryName) throws IOException {
+		try (var input = new DataInputStream(new BufferedInputStream(new FileInputStream(libraryName)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("not a Triangle library");
+			}
+			var code = new Instruction[input.readInt()];
+			for (var i = 0; i < code.length; i++) {
+				code[i] = Instruction.read(input);
+				if (code[i] == null) {
+					throw new IOException("library is truncated");
+				}
+			}
+			var exports = new ArrayList<Export>();
+			var exportCount = input.readInt();
+			for (var i = 0; i < exportCount; i++) {
+				exports.add(new Export(input.readUTF(), input.readInt()));
+			}
+			return new Library(code, exports);
+		}
+	}
+
+	/**
+	 * Links the library into the program being compiled: copies its code to the
+	 * end of the emitter's code store, relocating the addresses in it, and
+	 * enters its exports in the checker's current scope, with the run-time
+	 * representations the encoder needs to use them.
+	 *
+	 * @return false if an export has errors, which are reported
+	 */
+	public boolean link(Checker checker, Encoder encoder, Emitter emitter, ErrorReporter reporter) {
+		var base = emitter.getNextInstrAddr();
+		for (var instruction : code) {
+			var operand = instruction.getOperand();
+			// a library's code refers to no code but its own
+			if (instruction.refersToCode()) {
+				operand += base - Machine.CB;
+			}
+			emitter.emit(instruction.getOpCode(), instruction.getLength(), instruction.getRegister(), operand);
+		}
+
+		var errors = reporter.getNumErrors();
+		for (var export : exports) {
+			var text = export.text.getBytes(StandardCharsets.ISO_8859_1);
+			var parser = new Parser(new Scanner(SourceFile.ofBytes(text, 0, text.length, 1)), reporter);
+			var declaration = parser.parseDeclarationRegion();
+			if (declaration == null) {
+				return false;
+			}
+			checker.importDeclaration(declaration);
+			var routine = declaration instanceof ProcDeclaration || declaration instanceof FuncDeclaration;
+			encoder.importDeclaration(declaration, routine ? base + export.value : export.value);
+		}
+		return reporter.getNumErrors() == errors;
+	}
+
+	/** @return the number of instructions in the library's code */
+	public int getCodeSize() {
+		return code.length;
+	}
+}
@@ -23,11 +23,19 @@ import triangle.syntacticAnalyzer.SourcePosition;
 
 public abstract class AbstractSyntaxTree {
 
+	// the number of nodes created, for the compiler's phase statistics
+	private static long nodesCreated;
+
 	private final SourcePosition position;
 
 	public AbstractSyntaxTree(SourcePosition position) {
 		this.position = position;
 		entity = null;
+		nodesCreated++;
+	}
+
+	public static long getNodesCreated() {
+		return nodesCreated;
 	}
 
 	public SourcePosition getPosition() {
@@ -18,6 +18,10 @@
 
 package triangle.abstractSyntaxTrees.commands;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import triangle.abstractSyntaxTrees.visitors.CommandVisitor;
 import triangle.syntacticAnalyzer.SourcePosition;
 
@@ -33,5 +37,23 @@ public class SequentialCommand extends Command {
 		return v.visitSequentialCommand(this, arg);
 	}
 
+	/**
+	 * Returns the commands of this sequence, in order. The parser builds a long
+	 * sequence as a chain of SequentialCommands down C1, which this follows in a
+	 * loop, so that visitors can go through a sequence of any length without
+	 * recursing once per command.
+	 */
+	public List<Command> flatten() {
+		var commands = new ArrayList<Command>();
+		Command command = this;
+		while (command instanceof SequentialCommand sequence) {
+			commands.add(sequence.C2);
+			command = sequence.C1;
+		}
+		commands.add(command);
+		Collections.reverse(commands);
+		return commands;
+	}
+
 	public final Command C1, C2;
 }
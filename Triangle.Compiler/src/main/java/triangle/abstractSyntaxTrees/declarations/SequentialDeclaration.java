@@ -18,6 +18,10 @@
 
 package triangle.abstractSyntaxTrees.declarations;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import triangle.abstractSyntaxTrees.visitors.DeclarationVisitor;
 import triangle.syntacticAnalyzer.SourcePosition;
 
@@ -33,5 +37,21 @@ public class SequentialDeclaration extends Declaration {
 		return v.visitSequentialDeclaration(this, arg);
 	}
 
+	/**
+	 * Returns the declarations of this sequence, in order, following the chain of
+	 * SequentialDeclarations down D1 in a loop (see SequentialCommand.flatten).
+	 */
+	public List<Declaration> flatten() {
+		var declarations = new ArrayList<Declaration>();
+		Declaration declaration = this;
+		while (declaration instanceof SequentialDeclaration sequence) {
+			declarations.add(sequence.D2);
+			declaration = sequence.D1;
+		}
+		declarations.add(declaration);
+		Collections.reverse(declarations);
+		return declarations;
+	}
+
 	public final Declaration D1, D2;
 }
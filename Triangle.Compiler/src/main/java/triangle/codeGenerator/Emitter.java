@@ -1,11 +1,14 @@
 package triangle.codeGenerator;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 import triangle.ErrorReporter;
+import triangle.abstractMachine.DebugInfo;
 import triangle.abstractMachine.Instruction;
 import triangle.abstractMachine.Machine;
 import triangle.abstractMachine.OpCode;
@@ -25,15 +28,75 @@ public class Emitter {
 
 	int nextInstrAddr;
 
+	// the TAM Code Store, or for an Emitter encoding one part of a program for
+	// a ParallelEncoder, a buffer of its own, which grows as needed and whose
+	// addresses are relocated when it is copied into the Code Store
+	Instruction[] code;
+
+	final boolean buffered;
+
+	// the address of code[0]; a buffer's addresses start where the code
+	// already in the Code Store ends, so that an address below base refers to
+	// that code, which is not relocated, and one from base on to the buffer
+	final int base;
+
+	// DEBUG SECTION
+
+	// the source lines and routines of the code, if they are to be saved with
+	// it; null otherwise
+	DebugInfo debugInfo;
+
+	// the source line of the code being emitted
+	int sourceLine;
+
 	public Emitter(ErrorReporter errorReporter) {
 		this.errorReporter = errorReporter;
 		nextInstrAddr = Machine.CB;
+		code = Machine.code;
+		buffered = false;
+		base = Machine.CB;
+	}
+
+	// an Emitter with a buffer of its own, which records the source lines of its
+	// code if parent does
+	Emitter(Emitter parent, ErrorReporter errorReporter) {
+		this.errorReporter = errorReporter;
+		base = parent.nextInstrAddr;
+		nextInstrAddr = base;
+		code = new Instruction[64];
+		buffered = true;
+		if (parent.debugInfo != null) {
+			debugInfo = new DebugInfo(parent.debugInfo.getSourceName());
+		}
 	}
 
 	public int getNextInstrAddr() {
 		return nextInstrAddr;
 	}
 
+	/**
+	 * Records the source lines and routines of the code emitted from now on, to
+	 * be saved in the object program's debug section.
+	 *
+	 * @param sourceName the name of the source file
+	 */
+	public void recordDebugInfo(String sourceName) {
+		debugInfo = new DebugInfo(sourceName);
+	}
+
+	// Sets the source line of the instructions emitted next.
+	public void setSourceLine(int line) {
+		sourceLine = line;
+	}
+
+	// Records that the code from start to the next instruction address is the
+	// routine with the given name.
+	public void addRoutine(String name, int start) {
+		if (debugInfo != null) {
+			debugInfo.addRoutine(name, start, nextInstrAddr);
+		}
+	}
+
 	public int emit(OpCode op) {
 		return emit(op, 0, Register.CB, 0);
 	}
@@ -85,10 +148,16 @@ public class Emitter {
 		var nextInstr = new Instruction(op, register, length, operand);
 
 		var currentInstrAddr = nextInstrAddr;
-		if (nextInstrAddr == Machine.PB) {
+		if (buffered && nextInstrAddr - base == code.length) {
+			code = Arrays.copyOf(code, code.length * 2);
+		}
+		if (!buffered && nextInstrAddr == Machine.PB) {
 			errorReporter.reportRestriction("too many instructions for code segment");
 		} else {
-			Machine.code[nextInstrAddr++] = nextInstr;
+			if (debugInfo != null && sourceLine > 0) {
+				debugInfo.addLine(nextInstrAddr, sourceLine);
+			}
+			code[nextInstrAddr++ - base] = nextInstr;
 		}
 		return currentInstrAddr;
 
@@ -97,19 +166,31 @@ public class Emitter {
 	// Patches the d-field of the instruction at address addr with the next
 	// instruction address.
 	public void patch(int addr) {
-		Machine.code[addr].setOperand(nextInstrAddr);
+		patch(addr, nextInstrAddr);
+	}
+
+	// sets the operand of the jump at addr to target
+	public void patch(int addr, int target) {
+		// an instruction that did not fit in the code store has been reported as a
+		// restriction already
+		if (buffered || addr < Machine.PB) {
+			code[addr - base].setOperand(target);
+		}
 	}
 
 	/**
-	 * Saves the object program in the given object file.
+	 * Saves the object program in the given object file, followed by its debug
+	 * section if one was recorded.
 	 * 
 	 * @param objectFile the object file
 	 */
 	public void saveObjectProgram(String objectFileName) {
-		try (var objectFile = new FileOutputStream(objectFileName)) {
-			var objectStream = new DataOutputStream(objectFile);
+		try (var objectStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(objectFileName)))) {
 			for (var addr = Machine.CB; addr < nextInstrAddr; addr++) {
-				Machine.code[addr].write(objectStream);
+				code[addr].write(objectStream);
+			}
+			if (debugInfo != null) {
+				debugInfo.write(objectStream);
 			}
 		} catch (FileNotFoundException fnfe) {
 			System.err.println("Error opening object file: " + fnfe);
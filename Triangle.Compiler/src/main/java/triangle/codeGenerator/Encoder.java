@@ -18,6 +18,10 @@
 
 package triangle.codeGenerator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import triangle.ErrorReporter;
 import triangle.StdEnvironment;
 import triangle.abstractMachine.Machine;
@@ -51,6 +55,7 @@ import triangle.abstractSyntaxTrees.expressions.BinaryExpression;
 import triangle.abstractSyntaxTrees.expressions.CallExpression;
 import triangle.abstractSyntaxTrees.expressions.CharacterExpression;
 import triangle.abstractSyntaxTrees.expressions.EmptyExpression;
+import triangle.abstractSyntaxTrees.expressions.Expression;
 import triangle.abstractSyntaxTrees.expressions.IfExpression;
 import triangle.abstractSyntaxTrees.expressions.IntegerExpression;
 import triangle.abstractSyntaxTrees.expressions.LetExpression;
@@ -79,6 +84,7 @@ import triangle.abstractSyntaxTrees.types.RecordTypeDenoter;
 import triangle.abstractSyntaxTrees.types.SimpleTypeDenoter;
 import triangle.abstractSyntaxTrees.types.SingleFieldTypeDenoter;
 import triangle.abstractSyntaxTrees.types.TypeDeclaration;
+import triangle.abstractSyntaxTrees.types.TypeDenoter;
 import triangle.abstractSyntaxTrees.visitors.ActualParameterSequenceVisitor;
 import triangle.abstractSyntaxTrees.visitors.ActualParameterVisitor;
 import triangle.abstractSyntaxTrees.visitors.ArrayAggregateVisitor;
@@ -109,6 +115,17 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 	// Commands
 	@Override
 	public Void visitAssignCommand(AssignCommand ast, Frame frame) {
+		markLine(ast);
+		if (extendedInstructions) {
+			// V := V + c, V := c + V or V := V - c
+			var sum = namePlusLiteral(ast.E);
+			if (sum != null && ast.V instanceof SimpleVname V && V.I.decl == sum.V.I.decl
+					&& V.I.decl.entity instanceof KnownAddress variable) {
+				var address = variable.getAddress();
+				emitter.emit(OpCode.INCR, sum.literal, frame.getDisplayRegister(address), address.getDisplacement());
+				return null;
+			}
+		}
 		var valSize = ast.E.visit(this, frame);
 		encodeStore(ast.V, frame.expand(valSize), valSize);
 		return null;
@@ -116,6 +133,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Void visitCallCommand(CallCommand ast, Frame frame) {
+		markLine(ast);
 		var argsSize = ast.APS.visit(this, frame);
 		ast.I.visit(this, frame.replace(argsSize));
 		return null;
@@ -128,11 +146,11 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Void visitIfCommand(IfCommand ast, Frame frame) {
-		ast.E.visit(this, frame);
-		var jumpifAddr = emitter.emit(OpCode.JUMPIF, Machine.falseRep, Register.CB, 0);
+		markLine(ast);
+		var elseJumps = encodeCondition(ast.E, frame, false);
 		ast.C1.visit(this, frame);
 		var jumpAddr = emitter.emit(OpCode.JUMP, 0, Register.CB, 0);
-		emitter.patch(jumpifAddr);
+		elseJumps.forEach(emitter::patch);
 		ast.C2.visit(this, frame);
 		emitter.patch(jumpAddr);
 		return null;
@@ -152,11 +170,11 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
     public Void visitLoopWhileCommand(LoopWhileCommand ast, Frame frame) {
         var loopAddr = emitter.getNextInstrAddr();
         ast.C1.visit(this, frame);
-        ast.E.visit(this, frame);
-        var exitJump = emitter.emit(OpCode.JUMPIF, Machine.falseRep, Register.CB, 0);
+        markLine(ast.E);
+        var exitJumps = encodeCondition(ast.E, frame, false);
         ast.C2.visit(this, frame);
         emitter.emit(OpCode.JUMP, 0, Register.CB, loopAddr);
-        emitter.patch(exitJump);
+        exitJumps.forEach(emitter::patch);
         return null;
     }
 
@@ -164,39 +182,53 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
     public Void visitRepeatCommand(RepeatCommand ast, Frame frame) {
         var loopAddr = emitter.getNextInstrAddr();
         ast.C.visit(this, frame);
-        ast.E.visit(this, frame);
-        emitter.emit(OpCode.JUMPIF, Machine.falseRep, Register.CB, loopAddr);
+        markLine(ast.E);
+        for (var loopJump : encodeCondition(ast.E, frame, false)) {
+            emitter.patch(loopJump, loopAddr);
+        }
         return null;
     }
 
 	@Override
 	public Void visitSequentialCommand(SequentialCommand ast, Frame frame) {
-		ast.C1.visit(this, frame);
-		ast.C2.visit(this, frame);
+		for (var command : ast.flatten()) {
+			command.visit(this, frame);
+		}
 		return null;
 	}
 
 	@Override
 	public Void visitWhileCommand(WhileCommand ast, Frame frame) {
+		markLine(ast);
 		var jumpAddr = emitter.emit(OpCode.JUMP, 0, Register.CB, 0);
 		var loopAddr = emitter.getNextInstrAddr();
 		ast.C.visit(this, frame);
 		emitter.patch(jumpAddr);
-		ast.E.visit(this, frame);
-		emitter.emit(OpCode.JUMPIF, Machine.trueRep, Register.CB, loopAddr);
+		markLine(ast.E);
+		for (var loopJump : encodeCondition(ast.E, frame, true)) {
+			emitter.patch(loopJump, loopAddr);
+		}
 		return null;
 	}
 
 	// Expressions
 	@Override
 	public Integer visitArrayExpression(ArrayExpression ast, Frame frame) {
-		ast.type.visit(this, frame);
+		sizeOf(ast.type);
 		return ast.AA.visit(this, frame);
 	}
 
 	@Override
 	public Integer visitBinaryExpression(BinaryExpression ast, Frame frame) {
-		var valSize = ast.type.visit(this);
+		var valSize = sizeOf(ast.type);
+		if (extendedInstructions) {
+			var sum = namePlusLiteral(ast);
+			if (sum != null) {
+				var address = sum.address();
+				emitter.emit(OpCode.LOADPL, sum.literal, frame.getDisplayRegister(address), address.getDisplacement());
+				return valSize;
+			}
+		}
 		var valSize1 = ast.E1.visit(this, frame);
 		var frame1 = frame.expand(valSize1);
 		var valSize2 = ast.E2.visit(this, frame1);
@@ -207,7 +239,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitCallExpression(CallExpression ast, Frame frame) {
-		var valSize = ast.type.visit(this);
+		var valSize = sizeOf(ast.type);
 		var argsSize = ast.APS.visit(this, frame);
 		ast.I.visit(this, frame.replace(argsSize));
 		return valSize;
@@ -215,7 +247,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitCharacterExpression(CharacterExpression ast, Frame frame) {
-		var valSize = ast.type.visit(this);
+		var valSize = sizeOf(ast.type);
 		emitter.emit(OpCode.LOADL, ast.CL.getValue());
 		return valSize;
 	}
@@ -227,12 +259,11 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitIfExpression(IfExpression ast, Frame frame) {
-		ast.type.visit(this);
-		ast.E1.visit(this, frame);
-		var jumpifAddr = emitter.emit(OpCode.JUMPIF, Machine.falseRep, Register.CB, 0);
+		sizeOf(ast.type);
+		var elseJumps = encodeCondition(ast.E1, frame, false);
 		var valSize = ast.E2.visit(this, frame);
 		var jumpAddr = emitter.emit(OpCode.JUMP, 0, Register.CB, 0);
-		emitter.patch(jumpifAddr);
+		elseJumps.forEach(emitter::patch);
 		valSize = ast.E3.visit(this, frame);
 		emitter.patch(jumpAddr);
 		return valSize;
@@ -240,14 +271,14 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitIntegerExpression(IntegerExpression ast, Frame frame) {
-		var valSize = ast.type.visit(this);
+		var valSize = sizeOf(ast.type);
 		emitter.emit(OpCode.LOADL, ast.IL.getValue());
 		return valSize;
 	}
 
 	@Override
 	public Integer visitLetExpression(LetExpression ast, Frame frame) {
-		ast.type.visit(this);
+		sizeOf(ast.type);
 		var extraSize = ast.D.visit(this, frame);
 		var frame1 = frame.expand(extraSize);
 		var valSize = ast.E.visit(this, frame1);
@@ -259,13 +290,13 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitRecordExpression(RecordExpression ast, Frame frame) {
-		ast.type.visit(this);
+		sizeOf(ast.type);
 		return ast.RA.visit(this, frame);
 	}
 
 	@Override
 	public Integer visitUnaryExpression(UnaryExpression ast, Frame frame) {
-		var valSize = ast.type.visit(this);
+		var valSize = sizeOf(ast.type);
 		ast.E.visit(this, frame);
 		ast.O.visit(this, frame.replace(valSize));
 		return valSize;
@@ -273,7 +304,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitVnameExpression(VnameExpression ast, Frame frame) {
-		var valSize = ast.type.visit(this);
+		var valSize = sizeOf(ast.type);
 		encodeFetch(ast.V, frame, valSize);
 		return valSize;
 	}
@@ -288,8 +319,9 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 	public Integer visitConstDeclaration(ConstDeclaration ast, Frame frame) {
 		var extraSize = 0;
 		if (ast.E.isLiteral()) {
-			ast.entity = new KnownValue(ast.E.type.getSize(), ast.E.getValue());
+			ast.entity = new KnownValue(sizeOf(ast.E.type), ast.E.getValue());
 		} else {
+			markLine(ast);
 			var valSize = ast.E.visit(this, frame);
 			ast.entity = new UnknownValue(valSize, frame);
 			extraSize = valSize;
@@ -303,8 +335,10 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 		var argsSize = 0;
 		var valSize = 0;
 
+		markLine(ast);
 		var jumpAddr = emitter.emit(OpCode.JUMP, 0, Register.CB, 0);
-		ast.entity = new KnownRoutine(Machine.closureSize, frame.getLevel(), emitter.getNextInstrAddr());
+		var entryAddr = emitter.getNextInstrAddr();
+		setEntry(ast, frame, entryAddr);
 		writeTableDetails(ast);
 		if (frame.getLevel() == Machine.maxRoutineLevel) {
 			reporter.reportRestriction("can't nest routines more than 7 deep");
@@ -312,9 +346,11 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 			var frame1 = frame.push(0);
 			argsSize = ast.FPS.visit(this, frame1);
 			var frame2 = frame.push(Machine.linkDataSize);
+			markLine(ast.E);
 			valSize = ast.E.visit(this, frame2);
 		}
 		emitter.emit(OpCode.RETURN, valSize, argsSize);
+		emitter.addRoutine(ast.I.spelling, entryAddr);
 		emitter.patch(jumpAddr);
 		return 0;
 	}
@@ -322,8 +358,10 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 	@Override
 	public Integer visitProcDeclaration(ProcDeclaration ast, Frame frame) {
 		var argsSize = 0;
+		markLine(ast);
 		var jumpAddr = emitter.emit(OpCode.JUMP, 0, Register.CB, 0);
-		ast.entity = new KnownRoutine(Machine.closureSize, frame.getLevel(), emitter.getNextInstrAddr());
+		var entryAddr = emitter.getNextInstrAddr();
+		setEntry(ast, frame, entryAddr);
 		writeTableDetails(ast);
 		if (frame.getLevel() == Machine.maxRoutineLevel) {
 			reporter.reportRestriction("can't nest routines so deeply");
@@ -334,22 +372,36 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 			ast.C.visit(this, frame2);
 		}
 		emitter.emit(OpCode.RETURN, argsSize);
+		emitter.addRoutine(ast.I.spelling, entryAddr);
 		emitter.patch(jumpAddr);
 		return 0;
 	}
 
+	// A top-level routine being encoded into a buffer of its own keeps the
+	// symbolic entry point by which the other buffers call it (see
+	// ParallelEncoder).
+	private void setEntry(Declaration ast, Frame frame, int entryAddr) {
+		if (ast == symbolicRoutine) {
+			symbolicEntry = entryAddr;
+		} else {
+			ast.entity = new KnownRoutine(Machine.closureSize, frame.getLevel(), entryAddr);
+		}
+	}
+
 	@Override
 	public Integer visitSequentialDeclaration(SequentialDeclaration ast, Frame frame) {
-		var extraSize1 = ast.D1.visit(this, frame);
-		var frame1 = frame.expand(extraSize1);
-		var extraSize2 = ast.D2.visit(this, frame1);
-		return extraSize1 + extraSize2;
+		// each declaration's frame is expanded by those before it
+		var extraSize = 0;
+		for (var declaration : ast.flatten()) {
+			extraSize += declaration.visit(this, frame.expand(extraSize));
+		}
+		return extraSize;
 	}
 
 	@Override
 	public Integer visitTypeDeclaration(TypeDeclaration ast, Frame frame) {
 		// just to ensure the type's representation is decided
-		ast.T.visit(this);
+		sizeOf(ast.T);
 		return 0;
 	}
 
@@ -360,7 +412,8 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitVarDeclaration(VarDeclaration ast, Frame frame) {
-		var extraSize = ast.T.visit(this);
+		var extraSize = sizeOf(ast.T);
+		markLine(ast);
 		emitter.emit(OpCode.PUSH, extraSize);
 		ast.entity = new KnownAddress(Machine.addressSize, frame);
 		writeTableDetails(ast);
@@ -398,7 +451,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 	// Formal Parameters
 	@Override
 	public Integer visitConstFormalParameter(ConstFormalParameter ast, Frame frame) {
-		var valSize = ast.T.visit(this);
+		var valSize = sizeOf(ast.T);
 		ast.entity = new UnknownValue(valSize, frame.getLevel(), -frame.getSize() - valSize);
 		writeTableDetails(ast);
 		return valSize;
@@ -422,7 +475,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitVarFormalParameter(VarFormalParameter ast, Frame frame) {
-		ast.T.visit(this);
+		sizeOf(ast.T);
 		ast.entity = new UnknownAddress(Machine.addressSize, frame.getLevel(), -frame.getSize() - Machine.addressSize);
 		writeTableDetails(ast);
 		return Machine.addressSize;
@@ -500,7 +553,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 	public Integer visitArrayTypeDenoter(ArrayTypeDenoter ast, Frame frame) {
 		int typeSize;
 		if (ast.entity == null) {
-			var elemSize = ast.T.visit(this);
+			var elemSize = sizeOf(ast.T);
 			typeSize = ast.IL.getValue() * elemSize;
 			ast.entity = new TypeRepresentation(typeSize);
 			writeTableDetails(ast);
@@ -551,7 +604,8 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 	public Integer visitRecordTypeDenoter(RecordTypeDenoter ast, Frame frame) {
 		int typeSize;
 		if (ast.entity == null) {
-			typeSize = ast.FT.visit(this, frame);
+			// fields are laid out from offset 0, whatever the enclosing frame
+			typeSize = ast.FT.visit(this, Frame.Initial);
 			ast.entity = new TypeRepresentation(typeSize);
 			writeTableDetails(ast);
 		} else {
@@ -562,14 +616,10 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	@Override
 	public Integer visitMultipleFieldTypeDenoter(MultipleFieldTypeDenoter ast, Frame frame) {
-		if (frame == null) { // in this case, we're just using the frame to wrap up the size
-			frame = Frame.Initial;
-		}
-		
 		var offset = frame.getSize();
 		int fieldSize;
 		if (ast.entity == null) {
-			fieldSize = ast.T.visit(this);
+			fieldSize = sizeOf(ast.T);
 			ast.entity = new Field(fieldSize, offset);
 			writeTableDetails(ast);
 		} else {
@@ -586,7 +636,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 		var offset = frame.getSize();
 		int fieldSize;
 		if (ast.entity == null) {
-			fieldSize = ast.T.visit(this);
+			fieldSize = sizeOf(ast.T);
 			ast.entity = new Field(fieldSize, offset);
 			writeTableDetails(ast);
 		} else {
@@ -643,7 +693,7 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 		var baseObject = ast.V.visit(this, frame);
 		ast.offset = ast.V.offset;
 		ast.indexed = ast.V.indexed;
-		var elemSize = ast.type.visit(this);
+		var elemSize = sizeOf(ast.type);
 		if (ast.E.isLiteral()) {
 			ast.offset = ast.offset + ast.E.getValue() * elemSize;
 		} else {
@@ -678,6 +728,16 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 		elaborateStdEnvironment();
 	}
 
+	// an Encoder for one part of a program, for a ParallelEncoder; the standard
+	// environment has been elaborated already, by the Encoder for the whole
+	Encoder(Emitter emitter, ErrorReporter reporter, Encoder whole) {
+		this.emitter = emitter;
+		this.reporter = reporter;
+		this.tableDetailsReqd = whole.tableDetailsReqd;
+		this.shortCircuit = whole.shortCircuit;
+		this.extendedInstructions = whole.extendedInstructions;
+	}
+
 	private Emitter emitter;
 
 	private ErrorReporter reporter;
@@ -692,10 +752,71 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 		emitter.emit(OpCode.HALT);
 	}
 
+	// Generates the same code as encodeRun, but for a program of the form
+	// let D in C, encodes each top-level routine into a buffer of its own, in
+	// parallel (see ParallelEncoder). types are the program's types, whose
+	// representations are decided first, so that they are only read in parallel.
+	public final void encodeRunInParallel(Program program, Collection<TypeDenoter> types) {
+		new ParallelEncoder(this, emitter, reporter).encodeRun(program, types);
+	}
+
+	// Makes every /\ and \/ in a condition skip its right operand when the left
+	// one decides the result, as in Ada's "and then" and "or else". Without it,
+	// only a right operand that can neither fail nor change anything is skipped,
+	// as that does not change what the program does.
+	public final void setShortCircuit(boolean shortCircuit) {
+		this.shortCircuit = shortCircuit;
+	}
+
+	private boolean shortCircuit;
+
+	// Targets the extended TAM instructions (see OpCode): JUMPC for a
+	// comparison of one-word values in a condition, INCR for V := V + c, and
+	// LOADPL for V + c, where V is a simple name whose place in a frame is
+	// known and c a small Integer literal. A program compiled this way can only
+	// be run by an interpreter that knows them.
+	public final void setExtendedInstructions(boolean extendedInstructions) {
+		this.extendedInstructions = extendedInstructions;
+	}
+
+	private boolean extendedInstructions;
+
+	// set on an Encoder for one top-level routine of a ParallelEncoder: the
+	// routine, and the address of its entry point in its buffer
+	Declaration symbolicRoutine;
+
+	int symbolicEntry;
+
+	// encodeDeclaration and encodeCommand generate code for one region of a
+	// program being compiled incrementally: a top-level declaration, which
+	// returns the space it takes on the stack, or the command.
+
+	public final int encodeDeclaration(Declaration declaration, Frame frame) {
+		return declaration.visit(this, frame);
+	}
+
+	public final void encodeCommand(Command command, Frame frame) {
+		command.visit(this, frame);
+	}
+
+	// Decides the run-time representation of a declaration exported by a
+	// library whose code has been linked in (see triangle.Library): value is a
+	// routine's entry point, or a constant's value.
+	public final void importDeclaration(Declaration declaration, int value) {
+		if (declaration instanceof ProcDeclaration || declaration instanceof FuncDeclaration) {
+			// a library's routines are all declared at the top level
+			declaration.entity = new KnownRoutine(Machine.closureSize, Frame.Initial.getLevel(), value);
+		} else if (declaration instanceof ConstDeclaration constDeclaration) {
+			constDeclaration.entity = new KnownValue(sizeOf(constDeclaration.E.type), value);
+		} else if (declaration instanceof TypeDeclaration typeDeclaration) {
+			sizeOf(typeDeclaration.T);
+		}
+	}
+
 	// Decides run-time representation of a standard constant.
 	private final void elaborateStdConst(ConstDeclaration constDeclaration, int value) {
 
-		var typeSize = constDeclaration.E.type.visit(this);
+		var typeSize = sizeOf(constDeclaration.E.type);
 		constDeclaration.entity = new KnownValue(typeSize, value);
 		writeTableDetails(constDeclaration);
 	}
@@ -752,12 +873,212 @@ public final class Encoder implements ActualParameterVisitor<Frame, Integer>,
 
 	boolean tableDetailsReqd;
 
+	private int typeLookups, typeHits;
+
+	// Returns the size of a type, deciding its run-time representation (and, for
+	// a record, its field offsets) the first time the type is seen. The Checker
+	// interns array and record types, so every phrase of a given type shares one
+	// canonical type node, and the representation cached in it is only worked
+	// out once.
+	int sizeOf(TypeDenoter type) {
+		typeLookups++;
+		if (type.entity != null) {
+			typeHits++;
+			return type.entity.getSize();
+		}
+		return type.visit(this);
+	}
+
+	// adds the type sizes asked for by an Encoder for one part of the program
+	void addTypeCounts(Encoder part) {
+		typeLookups += part.typeLookups;
+		typeHits += part.typeHits;
+	}
+
+	/**
+	 * @return the number of type sizes asked for during code generation
+	 */
+	public int getTypeLookups() {
+		return typeLookups;
+	}
+
+	/**
+	 * @return the number of type sizes found already decided
+	 */
+	public int getTypeHits() {
+		return typeHits;
+	}
+
 	/**
 	 * called by all visitor methods here; could be used to insert debugging information
 	 */
 	public static void writeTableDetails(AbstractSyntaxTree ast) {
 	}
 
+	// Sets the source line of the code for ast, for the debug section of the
+	// object program.
+	private void markLine(AbstractSyntaxTree ast) {
+		var position = ast.getPosition();
+		if (position != null) {
+			emitter.setSourceLine(position.start);
+		}
+	}
+
+	// Generates code to evaluate a condition and jump if its value is sense,
+	// falling through otherwise. Rather than compute a truth value, the code of
+	// a condition made of \, /\ and \/ jumps as soon as the value is known.
+	// Returns the addresses of the jumps, for the caller to patch.
+	private List<Integer> encodeCondition(Expression E, Frame frame, boolean sense) {
+		var jumps = new ArrayList<Integer>();
+		encodeCondition(E, frame, sense, jumps);
+		return jumps;
+	}
+
+	private void encodeCondition(Expression E, Frame frame, boolean sense, List<Integer> jumps) {
+		if (E instanceof UnaryExpression unary && primitiveOf(unary.O) == Primitive.NOT) {
+			encodeCondition(unary.E, frame, !sense, jumps);
+		} else if (E instanceof BinaryExpression binary && isShortCircuit(binary)) {
+			var and = primitiveOf(binary.O) == Primitive.AND;
+			if (and != sense) {
+				// E1 /\ E2 is false, and E1 \/ E2 true, as soon as either operand is
+				encodeCondition(binary.E1, frame, sense, jumps);
+				encodeCondition(binary.E2, frame, sense, jumps);
+			} else {
+				// E1 /\ E2 is true only if both operands are, so E2 is skipped if
+				// E1 is false; and dually for \/
+				var skipJumps = new ArrayList<Integer>();
+				encodeCondition(binary.E1, frame, !sense, skipJumps);
+				encodeCondition(binary.E2, frame, sense, jumps);
+				skipJumps.forEach(emitter::patch);
+			}
+		} else if (extendedInstructions && E instanceof BinaryExpression binary && isWordComparison(binary)) {
+			var valSize1 = binary.E1.visit(this, frame);
+			binary.E2.visit(this, frame.expand(valSize1));
+			var relation = primitiveOf(binary.O);
+			if (!sense) {
+				relation = negationOf(relation);
+			}
+			jumps.add(emitter.emit(OpCode.JUMPC, relation.ordinal(), Register.CB, 0));
+		} else {
+			E.visit(this, frame);
+			jumps.add(emitter.emit(OpCode.JUMPIF, sense ? Machine.trueRep : Machine.falseRep, Register.CB, 0));
+		}
+	}
+
+	// whether E compares two one-word values, which JUMPC can do
+	private boolean isWordComparison(BinaryExpression E) {
+		var primitive = primitiveOf(E.O);
+		if (primitive == null) {
+			return false;
+		}
+		return switch (primitive) {
+		case LT, LE, GE, GT -> true;
+		case EQ, NE -> sizeOf(E.E1.type) == 1;
+		default -> false;
+		};
+	}
+
+	private static Primitive negationOf(Primitive comparison) {
+		return switch (comparison) {
+		case LT -> Primitive.GE;
+		case LE -> Primitive.GT;
+		case GE -> Primitive.LT;
+		case GT -> Primitive.LE;
+		case EQ -> Primitive.NE;
+		default -> Primitive.EQ;
+		};
+	}
+
+	// A simple name V of a one-word value whose place in a frame is known,
+	// and the literal added to it, for INCR and LOADPL.
+	private record NamePlusLiteral(SimpleVname V, int literal) {
+
+		ObjectAddress address() {
+			return (V.I.decl.entity instanceof KnownAddress variable) ? variable.getAddress()
+					: ((UnknownValue) V.I.decl.entity).getAddress();
+		}
+	}
+
+	// the literal an extended instruction can add, at most this in magnitude
+	private static final int maxLiteral = 255;
+
+	// Matches E with V + c, c + V or V - c (when c is taken as negative),
+	// returning null if it has none of these forms.
+	private static NamePlusLiteral namePlusLiteral(Expression E) {
+		if (!(E instanceof BinaryExpression binary)) {
+			return null;
+		}
+		var primitive = primitiveOf(binary.O);
+		if (primitive == Primitive.ADD) {
+			var sum = namePlusLiteral(binary.E1, binary.E2, 1);
+			return (sum != null) ? sum : namePlusLiteral(binary.E2, binary.E1, 1);
+		} else if (primitive == Primitive.SUB) {
+			return namePlusLiteral(binary.E1, binary.E2, -1);
+		}
+		return null;
+	}
+
+	private static NamePlusLiteral namePlusLiteral(Expression name, Expression literal, int sign) {
+		if (name instanceof VnameExpression vname && vname.V instanceof SimpleVname V
+				&& (V.I.decl.entity instanceof KnownAddress || V.I.decl.entity instanceof UnknownValue)
+				&& literal instanceof IntegerExpression && literal.getValue() <= maxLiteral) {
+			return new NamePlusLiteral(V, sign * literal.getValue());
+		}
+		return null;
+	}
+
+	private boolean isShortCircuit(BinaryExpression E) {
+		var primitive = primitiveOf(E.O);
+		return (primitive == Primitive.AND || primitive == Primitive.OR) && (shortCircuit || isInert(E.E2));
+	}
+
+	// Whether evaluating E can neither fail nor change anything, so that the
+	// program does the same if it is skipped. Arithmetic can overflow, an
+	// index can be out of range, and a call can do anything.
+	private static boolean isInert(Expression E) {
+		if (E instanceof IntegerExpression || E instanceof CharacterExpression) {
+			return true;
+		} else if (E instanceof VnameExpression vname) {
+			return isInert(vname.V);
+		} else if (E instanceof UnaryExpression unary) {
+			return isInert(primitiveOf(unary.O)) && isInert(unary.E);
+		} else if (E instanceof BinaryExpression binary) {
+			return isInert(primitiveOf(binary.O)) && isInert(binary.E1) && isInert(binary.E2);
+		} else if (E instanceof IfExpression ifExpression) {
+			return isInert(ifExpression.E1) && isInert(ifExpression.E2) && isInert(ifExpression.E3);
+		}
+		return false;
+	}
+
+	private static boolean isInert(Vname V) {
+		if (V instanceof DotVname dot) {
+			return isInert(dot.V);
+		} else if (V instanceof SubscriptVname subscript) {
+			return subscript.E.isLiteral() && isInert(subscript.V);
+		}
+		return true;
+	}
+
+	private static boolean isInert(Primitive primitive) {
+		if (primitive == null) {
+			return false;
+		}
+		return switch (primitive) {
+		case ID, NOT, AND, OR, LT, LE, GE, GT, EQ, NE -> true;
+		default -> false;
+		};
+	}
+
+	// the primitive routine an operator stands for, or null if it is not one
+	private static Primitive primitiveOf(Operator O) {
+		if (O.decl.entity instanceof PrimitiveRoutine routine) {
+			return routine.getPrimitive();
+		} else if (O.decl.entity instanceof EqualityRoutine routine) {
+			return routine.getPrimitive();
+		}
+		return null;
+	}
+
 	// Generates code to pop the top off the stack
 	// and store the value in a named constant or variable
 	// frame the local stack frame when
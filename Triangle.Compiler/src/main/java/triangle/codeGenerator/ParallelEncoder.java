@@ -0,0 +1,245 @@
+package triangle.codeGenerator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import triangle.ErrorReporter;
+import triangle.abstractMachine.Machine;
+import triangle.abstractMachine.OpCode;
+import triangle.abstractSyntaxTrees.Program;
+import triangle.abstractSyntaxTrees.commands.Command;
+import triangle.abstractSyntaxTrees.commands.LetCommand;
+import triangle.abstractSyntaxTrees.declarations.Declaration;
+import triangle.abstractSyntaxTrees.declarations.FuncDeclaration;
+import triangle.abstractSyntaxTrees.declarations.ProcDeclaration;
+import triangle.abstractSyntaxTrees.declarations.SequentialDeclaration;
+import triangle.abstractSyntaxTrees.types.TypeDenoter;
+import triangle.codeGenerator.entities.KnownRoutine;
+import triangle.syntacticAnalyzer.SourcePosition;
+
+/**
+ * Generates the code of a program of the form let D1; ...; Dn in C with each
+ * top-level routine, and the command, encoded into a buffer of its own on the
+ * common fork-join pool (unless it has only one thread, when they are encoded
+ * in turn), then links the buffers into the Code Store in the order the
+ * sequential Encoder would have generated them. The object program,
+ * debug section included, is the same as the Encoder's.
+ *
+ * Before the buffers are encoded, each top-level routine is given a symbolic
+ * entry point, a negative code address that stands for it, and the other
+ * top-level declarations, which take storage and so must be elaborated in
+ * order, are encoded one after another. Every buffer's addresses are then
+ * numbered as if it started where the code already in the Code Store (that of
+ * a linked library, say) ends, except those of the calls to and closures of
+ * top-level routines, which are symbolic. The link step relocates the buffer's
+ * own addresses, resolves the symbolic ones, and leaves those of the code
+ * before it alone.
+ *
+ * Each buffer has its own Encoder, Emitter and ErrorReporter, whose
+ * restrictions are reported in order once all are done. The tasks share only
+ * what was decided before they started: the types' representations and the
+ * entities of the top-level declarations and the standard environment.
+ */
+final class ParallelEncoder {
+
+	// one top-level declaration, or the command, and the code encoded for it
+	private static final class Part {
+
+		final Declaration declaration;
+
+		final Command command;
+
+		final Frame frame;
+
+		Encoder encoder;
+
+		Emitter emitter;
+
+		ErrorReporter reporter;
+
+		int start;
+
+		boolean overflowed;
+
+		Part(Declaration declaration, Command command, Frame frame) {
+			this.declaration = declaration;
+			this.command = command;
+			this.frame = frame;
+		}
+
+		boolean isRoutine() {
+			return declaration instanceof ProcDeclaration || declaration instanceof FuncDeclaration;
+		}
+	}
+
+	private final Encoder encoder;
+
+	private final Emitter emitter;
+
+	private final ErrorReporter reporter;
+
+	ParallelEncoder(Encoder encoder, Emitter emitter, ErrorReporter reporter) {
+		this.encoder = encoder;
+		this.emitter = emitter;
+		this.reporter = reporter;
+	}
+
+	void encodeRun(Program program, Collection<TypeDenoter> types) {
+		if (!(program.C instanceof LetCommand let)) {
+			encoder.encodeRun(program, false);
+			return;
+		}
+		for (var type : types) {
+			encoder.sizeOf(type);
+		}
+
+		var declarations = (let.D instanceof SequentialDeclaration sequence) ? sequence.flatten() : List.of(let.D);
+		var routines = new ArrayList<Declaration>();
+		for (var declaration : declarations) {
+			if (declaration instanceof ProcDeclaration || declaration instanceof FuncDeclaration) {
+				var entry = symbol(routines.size());
+				declaration.entity = new KnownRoutine(Machine.closureSize, Frame.Initial.getLevel(), entry);
+				routines.add(declaration);
+			}
+		}
+
+		// the other declarations are encoded in order, as each one's storage
+		// follows that of those before it
+		var parts = new ArrayList<Part>();
+		var extraSize = 0;
+		for (var declaration : declarations) {
+			var part = new Part(declaration, null, Frame.Initial.expand(extraSize));
+			prepare(part);
+			if (!part.isRoutine()) {
+				extraSize += part.encoder.encodeDeclaration(declaration, part.frame);
+			}
+			parts.add(part);
+		}
+		var commandPart = new Part(null, let.C, Frame.Initial.expand(extraSize));
+		prepare(commandPart);
+		parts.add(commandPart);
+
+		var tasks = new ArrayList<ForkJoinTask<?>>();
+		for (var part : parts) {
+			if (part.isRoutine() || part.command != null) {
+				tasks.add(ForkJoinTask.adapt(() -> encode(part)));
+			}
+		}
+		if (ForkJoinPool.getCommonPoolParallelism() < 2) {
+			// nothing to gain from handing the tasks to the pool; each is run on
+			// this thread
+			tasks.forEach(ForkJoinTask::invoke);
+		} else {
+			ForkJoinTask.invokeAll(tasks);
+		}
+		for (var part : parts) {
+			if (part.overflowed) {
+				// the pool's threads have smaller stacks than the compiler's own, so
+				// a deeply nested program is encoded again without them
+				encoder.encodeRun(program, false);
+				return;
+			}
+		}
+
+		link(parts, routines);
+		var line = 0;
+		for (var part : parts) {
+			encoder.addTypeCounts(part.encoder);
+			for (var diagnostic : part.reporter.getDiagnostics()) {
+				switch (diagnostic.severity()) {
+				case RESTRICTION -> reporter.reportRestriction(diagnostic.template());
+				default -> reporter.reportError(diagnostic.template(), diagnostic.argument(),
+						new SourcePosition(diagnostic.startLine(), diagnostic.endLine()));
+				}
+			}
+			if (part.emitter.sourceLine > 0) {
+				line = part.emitter.sourceLine;
+			}
+		}
+
+		// the instructions after the command are from the source line the
+		// Encoder would have marked last
+		emitter.setSourceLine(line);
+		if (extraSize > 0) {
+			emitter.emit(OpCode.POP, extraSize);
+		}
+		emitter.emit(OpCode.HALT);
+	}
+
+	private void prepare(Part part) {
+		part.reporter = new ErrorReporter(false, false);
+		part.emitter = new Emitter(emitter, part.reporter);
+		part.encoder = new Encoder(part.emitter, part.reporter, encoder);
+		if (part.isRoutine()) {
+			part.encoder.symbolicRoutine = part.declaration;
+		}
+	}
+
+	private static void encode(Part part) {
+		try {
+			if (part.command != null) {
+				part.encoder.encodeCommand(part.command, part.frame);
+			} else {
+				part.encoder.encodeDeclaration(part.declaration, part.frame);
+			}
+		} catch (StackOverflowError e) {
+			part.overflowed = true;
+		}
+	}
+
+	// copies the buffers into the Code Store, one after another, relocating the
+	// addresses in them and resolving the symbolic ones
+	private void link(List<Part> parts, List<Declaration> routines) {
+		// the lines of the code copied are those recorded in the buffers
+		emitter.setSourceLine(0);
+		var entries = new int[routines.size()];
+		var start = emitter.getNextInstrAddr();
+		var routine = 0;
+		for (var part : parts) {
+			part.start = start;
+			if (part.isRoutine()) {
+				entries[routine++] = start + part.encoder.symbolicEntry - part.emitter.base;
+			}
+			start += part.emitter.getNextInstrAddr() - part.emitter.base;
+		}
+
+		for (var part : parts) {
+			var base = part.emitter.base;
+			var offset = part.start - base;
+			var code = part.emitter.code;
+			for (var addr = base; addr < part.emitter.getNextInstrAddr(); addr++) {
+				var instruction = code[addr - base];
+				var operand = instruction.getOperand();
+				if (instruction.refersToCode()) {
+					// an address below base is of code in the Code Store already,
+					// such as a linked library's routine
+					if (operand < 0) {
+						operand = entries[routineOf(operand)];
+					} else if (operand >= base) {
+						operand += offset;
+					}
+				}
+				emitter.emit(instruction.getOpCode(), instruction.getLength(), instruction.getRegister(), operand);
+			}
+			if (emitter.debugInfo != null) {
+				emitter.debugInfo.append(part.emitter.debugInfo, offset);
+			}
+		}
+
+		for (var i = 0; i < routines.size(); i++) {
+			routines.get(i).entity = new KnownRoutine(Machine.closureSize, Frame.Initial.getLevel(), entries[i]);
+		}
+	}
+
+	// the symbolic entry point of the i'th top-level routine
+	private static int symbol(int i) {
+		return -1 - i;
+	}
+
+	private static int routineOf(int symbol) {
+		return -1 - symbol;
+	}
+}
@@ -51,6 +51,7 @@ import triangle.abstractSyntaxTrees.expressions.BinaryExpression;
 import triangle.abstractSyntaxTrees.expressions.CallExpression;
 import triangle.abstractSyntaxTrees.expressions.CharacterExpression;
 import triangle.abstractSyntaxTrees.expressions.EmptyExpression;
+import triangle.abstractSyntaxTrees.expressions.Expression;
 import triangle.abstractSyntaxTrees.expressions.IfExpression;
 import triangle.abstractSyntaxTrees.expressions.IntegerExpression;
 import triangle.abstractSyntaxTrees.expressions.LetExpression;
@@ -121,7 +122,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		var eType = ast.E.visit(this);
 
 		checkAndReportError(ast.V.variable, "LHS of assignment is not a variable", ast.V);
-		checkAndReportError(eType.equals(vType), "assignment incompatibilty", ast);
+		checkAndReportError(typeInterner.equal(eType, vType), "assignment incompatibilty", ast);
 
 		return null;
 	}
@@ -148,7 +149,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	public Void visitIfCommand(IfCommand ast, Void arg) {
 		var eType = ast.E.visit(this);
 
-		checkAndReportError(eType.equals(StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
+		checkAndReportError(typeInterner.equal(eType, StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
 
 		ast.C1.visit(this);
 		ast.C2.visit(this);
@@ -170,7 +171,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
         ast.C1.visit(this);
 
         var eType = ast.E.visit(this);
-        checkAndReportError(eType.equals(StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
+        checkAndReportError(typeInterner.equal(eType, StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
 
         ast.C2.visit(this);
 
@@ -181,7 +182,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
     public Void visitRepeatCommand(RepeatCommand ast, Void arg)	{
         var eType = ast.E.visit(this);
 
-        checkAndReportError(eType.equals(StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
+        checkAndReportError(typeInterner.equal(eType, StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
 		ast.C.visit(this);
 
 		return null;
@@ -189,8 +190,9 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 
 	@Override
 	public Void visitSequentialCommand(SequentialCommand ast, Void arg) {
-		ast.C1.visit(this);
-		ast.C2.visit(this);
+		for (var command : ast.flatten()) {
+			command.visit(this);
+		}
 		return null;
 	}
 
@@ -198,7 +200,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	public Void visitWhileCommand(WhileCommand ast, Void arg) {
 		var eType = ast.E.visit(this);
 
-		checkAndReportError(eType.equals(StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
+		checkAndReportError(typeInterner.equal(eType, StdEnvironment.booleanType), "Boolean expression expected here", ast.E);
 		ast.C.visit(this);
 
 		return null;
@@ -213,7 +215,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	public TypeDenoter visitArrayExpression(ArrayExpression ast, Void arg) {
 		var elemType = ast.AA.visit(this);
 		var il = new IntegerLiteral(Integer.toString(ast.AA.elemCount), ast.getPosition());
-		ast.type = new ArrayTypeDenoter(il, elemType, ast.getPosition());
+		ast.type = typeInterner.intern(new ArrayTypeDenoter(il, elemType, ast.getPosition()));
 		return ast.type;
 	}
 
@@ -226,10 +228,10 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		if (binding instanceof BinaryOperatorDeclaration bbinding) {
 			if (bbinding.ARG1 == StdEnvironment.anyType) {
 				// this operator must be "=" or "\="
-				checkAndReportError(e1Type.equals(e2Type), "incompatible argument types for \"%\"", ast.O, ast);
+				checkAndReportError(typeInterner.equal(e1Type, e2Type), "incompatible argument types for \"%\"", ast.O, ast);
 			} else {
-				checkAndReportError(e1Type.equals(bbinding.ARG1), "wrong argument type for \"%\"", ast.O, ast.E1);
-				checkAndReportError(e2Type.equals(bbinding.ARG2), "wrong argument type for \"%\"", ast.O, ast.E2);
+				checkAndReportError(typeInterner.equal(e1Type, bbinding.ARG1), "wrong argument type for \"%\"", ast.O, ast.E1);
+				checkAndReportError(typeInterner.equal(e2Type, bbinding.ARG2), "wrong argument type for \"%\"", ast.O, ast.E2);
 			}
 			return ast.type = bbinding.RES;
 		}
@@ -264,11 +266,11 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	@Override
 	public TypeDenoter visitIfExpression(IfExpression ast, Void arg) {
 		var e1Type = ast.E1.visit(this);
-		checkAndReportError(e1Type.equals(StdEnvironment.booleanType), "Boolean expression expected here", ast.E1);
+		checkAndReportError(typeInterner.equal(e1Type, StdEnvironment.booleanType), "Boolean expression expected here", ast.E1);
 
 		var e2Type = ast.E2.visit(this);
 		var e3Type = ast.E3.visit(this);
-		checkAndReportError(e2Type.equals(e3Type), "incompatible limbs in if-expression", ast);
+		checkAndReportError(typeInterner.equal(e2Type, e3Type), "incompatible limbs in if-expression", ast);
 		return ast.type = e2Type;
 	}
 
@@ -289,7 +291,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	@Override
 	public TypeDenoter visitRecordExpression(RecordExpression ast, Void arg) {
 		var rType = ast.RA.visit(this);
-		return ast.type = new RecordTypeDenoter(rType, ast.getPosition());
+		return ast.type = typeInterner.intern(new RecordTypeDenoter(rType, ast.getPosition()));
 	}
 
 	@Override
@@ -298,7 +300,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		var binding = ast.O.visit(this);
 
 		if (binding instanceof UnaryOperatorDeclaration ubinding) {
-			checkAndReportError(eType.equals(ubinding.ARG), "wrong argument type for \"%\"", ast.O);
+			checkAndReportError(typeInterner.equal(eType, ubinding.ARG), "wrong argument type for \"%\"", ast.O);
 			return ast.type = ubinding.RES;
 		}
 
@@ -339,7 +341,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		var eType = ast.E.visit(this);
 		idTable.closeScope();
 
-		checkAndReportError(ast.T.equals(eType), "body of function \"%\" has wrong type", ast.I, ast.E);
+		checkAndReportError(typeInterner.equal(ast.T, eType), "body of function \"%\" has wrong type", ast.I, ast.E);
 		return null;
 	}
 
@@ -359,8 +361,9 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 
 	@Override
 	public Void visitSequentialDeclaration(SequentialDeclaration ast, Void arg) {
-		ast.D1.visit(this);
-		ast.D2.visit(this);
+		for (var declaration : ast.flatten()) {
+			declaration.visit(this);
+		}
 		return null;
 	}
 
@@ -395,7 +398,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		var eType = ast.E.visit(this);
 		var elemType = ast.AA.visit(this);
 		ast.elemCount = ast.AA.elemCount + 1;
-		checkAndReportError(eType.equals(elemType), "incompatible array-aggregate element", ast.E);
+		checkAndReportError(typeInterner.equal(eType, elemType), "incompatible array-aggregate element", ast.E);
 		return elemType;
 	}
 
@@ -493,7 +496,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	public Void visitConstActualParameter(ConstActualParameter ast, FormalParameter arg) {
 		var eType = ast.E.visit(this);
 		if (arg instanceof ConstFormalParameter param) {
-			checkAndReportError(eType.equals(param.T), "wrong type for const actual parameter", ast.E);
+			checkAndReportError(typeInterner.equal(eType, param.T), "wrong type for const actual parameter", ast.E);
 		} else {
 			reportError("const actual parameter not expected here", ast);
 		}
@@ -509,7 +512,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 			if (arg instanceof FuncFormalParameter param) {
 				if (!formals.equals(param.getFormals())) {
 					reportError("wrong signature for function \"%\"", ast.I);
-				} else if (!functionType.equals(param.T)) {
+				} else if (!typeInterner.equal(functionType, param.T)) {
 					reportError("wrong type for function \"%\"", ast.I);
 				}
 			} else {
@@ -543,7 +546,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		if (!ast.V.variable) {
 			reportError("actual parameter is not a variable", ast.V);
 		} else if (arg instanceof VarFormalParameter parameter) {
-			checkAndReportError(vType.equals(parameter.T), "wrong type for var actual parameter", ast.V);
+			checkAndReportError(typeInterner.equal(vType, parameter.T), "wrong type for var actual parameter", ast.V);
 		} else {
 			reportError("var actual parameter not expected here", ast.V);
 		}
@@ -591,7 +594,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	public TypeDenoter visitArrayTypeDenoter(ArrayTypeDenoter ast, Void arg) {
 		ast.T = ast.T.visit(this);
 		checkAndReportError(ast.IL.getValue() != 0, "arrays must not be empty", ast.IL);
-		return ast;
+		return typeInterner.intern(ast);
 	}
 
 	@Override
@@ -628,7 +631,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 	@Override
 	public TypeDenoter visitRecordTypeDenoter(RecordTypeDenoter ast, Void arg) {
 		ast.FT = (FieldTypeDenoter) ast.FT.visit(this);
-		return ast;
+		return typeInterner.intern(ast);
 	}
 
 	@Override
@@ -735,7 +738,7 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		var eType = ast.E.visit(this);
 		if (vType != StdEnvironment.errorType) {
 			if (vType instanceof ArrayTypeDenoter arrayType) {
-				checkAndReportError(eType.equals(StdEnvironment.integerType), "Integer expression expected here",
+				checkAndReportError(typeInterner.equal(eType, StdEnvironment.integerType), "Integer expression expected here",
 						ast.E);
 				ast.type = arrayType.T;
 			} else {
@@ -767,15 +770,145 @@ public final class Checker implements ActualParameterVisitor<FormalParameter, Vo
 		ast.visit(this);
 	}
 
+	// The following check a program of the form let D1; ...; Dn in C a region
+	// at a time, for incremental compilation. Between openProgramScope and
+	// closeProgramScope, each top-level declaration is either checked, or, if
+	// it was checked by an earlier compilation and has not changed, just
+	// re-entered in the identification table. The same Checker must be used
+	// throughout, as reused trees refer to its standard environment and its
+	// interned types.
+
+	public void openProgramScope() {
+		idTable.openScope();
+	}
+
+	public void closeProgramScope() {
+		idTable.closeScope();
+	}
+
+	public void checkDeclaration(Declaration ast) {
+		ast.visit(this);
+	}
+
+	public void checkCommand(Command ast) {
+		ast.visit(this);
+	}
+
+	/**
+	 * Enters a top-level declaration checked by an earlier compilation, without
+	 * checking it again.
+	 */
+	public void enterDeclaration(Declaration ast) {
+		Identifier I;
+		if (ast instanceof ConstDeclaration d) {
+			I = d.I;
+		} else if (ast instanceof VarDeclaration d) {
+			I = d.I;
+		} else if (ast instanceof ProcDeclaration d) {
+			I = d.I;
+		} else if (ast instanceof FuncDeclaration d) {
+			I = d.I;
+		} else if (ast instanceof TypeDeclaration d) {
+			I = d.I;
+		} else {
+			return;
+		}
+		idTable.enter(I.spelling, ast);
+		checkAndReportError(!ast.duplicated, "identifier \"%\" already declared", I, ast);
+	}
+
+	/**
+	 * Replaces the body of a procedure checked by an earlier compilation, whose
+	 * heading is unchanged, and checks the new body. The declaration itself is
+	 * kept, so phrases that refer to it need not be checked again.
+	 */
+	public void recheckBody(ProcDeclaration ast, Command body) {
+		enterDeclaration(ast);
+		idTable.openScope();
+		enterFormals(ast.FPS);
+		ast.C = body;
+		ast.C.visit(this);
+		idTable.closeScope();
+	}
+
+	/**
+	 * As recheckBody for a procedure, for a function.
+	 */
+	public void recheckBody(FuncDeclaration ast, Expression body) {
+		enterDeclaration(ast);
+		idTable.openScope();
+		enterFormals(ast.FPS);
+		ast.E = body;
+		var eType = ast.E.visit(this);
+		idTable.closeScope();
+		checkAndReportError(typeInterner.equal(ast.T, eType), "body of function \"%\" has wrong type", ast.I, ast.E);
+	}
+
+	/**
+	 * Enters a declaration exported by a library (see triangle.Library). A
+	 * routine's heading is checked, but not its body, which was checked when the
+	 * library was compiled.
+	 */
+	public void importDeclaration(Declaration ast) {
+		if (ast instanceof ProcDeclaration d) {
+			idTable.enter(d.I.spelling, d);
+			checkAndReportError(!d.duplicated, "identifier \"%\" already declared", d.I, d);
+			idTable.openScope();
+			d.FPS.visit(this);
+			idTable.closeScope();
+		} else if (ast instanceof FuncDeclaration d) {
+			d.T = d.T.visit(this);
+			idTable.enter(d.I.spelling, d);
+			checkAndReportError(!d.duplicated, "identifier \"%\" already declared", d.I, d);
+			idTable.openScope();
+			d.FPS.visit(this);
+			idTable.closeScope();
+		} else {
+			ast.visit(this);
+		}
+	}
+
+	// enters formal parameters that have already been checked
+	private void enterFormals(FormalParameterSequence fps) {
+		while (fps instanceof MultipleFormalParameterSequence multiple) {
+			enterFormal(multiple.FP);
+			fps = multiple.FPS;
+		}
+		if (fps instanceof SingleFormalParameterSequence single) {
+			enterFormal(single.FP);
+		}
+	}
+
+	private void enterFormal(FormalParameter fp) {
+		if (fp instanceof ConstFormalParameter p) {
+			idTable.enter(p.I.spelling, p);
+		} else if (fp instanceof VarFormalParameter p) {
+			idTable.enter(p.I.spelling, p);
+		} else if (fp instanceof ProcFormalParameter p) {
+			idTable.enter(p.I.spelling, p);
+		} else if (fp instanceof FuncFormalParameter p) {
+			idTable.enter(p.I.spelling, p);
+		}
+	}
+
 	/////////////////////////////////////////////////////////////////////////////
 
 	public Checker(ErrorReporter reporter) {
 		this.reporter = reporter;
 		this.idTable = new IdentificationTable();
+		this.typeInterner = new TypeInterner();
 		establishStdEnvironment();
+		typeInterner.addCanonical(StdEnvironment.booleanType);
+		typeInterner.addCanonical(StdEnvironment.integerType);
+		typeInterner.addCanonical(StdEnvironment.charType);
+	}
+
+	public TypeInterner getTypeInterner() {
+		return typeInterner;
 	}
 
 	private IdentificationTable idTable;
+	private TypeInterner typeInterner;
 	private static SourcePosition dummyPos = new SourcePosition();
 	private ErrorReporter reporter;
 
@@ -0,0 +1,182 @@
+package triangle.contextualAnalyzer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import triangle.abstractSyntaxTrees.types.ArrayTypeDenoter;
+import triangle.abstractSyntaxTrees.types.FieldTypeDenoter;
+import triangle.abstractSyntaxTrees.types.MultipleFieldTypeDenoter;
+import triangle.abstractSyntaxTrees.types.RecordTypeDenoter;
+import triangle.abstractSyntaxTrees.types.SingleFieldTypeDenoter;
+import triangle.abstractSyntaxTrees.types.TypeDenoter;
+
+/**
+ * Maps structurally equal array and record types to a single canonical
+ * instance, so that the Checker can compare types by reference.
+ *
+ * A type is only interned if all its component types are canonical, so a type
+ * containing the error type (which is equal to every type) is never canonical,
+ * and is still compared with equals. Records are interned whole: the field
+ * lists inside a record are never shared with another record on their own, as
+ * the code generator records field offsets in them.
+ */
+public final class TypeInterner {
+
+	// A type's shape (array size or field names) and canonical component types,
+	// which are compared by reference. The hash is computed once.
+	private static final class Key {
+
+		private final String shape;
+		private final TypeDenoter[] components;
+		private final int hash;
+
+		Key(String shape, TypeDenoter[] components) {
+			this.shape = shape;
+			this.components = components;
+			var h = shape.hashCode();
+			for (var component : components) {
+				h = 31 * h + System.identityHashCode(component);
+			}
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key other) || other.hash != hash || !other.shape.equals(shape)
+					|| other.components.length != components.length) {
+				return false;
+			}
+			for (var i = 0; i < components.length; i++) {
+				if (other.components[i] != components[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final Map<Key, TypeDenoter> types = new HashMap<>();
+
+	private final Set<TypeDenoter> canonical = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private int lookups, hits;
+
+	/**
+	 * Records a type that needs no interning, such as a primitive type, as
+	 * canonical.
+	 */
+	public void addCanonical(TypeDenoter type) {
+		canonical.add(type);
+	}
+
+	/**
+	 * @return every canonical type: the standard types, and each distinct array
+	 *         and record type
+	 */
+	public Collection<TypeDenoter> getCanonicalTypes() {
+		return Collections.unmodifiableSet(canonical);
+	}
+
+	public boolean isCanonical(TypeDenoter type) {
+		return canonical.contains(type);
+	}
+
+	/**
+	 * Returns the canonical instance of an array type, which is the given type if
+	 * no structurally equal type has been interned before. The element type must
+	 * already have been checked.
+	 */
+	public TypeDenoter intern(ArrayTypeDenoter type) {
+		if (!canonical.contains(type.T)) {
+			return type;
+		}
+		return intern(type, new Key("[" + type.IL.spelling, new TypeDenoter[] { type.T }));
+	}
+
+	/**
+	 * Returns the canonical instance of a record type, which is the given type if
+	 * no structurally equal type has been interned before. The field types must
+	 * already have been checked.
+	 */
+	public TypeDenoter intern(RecordTypeDenoter type) {
+		var names = new StringBuilder("{");
+		var components = new TypeDenoter[8];
+		var count = 0;
+		FieldTypeDenoter field = type.FT;
+		while (field != null) {
+			TypeDenoter fieldType;
+			if (field instanceof MultipleFieldTypeDenoter multiple) {
+				names.append(multiple.I.spelling).append(',');
+				fieldType = multiple.T;
+				field = multiple.FT;
+			} else if (field instanceof SingleFieldTypeDenoter single) {
+				names.append(single.I.spelling);
+				fieldType = single.T;
+				field = null;
+			} else {
+				return type;
+			}
+			if (!canonical.contains(fieldType)) {
+				return type;
+			}
+			if (count == components.length) {
+				components = Arrays.copyOf(components, 2 * count);
+			}
+			components[count++] = fieldType;
+		}
+		return intern(type, new Key(names.toString(), Arrays.copyOf(components, count)));
+	}
+
+	private TypeDenoter intern(TypeDenoter type, Key key) {
+		if (canonical.contains(type)) {
+			return type;
+		}
+		lookups++;
+		var existing = types.putIfAbsent(key, type);
+		if (existing != null) {
+			hits++;
+			return existing;
+		}
+		canonical.add(type);
+		return type;
+	}
+
+	/**
+	 * Tests whether two types are equal. Canonical types are equal only if they
+	 * are the same instance; otherwise the types are compared structurally.
+	 */
+	public boolean equal(TypeDenoter t1, TypeDenoter t2) {
+		if (canonical.contains(t1) && canonical.contains(t2)) {
+			return t1 == t2;
+		}
+		return t1.equals(t2);
+	}
+
+	/**
+	 * @return the number of array and record types interned
+	 */
+	public int getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * @return the number of interned types that were already known
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	public int size() {
+		return types.size();
+	}
+}
@@ -1,6 +1,7 @@
 package triangle.optimiser;
 
 import triangle.StdEnvironment;
+import triangle.abstractMachine.Machine;
 import triangle.abstractSyntaxTrees.AbstractSyntaxTree;
 import triangle.abstractSyntaxTrees.Program;
 import triangle.abstractSyntaxTrees.actuals.ConstActualParameter;
@@ -279,10 +280,15 @@ public class ConstantFolder implements ActualParameterVisitor<Void, AbstractSynt
 		// the
 		// foldable child nodes with their folded equivalent and return null
 		if (replacement1 != null && replacement2 != null) {
-			return foldBinaryExpression(replacement1, replacement2, ast.O);
-		} else if (replacement1 != null) {
+			AbstractSyntaxTree folded = foldBinaryExpression(replacement1, replacement2, ast.O);
+			if (folded != null) {
+				return folded;
+			}
+		}
+		if (replacement1 != null) {
 			ast.E1 = (Expression) replacement1;
-		} else if (replacement2 != null) {
+		}
+		if (replacement2 != null) {
 			ast.E2 = (Expression) replacement2;
 		}
 
@@ -405,8 +411,9 @@ public class ConstantFolder implements ActualParameterVisitor<Void, AbstractSynt
 
 	@Override
 	public AbstractSyntaxTree visitSequentialDeclaration(SequentialDeclaration ast, Void arg) {
-		ast.D1.visit(this);
-		ast.D2.visit(this);
+		for (var declaration : ast.flatten()) {
+			declaration.visit(this);
+		}
 		return null;
 	}
 
@@ -493,8 +500,9 @@ public class ConstantFolder implements ActualParameterVisitor<Void, AbstractSynt
 
 	@Override
 	public AbstractSyntaxTree visitSequentialCommand(SequentialCommand ast, Void arg) {
-		ast.C1.visit(this);
-		ast.C2.visit(this);
+		for (var command : ast.flatten()) {
+			command.visit(this);
+		}
 		return null;
 	}
 
@@ -577,18 +585,20 @@ public class ConstantFolder implements ActualParameterVisitor<Void, AbstractSynt
 	public AbstractSyntaxTree foldBinaryExpression(AbstractSyntaxTree node1, AbstractSyntaxTree node2, Operator o) {
 		// the only case we know how to deal with for now is two IntegerExpressions
 		if ((node1 instanceof IntegerExpression) && (node2 instanceof IntegerExpression)) {
-			int int1 = (Integer.parseInt(((IntegerExpression) node1).IL.spelling));
-			int int2 = (Integer.parseInt(((IntegerExpression) node2).IL.spelling));
+			long int1 = (Integer.parseInt(((IntegerExpression) node1).IL.spelling));
+			long int2 = (Integer.parseInt(((IntegerExpression) node2).IL.spelling));
 			Object foldedValue = null;
 
+			// an expression that would fail at run time, through overflow or division
+			// by zero, is left for the program to fail on
 			if (o.decl == StdEnvironment.addDecl) {
 				foldedValue = int1 + int2;
 			}
             else if (o.decl == StdEnvironment.divideDecl) {
-                foldedValue = int1 / int2;
+                foldedValue = (int2 == 0) ? null : int1 / int2;
             }
             else if (o.decl == StdEnvironment.moduloDecl) {
-                foldedValue = int1 % int2;
+                foldedValue = (int2 == 0) ? null : int1 % int2;
             }
             else if (o.decl == StdEnvironment.multiplyDecl) {
                 foldedValue = int1 * int2;
@@ -616,7 +626,7 @@ public class ConstantFolder implements ActualParameterVisitor<Void, AbstractSynt
             }
 
 
-            if (foldedValue instanceof Integer) {
+            if (foldedValue instanceof Long value && Math.abs(value) <= Machine.maxintRep) {
 				IntegerLiteral il = new IntegerLiteral(foldedValue.toString(), node1.getPosition());
 				IntegerExpression ie = new IntegerExpression(il, node1.getPosition());
 				ie.type = StdEnvironment.integerType;
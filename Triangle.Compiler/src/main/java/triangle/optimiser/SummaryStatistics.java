@@ -362,8 +362,9 @@ public class SummaryStatistics implements ActualParameterVisitor<Void, AbstractS
 
 	@Override
 	public AbstractSyntaxTree visitSequentialDeclaration(SequentialDeclaration ast, Void arg) {
-		ast.D1.visit(this);
-		ast.D2.visit(this);
+		for (var declaration : ast.flatten()) {
+			declaration.visit(this);
+		}
 		return null;
 	}
 
@@ -450,8 +451,9 @@ public class SummaryStatistics implements ActualParameterVisitor<Void, AbstractS
 
 	@Override
 	public AbstractSyntaxTree visitSequentialCommand(SequentialCommand ast, Void arg) {
-		ast.C1.visit(this);
-		ast.C2.visit(this);
+		for (var command : ast.flatten()) {
+			command.visit(this);
+		}
 		return null;
 	}
 
@@ -161,6 +161,43 @@ public class Parser {
 		return programAST;
 	}
 
+	// parseDeclarationRegion and parseCommandRegion parse one region of a
+	// program being compiled incrementally (see ProgramRegions): a single
+	// top-level declaration, or the command. Each returns null if there is a
+	// syntactic error.
+
+	public Declaration parseDeclarationRegion() {
+		previousTokenPosition.start = 0;
+		previousTokenPosition.finish = 0;
+		currentToken = lexicalAnalyser.scan();
+
+		try {
+			Declaration dAST = parseSingleDeclaration();
+			if (currentToken.kind != Token.Kind.EOT) {
+				syntacticError("\"%\" not expected after end of declaration", currentToken.spelling);
+			}
+			return dAST;
+		} catch (SyntaxError s) {
+			return null;
+		}
+	}
+
+	public Command parseCommandRegion() {
+		previousTokenPosition.start = 0;
+		previousTokenPosition.finish = 0;
+		currentToken = lexicalAnalyser.scan();
+
+		try {
+			Command cAST = parseCommand();
+			if (currentToken.kind != Token.Kind.EOT) {
+				syntacticError("\"%\" not expected after end of program", currentToken.spelling);
+			}
+			return cAST;
+		} catch (SyntaxError s) {
+			return null;
+		}
+	}
+
 	///////////////////////////////////////////////////////////////////////////////
 	//
 	// LITERALS
@@ -0,0 +1,207 @@
+package triangle.syntacticAnalyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits a program of the form let D1; D2; ...; Dn in C into regions, one for
+ * each top-level declaration and one for the command, for incremental
+ * compilation.
+ *
+ * The split is made on tokens, tracking the nesting of brackets, so it does
+ * not parse the program. Any program that is not of that form (or that is
+ * syntactically wrong in a way that shows up here) is left as a single command
+ * region, which the parser then handles, and reports errors in, as usual.
+ */
+public final class ProgramRegions {
+
+	/**
+	 * One region of the source.
+	 *
+	 * @param start        the offset of the region in the source
+	 * @param end          the offset just past the end of the region
+	 * @param firstLine    the line the region starts on
+	 * @param text         the text of the region, which is its fingerprint
+	 * @param declaredName the identifier a declaration declares, or null for the
+	 *                     command
+	 * @param routine      true if the region is a proc or func declaration
+	 * @param header       for a routine, its text up to and including the "~"
+	 * @param names        every identifier in the region
+	 * @param headerNames  every identifier in the header
+	 */
+	public record Region(int start, int end, int firstLine, String text, String declaredName, boolean routine,
+			String header, Set<String> names, Set<String> headerNames) {
+	}
+
+	private final List<Region> declarations;
+
+	private final Region command;
+
+	private ProgramRegions(List<Region> declarations, Region command) {
+		this.declarations = declarations;
+		this.command = command;
+	}
+
+	/**
+	 * @return the top-level declarations, in order, or an empty list if the
+	 *         program was not split
+	 */
+	public List<Region> getDeclarations() {
+		return declarations;
+	}
+
+	public Region getCommand() {
+		return command;
+	}
+
+	public static ProgramRegions split(byte[] source) {
+		var scanner = new Scanner(SourceFile.ofBytes(source, 0, source.length, 1));
+		var declarations = new ArrayList<Region>();
+		var builder = new RegionBuilder(source);
+
+		var token = scanner.scan();
+		if (token.kind != Token.Kind.LET) {
+			return whole(source);
+		}
+		builder.begin(scanner.getOffset());
+		var depth = 1;
+		var inDeclarations = true;
+
+		while (true) {
+			token = scanner.scan();
+			var end = scanner.getOffset();
+			switch (token.kind) {
+			case EOT:
+				if (inDeclarations || depth != 0) {
+					return whole(source);
+				}
+				return new ProgramRegions(declarations, builder.finish(end, false));
+			case ERROR:
+				return whole(source);
+			case SEMICOLON:
+				if (depth == 1 && inDeclarations) {
+					var region = builder.finish(end - 1, true);
+					if (region == null) {
+						return whole(source);
+					}
+					declarations.add(region);
+					builder.begin(end);
+					continue;
+				} else if (depth == 0) {
+					// let D in C1; C2
+					return whole(source);
+				}
+				break;
+			case IN:
+				if (depth == 1 && inDeclarations) {
+					var region = builder.finish(end - 2, true);
+					if (region == null) {
+						return whole(source);
+					}
+					declarations.add(region);
+					builder.begin(end);
+					inDeclarations = false;
+					depth = 0;
+					continue;
+				}
+				depth--;
+				break;
+			case LET, BEGIN, RECORD, LPAREN, LBRACKET, LCURLY:
+				depth++;
+				break;
+			case END, RPAREN, RBRACKET, RCURLY:
+				depth--;
+				break;
+			default:
+				break;
+			}
+			if (depth < 0) {
+				return whole(source);
+			}
+			builder.add(token, end);
+		}
+	}
+
+	private static ProgramRegions whole(byte[] source) {
+		var builder = new RegionBuilder(source);
+		builder.begin(0);
+		var scanner = new Scanner(SourceFile.ofBytes(source, 0, source.length, 1));
+		for (var token = scanner.scan(); token.kind != Token.Kind.EOT; token = scanner.scan()) {
+			builder.add(token, scanner.getOffset());
+		}
+		return new ProgramRegions(List.of(), builder.finish(source.length, false));
+	}
+
+	// Collects the tokens of one region at a time.
+	private static final class RegionBuilder {
+
+		private final byte[] source;
+
+		private int start, line = 1, lineCountedTo;
+
+		private Token.Kind firstKind;
+
+		private String declaredName;
+
+		private int tokens, headerEnd;
+
+		private Set<String> names, headerNames;
+
+		RegionBuilder(byte[] source) {
+			this.source = source;
+		}
+
+		void begin(int offset) {
+			for (; lineCountedTo < offset; lineCountedTo++) {
+				if (source[lineCountedTo] == SourceFile.EOL) {
+					line++;
+				}
+			}
+			start = offset;
+			firstKind = null;
+			declaredName = null;
+			tokens = 0;
+			headerEnd = -1;
+			names = new HashSet<>();
+			headerNames = new HashSet<>();
+		}
+
+		void add(Token token, int end) {
+			if (tokens == 0) {
+				firstKind = token.kind;
+			} else if (tokens == 1 && token.kind == Token.Kind.IDENTIFIER) {
+				declaredName = token.spelling;
+			}
+			tokens++;
+			if (token.kind == Token.Kind.IDENTIFIER) {
+				names.add(token.spelling);
+				if (headerEnd < 0) {
+					headerNames.add(token.spelling);
+				}
+			} else if (token.kind == Token.Kind.IS && headerEnd < 0) {
+				headerEnd = end;
+			}
+		}
+
+		// returns null if a declaration region does not start as a declaration
+		Region finish(int end, boolean declaration) {
+			var text = new String(source, start, end - start, StandardCharsets.ISO_8859_1);
+			if (!declaration) {
+				return new Region(start, end, line, text, null, false, null, names, names);
+			}
+			if (declaredName == null || (firstKind != Token.Kind.CONST && firstKind != Token.Kind.VAR
+					&& firstKind != Token.Kind.PROC && firstKind != Token.Kind.FUNC && firstKind != Token.Kind.TYPE)) {
+				return null;
+			}
+			var routine = firstKind == Token.Kind.PROC || firstKind == Token.Kind.FUNC;
+			String header = null;
+			if (routine && headerEnd >= 0) {
+				header = new String(source, start, headerEnd - start, StandardCharsets.ISO_8859_1);
+			}
+			return new Region(start, end, line, text, declaredName, routine, header, names, headerNames);
+		}
+	}
+}
@@ -18,6 +18,8 @@
 
 package triangle.syntacticAnalyzer;
 
+import java.util.function.LongSupplier;
+
 public final class Scanner {
 
 	private SourceFile sourceFile;
@@ -27,6 +29,13 @@ public final class Scanner {
 	private StringBuffer currentSpelling;
 	private boolean currentlyScanningToken;
 
+	private int tokenCount;
+
+	// time and allocation are only measured when asked for, as each costs a
+	// call per token; allocatedBytes is null if they are not
+	private LongSupplier allocatedBytes;
+	private long scanNanos, scanBytes;
+
 	public static boolean isLetter(char c) {
 		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
 	}
@@ -54,6 +63,41 @@ public final class Scanner {
 		debug = true;
 	}
 
+	/**
+	 * Measures the time spent scanning and the bytes allocated meanwhile.
+	 *
+	 * @param allocatedBytes the bytes the current thread has allocated so far
+	 */
+	public void enableTiming(LongSupplier allocatedBytes) {
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	public int getTokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * @return the time spent scanning, if timing is enabled
+	 */
+	public long getScanNanos() {
+		return scanNanos;
+	}
+
+	/**
+	 * @return the bytes allocated while scanning, if timing is enabled
+	 */
+	public long getScanBytes() {
+		return scanBytes;
+	}
+
+	/**
+	 * @return the offset in the source of the end of the last token scanned
+	 */
+	public int getOffset() {
+		// the scanner has already read the character after the token
+		return (currentChar == SourceFile.EOT) ? sourceFile.position : sourceFile.position - 1;
+	}
+
 	// takeIt appends the current character to the current token, and gets
 	// the next character from the source program.
 
@@ -272,6 +316,19 @@ public final class Scanner {
 	}
 
 	public Token scan() {
+		tokenCount++;
+		if (allocatedBytes == null) {
+			return scanNext();
+		}
+		var bytes = allocatedBytes.getAsLong();
+		var before = System.nanoTime();
+		var tok = scanNext();
+		scanNanos += System.nanoTime() - before;
+		scanBytes += allocatedBytes.getAsLong() - bytes;
+		return tok;
+	}
+
+	private Token scanNext() {
 		Token tok;
 		SourcePosition pos;
 		Token.Kind kind;
@@ -29,6 +29,9 @@ public class SourceFile {
 	java.io.InputStream source;
 	int currentLine;
 
+	// the number of bytes read so far
+	int position;
+
 	public static SourceFile ofPath(String pathname) {
 		try {
 			SourceFile sf = new SourceFile();
@@ -47,6 +50,19 @@ public class SourceFile {
 		return sf;
 	}
 
+	/**
+	 * A source file whose text is part of an array, such as one region of a
+	 * program being compiled incrementally.
+	 *
+	 * @param firstLine the line number of the first byte of the text
+	 */
+	public static SourceFile ofBytes(byte[] bytes, int from, int to, int firstLine) {
+		SourceFile sf = new SourceFile();
+		sf.source = new java.io.ByteArrayInputStream(bytes, from, to - from);
+		sf.currentLine = firstLine;
+		return sf;
+	}
+
 	private SourceFile() {
 		currentLine = 1;
 	}
@@ -57,8 +73,11 @@ public class SourceFile {
 
 			if (c == -1) {
 				c = EOT;
-			} else if (c == EOL) {
-				currentLine++;
+			} else {
+				position++;
+				if (c == EOL) {
+					currentLine++;
+				}
 			}
 			return (char) c;
 		} catch (java.io.IOException s) {
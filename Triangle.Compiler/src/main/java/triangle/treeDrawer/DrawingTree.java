@@ -21,6 +21,7 @@ package triangle.treeDrawer;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
+import java.util.ArrayDeque;
 
 public class DrawingTree {
 
@@ -74,13 +75,21 @@ public class DrawingTree {
 		this.pos.x = pos.x + this.offset.x;
 		this.pos.y = pos.y + this.offset.y;
 
-		Point temp = new Point(this.pos.x, this.pos.y);
-
-		if (children != null) {
-			for (DrawingTree child : children) {
-				child.position(temp);
-				temp.x += child.offset.x;
-				temp.y = this.pos.y + children[0].offset.y;
+		// with an explicit stack, as a long sequence makes a deep tree
+		var pending = new ArrayDeque<DrawingTree>();
+		pending.push(this);
+		while (!pending.isEmpty()) {
+			var tree = pending.pop();
+			if (tree.children != null) {
+				var x = tree.pos.x;
+				var y = tree.pos.y;
+				for (DrawingTree child : tree.children) {
+					child.pos.x = x + child.offset.x;
+					child.pos.y = y + child.offset.y;
+					pending.push(child);
+					x += child.offset.x;
+					y = tree.pos.y + tree.children[0].offset.y;
+				}
 			}
 		}
 	}
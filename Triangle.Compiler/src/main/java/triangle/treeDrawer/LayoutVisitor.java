@@ -160,9 +160,13 @@ public class LayoutVisitor implements ActualParameterVisitor<Void, DrawingTree>,
 
 	@Override
 	public DrawingTree visitSequentialCommand(SequentialCommand ast, Void obj) {
-		var d1 = ast.C1.visit(this);
-		var d2 = ast.C2.visit(this);
-		return layoutBinary("Seq.Com.", d1, d2);
+		// the same drawing as visiting C1 and C2, without recursing down C1
+		var commands = ast.flatten();
+		var drawing = commands.get(0).visit(this);
+		for (var i = 1; i < commands.size(); i++) {
+			drawing = layoutBinary("Seq.Com.", drawing, commands.get(i).visit(this));
+		}
+		return drawing;
 	}
 
 	@Override
@@ -281,9 +285,12 @@ public class LayoutVisitor implements ActualParameterVisitor<Void, DrawingTree>,
 
 	@Override
 	public DrawingTree visitSequentialDeclaration(SequentialDeclaration ast, Void obj) {
-		var d1 = ast.D1.visit(this);
-		var d2 = ast.D2.visit(this);
-		return layoutBinary("Seq.Decl.", d1, d2);
+		var declarations = ast.flatten();
+		var drawing = declarations.get(0).visit(this);
+		for (var i = 1; i < declarations.size(); i++) {
+			drawing = layoutBinary("Seq.Decl.", drawing, declarations.get(i).visit(this));
+		}
+		return drawing;
 	}
 
 	@Override
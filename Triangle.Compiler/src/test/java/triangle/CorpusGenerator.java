@@ -0,0 +1,268 @@
+package triangle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates large, well-typed Triangle programs of a given shape, for
+ * measuring how each phase of the compiler scales.
+ *
+ * The program declares a record type, an array type, a variable of each, and
+ * then the given number of declarations, cycling through variables, constants,
+ * procedures and functions. Procedure bodies are commands nested to the given
+ * depth, expressions have the given number of terms, and the main program runs
+ * the given number of while loops, each with a body like a procedure's. Names
+ * are chosen uniformly from those already declared, so identification sees
+ * references across the whole program rather than only to recent declarations.
+ *
+ * The programs are only compiled, not run, so nothing is done to keep their
+ * arithmetic in range. The same seed always gives the same program.
+ */
+public class CorpusGenerator {
+
+	/**
+	 * The shape of a generated program.
+	 *
+	 * @param declarations the number of global declarations
+	 * @param depth        the nesting depth of commands in procedures and loops
+	 * @param width        the number of terms in each expression
+	 * @param loops        the number of loops in the main program
+	 * @param recordSize   the number of fields in the record type
+	 * @param arraySize    the number of elements in the array type
+	 */
+	public record Shape(int declarations, int depth, int width, int loops, int recordSize, int arraySize) {
+
+		public Shape withDeclarations(int declarations) {
+			return new Shape(declarations, depth, width, loops, recordSize, arraySize);
+		}
+	}
+
+	/**
+	 * A use of a global name, in program order: either its declaration or a
+	 * reference to it. Replaying these against an IdentificationTable gives the
+	 * identification work of checking the program's globals.
+	 */
+	public record Identification(String name, boolean declaration) {
+	}
+
+	private final SplittableRandom random;
+
+	private final Shape shape;
+
+	private final StringBuilder program = new StringBuilder();
+
+	private final List<Identification> identifications = new ArrayList<>();
+
+	// the global names declared so far, by kind
+	private final List<String> variables = new ArrayList<>(), values = new ArrayList<>(),
+			procedures = new ArrayList<>(), functions = new ArrayList<>();
+
+	private int lines, locals;
+
+	public CorpusGenerator(long seed, Shape shape) {
+		this.random = new SplittableRandom(seed);
+		this.shape = shape;
+	}
+
+	public String generate() {
+		line(0, "let");
+		var fields = new StringBuilder("type R ~ record ");
+		for (var i = 0; i < shape.recordSize(); i++) {
+			fields.append((i == 0) ? "" : ", ").append('f').append(i).append(" : Integer");
+		}
+		line(1, fields.append(" end;").toString());
+		line(1, "type A ~ array " + shape.arraySize() + " of Integer;");
+		line(1, "var r : R;");
+		line(1, "var a : A;");
+		line(1, "var n : Integer" + (shape.declarations() > 0 ? ";" : ""));
+		for (var i = 0; i < shape.declarations(); i++) {
+			declaration(i, i == shape.declarations() - 1);
+		}
+		line(0, "in");
+		line(1, "begin");
+		for (var i = 0; i < shape.loops(); i++) {
+			line(2, "n := 0;");
+			line(2, "while n < 10 do");
+			line(3, "begin");
+			line(4, "n := n + 1;");
+			command(4, shape.depth(), List.of("n"));
+			line(3, "end;");
+		}
+		line(2, "putint (n)");
+		line(1, "end");
+		return program.toString();
+	}
+
+	/**
+	 * @return the uses of global names in the last program generated
+	 */
+	public List<Identification> getIdentifications() {
+		return identifications;
+	}
+
+	/**
+	 * @return the number of lines in the last program generated
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	private void declaration(int i, boolean last) {
+		var name = "d" + i;
+		var end = last ? "" : ";";
+		switch (i % 4) {
+		case 0 -> {
+			line(1, "var " + name + " : Integer" + end);
+			declare(name);
+			variables.add(name);
+			values.add(name);
+		}
+		case 1 -> {
+			line(1, "const " + name + " ~ " + expression(List.of()) + end);
+			declare(name);
+			values.add(name);
+		}
+		case 2 -> {
+			line(1, "proc " + name + " (x : Integer, var y : Integer) ~");
+			command(2, shape.depth(), List.of("y"));
+			replaceSemicolon(end);
+			declare(name);
+			procedures.add(name);
+		}
+		default -> {
+			line(1, "func " + name + " (x : Integer) : Integer ~");
+			line(2, expression(List.of("x")) + end);
+			declare(name);
+			functions.add(name);
+		}
+		}
+	}
+
+	// a command nested to the given depth, followed by a semicolon, where
+	// assignable are local names that may be assigned
+	private void command(int indent, int depth, List<String> assignable) {
+		if (depth == 0) {
+			if (!procedures.isEmpty() && random.nextInt(3) == 0) {
+				var target = pick(assignable, variables);
+				line(indent, reference(procedures) + " (" + expression(assignable) + ", var " + target + ");");
+			} else {
+				line(indent, pick(assignable, variables) + " := " + expression(assignable) + ";");
+			}
+			return;
+		}
+		switch (random.nextInt(3)) {
+		case 0 -> {
+			// all binary operators have the same precedence
+			line(indent, "if (" + expression(assignable) + ") < (" + expression(assignable) + ") then");
+			line(indent + 1, "begin");
+			command(indent + 2, depth - 1, assignable);
+			command(indent + 2, 0, assignable);
+			trimSemicolon();
+			line(indent + 1, "end");
+			line(indent, "else");
+			command(indent + 1, 0, assignable);
+		}
+		case 1 -> {
+			var local = "t" + locals++;
+			line(indent, "let");
+			line(indent + 1, "var " + local + " : Integer");
+			line(indent, "in");
+			line(indent + 1, "begin");
+			var inner = new ArrayList<>(assignable);
+			inner.add(local);
+			line(indent + 2, local + " := " + expression(assignable) + ";");
+			command(indent + 2, depth - 1, inner);
+			trimSemicolon();
+			line(indent + 1, "end;");
+		}
+		default -> {
+			line(indent, "begin");
+			command(indent + 1, 0, assignable);
+			command(indent + 1, depth - 1, assignable);
+			trimSemicolon();
+			line(indent, "end;");
+		}
+		}
+	}
+
+	// an Integer expression of width terms, which may also use the local names
+	private String expression(List<String> locals) {
+		var expression = new StringBuilder();
+		for (var i = 0; i < shape.width(); i++) {
+			if (i > 0) {
+				expression.append(random.nextBoolean() ? " + " : " - ");
+			}
+			switch (random.nextInt(6)) {
+			case 0 -> expression.append(random.nextInt(100));
+			case 1 -> expression.append("a [").append(random.nextInt(shape.arraySize())).append(']');
+			case 2 -> expression.append("r.f").append(random.nextInt(shape.recordSize()));
+			case 3 -> {
+				if (functions.isEmpty()) {
+					expression.append(random.nextInt(100));
+				} else {
+					expression.append(reference(functions)).append(" (").append(random.nextInt(100)).append(')');
+				}
+			}
+			default -> expression.append(pick(locals, values));
+			}
+		}
+		return expression.toString();
+	}
+
+	// a local name or a global one, or the variable n if there are none
+	private String pick(List<String> locals, List<String> globals) {
+		var choice = random.nextInt(locals.size() + globals.size() + 1);
+		if (choice < locals.size()) {
+			return locals.get(choice);
+		} else if (choice < locals.size() + globals.size()) {
+			var name = globals.get(choice - locals.size());
+			identifications.add(new Identification(name, false));
+			return name;
+		}
+		return "n";
+	}
+
+	private String reference(List<String> globals) {
+		var name = globals.get(random.nextInt(globals.size()));
+		identifications.add(new Identification(name, false));
+		return name;
+	}
+
+	private void declare(String name) {
+		identifications.add(new Identification(name, true));
+	}
+
+	private void line(int indent, String text) {
+		program.append("  ".repeat(indent)).append(text).append('\n');
+		lines++;
+	}
+
+	// removes the semicolon after the last command of a sequence
+	private void trimSemicolon() {
+		replaceSemicolon("");
+	}
+
+	private void replaceSemicolon(String end) {
+		var semicolon = program.length() - 2;
+		if (program.charAt(semicolon) == ';') {
+			program.replace(semicolon, semicolon + 1, end);
+		}
+	}
+
+	/**
+	 * Prints a program of the given shape.
+	 *
+	 * Usage: CorpusGenerator [declarations [depth [width [loops [record size
+	 * [array size [seed]]]]]]]
+	 */
+	public static void main(String[] args) {
+		var shape = new Shape(argument(args, 0, 1000), argument(args, 1, 4), argument(args, 2, 4),
+				argument(args, 3, 20), argument(args, 4, 8), argument(args, 5, 16));
+		System.out.print(new CorpusGenerator(argument(args, 6, 1), shape).generate());
+	}
+
+	private static int argument(String[] args, int i, int otherwise) {
+		return (args.length > i) ? Integer.parseInt(args[i]) : otherwise;
+	}
+}
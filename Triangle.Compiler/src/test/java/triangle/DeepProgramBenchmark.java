@@ -0,0 +1,145 @@
+package triangle;
+
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.contextualAnalyzer.Checker;
+import triangle.optimiser.ConstantFolder;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+import triangle.treeDrawer.LayoutVisitor;
+
+/**
+ * Finds the largest programs of each kind that every phase can handle within a
+ * given Java stack, doubling the size until a phase overflows the stack or the
+ * size reaches a cap, and times each phase per command or declaration.
+ *
+ * The kinds are a long sequence of commands, a long sequence of declarations,
+ * and commands nested one inside another. Sequences are visited in a loop, so
+ * they should reach the cap; nesting still takes stack for each level, which
+ * is why the Compiler runs on a thread with a large stack.
+ *
+ * Usage: DeepProgramBenchmark [stack size in KB]
+ */
+public class DeepProgramBenchmark {
+
+	private static final String[] PHASES = { "parsing", "checking", "folding", "encoding", "layout" };
+
+	private record Kind(String name, int cap, IntFunction<String> program) {
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		var stackSize = ((args.length > 0) ? Long.parseLong(args[0]) : 1024) * 1024;
+		System.setProperty("java.awt.headless", "true");
+
+		// checking a sequence of declarations is quadratic in its length (see
+		// ScalingBenchmark), so that cap is lower
+		var kinds = new Kind[] { new Kind("commands", 1 << 18, DeepProgramBenchmark::commands),
+				new Kind("declarations", 1 << 15, DeepProgramBenchmark::declarations),
+				new Kind("nesting", 1 << 18, DeepProgramBenchmark::nesting) };
+
+		System.out.printf("stack size %d KB%n", stackSize / 1024);
+		System.out.printf("%-13s %8s", "kind", "size");
+		for (var phase : PHASES) {
+			System.out.printf(" %12s", phase);
+		}
+		System.out.println("   (ns per element)");
+		for (var kind : kinds) {
+			var largest = 0;
+			for (var size = 1024; size <= kind.cap(); size *= 2) {
+				var nanos = new long[PHASES.length];
+				var failed = new String[1];
+				var source = kind.program().apply(size);
+				var thread = new Thread(null, () -> failed[0] = compile(source, nanos), "deep", stackSize);
+				thread.start();
+				thread.join();
+				System.out.printf("%-13s %8d", kind.name(), size);
+				if (failed[0] != null) {
+					System.out.println(" stack overflow in " + failed[0]);
+					break;
+				}
+				for (var phaseNanos : nanos) {
+					System.out.printf(" %12.1f", (double) phaseNanos / size);
+				}
+				System.out.println();
+				largest = size;
+			}
+			System.out.printf("%-13s largest within the stack: %d%s%n%n", kind.name(), largest,
+					(largest * 2 > kind.cap()) ? " (the cap)" : "");
+		}
+	}
+
+	// runs each phase, returning the phase that overflowed the stack, if any
+	private static String compile(String source, long[] nanos) {
+		var phase = 0;
+		try {
+			var bytes = source.getBytes(StandardCharsets.ISO_8859_1);
+			var reporter = new ErrorReporter(false, false);
+			var before = System.nanoTime();
+			var ast = new Parser(new Scanner(SourceFile.ofBytes(bytes, 0, bytes.length, 1)), reporter).parseProgram();
+			nanos[phase++] = System.nanoTime() - before;
+
+			before = System.nanoTime();
+			new Checker(reporter).check(ast);
+			nanos[phase++] = System.nanoTime() - before;
+			if (reporter.getNumErrors() > 0) {
+				throw new IllegalStateException("generated program has errors: " + reporter.getTranscript());
+			}
+
+			before = System.nanoTime();
+			ast.visit(new ConstantFolder());
+			nanos[phase++] = System.nanoTime() - before;
+
+			// a large program does not fit in the code store, which is reported as
+			// a restriction, but the whole tree is still encoded
+			before = System.nanoTime();
+			new Encoder(new Emitter(reporter), reporter).encodeRun(ast, false);
+			nanos[phase++] = System.nanoTime() - before;
+
+			var graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+			var fontMetrics = graphics.getFontMetrics(new Font("SansSerif", Font.PLAIN, 12));
+			before = System.nanoTime();
+			var drawing = ast.visit(new LayoutVisitor(fontMetrics), null);
+			drawing.position(new Point(2048, 10));
+			nanos[phase++] = System.nanoTime() - before;
+			graphics.dispose();
+			return null;
+		} catch (StackOverflowError e) {
+			return PHASES[phase];
+		}
+	}
+
+	private static String commands(int size) {
+		var program = new StringBuilder("let\n  var x : Integer\nin\n  begin\n    x := 0");
+		for (var i = 1; i < size; i++) {
+			program.append(";\n    x := x + ").append(i % 10);
+		}
+		return program.append("\n  end\n").toString();
+	}
+
+	private static String declarations(int size) {
+		var program = new StringBuilder("let\n  var d0 : Integer");
+		for (var i = 1; i < size; i++) {
+			program.append(";\n  const d").append(i).append(" ~ ").append(i % 10).append(" + 1");
+		}
+		return program.append("\nin\n  d0 := 1\n").toString();
+	}
+
+	private static String nesting(int size) {
+		var program = new StringBuilder("let\n  var x : Integer\nin\n");
+		for (var i = 0; i < size; i++) {
+			program.append("if x < ").append(i % 10).append(" then\n");
+		}
+		program.append("x := 1");
+		for (var i = 0; i < size; i++) {
+			program.append("\nelse x := 2");
+		}
+		return program.append('\n').toString();
+	}
+}
@@ -0,0 +1,216 @@
+package triangle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import triangle.abstractMachine.ExecutionService;
+import triangle.abstractMachine.Instruction;
+import triangle.abstractMachine.Machine;
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.contextualAnalyzer.Checker;
+import triangle.optimiser.ConstantFolder;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+
+/**
+ * Compiles random programs from ProgramGenerator through each pipeline, runs
+ * every object program on the interpreter and reports any program whose output
+ * or final status differs from that of the baseline pipeline.
+ *
+ * Case n uses the program generated from seed + n, so a finding can be
+ * reproduced with "DifferentialFuzzer 1 seed". Each finding is written to the
+ * findings directory as seed.tri, together with the output of each pipeline.
+ * Programs that hit the instruction limit or one of the compiler's
+ * restrictions are counted as inconclusive, programs the compiler rejects are
+ * reported as generator bugs, and object programs the interpreter's verifier
+ * rejects are reported as crashes.
+ *
+ * The compiler keeps its state in static fields, so compilations are done one
+ * at a time on the main thread while the interpreter runs earlier cases on
+ * virtual threads; to use more cores, run several processes with different
+ * seeds.
+ *
+ * Usage: DifferentialFuzzer [cases [seed [size [findings directory]]]]
+ */
+public class DifferentialFuzzer {
+
+	/**
+	 * The ways of compiling a program. The first is the reference the others are
+	 * compared with.
+	 */
+	private enum Pipeline {
+		BASELINE, FOLDING, EXTENDED_INSTRUCTIONS;
+
+		Instruction[] compile(String source, ErrorReporter reporter) {
+			var bytes = source.getBytes(StandardCharsets.ISO_8859_1);
+			var ast = new Parser(new Scanner(SourceFile.ofBytes(bytes, 0, bytes.length, 1)), reporter).parseProgram();
+			if (reporter.getNumErrors() > 0) {
+				return null;
+			}
+			new Checker(reporter).check(ast);
+			if (reporter.getNumErrors() > 0) {
+				return null;
+			}
+			if (this == FOLDING) {
+				ast.visit(new ConstantFolder());
+			}
+			var emitter = new Emitter(reporter);
+			var encoder = new Encoder(emitter, reporter);
+			encoder.setExtendedInstructions(this == EXTENDED_INSTRUCTIONS);
+			encoder.encodeRun(ast, false);
+			if (!reporter.getDiagnostics().isEmpty()) {
+				return null;
+			}
+			return Arrays.copyOfRange(Machine.code, Machine.CB, emitter.getNextInstrAddr());
+		}
+	}
+
+	private static final long MAX_INSTRUCTIONS = 5_000_000;
+
+	// the number of cases running on the interpreter at once
+	private static final int WINDOW = 256;
+
+	private record Run(ByteArrayOutputStream output, Future<ExecutionService.Result> result) {
+	}
+
+	private record Case(long seed, String source, Run[] runs) {
+	}
+
+	private final Path findings;
+
+	private int passed, inconclusive, rejected, crashed, differed;
+
+	private DifferentialFuzzer(Path findings) {
+		this.findings = findings;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		var cases = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		var seed = (args.length > 1) ? Long.parseLong(args[1]) : 1;
+		var size = (args.length > 2) ? Integer.parseInt(args[2]) : 40;
+		var findings = Path.of((args.length > 3) ? args[3] : "fuzz-findings");
+
+		var fuzzer = new DifferentialFuzzer(findings);
+		var before = System.nanoTime();
+		try (var service = new ExecutionService(MAX_INSTRUCTIONS, 0, 0)) {
+			var pending = new ArrayDeque<Case>();
+			for (var n = 0; n < cases; n++) {
+				var next = fuzzer.compile(service, seed + n, new ProgramGenerator(seed + n, size).generate());
+				if (next != null) {
+					pending.add(next);
+				}
+				while (pending.size() >= WINDOW) {
+					fuzzer.compare(pending.remove());
+				}
+			}
+			while (!pending.isEmpty()) {
+				fuzzer.compare(pending.remove());
+			}
+		}
+		var seconds = (System.nanoTime() - before) / 1e9;
+		System.out.printf("%d cases in %.1f s (%.0f cases/s): %d passed, %d inconclusive, %d rejected, %d crashed, %d differed%n",
+				cases, seconds, cases / seconds, fuzzer.passed, fuzzer.inconclusive, fuzzer.rejected, fuzzer.crashed,
+				fuzzer.differed);
+		if (fuzzer.rejected + fuzzer.crashed + fuzzer.differed > 0) {
+			System.exit(1);
+		}
+	}
+
+	// compiles the program through each pipeline and starts running the results
+	private Case compile(ExecutionService service, long seed, String source) throws IOException {
+		var pipelines = Pipeline.values();
+		var runs = new Run[pipelines.length];
+		for (var i = 0; i < pipelines.length; i++) {
+			var reporter = new ErrorReporter(false, false);
+			Instruction[] code;
+			try {
+				code = pipelines[i].compile(source, reporter);
+			} catch (RuntimeException | StackOverflowError e) {
+				crashed++;
+				record(seed, source, pipelines[i] + " compiler crashed: " + e);
+				return null;
+			}
+			if (code == null && reporter.getNumErrors() == 0) {
+				// too big for the code store
+				inconclusive++;
+				return null;
+			} else if (code == null) {
+				rejected++;
+				record(seed, source, pipelines[i] + " rejected the program:\n" + reporter.getTranscript());
+				return null;
+			}
+			var output = new ByteArrayOutputStream();
+			runs[i] = new Run(output, service.submit(code, InputStream.nullInputStream(), output));
+		}
+		return new Case(seed, source, runs);
+	}
+
+	// waits for each run of a case and compares them with the baseline
+	private void compare(Case next) throws IOException, InterruptedException {
+		var pipelines = Pipeline.values();
+		var outputs = new String[pipelines.length];
+		var results = new ExecutionService.Result[pipelines.length];
+		for (var i = 0; i < pipelines.length; i++) {
+			try {
+				results[i] = next.runs()[i].result().get();
+			} catch (ExecutionException e) {
+				crashed++;
+				record(next.seed(), next.source(), pipelines[i] + " interpreter crashed: " + e.getCause());
+				return;
+			}
+			outputs[i] = programOutput(next.runs()[i].output().toString(StandardCharsets.ISO_8859_1));
+			if (results[i].rejected()) {
+				crashed++;
+				record(next.seed(), next.source(), pipelines[i] + " object program was rejected:" + outputs[i]);
+				return;
+			}
+		}
+		for (var result : results) {
+			if (result.limitExceeded()) {
+				inconclusive++;
+				return;
+			}
+		}
+		var report = new StringBuilder();
+		for (var i = 1; i < pipelines.length; i++) {
+			if (results[i].status() != results[0].status() || !outputs[i].equals(outputs[0])) {
+				report.append(pipelines[i]).append(" differs from ").append(pipelines[0]).append('\n');
+			}
+		}
+		if (report.isEmpty()) {
+			passed++;
+			return;
+		}
+		differed++;
+		for (var i = 0; i < pipelines.length; i++) {
+			report.append("---- ").append(pipelines[i]).append(", status ").append(results[i].status()).append('\n');
+			report.append(outputs[i]);
+		}
+		record(next.seed(), next.source(), report.toString());
+	}
+
+	// the interpreter's final status includes the time taken, or on failure the
+	// contents of the stack, whose temporaries legitimately differ between
+	// pipelines; the status itself is compared separately
+	private static String programOutput(String output) {
+		var end = output.indexOf("\nProgram has ");
+		return (end < 0) ? output : output.substring(0, end);
+	}
+
+	private void record(long seed, String source, String report) throws IOException {
+		Files.createDirectories(findings);
+		Files.writeString(findings.resolve(seed + ".tri"), source, StandardCharsets.ISO_8859_1);
+		Files.writeString(findings.resolve(seed + ".txt"), report, StandardCharsets.ISO_8859_1);
+		System.out.println("seed " + seed + ": " + report.lines().findFirst().orElse(""));
+	}
+}
@@ -0,0 +1,148 @@
+package triangle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.contextualAnalyzer.Checker;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+
+/**
+ * Measures recompilation after a one-line edit with the IncrementalCompiler,
+ * against compiling the whole program again, and checks that both give the
+ * same object program.
+ *
+ * The program has many small procedures, each padded with comment lines; each
+ * edit changes a literal in the body of one of them. With a directory of .tri
+ * files as the argument, it instead checks that compiling each file
+ * incrementally gives the same object program as a full compilation.
+ *
+ * Usage: IncrementalCompilerBenchmark [procs [edits]] | IncrementalCompilerBenchmark directory
+ */
+public class IncrementalCompilerBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && Files.isDirectory(Path.of(args[0]))) {
+			compareAll(Path.of(args[0]));
+			return;
+		}
+		var procs = (args.length > 0) ? Integer.parseInt(args[0]) : 80;
+		var edits = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+		var versions = new ArrayList<String>();
+		var outputs = new ArrayList<byte[]>();
+		var incremental = new IncrementalCompiler(new ErrorReporter(false), false);
+		var object = Files.createTempFile("incremental", ".tam");
+		try {
+			var before = System.nanoTime();
+			incremental.compile(program(procs, -1, 0));
+			System.out.printf("first compile, %d procs: %.2f ms%n", procs, (System.nanoTime() - before) / 1e6);
+
+			var total = 0L;
+			for (var i = 0; i < edits; i++) {
+				var source = program(procs, i % procs, i);
+				before = System.nanoTime();
+				if (!incremental.compile(source)) {
+					throw new IllegalStateException("edit " + i + " did not compile");
+				}
+				total += System.nanoTime() - before;
+				if (i % 20 == 0) {
+					incremental.saveObjectProgram(object.toString());
+					versions.add(source);
+					outputs.add(Files.readAllBytes(object));
+				}
+			}
+			System.out.printf("incremental recompile after a one-line edit: %.3f ms (%d reused, %d grafted, %d re-encoded)%n",
+					total / 1e6 / edits, incremental.getReused(), incremental.getGrafted(),
+					incremental.getReencoded());
+
+			// full compilations come last, as each one sets up the standard
+			// environment afresh
+			total = 0L;
+			for (var i = 0; i < versions.size(); i++) {
+				before = System.nanoTime();
+				fullCompile(versions.get(i), object);
+				total += System.nanoTime() - before;
+				if (!Arrays.equals(outputs.get(i), Files.readAllBytes(object))) {
+					throw new IllegalStateException("object programs differ for version " + i);
+				}
+			}
+			System.out.printf("full compile: %.3f ms; %d versions identical%n", total / 1e6 / versions.size(),
+					versions.size());
+		} finally {
+			Files.delete(object);
+		}
+	}
+
+	// the program, with the body of procedure edited (if any) changed by value
+	private static String program(int procs, int edited, int value) {
+		var program = new StringBuilder("let\n  var total : Integer;\n");
+		for (var k = 0; k < procs; k++) {
+			for (var line = 0; line < 20; line++) {
+				program.append("  ! procedure p").append(k).append(", a line of commentary to be scanned\n");
+			}
+			program.append("  proc p").append(k).append(" (n : Integer) ~\n");
+			program.append("    total := total + n * ").append(k == edited ? value : k).append(";\n");
+		}
+		program.append("  func f (n : Integer) : Integer ~ n + total\n");
+		program.append("in\n  begin\n    total := 0;\n");
+		for (var k = 0; k < procs; k++) {
+			program.append("    p").append(k).append(" (").append(k).append(");\n");
+		}
+		program.append("    putint (f (1))\n  end\n");
+		return program.toString();
+	}
+
+	private static void fullCompile(String source, Path object) throws IOException {
+		var file = Files.createTempFile("full", ".tri");
+		Files.writeString(file, source, StandardCharsets.ISO_8859_1);
+		try {
+			fullCompile(file, object);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static boolean fullCompile(Path file, Path object) {
+		var reporter = new ErrorReporter(false);
+		var ast = new Parser(new Scanner(SourceFile.ofPath(file.toString())), reporter).parseProgram();
+		if (reporter.getNumErrors() > 0) {
+			return false;
+		}
+		new Checker(reporter).check(ast);
+		if (reporter.getNumErrors() > 0) {
+			return false;
+		}
+		var emitter = new Emitter(reporter);
+		new Encoder(emitter, reporter).encodeRun(ast, false);
+		emitter.saveObjectProgram(object.toString());
+		return reporter.getNumErrors() == 0;
+	}
+
+	private static void compareAll(Path directory) throws IOException {
+		var object = Files.createTempFile("compare", ".tam");
+		try (var files = Files.list(directory)) {
+			for (var file : files.filter(f -> f.toString().endsWith(".tri")).sorted().toList()) {
+				var incremental = new IncrementalCompiler(new ErrorReporter(false), false);
+				var compiled = incremental.compile(Files.readAllBytes(file));
+				byte[] expected = null;
+				if (compiled) {
+					incremental.saveObjectProgram(object.toString());
+					expected = Files.readAllBytes(object);
+				}
+				var full = fullCompile(file, object);
+				var same = compiled == full && (!full || Arrays.equals(expected, Files.readAllBytes(object)));
+				System.out.println(file.getFileName() + ": " + (same ? "same" : "DIFFERENT"));
+			}
+		} finally {
+			Files.delete(object);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package triangle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import triangle.abstractMachine.Machine;
+import triangle.abstractSyntaxTrees.Program;
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.contextualAnalyzer.Checker;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+
+/**
+ * Measures code generation with Encoder.encodeRunInParallel against the
+ * sequential encodeRun, on one checked program with many top-level routines,
+ * and checks that both give the same code. With a directory of .tri files as
+ * the argument, it instead checks that the two give the same code for each
+ * file.
+ *
+ * The Code Store holds 1024 instructions, which bounds the work there is to
+ * share out, so the routines are sized to fill it.
+ *
+ * Usage: ParallelEncodingBenchmark [procs [runs]] | ParallelEncodingBenchmark directory
+ */
+public class ParallelEncodingBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && Files.isDirectory(Path.of(args[0]))) {
+			compareAll(Path.of(args[0]));
+			return;
+		}
+		var procs = (args.length > 0) ? Integer.parseInt(args[0]) : 25;
+		var runs = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+
+		var file = Files.createTempFile("parallel", ".tri");
+		try {
+			Files.writeString(file, program(procs));
+			var reporter = new ErrorReporter(false);
+			var ast = new Parser(new Scanner(SourceFile.ofPath(file.toString())), reporter).parseProgram();
+			var checker = new Checker(reporter);
+			checker.check(ast);
+			if (reporter.getNumErrors() > 0) {
+				throw new IllegalStateException("benchmark program does not compile");
+			}
+
+			var expected = encode(ast, checker, false);
+			if (!Arrays.equals(expected, encode(ast, checker, true))) {
+				throw new IllegalStateException("parallel code differs");
+			}
+			System.out.printf("%d procs, %d instructions, %d processors%n", procs, expected.length / 4,
+					Runtime.getRuntime().availableProcessors());
+
+			// warm up both, then alternate them
+			for (var i = 0; i < runs; i++) {
+				encode(ast, checker, i % 2 == 0);
+			}
+			long sequential = 0, parallel = 0;
+			for (var i = 0; i < runs; i++) {
+				var before = System.nanoTime();
+				encode(ast, checker, false);
+				sequential += System.nanoTime() - before;
+				before = System.nanoTime();
+				encode(ast, checker, true);
+				parallel += System.nanoTime() - before;
+			}
+			System.out.printf("sequential: %.1f us, parallel: %.1f us per encoding%n", sequential / 1e3 / runs,
+					parallel / 1e3 / runs);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	// procedures of about 36 instructions each
+	private static String program(int procs) {
+		var program = new StringBuilder("let\n  var total : Integer;\n");
+		for (var k = 0; k < procs; k++) {
+			program.append("  proc p").append(k).append(" (n : Integer) ~\n");
+			program.append("    let var i : Integer in begin\n");
+			program.append("      i := 0;\n");
+			program.append("      while i < n do begin total := total + i * ").append(k).append("; i := i + 1 end;\n");
+			program.append("      if total > ").append(k).append(" then total := total - 1 else ");
+			program.append(k > 0 ? "p" + (k - 1) + " (n - 1)" : "").append("\n");
+			program.append("    end;\n");
+		}
+		program.append("  func f (n : Integer) : Integer ~ n + total\n");
+		program.append("in\n  begin\n    total := 0;\n");
+		program.append("    p").append(procs - 1).append(" (3);\n");
+		program.append("    putint (f (1))\n  end\n");
+		return program.toString();
+	}
+
+	// the code generated for a checked program, four words per instruction
+	private static int[] encode(Program ast, Checker checker, boolean parallel) {
+		var reporter = new ErrorReporter(false);
+		var emitter = new Emitter(reporter);
+		var encoder = new Encoder(emitter, reporter);
+		if (parallel) {
+			encoder.encodeRunInParallel(ast, checker.getTypeInterner().getCanonicalTypes());
+		} else {
+			encoder.encodeRun(ast, false);
+		}
+		var code = new int[4 * (emitter.getNextInstrAddr() - Machine.CB)];
+		for (var i = 0; i < code.length; i += 4) {
+			var instruction = Machine.code[Machine.CB + i / 4];
+			code[i] = instruction.getOpCode().ordinal();
+			code[i + 1] = instruction.getRegister().ordinal();
+			code[i + 2] = instruction.getLength();
+			code[i + 3] = instruction.getOperand();
+		}
+		return code;
+	}
+
+	private static void compareAll(Path directory) throws IOException {
+		try (var files = Files.list(directory)) {
+			for (var file : files.filter(f -> f.toString().endsWith(".tri")).sorted().toList()) {
+				var reporter = new ErrorReporter(false, false);
+				var ast = new Parser(new Scanner(SourceFile.ofPath(file.toString())), reporter).parseProgram();
+				if (reporter.getNumErrors() > 0) {
+					continue;
+				}
+				var checker = new Checker(reporter);
+				checker.check(ast);
+				if (reporter.getNumErrors() > 0) {
+					continue;
+				}
+				var same = Arrays.equals(encode(ast, checker, false), encode(ast, checker, true));
+				System.out.println(file.getFileName() + ": " + (same ? "same" : "DIFFERENT"));
+			}
+		}
+	}
+}
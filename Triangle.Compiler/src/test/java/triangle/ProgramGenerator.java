@@ -0,0 +1,642 @@
+package triangle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random, well-typed Triangle programs, following the grammar in
+ * Parser: declarations of variables, constants, a record type, procedures and
+ * functions, and every kind of command and expression the parser accepts.
+ *
+ * Every generated program terminates unless it fails at run time (overflow or
+ * division by zero): every loop runs a counter, which nothing else assigns, up
+ * to a small bound, and routines only call routines declared before them.
+ * Every variable is assigned before it is read, so the result never depends on
+ * what was left in the data store. The program ends by printing all its global
+ * variables.
+ *
+ * The same seed always gives the same program.
+ */
+public class ProgramGenerator {
+
+	private enum Kind {
+		INT, BOOL, CHAR, ARRAY, RECORD
+	}
+
+	private record Type(Kind kind, int length) {
+	}
+
+	private static final Type INT = new Type(Kind.INT, 0), BOOL = new Type(Kind.BOOL, 0),
+			CHAR = new Type(Kind.CHAR, 0), RECORD = new Type(Kind.RECORD, 0);
+
+	// a name in scope; assignable is false for constants, const parameters and
+	// loop counters
+	private record Variable(String name, Type type, boolean assignable) {
+	}
+
+	private record Routine(String name, List<Type> params, List<Boolean> byReference, Type result) {
+	}
+
+	private final SplittableRandom random;
+
+	private final int size;
+
+	private final StringBuilder out = new StringBuilder(4096);
+
+	private final List<Variable> scope = new ArrayList<>();
+
+	private final List<Routine> routines = new ArrayList<>();
+
+	private int names, indent;
+
+	// commands left to generate, which keeps the program's size near the target
+	private int budget;
+
+	/**
+	 * @param seed the seed for the program
+	 * @param size roughly the number of commands in the program
+	 */
+	public ProgramGenerator(long seed, int size) {
+		this.random = new SplittableRandom(seed);
+		this.size = size;
+	}
+
+	public String generate() {
+		budget = size;
+		line("let");
+		indent++;
+		line("type Pt ~ record x : Integer, y : Integer, ok : Boolean end;");
+		var globals = new ArrayList<Variable>();
+		var count = 2 + random.nextInt(4);
+		for (var i = 0; i < count; i++) {
+			var variable = new Variable("g" + i, randomType(), true);
+			line("var " + variable.name() + " : " + spell(variable.type()) + ";");
+			globals.add(variable);
+		}
+		var constant = new Variable("k0", INT, false);
+		line("const k0 ~ " + random.nextInt(10) + ";");
+		scope.add(constant);
+
+		// routines see the globals, which are initialised before any call
+		scope.addAll(globals);
+		var routineCount = random.nextInt(4);
+		for (var i = 0; i < routineCount; i++) {
+			routine(i == routineCount - 1);
+		}
+		if (routineCount == 0) {
+			line("var unused : Integer");
+		}
+		indent--;
+		line("in");
+		line("begin");
+		indent++;
+		// each global comes into scope once it has been initialised
+		scope.removeAll(globals);
+		for (var variable : globals) {
+			initialise(variable);
+			scope.add(variable);
+		}
+		while (budget > 0) {
+			command(3);
+			append(";");
+		}
+		for (var variable : globals) {
+			dump(variable);
+		}
+		line("puteol()");
+		indent--;
+		line("end");
+		return out.toString();
+	}
+
+	// DECLARATIONS
+
+	private void routine(boolean last) {
+		var name = "r" + routines.size();
+		var params = new ArrayList<Type>();
+		var byReference = new ArrayList<Boolean>();
+		var formals = new StringBuilder();
+		var mark = scope.size();
+		var count = random.nextInt(3);
+		var function = random.nextInt(3) == 0;
+		for (var i = 0; i < count; i++) {
+			var type = random.nextInt(4) == 0 ? BOOL : INT;
+			var reference = !function && random.nextBoolean();
+			var param = "p" + names++;
+			formals.append(i == 0 ? "" : ", ").append(reference ? "var " : "").append(param).append(" : ")
+					.append(spell(type));
+			params.add(type);
+			byReference.add(reference);
+			scope.add(new Variable(param, type, reference));
+		}
+		if (function) {
+			var result = random.nextInt(3) == 0 ? BOOL : INT;
+			line("func " + name + " (" + formals + ") : " + spell(result) + " ~");
+			indent++;
+			startLine();
+			expression(result, 3);
+			append(last ? "" : ";");
+			indent--;
+			scope.subList(mark, scope.size()).clear();
+			routines.add(new Routine(name, params, byReference, result));
+		} else {
+			line("proc " + name + " (" + formals + ") ~");
+			indent++;
+			startLine();
+			var saved = budget;
+			budget = 1 + random.nextInt(4);
+			block(2);
+			budget = saved;
+			append(last ? "" : ";");
+			indent--;
+			scope.subList(mark, scope.size()).clear();
+			routines.add(new Routine(name, params, byReference, null));
+		}
+	}
+
+	private Type randomType() {
+		return switch (random.nextInt(6)) {
+		case 0 -> BOOL;
+		case 1 -> CHAR;
+		case 2 -> new Type(Kind.ARRAY, 2 + random.nextInt(4));
+		case 3 -> RECORD;
+		default -> INT;
+		};
+	}
+
+	private static String spell(Type type) {
+		return switch (type.kind()) {
+		case INT -> "Integer";
+		case BOOL -> "Boolean";
+		case CHAR -> "Char";
+		case ARRAY -> "array " + type.length() + " of Integer";
+		case RECORD -> "Pt";
+		};
+	}
+
+	// COMMANDS
+
+	private void block(int depth) {
+		line("begin");
+		indent++;
+		do {
+			command(depth);
+			append(";");
+		} while (budget > 0 && random.nextInt(3) > 0);
+		startLine();
+		append("puteol()");
+		indent--;
+		line("end");
+	}
+
+	private void command(int depth) {
+		budget--;
+		var choice = random.nextInt(depth > 0 ? 14 : 6);
+		switch (choice) {
+		case 0, 1, 2 -> assignment();
+		case 3 -> {
+			startLine();
+			append("putint (");
+			expression(INT, 2);
+			append(")");
+		}
+		case 4 -> {
+			startLine();
+			append("put (");
+			expression(CHAR, 1);
+			append(")");
+		}
+		case 5 -> call();
+		case 6 -> {
+			startLine();
+			append("if ");
+			expression(BOOL, 2);
+			append(" then");
+			block(depth - 1);
+			line("else");
+			block(depth - 1);
+		}
+		case 7, 8 -> counted(depth, random.nextInt(3));
+		case 9 -> {
+			// a nested let, whose variables are initialised first
+			var mark = scope.size();
+			line("let");
+			indent++;
+			var local = new Variable("v" + names++, randomType(), true);
+			line("var " + local.name() + " : " + spell(local.type()) + ";");
+			line("const " + "c" + names + " ~ " + random.nextInt(20));
+			scope.add(new Variable("c" + names++, INT, false));
+			indent--;
+			line("in");
+			line("begin");
+			indent++;
+			initialise(local);
+			scope.add(local);
+			command(depth - 1);
+			indent--;
+			line("end");
+			scope.subList(mark, scope.size()).clear();
+		}
+		case 10 -> {
+			var target = pick(INT, true);
+			if (target != null) {
+				startLine();
+				append(target.name()).append("**");
+			} else {
+				assignment();
+			}
+		}
+		case 11 -> {
+			line("{");
+			indent++;
+			command(depth - 1);
+			append(";");
+			command(depth - 1);
+			indent--;
+			line("}");
+		}
+		default -> block(depth - 1);
+		}
+	}
+
+	private void assignment() {
+		var target = pick(null, true);
+		if (target == null) {
+			startLine();
+			append("puteol ()");
+			return;
+		}
+		startLine();
+		switch (target.type().kind()) {
+		case ARRAY -> {
+			if (random.nextBoolean()) {
+				append(target.name()).append(" := ");
+				arrayAggregate(target.type());
+			} else {
+				append(target.name()).append(" [").append(random.nextInt(target.type().length())).append("] := ");
+				expression(INT, 2);
+			}
+		}
+		case RECORD -> {
+			switch (random.nextInt(3)) {
+			case 0 -> {
+				append(target.name()).append(" := ");
+				recordAggregate();
+			}
+			case 1 -> {
+				append(target.name()).append(random.nextBoolean() ? ".x := " : ".y := ");
+				expression(INT, 2);
+			}
+			default -> {
+				append(target.name()).append(".ok := ");
+				expression(BOOL, 2);
+			}
+			}
+		}
+		default -> {
+			append(target.name()).append(" := ");
+			expression(target.type(), 3);
+		}
+		}
+	}
+
+	// a while, repeat or loop command, run by a fresh counter
+	private void counted(int depth, int form) {
+		var counter = "i" + names++;
+		var bound = random.nextInt(5);
+		line("let var " + counter + " : Integer in");
+		line("begin");
+		indent++;
+		line(counter + " := 0;");
+		var variable = new Variable(counter, INT, false);
+		scope.add(variable);
+		switch (form) {
+		case 0 -> {
+			line("while " + counter + " < " + bound + " do");
+			line("begin");
+			indent++;
+			command(depth - 1);
+			append(";");
+			line(counter + " := " + counter + " + 1");
+			indent--;
+			line("end");
+		}
+		case 1 -> {
+			line("repeat");
+			line("begin");
+			indent++;
+			command(depth - 1);
+			append(";");
+			line(counter + " := " + counter + " + 1");
+			indent--;
+			line("end");
+			line("until " + counter + " >= " + bound);
+		}
+		default -> {
+			line("loop");
+			indent++;
+			command(depth - 1);
+			indent--;
+			line("while " + counter + " < " + bound + " do");
+			indent++;
+			line(counter + " := " + counter + " + 1");
+			indent--;
+		}
+		}
+		scope.remove(variable);
+		indent--;
+		line("end");
+	}
+
+	private void call() {
+		var procs = routines.stream().filter(r -> r.result() == null).toList();
+		if (procs.isEmpty()) {
+			startLine();
+			append("puteol ()");
+			return;
+		}
+		var proc = procs.get(random.nextInt(procs.size()));
+		startLine();
+		append(proc.name()).append(" (");
+		if (!actuals(proc)) {
+			// no variable to pass by reference
+			out.setLength(out.lastIndexOf("\n") + 1);
+			startLine();
+			append("puteol ()");
+			return;
+		}
+		append(")");
+	}
+
+	private boolean actuals(Routine routine) {
+		for (var i = 0; i < routine.params().size(); i++) {
+			append(i == 0 ? "" : ", ");
+			if (routine.byReference().get(i)) {
+				var variable = pick(routine.params().get(i), true);
+				if (variable == null) {
+					return false;
+				}
+				append("var ").append(variable.name());
+			} else {
+				expression(routine.params().get(i), 2);
+			}
+		}
+		return true;
+	}
+
+	private void initialise(Variable variable) {
+		startLine();
+		append(variable.name()).append(" := ");
+		switch (variable.type().kind()) {
+		case ARRAY -> arrayAggregate(variable.type());
+		case RECORD -> recordAggregate();
+		case BOOL -> append(random.nextBoolean() ? "true" : "false");
+		case CHAR -> charLiteral();
+		default -> append(Integer.toString(random.nextInt(20)));
+		}
+		append(";");
+	}
+
+	private void dump(Variable variable) {
+		switch (variable.type().kind()) {
+		case INT -> line("putint (" + variable.name() + ");");
+		case BOOL -> line("if " + variable.name() + " then put ('T') else put ('F');");
+		case CHAR -> line("put (" + variable.name() + ");");
+		case RECORD -> {
+			line("putint (" + variable.name() + ".x);");
+			line("putint (" + variable.name() + ".y);");
+			line("if " + variable.name() + ".ok then put ('T') else put ('F');");
+		}
+		case ARRAY -> {
+			for (var i = 0; i < variable.type().length(); i++) {
+				line("putint (" + variable.name() + " [" + i + "]);");
+			}
+		}
+		}
+		line("put (' ');");
+	}
+
+	// EXPRESSIONS
+
+	private void expression(Type type, int depth) {
+		switch (type.kind()) {
+		case BOOL -> booleanExpression(depth);
+		case CHAR -> {
+			var variable = (random.nextBoolean()) ? pick(CHAR, false) : null;
+			if (variable != null) {
+				append(variable.name());
+			} else if (random.nextBoolean()) {
+				append("chr (").append(65 + random.nextInt(26)).append(")");
+			} else {
+				charLiteral();
+			}
+		}
+		default -> integerExpression(depth);
+		}
+	}
+
+	private void integerExpression(int depth) {
+		var choice = random.nextInt(depth > 0 ? 13 : 4);
+		switch (choice) {
+		case 0, 1 -> append(Integer.toString(random.nextInt(20)));
+		case 2, 3 -> integerOperand();
+		case 4, 5, 6 -> {
+			var operator = switch (random.nextInt(8)) {
+			case 0 -> " * ";
+			case 1 -> " / ";
+			case 2 -> " // ";
+			case 3, 4 -> " - ";
+			default -> " + ";
+			};
+			append("(");
+			integerExpression(depth - 1);
+			append(operator);
+			integerExpression(depth - 1);
+			append(")");
+		}
+		case 7 -> {
+			append("(if ");
+			booleanExpression(depth - 1);
+			append(" then ");
+			integerExpression(depth - 1);
+			append(" else ");
+			integerExpression(depth - 1);
+			append(")");
+		}
+		case 8 -> {
+			var constant = "c" + names++;
+			append("(let const ").append(constant).append(" ~ ");
+			integerExpression(depth - 1);
+			append(" in ");
+			scope.add(new Variable(constant, INT, false));
+			integerExpression(depth - 1);
+			scope.remove(scope.size() - 1);
+			append(")");
+		}
+		case 9 -> {
+			append("ord (");
+			expression(CHAR, 0);
+			append(")");
+		}
+		case 10 -> {
+			append("(| (");
+			integerExpression(depth - 1);
+			append("))");
+		}
+		default -> {
+			if (!functionCall(INT, depth)) {
+				integerOperand();
+			}
+		}
+		}
+	}
+
+	private void integerOperand() {
+		var variable = pick(null, false);
+		if (variable == null) {
+			append("maxint");
+			return;
+		}
+		switch (variable.type().kind()) {
+		case INT -> append(variable.name());
+		case ARRAY -> append(variable.name()).append(" [").append(random.nextInt(variable.type().length()))
+				.append("]");
+		case RECORD -> append(variable.name()).append(random.nextBoolean() ? ".x" : ".y");
+		case CHAR -> append("ord (").append(variable.name()).append(")");
+		case BOOL -> append("(if ").append(variable.name()).append(" then 1 else 0)");
+		}
+	}
+
+	private void booleanExpression(int depth) {
+		var choice = random.nextInt(depth > 0 ? 10 : 2);
+		switch (choice) {
+		case 0 -> {
+			var variable = pick(BOOL, false);
+			append(variable != null ? variable.name() : random.nextBoolean() ? "true" : "false");
+		}
+		case 1 -> append(random.nextBoolean() ? "true" : "false");
+		case 2, 3, 4 -> {
+			var operator = switch (random.nextInt(6)) {
+			case 0 -> " < ";
+			case 1 -> " <= ";
+			case 2 -> " > ";
+			case 3 -> " >= ";
+			case 4 -> " = ";
+			default -> " \\= ";
+			};
+			append("(");
+			integerExpression(depth - 1);
+			append(operator);
+			integerExpression(depth - 1);
+			append(")");
+		}
+		case 5 -> {
+			append("(");
+			booleanExpression(depth - 1);
+			append(random.nextBoolean() ? " /\\ " : " \\/ ");
+			booleanExpression(depth - 1);
+			append(")");
+		}
+		case 6 -> {
+			append("(\\ (");
+			booleanExpression(depth - 1);
+			append("))");
+		}
+		case 7 -> {
+			var record = pick(RECORD, false);
+			if (record != null) {
+				append(record.name()).append(".ok");
+			} else {
+				append("(");
+				expression(CHAR, 0);
+				append(" = ");
+				expression(CHAR, 0);
+				append(")");
+			}
+		}
+		default -> {
+			if (!functionCall(BOOL, depth)) {
+				append("false");
+			}
+		}
+		}
+	}
+
+	private boolean functionCall(Type result, int depth) {
+		var functions = routines.stream().filter(r -> r.result() == result).toList();
+		if (functions.isEmpty()) {
+			return false;
+		}
+		var function = functions.get(random.nextInt(functions.size()));
+		append(function.name()).append(" (");
+		actuals(function);
+		append(")");
+		return true;
+	}
+
+	private void arrayAggregate(Type type) {
+		append("[");
+		for (var i = 0; i < type.length(); i++) {
+			append(i == 0 ? "" : ", ");
+			integerExpression(1);
+		}
+		append("]");
+	}
+
+	private void recordAggregate() {
+		append("{x ~ ");
+		integerExpression(1);
+		append(", y ~ ");
+		integerExpression(1);
+		append(", ok ~ ");
+		booleanExpression(1);
+		append("}");
+	}
+
+	private void charLiteral() {
+		append("'").append((char) ('a' + random.nextInt(26))).append("'");
+	}
+
+	// the variable picked at random from those of the type (any type if null)
+	// in scope, or null if there are none
+	private Variable pick(Type type, boolean assignable) {
+		var count = 0;
+		Variable chosen = null;
+		for (var variable : scope) {
+			if ((type == null || variable.type().equals(type)) && (variable.assignable() || !assignable)) {
+				count++;
+				if (random.nextInt(count) == 0) {
+					chosen = variable;
+				}
+			}
+		}
+		return chosen;
+	}
+
+	// OUTPUT
+
+	private void line(String text) {
+		startLine();
+		out.append(text);
+	}
+
+	private void startLine() {
+		if (out.length() > 0) {
+			out.append('\n');
+		}
+		for (var i = 0; i < indent; i++) {
+			out.append("  ");
+		}
+	}
+
+	private StringBuilder append(String text) {
+		return out.append(text);
+	}
+
+	public static void main(String[] args) {
+		var seed = (args.length > 0) ? Long.parseLong(args[0]) : 1;
+		var size = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		System.out.println(new ProgramGenerator(seed, size).generate());
+	}
+}
@@ -0,0 +1,101 @@
+package triangle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+import triangle.abstractMachine.ExecutionService;
+
+/**
+ * Helpers for the tests that compile a Triangle program and run it.
+ */
+class Programs {
+
+	private Programs() {
+	}
+
+	/**
+	 * Writes source text to a file in the given directory.
+	 *
+	 * @return the file's name
+	 */
+	static String write(Path directory, String fileName, String source) {
+		try {
+			return Files.writeString(directory.resolve(fileName), source).toString();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Compiles a program with the compiler's current options, which must
+	 * succeed.
+	 *
+	 * @return the name of the object file
+	 */
+	static String compile(Path directory, String source) {
+		var objectName = directory.resolve("program.tam").toString();
+		if (!Compiler.compileProgram(write(directory, "program.tri", source), objectName, false, false)) {
+			throw new AssertionError("program did not compile");
+		}
+		return objectName;
+	}
+
+	/**
+	 * Runs an object program with empty input.
+	 *
+	 * @return what the program wrote, without the interpreter's status report
+	 */
+	static String run(String objectName) {
+		var output = new ByteArrayOutputStream();
+		var result = execute(objectName, output);
+		if (!result.halted()) {
+			throw new AssertionError("program did not halt: " + output);
+		}
+		var text = output.toString();
+		return text.substring(0, text.lastIndexOf("\nProgram has"));
+	}
+
+	/**
+	 * Runs an object program with empty input, whether or not it halts.
+	 *
+	 * @param output receives what the program wrote and its status report
+	 */
+	static ExecutionService.Result execute(String objectName, OutputStream output) {
+		try (var service = new ExecutionService()) {
+			return service.submit(ExecutionService.load(objectName), new ByteArrayInputStream(new byte[0]), output)
+					.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Resets the compiler's options to their defaults.
+	 */
+	static void resetOptions() {
+		Compiler.folding = false;
+		Compiler.shortCircuit = false;
+		Compiler.extendedInstructions = false;
+		Compiler.debugInfo = false;
+		Compiler.library = false;
+		Compiler.link = null;
+		Compiler.parallelEncoding = false;
+		Compiler.diagnosticsJson = null;
+		Compiler.diagnosticsSarif = null;
+		Compiler.cache = null;
+	}
+
+	static byte[] bytes(String fileName) {
+		try {
+			return Files.readAllBytes(Path.of(fileName));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package triangle;
+
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import triangle.abstractSyntaxTrees.Program;
+import triangle.abstractSyntaxTrees.declarations.Declaration;
+import triangle.abstractSyntaxTrees.declarations.VarDeclaration;
+import triangle.abstractSyntaxTrees.terminals.Identifier;
+import triangle.abstractSyntaxTrees.types.IntTypeDenoter;
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.contextualAnalyzer.Checker;
+import triangle.contextualAnalyzer.IdentificationTable;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+import triangle.syntacticAnalyzer.SourcePosition;
+import triangle.treeDrawer.LayoutVisitor;
+
+/**
+ * Measures how the throughput of each phase of the compiler changes with the
+ * size of the program, using programs from CorpusGenerator whose number of
+ * declarations doubles at each step, and reports any phase whose time grows
+ * faster than linearly.
+ *
+ * For each size, each phase is timed on a fresh tree and the best of several
+ * runs is kept. The phases are scanning and parsing (timed apart through the
+ * scanner's own timing), replaying the program's uses of global names against
+ * an IdentificationTable, checking (which includes identification), encoding
+ * and the tree drawer's layout. The growth of each phase is the slope of a
+ * least-squares fit of log time against log lines, so 1 is linear and 2 is
+ * quadratic; a phase whose slope exceeds the limit is marked, and the
+ * benchmark then exits with status 1.
+ *
+ * Programs beyond a few thousand lines do not fit in the code store, so the
+ * encoder reports restrictions but still visits the whole program. The phases
+ * recurse over the tree, so they run on a thread with a large stack.
+ *
+ * Usage: ScalingBenchmark [steps [declarations [depth [width [loops [record
+ * size [array size [slope limit]]]]]]]]
+ */
+public class ScalingBenchmark {
+
+	private static final String[] PHASES = { "scanning", "parsing", "identification", "checking", "encoding",
+			"layout" };
+
+	private static final int RUNS = 3;
+
+	private record Measurement(int lines, Map<String, Long> nanos) {
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		var steps = argument(args, 0, 6);
+		var shape = new CorpusGenerator.Shape(argument(args, 1, 500), argument(args, 2, 4), argument(args, 3, 4),
+				argument(args, 4, 20), argument(args, 5, 8), argument(args, 6, 16));
+		var limit = (args.length > 7) ? Double.parseDouble(args[7]) : 1.25;
+
+		System.setProperty("java.awt.headless", "true");
+		var superLinear = new boolean[1];
+		var thread = new Thread(null, () -> superLinear[0] = run(steps, shape, limit), "scaling", 1L << 30);
+		thread.start();
+		thread.join();
+		if (superLinear[0]) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean run(int steps, CorpusGenerator.Shape shape, double limit) {
+		// warm up on the smallest program
+		for (var i = 0; i < 5; i++) {
+			measure(shape);
+		}
+
+		var measurements = new ArrayList<Measurement>();
+		System.out.printf("%8s %9s", "decls", "lines");
+		for (var phase : PHASES) {
+			System.out.printf(" %15s", phase);
+		}
+		System.out.println("   (thousand lines/s)");
+		for (var step = 0; step < steps; step++) {
+			var measurement = measure(shape.withDeclarations(shape.declarations() << step));
+			measurements.add(measurement);
+			System.out.printf("%8d %9d", shape.declarations() << step, measurement.lines());
+			for (var phase : PHASES) {
+				System.out.printf(" %15.1f", throughput(measurement, phase));
+			}
+			System.out.println();
+		}
+
+		var superLinear = false;
+		System.out.println();
+		for (var phase : PHASES) {
+			var slope = slope(measurements, phase);
+			var marked = slope > limit;
+			superLinear |= marked;
+			System.out.printf("%-15s growth %.2f%s%n", phase, slope, marked ? "  SUPER-LINEAR" : "");
+			plot(measurements, phase);
+		}
+		return superLinear;
+	}
+
+	private static Measurement measure(CorpusGenerator.Shape shape) {
+		var generator = new CorpusGenerator(1, shape);
+		var bytes = generator.generate().getBytes(StandardCharsets.ISO_8859_1);
+		var best = new LinkedHashMap<String, Long>();
+		for (var run = 0; run < RUNS; run++) {
+			var nanos = new LinkedHashMap<String, Long>();
+			var reporter = new ErrorReporter(false, false);
+			var scanner = new Scanner(SourceFile.ofBytes(bytes, 0, bytes.length, 1));
+			scanner.enableTiming(CompilationTimings::allocatedBytes);
+			var before = System.nanoTime();
+			var ast = new Parser(scanner, reporter).parseProgram();
+			var parsing = System.nanoTime() - before;
+			nanos.put("scanning", scanner.getScanNanos());
+			nanos.put("parsing", parsing - scanner.getScanNanos());
+
+			nanos.put("identification", identify(generator.getIdentifications()));
+
+			before = System.nanoTime();
+			new Checker(reporter).check(ast);
+			nanos.put("checking", System.nanoTime() - before);
+			if (reporter.getNumErrors() > 0) {
+				throw new IllegalStateException("generated program has errors: " + reporter.getTranscript());
+			}
+
+			before = System.nanoTime();
+			new Encoder(new Emitter(reporter), reporter).encodeRun(ast, false);
+			nanos.put("encoding", System.nanoTime() - before);
+
+			nanos.put("layout", layout(ast));
+
+			for (var phase : nanos.entrySet()) {
+				best.merge(phase.getKey(), phase.getValue(), Math::min);
+			}
+		}
+		return new Measurement(generator.getLines(), best);
+	}
+
+	// replays the uses of global names, as the Checker would make them
+	private static long identify(List<CorpusGenerator.Identification> identifications) {
+		var position = new SourcePosition();
+		Declaration declaration = new VarDeclaration(new Identifier("d", position), new IntTypeDenoter(position),
+				position);
+		var before = System.nanoTime();
+		var table = new IdentificationTable();
+		for (var identification : identifications) {
+			if (identification.declaration()) {
+				table.enter(identification.name(), declaration);
+			} else if (table.retrieve(identification.name()) == null) {
+				throw new IllegalStateException(identification.name() + " used before its declaration");
+			}
+		}
+		return System.nanoTime() - before;
+	}
+
+	private static long layout(Program ast) {
+		var graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+		var fontMetrics = graphics.getFontMetrics(new Font("SansSerif", Font.PLAIN, 12));
+		var before = System.nanoTime();
+		var drawing = ast.visit(new LayoutVisitor(fontMetrics), null);
+		drawing.position(new Point(2048, 10));
+		var nanos = System.nanoTime() - before;
+		graphics.dispose();
+		return nanos;
+	}
+
+	private static double throughput(Measurement measurement, String phase) {
+		return measurement.lines() / (measurement.nanos().get(phase) / 1e6);
+	}
+
+	// the slope of the least-squares fit of log time against log lines
+	private static double slope(List<Measurement> measurements, String phase) {
+		double n = measurements.size(), sx = 0, sy = 0, sxx = 0, sxy = 0;
+		for (var measurement : measurements) {
+			var x = Math.log(measurement.lines());
+			var y = Math.log(Math.max(1, measurement.nanos().get(phase)));
+			sx += x;
+			sy += y;
+			sxx += x * x;
+			sxy += x * y;
+		}
+		return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+	}
+
+	// a bar for each size, its length proportional to the phase's throughput
+	private static void plot(List<Measurement> measurements, String phase) {
+		var highest = 0.0;
+		for (var measurement : measurements) {
+			highest = Math.max(highest, throughput(measurement, phase));
+		}
+		for (var measurement : measurements) {
+			var throughput = throughput(measurement, phase);
+			System.out.printf("  %9d |%-50s %.1f%n", measurement.lines(), "#".repeat((int) (50 * throughput / highest)),
+					throughput);
+		}
+	}
+
+	private static int argument(String[] args, int i, int otherwise) {
+		return (args.length > i) ? Integer.parseInt(args[i]) : otherwise;
+	}
+}
@@ -0,0 +1,189 @@
+package triangle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCompilationCache {
+
+	private static final byte[] SOURCE = "begin putint (42) end".getBytes();
+
+	private static final byte[] OBJECT = { 0, 0, 0, 15, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	private Path directory;
+
+	private CompilationCache cache;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("cache");
+		cache = new CompilationCache(directory, 1024 * 1024);
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	private static CompilationCache.Key key(byte[] source, String options) {
+		return CompilationCache.Key.of(source, "compiler", options);
+	}
+
+	@Test
+	public void testMissThenHit() {
+		var key = key(SOURCE, "folding=false");
+		assertNull(cache.lookup(key));
+		cache.store(key, new CompilationCache.Entry(true, "", OBJECT));
+		var entry = cache.lookup(key);
+		assertNotNull(entry);
+		assertTrue(entry.successful());
+		assertEquals("", entry.diagnostics());
+		assertArrayEquals(OBJECT, entry.objectProgram());
+	}
+
+	@Test
+	public void testFailedCompilationIsCached() {
+		var key = key(SOURCE, "folding=false");
+		cache.store(key, new CompilationCache.Entry(false, "ERROR: something\n", new byte[0]));
+		var entry = cache.lookup(key);
+		assertEquals(false, entry.successful());
+		assertEquals("ERROR: something\n", entry.diagnostics());
+	}
+
+	@Test
+	public void testKeyCoversSourceOptionsAndCompiler() {
+		var key = key(SOURCE, "folding=false");
+		cache.store(key, new CompilationCache.Entry(true, "", OBJECT));
+		assertNull(cache.lookup(key(SOURCE, "folding=true")));
+		assertNull(cache.lookup(key("begin putint (43) end".getBytes(), "folding=false")));
+		assertNull(cache.lookup(CompilationCache.Key.of(SOURCE, "other compiler", "folding=false")));
+		assertNotEquals(key.hash(), key(SOURCE, "folding=true").hash());
+	}
+
+	@Test
+	public void testCorruptedEntryIsAMiss() throws IOException {
+		var key = key(SOURCE, "folding=false");
+		cache.store(key, new CompilationCache.Entry(true, "", OBJECT));
+		var file = directory.resolve(key.hash() + ".tamc");
+		var bytes = Files.readAllBytes(file);
+
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+		assertNull(cache.lookup(key));
+
+		var extended = Arrays.copyOf(bytes, bytes.length + 1);
+		Files.write(file, extended);
+		assertNull(cache.lookup(key));
+
+		var wrongKey = bytes.clone();
+		wrongKey[10] ^= 1;
+		Files.write(file, wrongKey);
+		assertNull(cache.lookup(key));
+
+		Files.write(file, new byte[0]);
+		assertNull(cache.lookup(key));
+
+		// and it is replaced by the next store
+		cache.store(key, new CompilationCache.Entry(true, "", OBJECT));
+		assertNotNull(cache.lookup(key));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws IOException {
+		var keys = new CompilationCache.Key[4];
+		for (var i = 0; i < keys.length; i++) {
+			keys[i] = key(SOURCE, "option" + i);
+		}
+		cache.store(keys[0], new CompilationCache.Entry(true, "", OBJECT));
+		var size = Files.size(directory.resolve(keys[0].hash() + ".tamc"));
+		// room for two entries
+		cache = new CompilationCache(directory, 2 * size + size / 2);
+		for (var i = 0; i < keys.length; i++) {
+			cache.store(keys[i], new CompilationCache.Entry(true, "", OBJECT));
+			// a second apart, whatever the file system's resolution
+			var file = directory.resolve(keys[i].hash() + ".tamc");
+			if (Files.exists(file)) {
+				Files.setLastModifiedTime(file, FileTime.fromMillis(1000000000000L + 1000 * i));
+			}
+		}
+		assertNull(cache.lookup(keys[0]));
+		assertNull(cache.lookup(keys[1]));
+		assertNotNull(cache.lookup(keys[2]));
+		assertNotNull(cache.lookup(keys[3]));
+	}
+
+	@Test
+	public void testCompilerUsesCache() throws IOException {
+		var source = Programs.write(directory, "answer.tri", new String(SOURCE));
+		Compiler.cache = directory.resolve("cache").toString();
+		var first = directory.resolve("first.tam").toString();
+		var second = directory.resolve("second.tam").toString();
+		assertTrue(Compiler.compileProgram(source, first, false, false));
+		try (var entries = Files.list(Path.of(Compiler.cache))) {
+			assertEquals(1, entries.count());
+		}
+		assertTrue(Compiler.compileProgram(source, second, false, false));
+		assertArrayEquals(Programs.bytes(first), Programs.bytes(second));
+		assertEquals("42", Programs.run(second));
+
+		// a corrupted entry is compiled again
+		try (var entries = Files.list(Path.of(Compiler.cache))) {
+			for (var entry : entries.toList()) {
+				Files.write(entry, new byte[] { 1, 2, 3 });
+			}
+		}
+		var third = directory.resolve("third.tam").toString();
+		assertTrue(Compiler.compileProgram(source, third, false, false));
+		assertArrayEquals(Programs.bytes(first), Programs.bytes(third));
+	}
+
+	/* a compiler whose code generation or classes have changed does not use what an earlier one stored */
+
+	@Test
+	public void testEarlierCompilersEntryIsAMiss() throws IOException {
+		var source = Programs.write(directory, "answer.tri", new String(SOURCE));
+		var stale = Programs.compile(directory, "begin putint (7) end");
+		Compiler.cache = directory.resolve("cache").toString();
+		// as stored by a compiler whose key held only its VERSION
+		new CompilationCache(Path.of(Compiler.cache), 1024 * 1024).store(
+				CompilationCache.Key.of(SOURCE, Compiler.VERSION, "folding=false"),
+				new CompilationCache.Entry(true, "", Programs.bytes(stale)));
+
+		var objectName = directory.resolve("answer.tam").toString();
+		assertTrue(Compiler.compileProgram(source, objectName, false, false));
+		assertEquals("42", Programs.run(objectName));
+		assertTrue(Compiler.compilerVersion().startsWith(Compiler.VERSION + " codegen " + Compiler.CODE_GENERATION + " "));
+	}
+
+	@Test
+	public void testChangedBuildIsAMiss() throws IOException {
+		var build = Files.createDirectories(directory.resolve("build/triangle"));
+		Files.write(build.resolve("Encoder.class"), new byte[] { 1, 2, 3 });
+		Files.write(build.resolve("notes.txt"), new byte[] { 4 });
+		var before = CompilationCache.fingerprint(directory.resolve("build"));
+		var key = CompilationCache.Key.of(SOURCE, "compiler " + before, "folding=false");
+		cache.store(key, new CompilationCache.Entry(true, "", OBJECT));
+
+		// only the class files count
+		Files.write(build.resolve("notes.txt"), new byte[] { 5 });
+		assertEquals(before, CompilationCache.fingerprint(directory.resolve("build")));
+
+		Files.write(build.resolve("Encoder.class"), new byte[] { 1, 2, 4 });
+		var after = CompilationCache.fingerprint(directory.resolve("build"));
+		assertNotEquals(before, after);
+		assertNull(cache.lookup(CompilationCache.Key.of(SOURCE, "compiler " + after, "folding=false")));
+		assertNotNull(cache.lookup(key));
+	}
+}
@@ -0,0 +1,121 @@
+package triangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestConditions {
+
+	// each condition is printed as tested by if, then as a value computed by AND, OR and NOT
+	private static final String TRUTH_TABLE = """
+			let
+			  proc show (c : Boolean) ~ if c then put ('T') else put ('F');
+			  proc row (a : Boolean, b : Boolean) ~
+			    begin
+			      if a /\\ b then put ('T') else put ('F'); show (a /\\ b); put (' ');
+			      if a \\/ b then put ('T') else put ('F'); show (a \\/ b); put (' ');
+			      if \\ (a /\\ b) then put ('T') else put ('F'); show (\\ (a /\\ b)); put (' ');
+			      if a /\\ \\ b \\/ b then put ('T') else put ('F'); show (a /\\ \\ b \\/ b); put (' ');
+			      if \\ a \\/ (a /\\ b) then put ('T') else put ('F'); show (\\ a \\/ (a /\\ b)); put (' ');
+			      put (if (a \\/ b) /\\ \\ (a /\\ b) then 'T' else 'F'); show ((a \\/ b) /\\ \\ (a /\\ b));
+			      puteol ()
+			    end
+			in
+			  begin
+			    row (false, false); row (false, true); row (true, false); row (true, true)
+			  end
+			""";
+
+	private static final String EXPECTED = """
+			FF FF TT FF TT FF
+			FF TT TT TT TT TT
+			FF TT TT TT FF TT
+			TT TT FF TT TT FF
+			""";
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("conditions");
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	@Test
+	public void testTruthTable() {
+		assertEquals(EXPECTED, run(TRUTH_TABLE));
+	}
+
+	@Test
+	public void testTruthTableShortCircuit() {
+		Compiler.shortCircuit = true;
+		assertEquals(EXPECTED, run(TRUTH_TABLE));
+	}
+
+	@Test
+	public void testLoopCondition() {
+		var source = """
+				let
+				  var i : Integer;
+				  var n : Integer
+				in
+				  begin
+				    i := 0; n := 0;
+				    while (i < 10) /\\ \\ (i = 6) \\/ (n > 100) do
+				      begin i := i + 1; n := n + i end;
+				    putint (i); put (' '); putint (n)
+				  end
+				""";
+		assertEquals("6 21", run(source));
+		Compiler.shortCircuit = true;
+		assertEquals("6 21", run(source));
+	}
+
+	/* by default a right operand that can fail is still evaluated */
+
+	@Test
+	public void testFailingOperandIsEvaluated() {
+		assertFalse(halts(failingOperand("/\\", "false")));
+		assertFalse(halts(failingOperand("\\/", "true")));
+	}
+
+	@Test
+	public void testFailingOperandIsSkippedWhenShortCircuit() {
+		Compiler.shortCircuit = true;
+		assertTrue(halts(failingOperand("/\\", "false")));
+		assertTrue(halts(failingOperand("\\/", "true")));
+	}
+
+	@Test
+	public void testFailingOperandIsEvaluatedWhenNeeded() {
+		Compiler.shortCircuit = true;
+		assertFalse(halts(failingOperand("/\\", "true")));
+		assertFalse(halts(failingOperand("\\/", "false")));
+	}
+
+	private static String failingOperand(String operator, String left) {
+		return "let var z : Integer in begin z := 0; if " + left + " " + operator
+				+ " (1 / z = 0) then putint (1) else putint (0) end";
+	}
+
+	private String run(String source) {
+		return Programs.run(Programs.compile(directory, source));
+	}
+
+	private boolean halts(String source) {
+		return Programs.execute(Programs.compile(directory, source), new ByteArrayOutputStream()).halted();
+	}
+}
@@ -0,0 +1,73 @@
+package triangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestConstantFolder {
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("folder");
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	@Test
+	public void testFoldedProgramGivesSameOutput() {
+		assertEquals("7", run("(2 + 3) * 4 - 6 / 2", true));
+		assertEquals("7", run("(2 + 3) * 4 - 6 / 2", false));
+	}
+
+	/* an expression that fails at run time must still fail when folding */
+
+	@Test
+	public void testDivisionByZeroIsNotFolded() {
+		assertFailsAlike("7 / 0");
+		assertFailsAlike("7 // 0");
+	}
+
+	@Test
+	public void testOverflowIsNotFolded() {
+		assertFailsAlike("32767 + 1");
+		assertFailsAlike("0 - 32767 - 2");
+		assertFailsAlike("30000 * 30000 * 30000");
+	}
+
+	// folding applies to assignments, but not to actual parameters
+	private static String program(String expression) {
+		return "let var x : Integer in begin x := " + expression + "; putint (x) end";
+	}
+
+	private String run(String expression, boolean folding) {
+		Compiler.folding = folding;
+		return Programs.run(Programs.compile(directory, program(expression)));
+	}
+
+	private void assertFailsAlike(String expression) {
+		var source = program(expression);
+		Compiler.folding = false;
+		var unfolded = new ByteArrayOutputStream();
+		var expected = Programs.execute(Programs.compile(directory, source), unfolded);
+		assertFalse(expected.halted());
+
+		Compiler.folding = true;
+		var folded = new ByteArrayOutputStream();
+		var result = Programs.execute(Programs.compile(directory, source), folded);
+		assertEquals(expected.status(), result.status());
+		assertEquals(unfolded.toString(), folded.toString());
+	}
+}
@@ -0,0 +1,116 @@
+package triangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import triangle.syntacticAnalyzer.SourcePosition;
+
+public class TestDiagnosticsWriter {
+
+	private static final Diagnostic UNDECLARED = new Diagnostic(Diagnostic.Severity.ERROR, "\"%\" is not declared",
+			"x", 3, 4);
+
+	private static final Diagnostic TOO_LONG = new Diagnostic(Diagnostic.Severity.RESTRICTION,
+			"length of operand can't exceed 255 words", null, 0, 0);
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	@Test
+	public void testSarif() {
+		var expected = """
+				{
+				  "$schema": "https://json.schemastore.org/sarif-2.1.0.json",
+				  "version": "2.1.0",
+				  "runs": [{
+				    "tool": {"driver": {"name": "Triangle Compiler", "version": "2.1", "rules": [
+				      {"id": "TRI0", "shortDescription": {"text": "\\"%\\" is not declared"}},
+				      {"id": "TRI1", "shortDescription": {"text": "length of operand can't exceed 255 words"}}
+				    ]}},
+				    "results": [
+				      {"ruleId": "TRI0", "level": "error", "message": {"text": "\\"x\\" is not declared"}, \
+				"locations": [{"physicalLocation": {"artifactLocation": {"uri": "dir/prog.tri"}, \
+				"region": {"startLine": 3, "endLine": 4}}}]},
+				      {"ruleId": "TRI1", "level": "warning", "message": {"text": "length of operand can't exceed 255 words"}, \
+				"locations": [{"physicalLocation": {"artifactLocation": {"uri": "dir/prog.tri"}}}]},
+				      {"ruleId": "TRI0", "level": "error", "message": {"text": "\\"x\\" is not declared"}, \
+				"locations": [{"physicalLocation": {"artifactLocation": {"uri": "dir/prog.tri"}, \
+				"region": {"startLine": 3, "endLine": 4}}}]}
+				    ]
+				  }]
+				}
+				""";
+		assertEquals(expected, DiagnosticsWriter.toSarif("dir\\prog.tri", List.of(UNDECLARED, TOO_LONG, UNDECLARED)));
+	}
+
+	@Test
+	public void testSarifWithoutDiagnostics() {
+		var sarif = DiagnosticsWriter.toSarif("prog.tri", List.of());
+		assertTrue(sarif, sarif.contains("\"rules\": []}},\n"));
+		assertTrue(sarif, sarif.endsWith("\"results\": []\n  }]\n}\n"));
+	}
+
+	@Test
+	public void testSarifAbsolutePathIsFileUri() {
+		var source = Path.of("prog.tri").toAbsolutePath();
+		var sarif = DiagnosticsWriter.toSarif(source.toString(), List.of(UNDECLARED));
+		assertTrue(sarif, sarif.contains("\"uri\": \"" + source.toUri() + "\""));
+	}
+
+	@Test
+	public void testJsonEscapes() {
+		var diagnostic = new Diagnostic(Diagnostic.Severity.ERROR, "bad token %", "\"\\\n", 1, 1);
+		var json = DiagnosticsWriter.toJson("prog.tri", List.of(diagnostic));
+		assertTrue(json, json.contains("\"message\": \"bad token \\\"\\\\\\u000a\""));
+		assertTrue(json, json.contains("\"argument\": \"\\\"\\\\\\u000a\""));
+
+		// the timings report escapes its source name in the same way
+		var timings = new CompilationTimings("\"\\\n.tri", false).toJson();
+		assertTrue(timings, timings.contains("\"source\": \"\\\"\\\\\\u000a.tri\""));
+	}
+
+	@Test
+	public void testCompilerWritesSarif() throws IOException {
+		var directory = Files.createTempDirectory("diagnostics");
+		var source = Programs.write(directory, "bad.tri", "let\n  var n : Integer\nin\n  m := 1\n");
+		Compiler.diagnosticsSarif = directory.resolve("bad.sarif").toString();
+		assertEquals(false, Compiler.compileProgram(source, directory.resolve("bad.tam").toString(), false, false));
+		var sarif = Files.readString(Path.of(Compiler.diagnosticsSarif));
+		assertTrue(sarif, sarif.contains("\"message\": {\"text\": \"\\\"m\\\" is not declared\"}"));
+		assertTrue(sarif, sarif.contains("\"region\": {\"startLine\": 4, \"endLine\": 4}"));
+	}
+
+	@Test
+	public void testCompilationErrorIsSerializable() throws IOException, ClassNotFoundException {
+		var reporter = new ErrorReporter(true, false);
+		ErrorReporter.CompilationError error = null;
+		try {
+			reporter.reportError(UNDECLARED.template(), "x", new SourcePosition(3, 4));
+		} catch (ErrorReporter.CompilationError e) {
+			error = e;
+		}
+		var bytes = new ByteArrayOutputStream();
+		try (var output = new ObjectOutputStream(bytes)) {
+			output.writeObject(error);
+		}
+		try (var input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			var copy = (ErrorReporter.CompilationError) input.readObject();
+			assertEquals(UNDECLARED, copy.getDiagnostic());
+			assertEquals(error.getMessage(), copy.getMessage());
+		}
+	}
+}
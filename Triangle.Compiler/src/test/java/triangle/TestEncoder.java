@@ -0,0 +1,110 @@
+package triangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import triangle.codeGenerator.Emitter;
+import triangle.codeGenerator.Encoder;
+import triangle.contextualAnalyzer.Checker;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+
+public class TestEncoder {
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("encoder");
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	/* a fetch through a var parameter loads as many words as the value has */
+
+	@Test
+	public void testFetchThroughVarParameter() {
+		var source = """
+				let
+				  type Pair ~ record a : Integer, b : Integer end;
+				  var x : Integer;
+				  var p : Pair;
+				  var q : Pair;
+				  proc show (var n : Integer) ~ begin putint (n); put (' ') end;
+				  proc copy (var src : Pair, var dst : Pair) ~ dst := src
+				in
+				  begin
+				    x := 7; show (var x);
+				    p := {a ~ 1, b ~ 2}; copy (var p, var q);
+				    putint (q.a); putint (q.b)
+				  end
+				""";
+		assertEquals("7 12", Programs.run(Programs.compile(directory, source)));
+	}
+
+	/* the extended instructions compute the same as the code they replace, in less of it */
+
+	@Test
+	public void testExtendedInstructions() {
+		var source = """
+				let
+				  var i : Integer;
+				  var n : Integer;
+				  proc count (limit : Integer) ~
+				    let
+				      var k : Integer
+				    in
+				      begin
+				        k := 0;
+				        while k < limit do begin k := k + 1; n := n + k end;
+				        putint (k + 1); put (' ')
+				      end
+				in
+				  begin
+				    i := 10; n := 0;
+				    while i >= 1 do begin count (i); i := i - 3 end;
+				    if n = 100 then putint (0) else putint (n - 1)
+				  end
+				""";
+		var plain = Programs.compile(directory, source);
+		var plainSize = Programs.bytes(plain).length;
+		assertEquals("11 8 5 2 93", Programs.run(plain));
+		Compiler.extendedInstructions = true;
+		var extended = Programs.compile(directory, source);
+		assertEquals("11 8 5 2 93", Programs.run(extended));
+		assertTrue(Programs.bytes(extended).length < plainSize);
+	}
+
+	/* once the Code Store is full, jumps that could not be emitted are not patched */
+
+	@Test
+	public void testCodeStoreOverflow() {
+		var source = new StringBuilder("let var x : Integer in begin\n");
+		for (var i = 0; i < 600; i++) {
+			source.append("  x := ").append(i).append(";\n");
+		}
+		source.append("  if x = 1 then putint (1) else putint (2);\n");
+		source.append("  while x > 0 do x := x - 1\nend\n");
+
+		var reporter = new ErrorReporter(false, false);
+		var bytes = source.toString().getBytes();
+		var program = new Parser(new Scanner(SourceFile.ofBytes(bytes, 0, bytes.length, 1)), reporter).parseProgram();
+		new Checker(reporter).check(program);
+		new Encoder(new Emitter(reporter), reporter).encodeRun(program, false);
+		assertEquals(0, reporter.getNumErrors());
+		assertTrue(reporter.getTranscript(),
+				reporter.getTranscript().contains("RESTRICTION: too many instructions for code segment"));
+	}
+}
@@ -0,0 +1,98 @@
+package triangle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIncrementalCompiler {
+
+	private Path directory;
+
+	private IncrementalCompiler incremental;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("incremental");
+		incremental = new IncrementalCompiler(new ErrorReporter(false), false);
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	// p1 multiplies (total + n) by factor, as the operators are applied left to right
+	private static String program(String factor) {
+		return """
+				let
+				  var total : Integer;
+				  proc p0 (n : Integer) ~ total := total + n;
+				  proc p1 (n : Integer) ~ total := total + n * %s;
+				  func f (n : Integer) : Integer ~ n + total
+				in
+				  begin
+				    total := 0; p0 (1); p1 (2);
+				    putint (f (1))
+				  end
+				""".formatted(factor);
+	}
+
+	@Test
+	public void testEditedBodyIsGrafted() {
+		assertTrue(incremental.compile(program("3")));
+		var first = save("first.tam");
+		assertEquals(5, incremental.getRechecked());
+
+		assertTrue(incremental.compile(program("10")));
+		var second = save("second.tam");
+		assertEquals(1, incremental.getGrafted());
+		assertEquals(0, incremental.getRechecked());
+		assertEquals(1, incremental.getReencoded());
+
+		// the standard environment is set up afresh by a full compilation, so
+		// these come last
+		assertFull(program("3"), first, "10");
+		assertFull(program("10"), second, "31");
+	}
+
+	@Test
+	public void testUnchangedProgramIsReused() {
+		assertTrue(incremental.compile(program("3")));
+		var first = Programs.bytes(save("first.tam"));
+		assertTrue(incremental.compile(program("3")));
+		assertEquals(5, incremental.getReused());
+		assertEquals(0, incremental.getReencoded());
+		assertArrayEquals(first, Programs.bytes(save("second.tam")));
+	}
+
+	@Test
+	public void testRecoversFromErrors() {
+		assertTrue(incremental.compile(program("3")));
+		assertFalse(incremental.compile(program("'x'")));
+		assertFalse(incremental.compile(program("(")));
+		assertTrue(incremental.compile(program("4")));
+		assertFull(program("4"), save("fixed.tam"), "13");
+	}
+
+	private String save(String objectFile) {
+		var objectName = directory.resolve(objectFile).toString();
+		incremental.saveObjectProgram(objectName);
+		return objectName;
+	}
+
+	private void assertFull(String source, String incrementalObject, String output) {
+		var objectName = directory.resolve("full.tam").toString();
+		assertTrue(Compiler.compileProgram(Programs.write(directory, "full.tri", source), objectName, false, false));
+		assertArrayEquals(Programs.bytes(objectName), Programs.bytes(incrementalObject));
+		assertEquals(output, Programs.run(incrementalObject));
+	}
+}
@@ -0,0 +1,151 @@
+package triangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLibrary {
+
+	private static final String ARITHMETIC = """
+			let
+			  const base ~ 10;
+			  type Pair ~ record lo : Integer, hi : Integer end;
+			  func double (n : Integer) : Integer ~ n * 2;
+			  func split (n : Integer) : Pair ~ {lo ~ n // base, hi ~ n / base};
+			  proc quadruple (var n : Integer) ~ n := double (double (n))
+			in
+			  putint (double (base))
+			""";
+
+	private static final String OUTPUT = """
+			let
+			  proc show (n : Integer) ~ begin putint (n); put (' ') end
+			in
+			  show (0)
+			""";
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("library");
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	@Test
+	public void testExportsAreUsable() {
+		Compiler.link = library("arithmetic", ARITHMETIC);
+		var program = Programs.compile(directory, """
+				let
+				  var x : Integer;
+				  var p : Pair
+				in
+				  begin
+				    x := base + 2; quadruple (var x);
+				    p := split (x);
+				    putint (x); put (' '); putint (p.hi); put (' '); putint (p.lo)
+				  end
+				""");
+		assertEquals("48 4 8", Programs.run(program));
+	}
+
+	/* the second library's code follows the first's, so its addresses move further */
+
+	@Test
+	public void testTwoLibraries() {
+		Compiler.link = library("arithmetic", ARITHMETIC) + "," + library("output", OUTPUT);
+		var program = Programs.compile(directory, """
+				let
+				  var x : Integer
+				in
+				  begin
+				    x := 3; show (x);
+				    quadruple (var x); show (x); show (double (x))
+				  end
+				""");
+		assertEquals("3 12 24 ", Programs.run(program));
+	}
+
+	@Test
+	public void testProgramMayRedeclareExport() {
+		Compiler.link = library("arithmetic", ARITHMETIC);
+		var program = Programs.compile(directory, """
+				let
+				  func double (n : Integer) : Integer ~ n + n + 1;
+				  var x : Integer
+				in
+				  begin
+				    x := 1; quadruple (var x);
+				    putint (x); put (' '); putint (double (x))
+				  end
+				""");
+		assertEquals("4 9", Programs.run(program));
+	}
+
+	@Test
+	public void testCallsAreChecked() {
+		Compiler.link = library("arithmetic", ARITHMETIC);
+		assertFalse(compiles("let var b : Boolean in b := double (true)"));
+	}
+
+	@Test
+	public void testRejectsVariable() {
+		assertFalse(Compiler.compileLibrary(Programs.write(directory, "bad.tri", """
+				let
+				  var count : Integer
+				in
+				  count := 0
+				"""), directory.resolve("bad.tal").toString()));
+	}
+
+	@Test
+	public void testRejectsComputedConstant() {
+		assertFalse(Compiler.compileLibrary(Programs.write(directory, "bad.tri", """
+				let
+				  const limit ~ 2 * 5
+				in
+				  putint (limit)
+				"""), directory.resolve("bad.tal").toString()));
+	}
+
+	@Test
+	public void testRejectsProgramWithoutDeclarations() {
+		assertFalse(Compiler.compileLibrary(Programs.write(directory, "bad.tri", "putint (1)"),
+				directory.resolve("bad.tal").toString()));
+	}
+
+	@Test
+	public void testMissingLibrary() {
+		Compiler.link = directory.resolve("missing.tal").toString();
+		assertFalse(compiles("putint (1)"));
+	}
+
+	@Test
+	public void testNotALibrary() {
+		Compiler.link = Programs.write(directory, "text.tal", "not a library");
+		assertFalse(compiles("putint (1)"));
+	}
+
+	private String library(String name, String source) {
+		var libraryName = directory.resolve(name + ".tal").toString();
+		assertTrue(Compiler.compileLibrary(Programs.write(directory, name + ".tri", source), libraryName));
+		return libraryName;
+	}
+
+	private boolean compiles(String source) {
+		return Compiler.compileProgram(Programs.write(directory, "program.tri", source),
+				directory.resolve("program.tam").toString(), false, false);
+	}
+}
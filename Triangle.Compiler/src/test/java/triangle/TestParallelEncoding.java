@@ -0,0 +1,91 @@
+package triangle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelEncoding {
+
+	private static final String LIBRARY = """
+			let
+			  func double (n : Integer) : Integer ~ n * 2;
+			  proc quadruple (var n : Integer) ~ n := double (double (n))
+			in
+			  putint (0)
+			""";
+
+	private static final String PROGRAM = """
+			let
+			  var x : Integer;
+			  proc show (n : Integer) ~ begin putint (n); put (' ') end
+			in
+			  begin
+			    x := 10; show (x);
+			    quadruple (var x); show (x)
+			  end
+			""";
+
+	private static final String STANDALONE = """
+			let
+			  var x : Integer;
+			  func double (n : Integer) : Integer ~ n * 2;
+			  proc quadruple (var n : Integer) ~ n := double (double (n));
+			  proc show (n : Integer) ~ begin putint (n); put (' ') end
+			in
+			  begin
+			    x := 10; show (x);
+			    quadruple (var x); show (x)
+			  end
+			""";
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("parallel");
+	}
+
+	@After
+	public void tearDown() {
+		Programs.resetOptions();
+	}
+
+	@Test
+	public void testSameCodeAsSerial() {
+		var source = Programs.write(directory, "program.tri", STANDALONE);
+		var serial = compile(source, "serial.tam", false);
+		var parallel = compile(source, "parallel.tam", true);
+		assertEquals("10 40 ", Programs.run(parallel));
+		assertArrayEquals(Programs.bytes(serial), Programs.bytes(parallel));
+	}
+
+	/* the linked library's routines are already in the Code Store, and must be called where they are */
+
+	@Test
+	public void testLinkedLibrary() {
+		var library = directory.resolve("lib.tal").toString();
+		assertTrue(Compiler.compileLibrary(Programs.write(directory, "lib.tri", LIBRARY), library));
+		Compiler.link = library;
+		var source = Programs.write(directory, "program.tri", PROGRAM);
+		var serial = compile(source, "serial.tam", false);
+		var parallel = compile(source, "parallel.tam", true);
+		assertEquals("10 40 ", Programs.run(serial));
+		assertEquals("10 40 ", Programs.run(parallel));
+		assertArrayEquals(Programs.bytes(serial), Programs.bytes(parallel));
+	}
+
+	private String compile(String source, String objectFile, boolean parallel) {
+		var objectName = directory.resolve(objectFile).toString();
+		Compiler.parallelEncoding = parallel;
+		assertTrue(Compiler.compileProgram(source, objectName, false, false));
+		return objectName;
+	}
+}
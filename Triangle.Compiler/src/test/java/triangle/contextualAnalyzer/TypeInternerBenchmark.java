@@ -0,0 +1,144 @@
+package triangle.contextualAnalyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import triangle.ErrorReporter;
+import triangle.abstractSyntaxTrees.terminals.Identifier;
+import triangle.abstractSyntaxTrees.terminals.IntegerLiteral;
+import triangle.abstractSyntaxTrees.types.ArrayTypeDenoter;
+import triangle.abstractSyntaxTrees.types.CharTypeDenoter;
+import triangle.abstractSyntaxTrees.types.IntTypeDenoter;
+import triangle.abstractSyntaxTrees.types.MultipleFieldTypeDenoter;
+import triangle.abstractSyntaxTrees.types.RecordTypeDenoter;
+import triangle.abstractSyntaxTrees.types.SingleFieldTypeDenoter;
+import triangle.abstractSyntaxTrees.types.TypeDenoter;
+import triangle.syntacticAnalyzer.Parser;
+import triangle.syntacticAnalyzer.Scanner;
+import triangle.syntacticAnalyzer.SourceFile;
+import triangle.syntacticAnalyzer.SourcePosition;
+
+/**
+ * Measures type checking of deeply nested record and array types.
+ *
+ * Level k of the type is record a : T(k-1), b : array 3 of T(k-1), c : Integer
+ * end, so a structural comparison of two level-k types visits about 2^k nodes,
+ * while a comparison of interned types is a reference test. The benchmark times
+ * both kinds of comparison directly, and then times the Checker on a program
+ * that assigns and passes variables of such types many times.
+ *
+ * Usage: TypeInternerBenchmark [depth [uses]]
+ */
+public class TypeInternerBenchmark {
+
+	private static final SourcePosition pos = new SourcePosition();
+
+	public static void main(String[] args) throws IOException {
+		var depth = (args.length > 0) ? Integer.parseInt(args[0]) : 12;
+		var uses = (args.length > 1) ? Integer.parseInt(args[1]) : 300;
+
+		compareTypes(depth);
+		checkProgram(depth, uses);
+	}
+
+	// builds a fresh, unshared tree for the level-k type
+	private static TypeDenoter nestedType(int k, TypeDenoter integer, TypeDenoter character) {
+		if (k == 0) {
+			return new RecordTypeDenoter(new MultipleFieldTypeDenoter(new Identifier("a", pos), integer,
+					new SingleFieldTypeDenoter(new Identifier("b", pos), character, pos), pos), pos);
+		}
+		var inner = nestedType(k - 1, integer, character);
+		var array = new ArrayTypeDenoter(new IntegerLiteral("3", pos), nestedType(k - 1, integer, character), pos);
+		return new RecordTypeDenoter(new MultipleFieldTypeDenoter(new Identifier("a", pos), inner,
+				new MultipleFieldTypeDenoter(new Identifier("b", pos), array,
+						new SingleFieldTypeDenoter(new Identifier("c", pos), integer, pos), pos),
+				pos), pos);
+	}
+
+	// interns a type built by nestedType bottom-up, as the Checker does
+	private static TypeDenoter intern(TypeInterner interner, TypeDenoter type) {
+		if (type instanceof RecordTypeDenoter record) {
+			var field = record.FT;
+			while (field instanceof MultipleFieldTypeDenoter multiple) {
+				multiple.T = intern(interner, multiple.T);
+				field = multiple.FT;
+			}
+			if (field instanceof SingleFieldTypeDenoter single) {
+				single.T = intern(interner, single.T);
+			}
+			return interner.intern(record);
+		} else if (type instanceof ArrayTypeDenoter array) {
+			array.T = intern(interner, array.T);
+			return interner.intern(array);
+		}
+		return type;
+	}
+
+	private static void compareTypes(int depth) {
+		var integer = new IntTypeDenoter(pos);
+		var character = new CharTypeDenoter(pos);
+		var interner = new TypeInterner();
+		interner.addCanonical(integer);
+		interner.addCanonical(character);
+
+		var t1 = nestedType(depth, integer, character);
+		var t2 = nestedType(depth, integer, character);
+		var repeats = Math.max(1, (1 << 22) >> depth);
+
+		for (var round = 1; round <= 3; round++) {
+			var before = System.nanoTime();
+			var equal = 0;
+			for (var i = 0; i < repeats; i++) {
+				equal += t1.equals(t2) ? 1 : 0;
+			}
+			var structural = (double) (System.nanoTime() - before) / repeats;
+
+			var c1 = intern(interner, t1);
+			var c2 = intern(interner, t2);
+			before = System.nanoTime();
+			for (var i = 0; i < repeats; i++) {
+				equal += interner.equal(c1, c2) ? 1 : 0;
+			}
+			var interned = (double) (System.nanoTime() - before) / repeats;
+
+			System.out.printf("depth %d: structural equals %.1f ns, interned %.1f ns (%d equal)%n", depth, structural,
+					interned, equal);
+		}
+	}
+
+	private static void checkProgram(int depth, int uses) throws IOException {
+		var program = new StringBuilder("let\n");
+		program.append("  type T0 ~ record a : Integer, b : Char end;\n");
+		for (var k = 1; k <= depth; k++) {
+			program.append("  type T").append(k).append(" ~ record a : T").append(k - 1).append(", b : array 3 of T")
+					.append(k - 1).append(", c : Integer end;\n");
+		}
+		program.append("  var x : T").append(depth).append(";\n");
+		program.append("  var y : T").append(depth).append(";\n");
+		program.append("  proc p (var r : T").append(depth).append(") ~ r := y\n");
+		program.append("in\n  begin\n");
+		for (var i = 0; i < uses; i++) {
+			program.append("    x := y; p (var x); x.c := y.b[1].c;\n");
+		}
+		program.append("    x := y\n  end\n");
+
+		var file = Files.createTempFile("nested", ".tri");
+		Files.writeString(file, program);
+		try {
+			for (var round = 1; round <= 5; round++) {
+				var reporter = new ErrorReporter(false);
+				var ast = new Parser(new Scanner(SourceFile.ofPath(file.toString())), reporter).parseProgram();
+				var checker = new Checker(reporter);
+				var before = System.nanoTime();
+				checker.check(ast);
+				var elapsed = System.nanoTime() - before;
+				var interner = checker.getTypeInterner();
+				System.out.printf("check, depth %d, %d uses: %.2f ms, %d errors, %d types interned (%d of %d lookups hit)%n",
+						depth, uses, elapsed / 1e6, reporter.getNumErrors(), interner.size(), interner.getHits(),
+						interner.getLookups());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}